@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated result of a batch {@link AdapterRequest}, returned to requesters that do not provide
+ * a service callback.
+ */
+public class AdapterBatchResponse {
+
+    /** Links of the resources the operation completed for */
+    public List<String> finishedResourceLinks;
+
+    /** Failure messages by link of the resources the operation failed for */
+    public Map<String, String> failedResourceLinks;
+}
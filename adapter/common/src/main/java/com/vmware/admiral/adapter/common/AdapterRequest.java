@@ -12,6 +12,7 @@
 package com.vmware.admiral.adapter.common;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 import com.vmware.admiral.service.common.ServiceTaskCallback;
@@ -29,6 +30,12 @@ public class AdapterRequest {
     /** The reference of the resource to which the operation will be applied */
     public URI resourceReference;
 
+    /**
+     * The references of the resources to which the operation will be applied, for batch
+     * requests. The adapter applies the operation to each of them and calls back once.
+     */
+    public List<URI> resourceReferences;
+
     /** Attributes for given request */
     public Map<String, String> customProperties;
 
@@ -44,7 +51,7 @@ public class AdapterRequest {
 
     public void validate() {
         StringBuilder sb = new StringBuilder();
-        if (resourceReference == null) {
+        if (resourceReference == null && !isBatch()) {
             sb.append("'resourceReference' is required.");
         }
         if (serviceTaskCallback == null || serviceTaskCallback.serviceSelfLink == null
@@ -60,6 +67,10 @@ public class AdapterRequest {
         }
     }
 
+    public boolean isBatch() {
+        return resourceReferences != null && !resourceReferences.isEmpty();
+    }
+
     public URI resolve(String link) {
         if (resourceReference == null) {
             return null;
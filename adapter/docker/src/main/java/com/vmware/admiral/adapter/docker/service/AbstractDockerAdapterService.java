@@ -20,12 +20,19 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import com.vmware.admiral.adapter.common.AdapterBatchResponse;
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.util.DockerImage;
@@ -38,6 +45,7 @@ import com.vmware.admiral.compute.ContainerHostUtil;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService;
 import com.vmware.admiral.service.common.RegistryService;
+import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
@@ -45,12 +53,15 @@ import com.vmware.photon.controller.model.security.util.AuthCredentialsType;
 import com.vmware.photon.controller.model.security.util.EncryptionUtils;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 
 public abstract class AbstractDockerAdapterService extends StatelessService {
     protected static final long MAINTENANCE_INTERVAL_MICROS = Long.getLong(
@@ -58,9 +69,34 @@ public abstract class AbstractDockerAdapterService extends StatelessService {
             TimeUnit.SECONDS.toMicros(10));
     protected static final String NOT_FOUND_EXCEPTION_MESSAGE = "returned error 404";
 
+    /**
+     * Maximum number of resources of a batch request processed at the same time.
+     */
+    protected static final int BATCH_CONCURRENCY = Integer.getInteger(
+            "com.vmware.admiral.adapter.docker.batch.concurrency", 16);
+
+    /**
+     * Time after which a single request of a batch request which hasn't completed is failed.
+     */
+    protected static final long BATCH_ITEM_TIMEOUT_MICROS = TimeUnit.SECONDS.toMicros(
+            Long.getLong("com.vmware.admiral.adapter.docker.batch.item.timeout.seconds",
+                    10 * 60L));
+
+    private static final String UNKNOWN_HOST_KEY = "unknown";
+
     private static final Set<String> UNSUPPORTED_CREDENTIALS_TYPES = new HashSet<>(Arrays.asList(
             AuthCredentialsType.Password.toString()));
 
+    /**
+     * Completion handlers of the single requests a batch request is split into. The single
+     * requests are kept by identity and notify the batch instead of a callback service.
+     */
+    private final Map<AdapterRequest, BiConsumer<TaskStage, Throwable>> batchItemHandlers =
+            new ConcurrentHashMap<>();
+
+    private final DockerHostBatchScheduler batchScheduler = new DockerHostBatchScheduler(
+            BATCH_CONCURRENCY);
+
     public AbstractDockerAdapterService() {
         super();
         super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
@@ -92,6 +128,9 @@ public abstract class AbstractDockerAdapterService extends StatelessService {
             return;
         }
 
+        // expose the per host request counters of the shared executor as stats of this service
+        getCommandExecutor().getHostRequestStats().forEach(this::setStat);
+
         if (DeploymentProfileConfig.getInstance().isTest()) {
             logFine("Skipping scheduled maintenance in test mode: %s", getUri());
             post.complete();
@@ -110,6 +149,160 @@ public abstract class AbstractDockerAdapterService extends StatelessService {
         return RemoteApiDockerAdapterCommandExecutorImpl.create(getHost(), trustManager);
     }
 
+    /**
+     * Processes a batch request by splitting it into single requests, one per resource reference,
+     * and handing them to {@code requestProcessor}, at most {@link #BATCH_CONCURRENCY} at a time
+     * on each docker host. A single request which doesn't complete within
+     * {@link #BATCH_ITEM_TIMEOUT_MICROS} is failed. The requester is called back once, after all
+     * of them complete. Requests without a callback get an {@link AdapterBatchResponse} as the
+     * response of the operation instead.
+     */
+    protected <T extends AdapterRequest> void processBatchRequest(Operation op, T batch,
+            Consumer<T> requestProcessor) {
+        boolean direct = batch.serviceTaskCallback.isEmpty();
+        if (!direct) {
+            op.complete();
+        }
+
+        List<URI> references = new ArrayList<>(batch.resourceReferences);
+        AtomicInteger remaining = new AtomicInteger(references.size());
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+        getBatchHostKeys(references, (hostKeys) -> {
+            for (URI reference : references) {
+                String hostKey = hostKeys.getOrDefault(reference.getPath(), UNKNOWN_HOST_KEY);
+                batchScheduler.submit(hostKey, () -> processBatchItem(batch, reference, hostKey,
+                        requestProcessor, (e) -> {
+                            if (e != null) {
+                                failures.put(reference.getPath(), e);
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                completeBatchRequest(op, batch, references, failures, direct);
+                            }
+                        }));
+            }
+        });
+    }
+
+    private <T extends AdapterRequest> void processBatchItem(T batch, URI reference,
+            String hostKey, Consumer<T> requestProcessor, Consumer<Throwable> itemCompletion) {
+        T request = Utils.clone(batch);
+        request.resourceReference = reference;
+        request.resourceReferences = null;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        batchItemHandlers.put(request, (taskStage, e) -> {
+            batchScheduler.release(hostKey);
+            if (e == null && taskStage == TaskStage.FAILED) {
+                e = new Exception("Adapter Exception.");
+            }
+            itemCompletion.accept(e);
+        });
+
+        // fail the item and free its slot if it never reports back, a late completion is
+        // dropped since the handler is gone by then
+        getHost().schedule(() -> {
+            BiConsumer<TaskStage, Throwable> handler = batchItemHandlers.remove(request);
+            if (handler != null) {
+                logWarning("Batch request %s for resource %s timed out %s",
+                        batch.operationTypeId, reference, batch.getRequestTrackingLog());
+                handler.accept(TaskStage.FAILED, new TimeoutException(String.format(
+                        "Operation %s for %s did not complete in time", batch.operationTypeId,
+                        reference.getPath())));
+            }
+        }, BATCH_ITEM_TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+
+        try {
+            requestProcessor.accept(request);
+        } catch (Throwable e) {
+            fail(request, e);
+        }
+    }
+
+    /**
+     * Resolves the docker host of each resource of a batch, keyed by the resource link. Resources
+     * which can't be resolved are left out and share the limit of {@link #UNKNOWN_HOST_KEY}.
+     */
+    private void getBatchHostKeys(List<URI> references, Consumer<Map<String, String>> callback) {
+        Set<String> links = new HashSet<>();
+        for (URI reference : references) {
+            links.add(reference.getPath());
+        }
+        QueryTask q = QueryTask.Builder.createDirectTask()
+                .setQuery(Query.Builder.create()
+                        .addInClause(ServiceDocument.FIELD_NAME_SELF_LINK, links)
+                        .build())
+                .addOption(QueryOption.EXPAND_CONTENT)
+                .build();
+
+        Map<String, String> hostKeys = new HashMap<>();
+        new ServiceDocumentQuery<>(getHost(), BatchResourceState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to resolve the hosts of a batch request: %s",
+                        Utils.toString(r.getException()));
+                callback.accept(hostKeys);
+            } else if (r.hasResult()) {
+                String hostLink = r.getResult().getHostLink();
+                if (hostLink != null) {
+                    hostKeys.put(r.getDocumentSelfLink(), hostLink);
+                }
+            } else {
+                callback.accept(hostKeys);
+            }
+        });
+    }
+
+    /**
+     * The fields of containers, networks and volumes which point to their docker host.
+     */
+    public static class BatchResourceState extends ServiceDocument {
+        public String parentLink;
+        public String originatingHostLink;
+        public List<String> parentLinks;
+
+        String getHostLink() {
+            if (parentLink != null) {
+                return parentLink;
+            }
+            if (originatingHostLink != null) {
+                return originatingHostLink;
+            }
+            return parentLinks == null || parentLinks.isEmpty() ? null : parentLinks.get(0);
+        }
+    }
+
+    private void completeBatchRequest(Operation op, AdapterRequest batch, List<URI> references,
+            Map<String, Throwable> failures, boolean direct) {
+        logInfo("Processed batch request %s for %d resources, %d failed %s",
+                batch.operationTypeId, references.size(), failures.size(),
+                batch.getRequestTrackingLog());
+
+        if (direct) {
+            AdapterBatchResponse response = new AdapterBatchResponse();
+            response.finishedResourceLinks = new ArrayList<>();
+            response.failedResourceLinks = new HashMap<>();
+            for (URI reference : references) {
+                Throwable e = failures.get(reference.getPath());
+                if (e == null) {
+                    response.finishedResourceLinks.add(reference.getPath());
+                } else {
+                    response.failedResourceLinks.put(reference.getPath(), e.getMessage());
+                }
+            }
+            op.setBodyNoCloning(response).complete();
+            return;
+        }
+
+        if (failures.isEmpty()) {
+            patchTaskStage(batch, TaskStage.FINISHED, null);
+            return;
+        }
+        Map.Entry<String, Throwable> failure = failures.entrySet().iterator().next();
+        patchTaskStage(batch, TaskStage.FAILED, new Exception(String.format(
+                "Operation failed for %d of %d resources. %s: %s", failures.size(),
+                references.size(), failure.getKey(), failure.getValue().getMessage()),
+                failure.getValue()));
+    }
+
     protected void getContainerHost(AdapterRequest request, Operation op,
             URI containerHostReference,
             BiConsumer<ComputeState, CommandInput> callbackFunction) {
@@ -394,6 +587,12 @@ public abstract class AbstractDockerAdapterService extends StatelessService {
     protected void patchTaskStage(AdapterRequest request, TaskStage taskStage, Throwable exception,
             ServiceTaskCallbackResponse callbackResponse) {
 
+        BiConsumer<TaskStage, Throwable> batchItemHandler = batchItemHandlers.remove(request);
+        if (batchItemHandler != null) {
+            batchItemHandler.accept(taskStage, exception);
+            return;
+        }
+
         try {
             if (request.serviceTaskCallback.isEmpty()) {
                 logFine("No callback provided to Docker adapter service for resource: %s.",
@@ -11,6 +11,10 @@
 
 package com.vmware.admiral.adapter.docker.service;
 
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.adapter.docker.service.DockerImagePullStream.PullProgress;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.CompletionHandler;
@@ -160,7 +164,8 @@ public interface DockerAdapterCommandExecutor {
     String DOCKER_IMAGE_REPOSITORY_PROP_NAME = "repo";
     String DOCKER_IMAGE_TAG_PROP_NAME = "tag";
     String DOCKER_IMAGE_NAME_PROP_NAME = "imageName";
-    String DOCKER_IMAGE_DATA_PROP_NAME = "imageData";
+    String DOCKER_IMAGE_ID_PROP_NAME = "Id";
+    String DOCKER_IMAGE_FILE_PROP_NAME = "imageFile";
     String DOCKER_IMAGE_REGISTRY_AUTH = "X-Registry-Auth";
 
     String DOCKER_VOLUME_NAME_PROP_NAME = "Name";
@@ -204,6 +209,15 @@ public interface DockerAdapterCommandExecutor {
 
     void createImage(CommandInput input, CompletionHandler completionHandler);
 
+    /**
+     * Pulls an image and reports the progress of the pull to the given listener whenever the
+     * status of the pull or of any of the image layers changes. The listener is called on an I/O
+     * thread and must not block.
+     */
+    void createImage(CommandInput input,
+            Consumer<PullProgress> progressListener,
+            CompletionHandler completionHandler);
+
     void tagImage(CommandInput input, CompletionHandler completionHandler);
 
     // Container operations:
@@ -261,4 +275,10 @@ public interface DockerAdapterCommandExecutor {
 
     void handlePeriodicMaintenance(Operation post);
 
+    /**
+     * Returns the latency, error and queueing counters of the requests to each docker host, keyed
+     * by stat name.
+     */
+    Map<String, Double> getHostRequestStats();
+
 }
\ No newline at end of file
@@ -59,7 +59,7 @@ import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExec
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_ATTACH_STDERR_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_ATTACH_STDOUT_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_EXEC_COMMAND_PROP_NAME;
-import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_DATA_PROP_NAME;
+import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_FILE_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.DOCKER_IMAGE_FROM_PROP_NAME;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.SINCE;
 import static com.vmware.admiral.adapter.docker.service.DockerAdapterCommandExecutor.STD_ERR;
@@ -271,6 +271,23 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
 
         ContainerInstanceRequest containerRequest = (ContainerInstanceRequest) context.request;
         ContainerOperationType operationType = containerRequest.getOperationType();
+
+        if (containerRequest.isBatch()) {
+            if (ContainerOperationType.EXEC == operationType) {
+                op.fail(new IllegalArgumentException("Exec is not supported for batch requests."));
+                return;
+            }
+            logInfo("Processing batch operation request %s for %d resources %s",
+                    operationType, containerRequest.resourceReferences.size(),
+                    containerRequest.getRequestTrackingLog());
+            processBatchRequest(op, containerRequest, (request) -> {
+                RequestContext requestContext = new RequestContext();
+                requestContext.request = request;
+                processContainerRequest(requestContext);
+            });
+            return;
+        }
+
         logInfo("Processing operation request %s for resource %s %s",
                 operationType, containerRequest.resourceReference,
                 containerRequest.getRequestTrackingLog());
@@ -409,6 +426,11 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                         }
                     }
 
+                    if (isLogAppend(context.request)) {
+                        appendContainerLogResponse(context, log == null ? new byte[0] : log);
+                        return;
+                    }
+
                     if (log == null) {
                         log = "--".getBytes();
                         // log a warning
@@ -459,6 +481,59 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         return fetchLogCommandInput;
     }
 
+    private static boolean isLogAppend(AdapterRequest request) {
+        return request.customProperties != null && Boolean.parseBoolean(
+                request.customProperties.get(LogService.APPEND_LOGS_PROP_NAME));
+    }
+
+    /**
+     * Lets the log service know that the fetched lines start with timestamps, which it uses to
+     * find the lines it has stored already.
+     */
+    private static void setLogTimestampOptions(AdapterRequest request,
+            LogService.LogServiceState logServiceState) {
+        if (request.customProperties == null || !Boolean.parseBoolean(
+                request.customProperties.get(TIMESTAMPS))) {
+            return;
+        }
+        logServiceState.timestamped = true;
+        logServiceState.stripTimestamps = Boolean.parseBoolean(
+                request.customProperties.get(LogService.STRIP_TIMESTAMPS_PROP_NAME));
+    }
+
+    /**
+     * Appends the logs fetched since the last fetch to the stored ones. The logs are stored from
+     * scratch when they are gone meanwhile.
+     */
+    private void appendContainerLogResponse(RequestContext context, byte[] log) {
+        if (log.length == 0) {
+            if (context.request.serviceTaskCallback.isEmpty()) {
+                patchTaskStage(context.request, TaskStage.FINISHED, null);
+            }
+            return;
+        }
+
+        LogService.LogServiceState logServiceState = new LogService.LogServiceState();
+        logServiceState.logs = log;
+        setLogTimestampOptions(context.request, logServiceState);
+
+        sendRequest(Operation.createPatch(this, UriUtils.buildUriPath(LogService.FACTORY_LINK,
+                Service.getId(context.containerState.documentSelfLink)))
+                .setBodyNoCloning(logServiceState)
+                .setContextId(context.request.getRequestId())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        if (o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+                            processContainerLogResponse(context, log);
+                        } else {
+                            fail(context.request, ex);
+                        }
+                    } else if (context.request.serviceTaskCallback.isEmpty()) {
+                        patchTaskStage(context.request, TaskStage.FINISHED, null);
+                    }
+                }));
+    }
+
     private void processContainerLogResponse(RequestContext context, byte[] log) {
         LogService.LogServiceState logServiceState = new LogService.LogServiceState();
         logServiceState.documentSelfLink = Service.getId(context.containerState.documentSelfLink);
@@ -471,6 +546,7 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
 
         logServiceState.logs = log;
         logServiceState.tenantLinks = context.containerState.tenantLinks;
+        setLogTimestampOptions(context.request, logServiceState);
 
         sendRequest(Operation.createPost(this, LogService.FACTORY_LINK)
                 .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_FORCE_INDEX_UPDATE)
@@ -525,14 +601,14 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                 .equals(context.containerDescription.image)) {
             String ref = SystemContainerDescriptions.AGENT_IMAGE_REFERENCE;
 
-            imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageData) -> {
-                processLoadImageData(context, imageData, ref, imageCompletionAction);
+            imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageFile) -> {
+                processLoadImageFile(context, imageFile, ref, imageCompletionAction, false);
             });
         } else if (shouldTryCreateFromLocalImage(context.containerDescription)) {
             if (getBundledImage(context.containerDescription) != null) {
                 String ref = getBundledImage(context.containerDescription);
-                imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageData) -> {
-                    processLoadImageData(context, imageData, ref, imageCompletionAction);
+                imageRetrievalManager.retrieveAgentImage(ref, context.request, (imageFile) -> {
+                    processLoadImageFile(context, imageFile, ref, imageCompletionAction, false);
                 });
             } else {
                 // try to create the container from a local image first. Only if the image is not
@@ -560,8 +636,8 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
             try {
                 if (FILE_SCHEME.equals(imageReference.getScheme())) {
                     // for file scheme use the file and do not delete it (it is not a temp copy)
-                    processDownloadedImage(context, new File(imageReference),
-                            imageCompletionAction, false);
+                    processLoadImageFile(context, new File(imageReference),
+                            imageReference.toString(), imageCompletionAction, false);
                 } else {
                     // for not file scheme, download it to a temp file
                     File tempFile = File.createTempFile(DOWNLOAD_TEMPFILE_PREFIX, null);
@@ -586,8 +662,9 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                             tempFile.getAbsolutePath(),
                                             context.request.getRequestTrackingLog());
 
-                                    processDownloadedImage(context, tempFile,
-                                            imageCompletionAction, true);
+                                    processLoadImageFile(context, tempFile,
+                                            imageReference.toString(), imageCompletionAction,
+                                            true);
                                 }
                             });
 
@@ -602,61 +679,29 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         }
     }
 
-    /**
-     * read the temp file containing the downloaded image from the file system and proceed with
-     * imageCompletionAction
-     *
-     * @param context
-     * @param tempFile
-     * @param imageCompletionAction
-     */
-    private void processDownloadedImage(RequestContext context, File tempFile,
+    private void processLoadImageFile(RequestContext context, File imageFile, String fileName,
             Runnable imageCompletionAction, boolean isTempFile) {
-
-        Operation fileReadOp = Operation.createPatch(null)
-                .setContextId(context.request.getRequestId())
-                .setCompletion((o, ex) -> {
-                    if (ex != null) {
-                        fail(context.request, ex);
-                        return;
-                    }
-
-                    byte[] imageData = o.getBody(byte[].class);
-                    if (isTempFile && !tempFile.delete()) {
-                        this.logWarning("Failed to delete temp file: %s %s", tempFile,
-                                context.request.getRequestTrackingLog());
-                    }
-
-                    processLoadImageData(context, imageData,
-                            context.containerDescription.imageReference.toString(),
-                            imageCompletionAction);
-                });
-
-        FileUtils.readFileAndComplete(fileReadOp, tempFile);
-    }
-
-    private void processLoadImageData(RequestContext context, byte[] imageData, String fileName,
-            Runnable imageCompletionAction) {
         // TODO consider merging this functionality with DockerHostAdapterImageService.doLoadImage
-        if (imageData == null || imageData.length == 0) {
+        if (imageFile == null || imageFile.length() == 0) {
             String errMsg = String.format("No content loaded for file: %s %s",
                     fileName, context.request.getRequestTrackingLog());
             this.logSevere(errMsg);
+            deleteTempFile(context, imageFile, isTempFile);
             fail(context.request, new LocalizableValidationException(errMsg,
                     "adapter.load.image.empty", fileName, context.request.getRequestTrackingLog()));
             return;
         }
 
-        logInfo("Loaded content for file: %s %s. Now sending to host...", fileName,
+        logInfo("Found file: %s %s. Now sending to host...", fileName,
                 context.request.getRequestTrackingLog());
-        doLoadImage(context, imageData, fileName, imageCompletionAction);
+        doLoadImage(context, imageFile, fileName, imageCompletionAction, isTempFile);
     }
 
-    private void doLoadImage(RequestContext context, byte[] imageData, String fileName,
-            Runnable imageCompletionAction) {
+    private void doLoadImage(RequestContext context, File imageFile, String fileName,
+            Runnable imageCompletionAction, boolean isTempFile) {
 
         CommandInput loadImageCommandInput = new CommandInput(context.commandInput)
-                .withProperty(DOCKER_IMAGE_DATA_PROP_NAME, imageData);
+                .withProperty(DOCKER_IMAGE_FILE_PROP_NAME, imageFile);
 
         ensurePullRetriesPropertyExists((retryCountProperty) -> {
             new RetriableTaskBuilder<Void>(
@@ -669,6 +714,8 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                                     loadImageCommandInput))
                             .execute()
                             .whenComplete((ignore, ex) -> {
+                                // the file is streamed to the host, keep it until the last retry
+                                deleteTempFile(context, imageFile, isTempFile);
                                 if (ex != null) {
                                     Throwable failureCause = ex instanceof CompletionException
                                             ? ex.getCause() : ex;
@@ -681,6 +728,13 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         });
     }
 
+    private void deleteTempFile(RequestContext context, File file, boolean isTempFile) {
+        if (isTempFile && file != null && !file.delete()) {
+            this.logWarning("Failed to delete temp file: %s %s", file,
+                    context.request.getRequestTrackingLog());
+        }
+    }
+
     private Function<RetriableTask<Void>, DeferredResult<Void>> prepareLoadImageFunction(
             RequestContext context, String fileName, CommandInput loadImageCommandInput) {
         return (task) -> {
@@ -750,7 +804,12 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                     .toString();
             logFine("Pulling container image [%s]", fullImageName);
 
-            context.executor.createImage(createImageCommandInput, (o, ex) -> {
+            context.executor.createImage(createImageCommandInput, (progress) -> {
+                logFine("Pulling container image [%s]: %s of %s layers complete, %s of %s bytes"
+                        + " %s", fullImageName, progress.getCompletedLayersCount(),
+                        progress.getLayersCount(), progress.getCurrentBytes(),
+                        progress.getTotalBytes(), context.request.getRequestTrackingLog());
+            }, (o, ex) -> {
                 if (ex == null) {
                     // Nothing to do, success completion will be
                     // handled on the retriable task completion
@@ -1361,9 +1420,14 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
         boolean allowVchStatsCollection = Boolean
                 .valueOf(ConfigurationUtil.getProperty(ALLOW_VCH_STATS_COLLECTION_PROP_NAME));
         if (ContainerHostUtil.isVicHost(context.computeState) && !allowVchStatsCollection) {
-            context.operation.fail(new LocalizableValidationException(
+            Exception e = new LocalizableValidationException(
                     "Container stats are not supported by VCH hosts.",
-                    "request.container.stats.not.supported"));
+                    "request.container.stats.not.supported");
+            if (context.operation != null) {
+                context.operation.fail(e);
+            } else {
+                fail(context.request, e);
+            }
             return;
         }
 
@@ -1379,7 +1443,9 @@ public class DockerAdapterService extends AbstractDockerAdapterService {
                         "Exception while fetching stats for container [%s] of host [%s]",
                         context.containerState.documentSelfLink,
                         context.computeState.documentSelfLink);
-                context.operation.fail(ex);
+                if (context.operation != null) {
+                    context.operation.fail(ex);
+                }
                 fail(context.request, o, ex);
             } else {
                 handleExceptions(context.request, context.operation, () -> {
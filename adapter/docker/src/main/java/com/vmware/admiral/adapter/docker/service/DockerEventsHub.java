@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Reads the docker <code>/events</code> streams of all subscribed hosts over a small, fixed set of
+ * non-blocking I/O threads instead of a blocked thread per host. Each subscription is a single
+ * long lived HTTP connection. The chunked response is split into newline delimited
+ * {@link Events} frames as the bytes arrive and the parsed frames are handed to the
+ * {@link EventsListener} in batches per host.
+ */
+public class DockerEventsHub {
+
+    private static final Logger logger = Logger.getLogger(DockerEventsHub.class.getName());
+
+    private static final int MAX_FRAME_LENGTH = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.max.frame.length", 64 * 1024);
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.connect.timeout.millis", 20000);
+
+    /**
+     * Receives the events of the subscribed hosts. Callbacks are invoked on the I/O threads of
+     * the hub and must not block.
+     */
+    public interface EventsListener {
+
+        /**
+         * Called when the host subscribed with the given key has accepted the request and starts
+         * streaming events. Any event received afterwards is delivered without gaps until
+         * {@link #onDisconnect(String, Throwable)}.
+         */
+        void onConnect(String key);
+
+        /**
+         * Called with the events received from the host subscribed with the given key, in the
+         * order they were received.
+         */
+        void onEvents(String key, List<Events> events);
+
+        /**
+         * Called once when the stream of the host subscribed with the given key ends for a reason
+         * other than {@link DockerEventsHub#unsubscribe(String)}.
+         */
+        void onDisconnect(String key, Throwable failure);
+    }
+
+    private final EventLoopGroup group;
+    private final EventsListener listener;
+    private final long readTimeoutMillis;
+    private final int maxBatchSize;
+    private final long batchFlushMillis;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param ioThreads
+     *            number of I/O threads shared by all subscriptions
+     * @param readTimeoutMillis
+     *            period without any data after which a stream is considered idle, 0 to disable
+     * @param maxBatchSize
+     *            maximum number of events delivered to the listener at once
+     * @param batchFlushMillis
+     *            maximum time an event waits for its batch to fill up before it is delivered
+     * @param listener
+     *            the listener receiving the events of all subscriptions
+     */
+    public DockerEventsHub(int ioThreads, long readTimeoutMillis, int maxBatchSize,
+            long batchFlushMillis, EventsListener listener) {
+        AssertUtil.assertNotNull(listener, "listener");
+        AssertUtil.assertTrue(ioThreads > 0, "ioThreads must be positive");
+        AssertUtil.assertTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+
+        this.group = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("EventsReader",
+                true));
+        this.listener = listener;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchFlushMillis = batchFlushMillis;
+    }
+
+    /**
+     * Opens the events stream at the given URI unless a subscription with the same key already
+     * exists.
+     *
+     * @param key
+     *            identifies the subscription, e.g. the authority of the docker host
+     * @param uri
+     *            the full <code>/events</code> URI including the query parameters
+     * @param sslContext
+     *            context used to secure the connection, <code>null</code> for plain HTTP
+     * @param failOnIdle
+     *            whether an idle stream should be treated as an I/O failure. Used by tests to
+     *            simulate broken connections.
+     * @return <code>false</code> if the key is already subscribed
+     */
+    public boolean subscribe(String key, URI uri, SSLContext sslContext, boolean failOnIdle) {
+        AssertUtil.assertNotNull(key, "key");
+        AssertUtil.assertNotNull(uri, "uri");
+
+        Subscription subscription = new Subscription(key);
+        if (subscriptions.putIfAbsent(key, subscription) != null) {
+            return false;
+        }
+
+        boolean secure = UriUtils.HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        if (secure && sslContext != null) {
+                            SSLEngine engine = sslContext.createSSLEngine(uri.getHost(), port);
+                            engine.setUseClientMode(true);
+                            pipeline.addLast(new SslHandler(engine));
+                        }
+                        if (readTimeoutMillis > 0) {
+                            pipeline.addLast(new IdleStateHandler(readTimeoutMillis, 0, 0,
+                                    TimeUnit.MILLISECONDS));
+                        }
+                        pipeline.addLast(new HttpClientCodec());
+                        pipeline.addLast(new EventsFrameHandler(subscription, failOnIdle));
+                    }
+                });
+
+        ChannelFuture connectFuture = bootstrap.connect(uri.getHost(), port);
+        subscription.channel = connectFuture.channel();
+        connectFuture.addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                disconnected(subscription, f.cause());
+                return;
+            }
+            if (subscription.cancelled) {
+                f.channel().close();
+                return;
+            }
+
+            String path = uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += UriUtils.URI_QUERY_CHAR + uri.getRawQuery();
+            }
+            HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                    HttpMethod.GET, path);
+            request.headers().set(HttpHeaderNames.HOST, uri.getAuthority());
+            request.headers().set(HttpHeaderNames.ACCEPT, "application/json");
+            f.channel().writeAndFlush(request);
+        });
+
+        return true;
+    }
+
+    /**
+     * Closes the events stream subscribed with the given key. The listener is not notified.
+     *
+     * @return <code>false</code> if there is no such subscription
+     */
+    public boolean unsubscribe(String key) {
+        Subscription subscription = subscriptions.remove(key);
+        if (subscription == null) {
+            return false;
+        }
+
+        subscription.cancelled = true;
+        Channel channel = subscription.channel;
+        if (channel != null) {
+            channel.close();
+        }
+        return true;
+    }
+
+    public boolean isSubscribed(String key) {
+        return subscriptions.containsKey(key);
+    }
+
+    public int getSubscriptionsCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Closes all streams and releases the I/O threads.
+     */
+    public void stop() {
+        for (String key : new ArrayList<>(subscriptions.keySet())) {
+            unsubscribe(key);
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    private void disconnected(Subscription subscription, Throwable failure) {
+        if (!subscription.done.compareAndSet(false, true)) {
+            return;
+        }
+
+        subscriptions.remove(subscription.key, subscription);
+        if (subscription.cancelled) {
+            return;
+        }
+
+        try {
+            listener.onDisconnect(subscription.key, failure);
+        } catch (Throwable t) {
+            logger.warning(String.format("Failed to handle disconnect of [%s]. Error: [%s]",
+                    subscription.key, t.getMessage()));
+        }
+    }
+
+    private static class Subscription {
+        private final String key;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Channel channel;
+        private volatile boolean cancelled;
+
+        private Subscription(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Accumulates the body of the events response and cuts it into newline delimited frames. The
+     * parsed frames are buffered until either the batch is full or the flush interval elapses.
+     */
+    private class EventsFrameHandler extends SimpleChannelInboundHandler<HttpObject> {
+        private final Subscription subscription;
+        private final boolean failOnIdle;
+
+        private ByteBuf pending;
+        private List<Events> batch = new ArrayList<>();
+        private ScheduledFuture<?> flushTask;
+        private Throwable failure;
+
+        private EventsFrameHandler(Subscription subscription, boolean failOnIdle) {
+            this.subscription = subscription;
+            this.failOnIdle = failOnIdle;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            pending = ctx.alloc().buffer();
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (pending != null) {
+                pending.release();
+                pending = null;
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+            if (msg instanceof HttpResponse) {
+                HttpResponseStatus status = ((HttpResponse) msg).status();
+                if (status.code() != HttpResponseStatus.OK.code()) {
+                    failure = new IOException("Unexpected events response status: " + status);
+                    ctx.close();
+                    return;
+                }
+
+                if (!subscription.cancelled) {
+                    try {
+                        listener.onConnect(subscription.key);
+                    } catch (Throwable t) {
+                        logger.warning(String.format("Failed to handle connect of [%s]. Error: [%s]",
+                                subscription.key, t.getMessage()));
+                    }
+                }
+            }
+
+            if (msg instanceof HttpContent) {
+                pending.writeBytes(((HttpContent) msg).content());
+                readFrames(ctx);
+
+                if (msg instanceof LastHttpContent) {
+                    failure = new IOException("Events stream closed by the host.");
+                    ctx.close();
+                }
+            }
+        }
+
+        private void readFrames(ChannelHandlerContext ctx) {
+            int eol;
+            while ((eol = pending.indexOf(pending.readerIndex(), pending.writerIndex(),
+                    (byte) '\n')) >= 0) {
+                int length = eol - pending.readerIndex();
+                if (length > 0) {
+                    Events event = parseFrame(pending.slice(pending.readerIndex(), length));
+                    if (event != null) {
+                        batch.add(event);
+                    }
+                }
+                pending.readerIndex(eol + 1);
+            }
+
+            if (pending.readableBytes() > MAX_FRAME_LENGTH) {
+                failure = new TooLongFrameException("Events frame exceeds " + MAX_FRAME_LENGTH
+                        + " bytes.");
+                ctx.close();
+                return;
+            }
+            pending.discardSomeReadBytes();
+
+            if (batch.size() >= maxBatchSize) {
+                flush();
+            } else if (!batch.isEmpty() && flushTask == null) {
+                flushTask = ctx.executor().schedule(() -> {
+                    flushTask = null;
+                    flush();
+                }, batchFlushMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private Events parseFrame(ByteBuf frame) {
+            try (ByteBufInputStream in = new ByteBufInputStream(frame)) {
+                return mapper.readValue(in, Events.class);
+            } catch (IOException e) {
+                logger.warning(String.format("Failed to parse event from [%s]. Error: [%s]",
+                        subscription.key, e.getMessage()));
+                return null;
+            }
+        }
+
+        private void flush() {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            if (batch.isEmpty() || subscription.cancelled) {
+                return;
+            }
+
+            List<Events> events = batch;
+            batch = new ArrayList<>();
+            try {
+                listener.onEvents(subscription.key, events);
+            } catch (Throwable t) {
+                logger.warning(String.format("Failed to handle events from [%s]. Error: [%s]",
+                        subscription.key, t.getMessage()));
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                logger.fine(String.format("No events have been received from [%s] for %s ms.",
+                        subscription.key, readTimeoutMillis));
+                if (failOnIdle) {
+                    failure = new IOException("Simulated IOException from an IT test.");
+                    ctx.close();
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            flush();
+            disconnected(subscription, failure != null ? failure
+                    : new IOException("Events connection closed."));
+            super.channelInactive(ctx);
+        }
+    }
+}
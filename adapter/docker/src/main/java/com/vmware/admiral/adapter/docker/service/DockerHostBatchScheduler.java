@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Limits the number of batch items processed at the same time on each docker host, across all
+ * the batch requests of an adapter service. Items above the limit wait in a FIFO queue of their
+ * host. Every started item must be released exactly once.
+ */
+class DockerHostBatchScheduler {
+
+    private static final Logger logger = Logger.getLogger(
+            DockerHostBatchScheduler.class.getName());
+
+    private final int maxInFlightPerHost;
+    private final Map<String, HostItems> hosts = new HashMap<>();
+
+    DockerHostBatchScheduler(int maxInFlightPerHost) {
+        if (maxInFlightPerHost <= 0) {
+            throw new IllegalArgumentException("maxInFlightPerHost must be positive");
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    /**
+     * Runs the item as soon as the host has a free slot.
+     */
+    void submit(String hostKey, Runnable item) {
+        synchronized (hosts) {
+            HostItems items = hosts.computeIfAbsent(hostKey, k -> new HostItems());
+            if (items.inFlightCount >= maxInFlightPerHost) {
+                items.queue.add(item);
+                return;
+            }
+            items.inFlightCount++;
+        }
+        run(item);
+    }
+
+    /**
+     * Frees the slot of a completed item and starts the next item queued for the host.
+     */
+    void release(String hostKey) {
+        Runnable next;
+        synchronized (hosts) {
+            HostItems items = hosts.get(hostKey);
+            if (items == null) {
+                return;
+            }
+            next = items.queue.poll();
+            if (next == null) {
+                items.inFlightCount--;
+                if (items.inFlightCount <= 0) {
+                    hosts.remove(hostKey);
+                }
+                return;
+            }
+        }
+        // the slot is handed over to the next item
+        run(next);
+    }
+
+    int getInFlightCount(String hostKey) {
+        synchronized (hosts) {
+            HostItems items = hosts.get(hostKey);
+            return items == null ? 0 : items.inFlightCount;
+        }
+    }
+
+    int getQueuedCount(String hostKey) {
+        synchronized (hosts) {
+            HostItems items = hosts.get(hostKey);
+            return items == null ? 0 : items.queue.size();
+        }
+    }
+
+    private static void run(Runnable item) {
+        try {
+            item.run();
+        } catch (Throwable e) {
+            // the item is expected to handle its own failures and release its slot
+            logger.log(Level.WARNING, "Unexpected failure of a batch item", e);
+        }
+    }
+
+    private static class HostItems {
+        final Queue<Runnable> queue = new ArrayDeque<>();
+        int inFlightCount;
+    }
+}
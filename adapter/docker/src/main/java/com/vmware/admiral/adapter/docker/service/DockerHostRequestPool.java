@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Limits the number of requests in flight to each docker host. Requests above the limit wait in
+ * a FIFO queue of their own host, so a slow or unresponsive host only holds back its own requests
+ * and not the requests to the other hosts. Keeps latency and error counters per host.
+ */
+class DockerHostRequestPool {
+
+    private static final Logger logger = Logger.getLogger(DockerHostRequestPool.class.getName());
+
+    static final String STAT_NAME_PREFIX = "dockerHost:";
+    static final String STAT_NAME_SUFFIX_REQUESTS = ".requestCount";
+    static final String STAT_NAME_SUFFIX_FAILURES = ".failureCount";
+    static final String STAT_NAME_SUFFIX_REJECTED = ".rejectedCount";
+    static final String STAT_NAME_SUFFIX_IN_FLIGHT = ".inFlightCount";
+    static final String STAT_NAME_SUFFIX_QUEUED = ".queuedCount";
+    static final String STAT_NAME_SUFFIX_AVG_LATENCY = ".averageLatencyMicros";
+    static final String STAT_NAME_SUFFIX_MAX_LATENCY = ".maxLatencyMicros";
+
+    private final int maxInFlightPerHost;
+    private final int maxQueuedPerHost;
+    private final long idleExpirationMicros;
+    private final ConcurrentMap<String, HostRequests> hosts = new ConcurrentHashMap<>();
+
+    DockerHostRequestPool(int maxInFlightPerHost, int maxQueuedPerHost,
+            long idleExpirationMicros) {
+        if (maxInFlightPerHost <= 0) {
+            throw new IllegalArgumentException("maxInFlightPerHost must be positive");
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.maxQueuedPerHost = maxQueuedPerHost;
+        this.idleExpirationMicros = idleExpirationMicros;
+    }
+
+    /**
+     * Sends the operation with the given sender as soon as the host it targets has a free slot.
+     * The operation fails without being sent if the queue of the host is full or the operation
+     * expires while waiting.
+     */
+    void send(Operation op, Consumer<Operation> sender) {
+        HostRequests requests = hosts.computeIfAbsent(getHostKey(op.getUri()),
+                HostRequests::new);
+        requests.lastActivityMicros = Utils.getSystemNowMicrosUtc();
+
+        CompletionHandler completion = op.getCompletion();
+        op.setCompletion((o, e) -> {
+            requests.complete(op, e);
+            if (completion != null) {
+                completion.handle(o, e);
+            }
+        });
+
+        if (requests.tryAcquire()) {
+            requests.start(op, sender);
+            return;
+        }
+
+        if (requests.queuedCount.incrementAndGet() > maxQueuedPerHost) {
+            requests.queuedCount.decrementAndGet();
+            requests.rejectedCount.incrementAndGet();
+            // the slot is not taken, fail with the original completion only
+            op.setCompletion(completion);
+            op.fail(new IllegalStateException(String.format(
+                    "Too many pending requests to docker host %s", requests.key)));
+            return;
+        }
+        requests.queue.add(new PendingRequest(op, sender));
+        // a slot may have been released while the request was being queued
+        requests.drain();
+    }
+
+    /**
+     * Drops the hosts without requests for longer than the idle expiration.
+     */
+    void handleMaintenance() {
+        long expiration = Utils.getSystemNowMicrosUtc() - idleExpirationMicros;
+        hosts.values().removeIf(r -> r.inFlightCount.get() == 0 && r.queue.isEmpty()
+                && r.lastActivityMicros < expiration);
+    }
+
+    /**
+     * Returns a snapshot of the per host counters, keyed by stat name.
+     */
+    Map<String, Double> getStats() {
+        Map<String, Double> stats = new HashMap<>();
+        for (HostRequests r : hosts.values()) {
+            String prefix = STAT_NAME_PREFIX + r.key;
+            long completed = r.completedCount.get();
+            stats.put(prefix + STAT_NAME_SUFFIX_REQUESTS, (double) completed);
+            stats.put(prefix + STAT_NAME_SUFFIX_FAILURES, (double) r.failureCount.get());
+            stats.put(prefix + STAT_NAME_SUFFIX_REJECTED, (double) r.rejectedCount.get());
+            stats.put(prefix + STAT_NAME_SUFFIX_IN_FLIGHT, (double) r.inFlightCount.get());
+            stats.put(prefix + STAT_NAME_SUFFIX_QUEUED, (double) r.queuedCount.get());
+            stats.put(prefix + STAT_NAME_SUFFIX_AVG_LATENCY, completed == 0 ? 0
+                    : (double) r.totalLatencyMicros.get() / completed);
+            stats.put(prefix + STAT_NAME_SUFFIX_MAX_LATENCY, (double) r.maxLatencyMicros.get());
+        }
+        return stats;
+    }
+
+    static String getHostKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    private static class PendingRequest {
+        final Operation op;
+        final Consumer<Operation> sender;
+
+        PendingRequest(Operation op, Consumer<Operation> sender) {
+            this.op = op;
+            this.sender = sender;
+        }
+    }
+
+    private class HostRequests {
+        final String key;
+        final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+        final Map<Operation, Long> startTimes = new ConcurrentHashMap<>();
+        final AtomicInteger inFlightCount = new AtomicInteger();
+        final AtomicInteger queuedCount = new AtomicInteger();
+        final AtomicLong completedCount = new AtomicLong();
+        final AtomicLong failureCount = new AtomicLong();
+        final AtomicLong rejectedCount = new AtomicLong();
+        final AtomicLong totalLatencyMicros = new AtomicLong();
+        final AtomicLong maxLatencyMicros = new AtomicLong();
+        volatile long lastActivityMicros;
+
+        HostRequests(String key) {
+            this.key = key;
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlightCount.get();
+                if (current >= maxInFlightPerHost) {
+                    return false;
+                }
+                if (inFlightCount.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void start(Operation op, Consumer<Operation> sender) {
+            startTimes.put(op, System.nanoTime());
+            try {
+                sender.accept(op);
+            } catch (Throwable e) {
+                op.fail(e);
+            }
+        }
+
+        void complete(Operation op, Throwable e) {
+            Long start = startTimes.remove(op);
+            if (start == null) {
+                // failed while waiting in the queue, it never held a slot
+                return;
+            }
+            long latency = (System.nanoTime() - start) / 1000;
+            completedCount.incrementAndGet();
+            totalLatencyMicros.addAndGet(latency);
+            maxLatencyMicros.accumulateAndGet(latency, Math::max);
+            if (e != null) {
+                failureCount.incrementAndGet();
+            }
+            lastActivityMicros = Utils.getSystemNowMicrosUtc();
+
+            inFlightCount.decrementAndGet();
+            drain();
+        }
+
+        void drain() {
+            while (!queue.isEmpty() && tryAcquire()) {
+                PendingRequest pending = queue.poll();
+                if (pending == null) {
+                    inFlightCount.decrementAndGet();
+                    continue;
+                }
+                queuedCount.decrementAndGet();
+                long expiration = pending.op.getExpirationMicrosUtc();
+                if (expiration != 0 && expiration < Utils.getSystemNowMicrosUtc()) {
+                    inFlightCount.decrementAndGet();
+                    logger.fine(() -> String.format("Request to %s expired while queued",
+                            pending.op.getUri()));
+                    pending.op.fail(new TimeoutException(String.format(
+                            "Request to docker host %s expired while queued", key)));
+                    continue;
+                }
+                start(pending.op, pending.sender);
+            }
+        }
+    }
+}
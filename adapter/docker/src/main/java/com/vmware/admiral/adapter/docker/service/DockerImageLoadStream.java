@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Streams image tar files to the docker <code>/images/load</code> endpoint. The file is sent with
+ * chunked transfer encoding straight from the disk, so the memory used by a load does not depend
+ * on the size of the image. The number of concurrent loads is limited, the loads above the limit
+ * are queued until a running one completes.
+ */
+public class DockerImageLoadStream {
+
+    private static final Logger logger = Logger.getLogger(DockerImageLoadStream.class.getName());
+
+    private static final int MAX_RESPONSE_LENGTH = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.max.response.length", 1024 * 1024);
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.connect.timeout.millis", 20000);
+    private static final int CHUNK_SIZE = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.chunk.size", 64 * 1024);
+
+    private static final String MEDIA_TYPE_APPLICATION_X_TAR = "application/x-tar";
+    private static final String ERROR_FIELD = "\"error\"";
+
+    private static final String TAR_MANIFEST_ENTRY = "manifest.json";
+    private static final String MANIFEST_CONFIG_FIELD = "Config";
+    private static final String MANIFEST_REPO_TAGS_FIELD = "RepoTags";
+    private static final String DIGEST_PREFIX = "sha256:";
+    private static final int TAR_BLOCK_SIZE = 512;
+    private static final int MAX_MANIFEST_LENGTH = 1024 * 1024;
+    private static final int MAX_CACHED_MANIFESTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.max.cached.manifests", 256);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ConcurrentMap<String, CachedManifest> manifests =
+            new ConcurrentHashMap<>();
+
+    private final EventLoopGroup group;
+    private final int maxConcurrentLoads;
+
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+    private int runningLoads;
+
+    /**
+     * The image of a <code>docker save</code> tar file.
+     */
+    public static class ImageManifest {
+        /**
+         * The digest of the image configuration, i.e. the id of the image once loaded.
+         */
+        public final String id;
+
+        /**
+         * The tags the image is loaded with.
+         */
+        public final List<String> repoTags;
+
+        ImageManifest(String id, List<String> repoTags) {
+            this.id = id;
+            this.repoTags = repoTags;
+        }
+    }
+
+    private static class CachedManifest {
+        final long length;
+        final long lastModified;
+        final ImageManifest manifest;
+
+        CachedManifest(long length, long lastModified, ImageManifest manifest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.manifest = manifest;
+        }
+    }
+
+    /**
+     * @param ioThreads
+     *            number of I/O threads shared by all loads
+     * @param maxConcurrentLoads
+     *            number of loads sent at the same time, regardless of the target host
+     */
+    public DockerImageLoadStream(int ioThreads, int maxConcurrentLoads) {
+        AssertUtil.assertTrue(ioThreads > 0, "ioThreads must be positive");
+        AssertUtil.assertTrue(maxConcurrentLoads > 0, "maxConcurrentLoads must be positive");
+
+        this.maxConcurrentLoads = maxConcurrentLoads;
+        this.group = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("ImageLoad",
+                true));
+    }
+
+    /**
+     * Returns the image in the given <code>docker save</code> tar file as listed in the
+     * <code>manifest.json</code> of the tar, or <code>null</code> if the tar has no manifest
+     * (tars saved by docker before 1.10) or holds more than one image. Only the tar headers and
+     * the manifest are read and the result is kept until the file changes or is deleted.
+     */
+    public static ImageManifest getImageManifest(File imageFile) {
+        String key = imageFile.getAbsolutePath();
+        long length = imageFile.length();
+        long lastModified = imageFile.lastModified();
+
+        CachedManifest cached = manifests.get(key);
+        if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.manifest;
+        }
+
+        ImageManifest manifest = null;
+        try {
+            manifest = readManifest(imageFile);
+        } catch (Exception e) {
+            logger.warning(String.format("Failed to read the image manifest of [%s]. Error: [%s]",
+                    imageFile, e.getMessage()));
+        }
+
+        // the image files are temporary, drop the ones which are gone
+        manifests.keySet().removeIf(path -> !new File(path).exists());
+        if (manifests.size() >= MAX_CACHED_MANIFESTS) {
+            manifests.clear();
+        }
+        manifests.put(key, new CachedManifest(length, lastModified, manifest));
+        return manifest;
+    }
+
+    static boolean isManifestCached(File imageFile) {
+        return manifests.containsKey(imageFile.getAbsolutePath());
+    }
+
+    /**
+     * Queues the tar file to be sent to the host.
+     *
+     * @param uri
+     *            the full <code>/images/load</code> URI
+     * @param imageFile
+     *            the image tar file, must not be deleted before the completion
+     * @param sslContext
+     *            context used to secure the connection, <code>null</code> for plain HTTP
+     * @param idleTimeoutMillis
+     *            period without reading or writing anything after which the load fails
+     * @param completionHandler
+     *            called once with an operation holding the status code and the response of the
+     *            host
+     */
+    public void load(URI uri, File imageFile, SSLContext sslContext, long idleTimeoutMillis,
+            CompletionHandler completionHandler) {
+        AssertUtil.assertNotNull(uri, "uri");
+        AssertUtil.assertNotNull(imageFile, "imageFile");
+        AssertUtil.assertNotNull(completionHandler, "completionHandler");
+
+        Runnable load = () -> send(uri, imageFile, sslContext, idleTimeoutMillis,
+                completionHandler);
+        synchronized (pendingLoads) {
+            if (runningLoads >= maxConcurrentLoads) {
+                pendingLoads.add(load);
+                logger.fine(String.format("Image load to [%s] queued, %d loads pending.",
+                        uri.getAuthority(), pendingLoads.size()));
+                return;
+            }
+            runningLoads++;
+        }
+        load.run();
+    }
+
+    /**
+     * Closes the running loads and releases the I/O threads.
+     */
+    public void stop() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    int getRunningLoadsCount() {
+        synchronized (pendingLoads) {
+            return runningLoads;
+        }
+    }
+
+    private void loadFinished() {
+        Runnable next;
+        synchronized (pendingLoads) {
+            next = pendingLoads.poll();
+            if (next == null) {
+                runningLoads--;
+                return;
+            }
+        }
+        next.run();
+    }
+
+    private void send(URI uri, File imageFile, SSLContext sslContext, long idleTimeoutMillis,
+            CompletionHandler completionHandler) {
+        boolean secure = UriUtils.HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        LoadHandler handler = new LoadHandler(uri, idleTimeoutMillis, completionHandler);
+
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ);
+        } catch (Exception e) {
+            handler.complete(Operation.STATUS_CODE_SERVER_FAILURE_THRESHOLD, null, e);
+            return;
+        }
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        if (secure && sslContext != null) {
+                            SSLEngine engine = sslContext.createSSLEngine(uri.getHost(), port);
+                            engine.setUseClientMode(true);
+                            pipeline.addLast(new SslHandler(engine));
+                        }
+                        if (idleTimeoutMillis > 0) {
+                            pipeline.addLast(new IdleStateHandler(0, 0, idleTimeoutMillis,
+                                    TimeUnit.MILLISECONDS));
+                        }
+                        pipeline.addLast(new HttpClientCodec());
+                        pipeline.addLast(new HttpObjectAggregator(MAX_RESPONSE_LENGTH));
+                        pipeline.addLast(new ChunkedWriteHandler());
+                        pipeline.addLast(handler);
+                    }
+                });
+
+        ChannelFuture connectFuture = bootstrap.connect(uri.getHost(), port);
+        connectFuture.addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                closeQuietly(fileChannel);
+                handler.complete(Operation.STATUS_CODE_UNAVAILABLE, null, f.cause());
+                return;
+            }
+
+            String path = uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += UriUtils.URI_QUERY_CHAR + uri.getRawQuery();
+            }
+            HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1,
+                    HttpMethod.POST, path);
+            request.headers().set(HttpHeaderNames.HOST, uri.getAuthority());
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, MEDIA_TYPE_APPLICATION_X_TAR);
+            request.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            // as sent by the service client for the other docker requests
+            request.headers().set(HttpHeaderNames.REFERER, "/");
+
+            f.channel().write(request);
+            // the chunked input closes the file once it is fully sent or the channel is closed
+            f.channel().writeAndFlush(new HttpChunkedInput(new ChunkedNioFile(fileChannel,
+                    CHUNK_SIZE))).addListener((ChannelFutureListener) w -> {
+                        if (!w.isSuccess()) {
+                            closeQuietly(fileChannel);
+                            handler.complete(Operation.STATUS_CODE_UNAVAILABLE, null,
+                                    w.cause());
+                            w.channel().close();
+                        }
+                    });
+        });
+    }
+
+    private static ImageManifest readManifest(File imageFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(imageFile.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(TAR_BLOCK_SIZE);
+            long position = 0;
+            while (position + TAR_BLOCK_SIZE <= channel.size()) {
+                header.clear();
+                readFully(channel, header, position);
+                String name = readTarString(header.array(), 0, 100);
+                if (name.isEmpty()) {
+                    // end of archive
+                    return null;
+                }
+                long size = Long.parseLong(readTarString(header.array(), 124, 12).trim(), 8);
+                position += TAR_BLOCK_SIZE;
+
+                if (TAR_MANIFEST_ENTRY.equals(name)) {
+                    if (size > MAX_MANIFEST_LENGTH) {
+                        return null;
+                    }
+                    ByteBuffer manifest = ByteBuffer.allocate((int) size);
+                    readFully(channel, manifest, position);
+                    return parseManifest(manifest.array());
+                }
+
+                position += (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+            }
+            return null;
+        }
+    }
+
+    private static ImageManifest parseManifest(byte[] manifest) throws IOException {
+        List<Map<String, Object>> images = mapper.readValue(manifest,
+                new TypeReference<List<Map<String, Object>>>() {
+                });
+        if (images == null || images.size() != 1) {
+            // only tars of a single image are checked
+            return null;
+        }
+        Object config = images.get(0).get(MANIFEST_CONFIG_FIELD);
+        if (!(config instanceof String)) {
+            return null;
+        }
+
+        // "<digest>.json" or "blobs/sha256/<digest>"
+        String digest = (String) config;
+        digest = digest.substring(digest.lastIndexOf('/') + 1);
+        if (digest.endsWith(".json")) {
+            digest = digest.substring(0, digest.length() - ".json".length());
+        }
+        if (digest.isEmpty()) {
+            return null;
+        }
+
+        List<String> repoTags = new ArrayList<>();
+        Object tags = images.get(0).get(MANIFEST_REPO_TAGS_FIELD);
+        if (tags instanceof List) {
+            for (Object tag : (List<?>) tags) {
+                if (tag instanceof String) {
+                    repoTags.add((String) tag);
+                }
+            }
+        }
+        return new ImageManifest(DIGEST_PREFIX + digest, repoTags);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of the tar file.");
+            }
+        }
+    }
+
+    private static String readTarString(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Reads the response of the host, which is sent once the image is loaded.
+     */
+    private class LoadHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+        private final URI uri;
+        private final long idleTimeoutMillis;
+        private final CompletionHandler completionHandler;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private LoadHandler(URI uri, long idleTimeoutMillis,
+                CompletionHandler completionHandler) {
+            this.uri = uri;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.completionHandler = completionHandler;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            int statusCode = msg.status().code();
+            String body = msg.content().toString(StandardCharsets.UTF_8);
+
+            Throwable failure = null;
+            if (statusCode != HttpResponseStatus.OK.code()) {
+                failure = new IOException(String.format(
+                        "Loading image to %s failed with status %s: %s", uri.getAuthority(),
+                        statusCode, body));
+            } else if (body.contains(ERROR_FIELD)) {
+                // the status is 200, the failure is reported in the body
+                failure = new RuntimeException("Error: " + body);
+            }
+            complete(statusCode, body, failure);
+            ctx.close();
+        }
+
+        private void complete(int statusCode, String body, Throwable failure) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                Operation op = Operation.createPost(uri)
+                        .setStatusCode(statusCode);
+                if (body != null) {
+                    op.setBodyNoCloning(body);
+                }
+                try {
+                    completionHandler.handle(op, failure);
+                } catch (Throwable t) {
+                    logger.warning(String.format("Failed to handle image load completion from"
+                            + " [%s]. Error: [%s]", uri.getAuthority(), t.getMessage()));
+                }
+            } finally {
+                loadFinished();
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                complete(Operation.STATUS_CODE_TIMEOUT, null, new TimeoutException(
+                        String.format("No progress loading image to %s for %s ms.",
+                                uri.getAuthority(), idleTimeoutMillis)));
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            complete(Operation.STATUS_CODE_UNAVAILABLE, null, cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            complete(Operation.STATUS_CODE_UNAVAILABLE, null,
+                    new IOException("Image load connection closed by the host."));
+            super.channelInactive(ctx);
+        }
+    }
+}
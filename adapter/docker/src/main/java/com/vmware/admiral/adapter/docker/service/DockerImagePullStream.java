@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
+import com.vmware.xenon.common.UriUtils;
+
+/**
+ * Sends docker <code>/images/create</code> requests and consumes their responses as a stream of
+ * newline delimited JSON progress frames instead of buffering the whole response. Only the frame
+ * being received and the state of each layer are kept in memory, so the memory used by a pull
+ * does not depend on the size of the image. The pull fails as soon as an error frame is
+ * received.
+ */
+public class DockerImagePullStream {
+
+    private static final Logger logger = Logger.getLogger(DockerImagePullStream.class.getName());
+
+    private static final int MAX_FRAME_LENGTH = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.pull.max.frame.length", 64 * 1024);
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.pull.connect.timeout.millis", 20000);
+
+    private static final String STATUS_PULL_COMPLETE = "Pull complete";
+    private static final String STATUS_ALREADY_EXISTS = "Already exists";
+    // reported with the tag as id, it is not a layer
+    private static final String STATUS_PULLING_FROM_PREFIX = "Pulling from";
+
+    private final EventLoopGroup group;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * A single frame of the <code>/images/create</code> response.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ProgressFrame {
+        public String status;
+        public String id;
+        public ProgressDetail progressDetail;
+        public String error;
+        public ErrorDetail errorDetail;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ProgressDetail {
+        public Long current;
+        public Long total;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ErrorDetail {
+        public Integer code;
+        public String message;
+    }
+
+    /**
+     * Progress of a pull, aggregated over the layers of the image.
+     */
+    public static class PullProgress {
+        private final Map<String, LayerProgress> layers = new LinkedHashMap<>();
+        private String lastStatus;
+
+        private static class LayerProgress {
+            String status;
+            long current;
+            long total;
+        }
+
+        /**
+         * Applies the frame and returns whether the status of the pull or any of its layers has
+         * changed. Byte progress alone does not count as a change.
+         */
+        private boolean update(ProgressFrame frame) {
+            if (frame.id == null || frame.id.isEmpty() || (frame.status != null
+                    && frame.status.startsWith(STATUS_PULLING_FROM_PREFIX))) {
+                boolean changed = frame.status != null && !frame.status.equals(lastStatus);
+                lastStatus = frame.status;
+                return changed;
+            }
+
+            LayerProgress layer = layers.computeIfAbsent(frame.id, id -> new LayerProgress());
+            if (frame.progressDetail != null) {
+                if (frame.progressDetail.current != null) {
+                    layer.current = frame.progressDetail.current;
+                }
+                if (frame.progressDetail.total != null) {
+                    layer.total = frame.progressDetail.total;
+                }
+            }
+            boolean changed = frame.status != null && !frame.status.equals(layer.status);
+            layer.status = frame.status;
+            if (isComplete(layer)) {
+                layer.current = layer.total;
+            }
+            return changed;
+        }
+
+        private static boolean isComplete(LayerProgress layer) {
+            return STATUS_PULL_COMPLETE.equals(layer.status)
+                    || STATUS_ALREADY_EXISTS.equals(layer.status);
+        }
+
+        public int getLayersCount() {
+            return layers.size();
+        }
+
+        public int getCompletedLayersCount() {
+            return (int) layers.values().stream().filter(PullProgress::isComplete).count();
+        }
+
+        public long getCurrentBytes() {
+            return layers.values().stream().mapToLong(l -> l.current).sum();
+        }
+
+        public long getTotalBytes() {
+            return layers.values().stream().mapToLong(l -> l.total).sum();
+        }
+
+        /**
+         * The last status not related to a single layer, e.g. the final
+         * <code>Status: Downloaded newer image for ...</code>.
+         */
+        public String getLastStatus() {
+            return lastStatus;
+        }
+    }
+
+    /**
+     * @param ioThreads
+     *            number of I/O threads shared by all pulls
+     */
+    public DockerImagePullStream(int ioThreads) {
+        AssertUtil.assertTrue(ioThreads > 0, "ioThreads must be positive");
+
+        this.group = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("ImagePull",
+                true));
+    }
+
+    /**
+     * Sends the pull request and streams its progress.
+     *
+     * @param uri
+     *            the full <code>/images/create</code> URI including the query parameters
+     * @param registryAuth
+     *            value of the <code>X-Registry-Auth</code> header, may be <code>null</code>
+     * @param sslContext
+     *            context used to secure the connection, <code>null</code> for plain HTTP
+     * @param idleTimeoutMillis
+     *            period without any progress after which the pull fails
+     * @param progressListener
+     *            called on the I/O threads whenever the status of the pull or of any of its
+     *            layers changes, may be <code>null</code>
+     * @param completionHandler
+     *            called once with an operation holding the status code and the last frame, or
+     *            the error frame if the pull failed
+     */
+    public void pull(URI uri, String registryAuth, SSLContext sslContext, long idleTimeoutMillis,
+            Consumer<PullProgress> progressListener, CompletionHandler completionHandler) {
+        AssertUtil.assertNotNull(uri, "uri");
+        AssertUtil.assertNotNull(completionHandler, "completionHandler");
+
+        boolean secure = UriUtils.HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        PullHandler handler = new PullHandler(uri, idleTimeoutMillis, progressListener,
+                completionHandler);
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        if (secure && sslContext != null) {
+                            SSLEngine engine = sslContext.createSSLEngine(uri.getHost(), port);
+                            engine.setUseClientMode(true);
+                            pipeline.addLast(new SslHandler(engine));
+                        }
+                        if (idleTimeoutMillis > 0) {
+                            pipeline.addLast(new IdleStateHandler(idleTimeoutMillis, 0, 0,
+                                    TimeUnit.MILLISECONDS));
+                        }
+                        pipeline.addLast(new HttpClientCodec());
+                        pipeline.addLast(handler);
+                    }
+                });
+
+        ChannelFuture connectFuture = bootstrap.connect(uri.getHost(), port);
+        connectFuture.addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                handler.complete(Operation.STATUS_CODE_UNAVAILABLE, null, f.cause());
+                return;
+            }
+
+            String path = uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += UriUtils.URI_QUERY_CHAR + uri.getRawQuery();
+            }
+            HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                    HttpMethod.POST, path);
+            request.headers().set(HttpHeaderNames.HOST, uri.getAuthority());
+            request.headers().set(HttpHeaderNames.ACCEPT, "application/json");
+            request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+            request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            // as sent by the service client for the other docker requests
+            request.headers().set(HttpHeaderNames.REFERER, "/");
+            if (registryAuth != null) {
+                request.headers().set(DockerAdapterCommandExecutor.DOCKER_IMAGE_REGISTRY_AUTH,
+                        registryAuth);
+            }
+            f.channel().writeAndFlush(request);
+        });
+    }
+
+    /**
+     * Closes the pending pulls and releases the I/O threads.
+     */
+    public void stop() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cuts the response into newline delimited frames as the bytes arrive and completes the pull
+     * on the first error frame or at the end of the response.
+     */
+    private class PullHandler extends SimpleChannelInboundHandler<HttpObject> {
+        private final URI uri;
+        private final long idleTimeoutMillis;
+        private final Consumer<PullProgress> progressListener;
+        private final CompletionHandler completionHandler;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final PullProgress progress = new PullProgress();
+
+        private ByteBuf pending;
+        private int statusCode;
+        private String lastFrame;
+
+        private PullHandler(URI uri, long idleTimeoutMillis,
+                Consumer<PullProgress> progressListener, CompletionHandler completionHandler) {
+            this.uri = uri;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.progressListener = progressListener;
+            this.completionHandler = completionHandler;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            pending = ctx.alloc().buffer();
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (pending != null) {
+                pending.release();
+                pending = null;
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+            if (completed.get()) {
+                return;
+            }
+
+            if (msg instanceof HttpResponse) {
+                statusCode = ((HttpResponse) msg).status().code();
+            }
+
+            if (msg instanceof HttpContent) {
+                pending.writeBytes(((HttpContent) msg).content());
+
+                if (statusCode != HttpResponseStatus.OK.code()) {
+                    // error responses are a single small message, read it as a whole
+                    if (pending.readableBytes() > MAX_FRAME_LENGTH) {
+                        fail(ctx, new TooLongFrameException("Error response exceeds "
+                                + MAX_FRAME_LENGTH + " bytes."));
+                    } else if (msg instanceof LastHttpContent) {
+                        String body = pending.toString(StandardCharsets.UTF_8);
+                        complete(statusCode, body, new IOException(String.format(
+                                "Pulling image from %s failed with status %s: %s",
+                                uri.getAuthority(), statusCode, body)));
+                        ctx.close();
+                    }
+                    return;
+                }
+
+                readFrames(ctx);
+
+                if (msg instanceof LastHttpContent && !completed.get()) {
+                    // the last frame may not be terminated with a new line
+                    if (pending.isReadable()) {
+                        readFrame(ctx, pending.readableBytes());
+                    }
+                    if (!completed.get()) {
+                        complete(statusCode, lastFrame, null);
+                    }
+                    ctx.close();
+                }
+            }
+        }
+
+        private void readFrames(ChannelHandlerContext ctx) {
+            int eol;
+            while (!completed.get() && (eol = pending.indexOf(pending.readerIndex(),
+                    pending.writerIndex(), (byte) '\n')) >= 0) {
+                readFrame(ctx, eol - pending.readerIndex());
+                pending.readerIndex(eol + 1);
+            }
+
+            if (pending.readableBytes() > MAX_FRAME_LENGTH) {
+                fail(ctx, new TooLongFrameException("Progress frame exceeds " + MAX_FRAME_LENGTH
+                        + " bytes."));
+                return;
+            }
+            pending.discardSomeReadBytes();
+        }
+
+        private void readFrame(ChannelHandlerContext ctx, int length) {
+            if (length <= 0) {
+                return;
+            }
+            ByteBuf bytes = pending.slice(pending.readerIndex(), length);
+            ProgressFrame frame;
+            try (ByteBufInputStream in = new ByteBufInputStream(bytes)) {
+                frame = mapper.readValue(in, ProgressFrame.class);
+            } catch (IOException e) {
+                logger.fine(String.format("Skipping unexpected progress frame from [%s]: [%s]",
+                        uri.getAuthority(), e.getMessage()));
+                return;
+            }
+            lastFrame = bytes.toString(StandardCharsets.UTF_8);
+
+            if (frame.error != null || frame.errorDetail != null) {
+                String error = frame.error != null ? frame.error : frame.errorDetail.message;
+                // the status is 200, the failure is reported in the stream
+                complete(statusCode, lastFrame, new RuntimeException("Error: " + error));
+                ctx.close();
+                return;
+            }
+
+            if (progress.update(frame) && progressListener != null) {
+                try {
+                    progressListener.accept(progress);
+                } catch (Throwable t) {
+                    logger.warning(String.format("Failed to handle pull progress from [%s]."
+                            + " Error: [%s]", uri.getAuthority(), t.getMessage()));
+                }
+            }
+        }
+
+        private void fail(ChannelHandlerContext ctx, Throwable failure) {
+            complete(Operation.STATUS_CODE_SERVER_FAILURE_THRESHOLD, lastFrame, failure);
+            ctx.close();
+        }
+
+        private void complete(int statusCode, String body, Throwable failure) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            Operation op = Operation.createPost(uri)
+                    .setStatusCode(statusCode);
+            if (body != null) {
+                op.setBodyNoCloning(body);
+            }
+            try {
+                completionHandler.handle(op, failure);
+            } catch (Throwable t) {
+                logger.warning(String.format("Failed to handle pull completion from [%s]."
+                        + " Error: [%s]", uri.getAuthority(), t.getMessage()));
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                complete(Operation.STATUS_CODE_TIMEOUT, lastFrame, new TimeoutException(
+                        String.format("No progress pulling image from %s for %s ms.",
+                                uri.getAuthority(), idleTimeoutMillis)));
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            complete(Operation.STATUS_CODE_UNAVAILABLE, lastFrame, cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            complete(Operation.STATUS_CODE_UNAVAILABLE, lastFrame,
+                    new IOException("Image pull connection closed by the host."));
+            super.channelInactive(ctx);
+        }
+    }
+}
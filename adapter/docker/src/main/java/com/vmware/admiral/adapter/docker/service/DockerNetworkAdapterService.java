@@ -72,6 +72,18 @@ public class DockerNetworkAdapterService extends AbstractDockerAdapterService {
 
         NetworkOperationType operationType = context.request.getOperationType();
 
+        if (context.request.isBatch()) {
+            logInfo("Processing network operation batch request %s for %d resources %s",
+                    operationType, context.request.resourceReferences.size(),
+                    context.request.getRequestTrackingLog());
+            processBatchRequest(op, context.request, (request) -> {
+                RequestContext requestContext = new RequestContext();
+                requestContext.request = request;
+                processNetworkRequest(requestContext);
+            });
+            return;
+        }
+
         logInfo("Processing network operation request %s for resource %s %s",
                 operationType, context.request.resourceReference,
                 context.request.getRequestTrackingLog());
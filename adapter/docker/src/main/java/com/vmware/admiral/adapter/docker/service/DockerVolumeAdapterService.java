@@ -60,6 +60,18 @@ public class DockerVolumeAdapterService extends AbstractDockerAdapterService {
 
         VolumeOperationType operationType = context.request.getOperationType();
 
+        if (context.request.isBatch()) {
+            logInfo("Processing volume operation batch request %s for %d resources %s",
+                    operationType, context.request.resourceReferences.size(),
+                    context.request.getRequestTrackingLog());
+            processBatchRequest(op, context.request, (request) -> {
+                RequestContext requestContext = new RequestContext();
+                requestContext.request = request;
+                processVolumeRequest(requestContext);
+            });
+            return;
+        }
+
         logInfo("Processing volume operation request %s for resource %s %s", operationType,
                 context.request.resourceReference, context.request.getRequestTrackingLog());
 
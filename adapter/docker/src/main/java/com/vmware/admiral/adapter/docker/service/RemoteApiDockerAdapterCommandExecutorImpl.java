@@ -11,14 +11,13 @@
 
 package com.vmware.admiral.adapter.docker.service;
 
+import static com.vmware.admiral.compute.ContainerHostService.EVENTS_STREAM_SINCE_PROP_NAME;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_ALIAS_PROP_NAME;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_CERT_PROP_NAME;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
@@ -27,14 +26,12 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -47,10 +44,10 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509TrustManager;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.yaml.snakeyaml.util.UriEncoder;
 
+import com.vmware.admiral.adapter.docker.service.DockerImageLoadStream.ImageManifest;
+import com.vmware.admiral.adapter.docker.service.DockerImagePullStream.PullProgress;
 import com.vmware.admiral.adapter.docker.util.DockerStreamUtil;
 import com.vmware.admiral.common.util.AssertUtil;
 import com.vmware.admiral.common.util.ConfigurationUtil;
@@ -61,6 +58,12 @@ import com.vmware.admiral.common.util.ServiceClientFactory;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
+import com.vmware.admiral.compute.container.HostNetworkListDataCollection;
+import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
+import com.vmware.admiral.compute.container.HostVolumeListDataCollection;
+import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
@@ -92,11 +95,25 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             "com.vmware.admiral.adapter.ssltrust.delegate.retries.wait.millis", 500);
     private static final int URL_CONNECTION_READ_TIMEOUT = Integer.getInteger(
             "com.vmware.admiral.adapter.url.connection.read.timeout", 20000);
-    private static final String THREAD_POOL_QUEUE_SIZE_PROP_NAME = "com.vmware.admiral.adapter.thread.pool.queue.size";
-    private static final int THREAD_POOL_QUEUE_SIZE = Integer.getInteger(
-            THREAD_POOL_QUEUE_SIZE_PROP_NAME, 1000);
-    private static final int THREAD_POOL_KEEPALIVE_SECONDS = Integer.getInteger(
-            "com.vmware.admiral.adapter.thread.pool.keepalive.seconds", 30);
+    private static final int EVENTS_IO_THREADS = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.io.threads", 4);
+    private static final int EVENTS_BATCH_SIZE = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.batch.size", 100);
+    private static final long EVENTS_BATCH_FLUSH_MILLIS = Long.getLong(
+            "com.vmware.admiral.adapter.events.batch.flush.millis", 200);
+    private static final int HOST_MAX_IN_FLIGHT_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.host.requests.max.in.flight", 32);
+    private static final int HOST_MAX_QUEUED_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.host.requests.max.queued", 10000);
+    private static final long HOST_REQUESTS_IDLE_EXPIRATION_MICROS = Long.getLong(
+            "com.vmware.admiral.adapter.host.requests.idle.expiration.micros",
+            TimeUnit.HOURS.toMicros(1));
+    private static final int IMAGE_PULL_IO_THREADS = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.pull.io.threads", 2);
+    private static final int IMAGE_LOAD_IO_THREADS = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.io.threads", 2);
+    private static final int IMAGE_LOAD_MAX_CONCURRENT = Integer.getInteger(
+            "com.vmware.admiral.adapter.image.load.max.concurrent", 4);
 
     public static final String MEDIA_TYPE_APPLICATION_TAR = "application/tar";
 
@@ -104,26 +121,23 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
 
     private static final Pattern ERROR_PATTERN = Pattern.compile("\"error\":\"(.*)\"");
 
-    private static final AtomicInteger threadCount = new AtomicInteger(0);
-    private static final ThreadFactory threadFactory =
-            (r) -> new Thread(r, "EventsReader-" + threadCount.incrementAndGet());
-
-    private static ExecutorService executor = new ThreadPoolExecutor(
-            THREAD_POOL_QUEUE_SIZE,
-            THREAD_POOL_QUEUE_SIZE,
-            THREAD_POOL_KEEPALIVE_SECONDS,
-            TimeUnit.SECONDS, new LinkedBlockingQueue<>(THREAD_POOL_QUEUE_SIZE),
-            threadFactory,
-            new ThreadPoolExecutor.AbortPolicy());
-
     private final ServiceHost host;
     private final ServiceClient serviceClient;
     // Used for commands like exec start
     private final ServiceClient attachServiceClient;
     // Used for commands like load image from tar
     private final ServiceClient largeDataClient;
-    // Used for storing the runnning threads which handles opened connections to hosts
-    private volatile Map<String, Thread> runningThreads = new HashMap<>();
+    // Limits the regular requests in flight to each host
+    private final DockerHostRequestPool hostRequestPool;
+    // Reads the events streams of all subscribed hosts
+    private final DockerEventsHub eventsHub;
+    // Streams the progress of the image pulls
+    private final DockerImagePullStream imagePullStream;
+    // Streams image tar files from the disk to the hosts
+    private final DockerImageLoadStream imageLoadStream;
+    // Keyed by the authority of the subscribed hosts
+    private final ConcurrentMap<String, HostEventsSubscription> eventSubscriptions =
+            new ConcurrentHashMap<>();
 
     private final DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
     private ServerX509TrustManager trustManager;
@@ -151,6 +165,16 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
                 keyManager);
         this.largeDataClient = ServiceClientFactory.createServiceClient(
                 trustManager, keyManager, DOCKER_REQUEST_PAYLOAD_SIZE_LIMIT);
+        // keep as many connections per host open for reuse as there can be requests in flight
+        this.serviceClient.setConnectionLimitPerTag(ServiceClient.CONNECTION_TAG_DEFAULT,
+                HOST_MAX_IN_FLIGHT_REQUESTS);
+        this.hostRequestPool = new DockerHostRequestPool(HOST_MAX_IN_FLIGHT_REQUESTS,
+                HOST_MAX_QUEUED_REQUESTS, HOST_REQUESTS_IDLE_EXPIRATION_MICROS);
+        this.eventsHub = new DockerEventsHub(EVENTS_IO_THREADS, URL_CONNECTION_READ_TIMEOUT,
+                EVENTS_BATCH_SIZE, EVENTS_BATCH_FLUSH_MILLIS, new HostEventsListener());
+        this.imagePullStream = new DockerImagePullStream(IMAGE_PULL_IO_THREADS);
+        this.imageLoadStream = new DockerImageLoadStream(IMAGE_LOAD_IO_THREADS,
+                IMAGE_LOAD_MAX_CONCURRENT);
 
         if (trustManager instanceof ServerX509TrustManager) {
             this.trustManager = (ServerX509TrustManager) trustManager;
@@ -183,6 +207,9 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         if (largeDataClient != null) {
             largeDataClient.stop();
         }
+        eventsHub.stop();
+        imagePullStream.stop();
+        imageLoadStream.stop();
 
         INSTANCE = null;
     }
@@ -198,6 +225,12 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         if (largeDataClient != null) {
             largeDataClient.handleMaintenance(post);
         }
+        hostRequestPool.handleMaintenance();
+    }
+
+    @Override
+    public Map<String, Double> getHostRequestStats() {
+        return hostRequestPool.getStats();
     }
 
     // image operations ----------------------------------------------------------------------------
@@ -274,15 +307,93 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     @Override
     public void loadImage(CommandInput input, CompletionHandler completionHandler) {
         createOrUpdateTargetSsl(input);
-        Object imageData = input.getProperties().get(DOCKER_IMAGE_DATA_PROP_NAME);
+        File imageFile = (File) input.getProperties().get(DOCKER_IMAGE_FILE_PROP_NAME);
         URI uri = UriUtils.extendUri(input.getDockerUri(), "/images/load");
+
+        ImageManifest manifest = DockerImageLoadStream.getImageManifest(imageFile);
+        if (manifest == null || manifest.repoTags.isEmpty()) {
+            doLoadImage(input, uri, imageFile, completionHandler);
+            return;
+        }
+
+        // skip the upload if all the tags of the image already point to it on the host
+        checkImageTags(input, manifest, 0, (loaded) -> {
+            if (loaded) {
+                logger.info(String.format("Image %s already loaded on %s", manifest.repoTags,
+                        uri.getAuthority()));
+                completionHandler.handle(Operation.createPost(uri)
+                        .setStatusCode(Operation.STATUS_CODE_OK), null);
+                return;
+            }
+            doLoadImage(input, uri, imageFile, completionHandler);
+        });
+    }
+
+    /**
+     * Inspects the tags of the image on the host one by one and reports whether all of them
+     * refer to the image with the id of the manifest.
+     */
+    private void checkImageTags(CommandInput input, ImageManifest manifest, int tagIndex,
+            Consumer<Boolean> callback) {
+        if (tagIndex >= manifest.repoTags.size()) {
+            callback.accept(true);
+            return;
+        }
+
+        URI inspectUri = UriUtils.extendUri(input.getDockerUri(),
+                String.format("/images/%s/json", manifest.repoTags.get(tagIndex)));
+        sendGet(inspectUri, null, (o, ex) -> {
+            if (ex != null || !o.hasBody()) {
+                callback.accept(false);
+                return;
+            }
+            Map<String, Object> image = o.getBody(Map.class);
+            if (!manifest.id.equals(image.get(DOCKER_IMAGE_ID_PROP_NAME))) {
+                callback.accept(false);
+                return;
+            }
+            checkImageTags(input, manifest, tagIndex + 1, callback);
+        });
+    }
+
+    private void doLoadImage(CommandInput input, URI uri, File imageFile,
+            CompletionHandler completionHandler) {
+        SSLContext sslContext = null;
+        try {
+            if (isSecure(uri)) {
+                sslContext = createSslContext(input);
+            }
+        } catch (Exception e) {
+            completionHandler.handle(Operation.createPost(uri), e);
+            return;
+        }
+
         logger.info("Loading image: " + uri);
 
-        sendPost(uri, imageData, ClientMode.LARGE_DATA, completionHandler);
+        // propagate the authorization context to the completion handler as for the other
+        // requests
+        OperationContext requestContext = OperationContext.getOperationContext();
+        imageLoadStream.load(uri, imageFile, sslContext,
+                TimeUnit.SECONDS.toMillis(DOCKER_IMAGE_REQUEST_TIMEOUT_SECONDS), (o, ex) -> {
+                    OperationContext loadContext = OperationContext.getOperationContext();
+                    try {
+                        OperationContext.restoreOperationContext(requestContext);
+                        completionHandler.handle(o, ex);
+                    } finally {
+                        OperationContext.restoreOperationContext(loadContext);
+                    }
+                });
     }
 
     @Override
     public void createImage(CommandInput input, CompletionHandler completionHandler) {
+        createImage(input, null, completionHandler);
+    }
+
+    @Override
+    public void createImage(CommandInput input,
+            Consumer<PullProgress> progressListener,
+            CompletionHandler completionHandler) {
         createOrUpdateTargetSsl(input);
         URI uri = UriUtils.extendUri(input.getDockerUri(), "/images/create");
         // extract X-Registry-Auth as a request header
@@ -292,33 +403,32 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         // expect fromImage or fromSrc
         uri = extendUriWithQuery(uri, input);
 
-        Operation op = Operation.createPost(uri)
-                .setBodyNoCloning("")
-                .setCompletion((o, ex) -> {
-                    if (ex == null) {
-                        // check the last status to make sure there was no error during download
-                        // the response is not valid json so this is hacky way to find out if there
-                        // was an error
-                        String body = o.getBody(String.class);
-
-                        Matcher matcher = ERROR_PATTERN.matcher(body);
-                        if (matcher.find()) {
-                            completionHandler.handle(o, new RuntimeException("Error: "
-                                    + matcher.group(1)));
-                            return;
-                        }
-                    }
-                    completionHandler.handle(o, ex);
-                });
-
-        if (registryAuth != null) {
-            op.addRequestHeader(DOCKER_IMAGE_REGISTRY_AUTH, registryAuth);
+        SSLContext sslContext = null;
+        try {
+            if (isSecure(uri)) {
+                sslContext = createSslContext(input);
+            }
+        } catch (Exception e) {
+            completionHandler.handle(Operation.createPost(uri), e);
+            return;
         }
 
         logger.info("Creating image: " + uri);
 
-        prepareRequest(op, true);
-        serviceClient.send(op);
+        // the progress is streamed on the I/O threads of the pull stream, propagate the
+        // authorization context to the completion handler as for the other requests
+        OperationContext requestContext = OperationContext.getOperationContext();
+        imagePullStream.pull(uri, registryAuth, sslContext,
+                TimeUnit.SECONDS.toMillis(DOCKER_IMAGE_REQUEST_TIMEOUT_SECONDS),
+                progressListener, (o, ex) -> {
+                    OperationContext pullContext = OperationContext.getOperationContext();
+                    try {
+                        OperationContext.restoreOperationContext(requestContext);
+                        completionHandler.handle(o, ex);
+                    } finally {
+                        OperationContext.restoreOperationContext(pullContext);
+                    }
+                });
     }
 
     @Override
@@ -516,10 +626,10 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             // Make sure that the trusted certificate is loaded before proceeding to avoid
             // SSLHandshakeException and getting hosts in DISABLED state
             ensureTrustDelegateExists(input, SSL_TRUST_RETRIES_COUNT, () -> {
-                serviceClient.send(op);
+                hostRequestPool.send(op, serviceClient::send);
             });
         } else {
-            serviceClient.send(op);
+            hostRequestPool.send(op, serviceClient::send);
         }
     }
 
@@ -537,13 +647,13 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         URI baseUri = UriUtils.extendUri(input.getDockerUri(), "/events");
         logger.info("Subscribing for events: " + baseUri);
 
-        if (runningThreads.get(baseUri.getAuthority()) != null) {
+        if (eventsHub.isSubscribed(baseUri.getAuthority())) {
             logger.info("Connection is already opened: " + baseUri.getAuthority());
             return;
         }
 
-        // add filter for containers type
-        input.withProperty("filters", "{\"type\":[\"container\"]}");
+        // add filter for the types that affect the host inventory
+        input.withProperty("filters", "{\"type\":[\"container\",\"network\",\"volume\"]}");
 
         // append all the query parameters which are sent as input.
         URI extendedUri = extendUriWithQuery(baseUri, input);
@@ -565,14 +675,11 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         URI baseUri = UriUtils.extendUri(input.getDockerUri(), "/events");
         logger.info("Unsubscribing for events: " + baseUri);
 
-        Thread runningThread = runningThreads.get(input.getDockerUri().getAuthority());
-
-        if (runningThread == null) {
+        String hostName = input.getDockerUri().getAuthority();
+        eventSubscriptions.remove(hostName);
+        if (!eventsHub.unsubscribe(hostName)) {
             logger.info("Connection already closed!");
-            return;
         }
-
-        runningThread.interrupt();
     }
 
     // network operations
@@ -731,30 +838,7 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     @Override
     public URLConnection openConnection(CommandInput input, URL url) throws NoSuchAlgorithmException, KeyManagementException, IOException {
         if (isSecure(URI.create(url.toString()))) {
-
-            String clientKey = null;
-            String clientCert = null;
-
-            if (input != null && input.getCredentials() != null) {
-                clientKey = EncryptionUtils.decrypt(input.getCredentials().privateKey);
-                clientCert = input.getCredentials().publicKey;
-            }
-
-            // TODO use an LRU cache to limit the number of stored
-            // KeyManagers while minimizing time wasted repeatedly
-            // recreating them
-            KeyManager[] keytManagers = null;
-            if (clientKey != null && !clientKey.isEmpty()) {
-                X509ExtendedKeyManager delegateKeyManager;
-                delegateKeyManager = (X509ExtendedKeyManager) CertificateUtil
-                        .getKeyManagers("default", clientKey, clientCert)[0];
-                keytManagers = new KeyManager[]{delegateKeyManager};
-            }
-
-            TrustManager[] trustManagers = new TrustManager[]{ServerX509TrustManager.init(null)};
-
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(keytManagers, trustManagers, new SecureRandom());
+            SSLContext sslContext = createSslContext(input);
 
             HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
             conn.setHostnameVerifier((s, sslSession) -> true);
@@ -776,6 +860,39 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         return conn;
     }
 
+    /**
+     * Builds a SSL context using the client certificate from the input credentials, if any, and
+     * the trusted server certificates.
+     */
+    private SSLContext createSslContext(CommandInput input) throws NoSuchAlgorithmException,
+            KeyManagementException {
+        String clientKey = null;
+        String clientCert = null;
+
+        if (input != null && input.getCredentials() != null) {
+            clientKey = EncryptionUtils.decrypt(input.getCredentials().privateKey);
+            clientCert = input.getCredentials().publicKey;
+        }
+
+        // TODO use an LRU cache to limit the number of stored
+        // KeyManagers while minimizing time wasted repeatedly
+        // recreating them
+        KeyManager[] keytManagers = null;
+        if (clientKey != null && !clientKey.isEmpty()) {
+            X509ExtendedKeyManager delegateKeyManager;
+            delegateKeyManager = (X509ExtendedKeyManager) CertificateUtil
+                    .getKeyManagers("default", clientKey, clientCert)[0];
+            keytManagers = new KeyManager[]{delegateKeyManager};
+        }
+
+        TrustManager[] trustManagers = new TrustManager[]{ServerX509TrustManager.init(null)};
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keytManagers, trustManagers, new SecureRandom());
+
+        return sslContext;
+    }
+
     /**
      * Common settings on all outgoing requests to the docker server
      */
@@ -1025,84 +1142,94 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         } else {
             op.setBody(body);
             prepareRequest(op, false);
-            serviceClient.send(op);
+            hostRequestPool.send(op, serviceClient::send);
         }
     }
 
     private void setConnectionTag(AuthCredentialsServiceState credentials, Operation op) {
         // Avoid reusing an open channel to this host to ensure certs validation.
         if (credentials != null) {
-            op.setConnectionTag(credentials.documentSelfLink +
-                    String.valueOf(credentials.documentUpdateTimeMicros));
+            String tag = credentials.documentSelfLink
+                    + String.valueOf(credentials.documentUpdateTimeMicros);
+            if (serviceClient.getConnectionLimitPerTag(tag) < HOST_MAX_IN_FLIGHT_REQUESTS) {
+                serviceClient.setConnectionLimitPerTag(tag, HOST_MAX_IN_FLIGHT_REQUESTS);
+            }
+            op.setConnectionTag(tag);
         }
     }
 
     /**
-     * Used for creation of a new thread for each host event subscription.
+     * Keeps what is needed to process the events of a single subscribed host.
      */
-    private class EventsMonitor implements Runnable {
-
-        public Operation op;
-        public URI hostUri;
-        public CommandInput input;
-        public ComputeState computeState;
-        public boolean simulatedIOException;
-
-        public EventsMonitor(Operation op,
-                URI hostUri,
-                CommandInput input,
-                ComputeState computeState,
-                boolean simulatedIOException) {
+    private static class HostEventsSubscription {
+        private final Operation op;
+        private final String computeStateLink;
+
+        private HostEventsSubscription(Operation op, String computeStateLink) {
             this.op = op;
-            this.hostUri = hostUri;
-            this.input = input;
-            this.computeState = computeState;
-            this.simulatedIOException = simulatedIOException;
+            this.computeStateLink = computeStateLink;
         }
+    }
+
+    /**
+     * Translates the batches of events received by the {@link DockerEventsHub} into container
+     * state updates. The callbacks run on the hub I/O threads so all the work is asynchronous.
+     */
+    private class HostEventsListener implements DockerEventsHub.EventsListener {
 
         @Override
-        public void run() {
-            logger.fine(String.format("Simulation of IOException enabled: [%s]",
-                    simulatedIOException));
-            OperationContext childContext = OperationContext.getOperationContext();
+        public void onConnect(String key) {
+            HostEventsSubscription subscription = eventSubscriptions.get(key);
+            if (subscription == null) {
+                return;
+            }
+
+            // from now on the inventory of the host is kept up to date by its events
+            runWithContext(subscription, () -> patchEventsStreamSince(
+                    subscription.computeStateLink, Utils.getSystemNowMicrosUtc()));
+        }
+
+        @Override
+        public void onEvents(String key, List<Events> events) {
+            HostEventsSubscription subscription = eventSubscriptions.get(key);
+            if (subscription == null) {
+                return;
+            }
+
+            runWithContext(subscription, () -> handleHostEvents(subscription, events));
+        }
+
+        @Override
+        public void onDisconnect(String key, Throwable failure) {
+            HostEventsSubscription subscription = eventSubscriptions.remove(key);
+            if (subscription == null) {
+                return;
+            }
+
+            logger.info(String.format("IOException when listening [%s]. Error: [%s]",
+                    key, failure != null ? failure.getMessage() : null));
+
+            runWithContext(subscription, () -> {
+                requestComputeState(subscription.computeStateLink).thenCompose((cs) -> {
+                    cs.powerState = ComputeService.PowerState.UNKNOWN;
+                    if (cs.customProperties != null) {
+                        // events might be lost from now on
+                        cs.customProperties.put(EVENTS_STREAM_SINCE_PROP_NAME, "0");
+                    }
+                    return patchComputeState(cs);
+                }).thenAccept((cs) -> {
+                    // changing the power state of containers to UNKNOWN
+                    queryExistingContainerStates(cs);
+                });
+            });
+        }
 
+        private void runWithContext(HostEventsSubscription subscription, Runnable runnable) {
+            OperationContext childContext = OperationContext.getOperationContext();
             try {
                 // set system user context
-                OperationContext.setFrom(op);
-
-                URL url = new URL(hostUri.toString());
-                URLConnection con = openConnection(input, url);
-
-                // setting "read timeout" to reset the blocking stream (reader.readLine()).
-                // Otherwise there is no way to close the connection.
-                con.setReadTimeout(URL_CONNECTION_READ_TIMEOUT);
-
-                final String hostName = url.getAuthority();
-                runningThreads.put(hostName, Thread.currentThread());
-
-                try (BufferedReader in = new BufferedReader(new InputStreamReader(
-                        con.getInputStream()))) {
-                    readData(in, simulatedIOException);
-                } catch (InterruptedException e) {
-                    logger.fine(String.format("[%s] is thrown.", e.getClass().getName()));
-                } catch (IOException e) {
-                    logger.info(String.format("IOException when listening [%s]. Error: [%s]",
-                            hostName, e.getMessage()));
-
-                    requestComputeState(computeState.documentSelfLink).thenCompose((cs) -> {
-                        cs.powerState = ComputeService.PowerState.UNKNOWN;
-                        return patchComputeState(cs);
-                    }).thenAccept((cs) -> {
-                        // changing the power state of containers to UNKNOWN
-                        queryExistingContainerStates(cs);
-                    });
-                } catch (Exception e) {
-                    logger.warning(String.format("Exception in subscription to [%s]. Error: [%s]",
-                            hostName, e.getMessage()));
-                } finally {
-                    runningThreads.remove(hostName);
-                    closeConnection(con);
-                }
+                OperationContext.setFrom(subscription.op);
+                runnable.run();
             } catch (Throwable t) {
                 logger.warning(Utils.toString(t));
             } finally {
@@ -1114,12 +1241,6 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     private void makeSubscription(CommandInput input, Operation op, ComputeState computeState, URI uri,
             Boolean simulateIOExceptionPropertyValue) {
 
-        boolean maxAllowedNumberOfThreadsExceeded = maxAllowedNumberOfThreadsExceeded();
-
-        if (maxAllowedNumberOfThreadsExceeded) {
-            return;
-        }
-
         if (simulateIOExceptionPropertyValue == null) {
             ConfigurationUtil.getConfigProperty(host, ConfigurationUtil.THROW_IO_EXCEPTION,
                     (prop) -> {
@@ -1129,14 +1250,32 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             return;
         }
 
-        EventsMonitor eventsMonitor = new EventsMonitor(
-                op,
-                uri,
-                input,
-                computeState,
-                simulateIOExceptionPropertyValue);
+        logger.fine(String.format("Simulation of IOException enabled: [%s]",
+                simulateIOExceptionPropertyValue));
+
+        String hostName = uri.getAuthority();
+        SSLContext sslContext = null;
+        try {
+            if (isSecure(uri)) {
+                sslContext = createSslContext(input);
+            }
+        } catch (Exception e) {
+            logger.warning(String.format("Exception in subscription to [%s]. Error: [%s]",
+                    hostName, e.getMessage()));
+            return;
+        }
+
+        HostEventsSubscription subscription = new HostEventsSubscription(op,
+                computeState.documentSelfLink);
+        if (eventSubscriptions.putIfAbsent(hostName, subscription) != null) {
+            logger.info("Connection is already opened: " + hostName);
+            return;
+        }
 
-        executor.submit(eventsMonitor);
+        if (!eventsHub.subscribe(hostName, uri, sslContext, simulateIOExceptionPropertyValue)) {
+            eventSubscriptions.remove(hostName, subscription);
+            logger.info("Connection is already opened: " + hostName);
+        }
     }
 
     private DeferredResult<ComputeState> requestComputeState(String selfLink) {
@@ -1171,68 +1310,164 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         return host.sendWithDeferredResult(op, ComputeState.class);
     }
 
-    private void readData(BufferedReader in, boolean simulatedIOException) throws IOException, InterruptedException {
+    private void handleHostEvents(HostEventsSubscription subscription, List<Events> events) {
+        // later events for the same container supersede the earlier ones from the batch
+        Map<String, ContainerState> patches = new LinkedHashMap<>();
+        ContainerListCallback inventoryDelta = new ContainerListCallback();
+        boolean networksChanged = false;
+        boolean volumesChanged = false;
+
+        for (Events event : events) {
+            if (EVENT_TYPE_NETWORK.equals(event.getType())) {
+                networksChanged = true;
+                continue;
+            }
+            if (EVENT_TYPE_VOLUME.equals(event.getType())) {
+                volumesChanged = true;
+                continue;
+            }
+            if (!EVENT_TYPE_CONTAINER.equals(event.getType()) || event.getId() == null) {
+                continue;
+            }
 
-        while (true) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
+            logger.fine(String.format("Event [%s] for container [%s] from [%s]",
+                    event.getAction(), event.getId(), subscription.computeStateLink));
+
+            String containerId = event.getId();
+            if (EVENT_TYPE_CONTAINER_CREATE.equals(event.getAction())) {
+                Attributes attributes = event.getActor() != null
+                        ? event.getActor().getAttributes() : null;
+                inventoryDelta.addIdAndNames(containerId, attributes != null
+                        && attributes.getName() != null
+                        ? new String[] { attributes.getName() } : null);
+                inventoryDelta.containerIdsAndImage.put(containerId, attributes != null
+                        ? attributes.getImage() : event.getFrom());
+                inventoryDelta.containerIdsAndState.put(containerId,
+                        ContainerState.PowerState.STOPPED);
+                inventoryDelta.removedContainerIds.remove(containerId);
+                continue;
+            }
+            if (EVENT_TYPE_CONTAINER_DESTROY.equals(event.getAction())) {
+                inventoryDelta.containerIdsAndNames.remove(containerId);
+                inventoryDelta.containerIdsAndImage.remove(containerId);
+                inventoryDelta.containerIdsAndState.remove(containerId);
+                inventoryDelta.removedContainerIds.add(containerId);
+                patches.remove(containerId);
+                continue;
             }
 
-            try {
-                String inputLine;
-
-                while ((inputLine = in.readLine()) != null) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    Events event = mapper.readValue(inputLine, Events.class);
-                    if (EVENT_TYPE_CONTAINER.equals(event.getType())) {
-                        ContainerState cs = new ContainerState();
-                        if (EVENT_TYPE_CONTAINER_DIE.equals(event.getAction())) {
-                            logger.fine(inputLine);
-
-                            cs.powerState = ContainerState.PowerState.STOPPED;
-                        } else if (EVENT_TYPE_CONTAINER_START.equals(event.getAction())) {
-                            logger.fine(inputLine);
-
-                            cs.powerState = ContainerState.PowerState.RUNNING;
-                            cs.started = TimeUnit.NANOSECONDS.toMillis(event.getTimeNano());
-                        } else {
-                            continue;
-                        }
+            ContainerState cs = new ContainerState();
+            if (EVENT_TYPE_CONTAINER_DIE.equals(event.getAction())) {
+                cs.powerState = ContainerState.PowerState.STOPPED;
+            } else if (EVENT_TYPE_CONTAINER_START.equals(event.getAction())) {
+                cs.powerState = ContainerState.PowerState.RUNNING;
+                if (event.getTimeNano() != null) {
+                    cs.started = TimeUnit.NANOSECONDS.toMillis(event.getTimeNano());
+                }
+            } else {
+                continue;
+            }
 
-                        String containerId = event.getId();
+            if (inventoryDelta.containerIdsAndState.containsKey(containerId)) {
+                // created in the same batch, the state goes with the delta
+                inventoryDelta.containerIdsAndState.put(containerId, cs.powerState);
+            } else {
+                patches.put(containerId, cs);
+            }
+        }
 
-                        QueryTask queryTask = QueryUtil
-                                .buildPropertyQuery(ContainerState.class, ContainerState.FIELD_NAME_ID, containerId);
+        if (!inventoryDelta.containerIdsAndNames.isEmpty()
+                || !inventoryDelta.removedContainerIds.isEmpty()) {
+            patchInventoryDelta(subscription.computeStateLink, inventoryDelta);
+        }
+        if (networksChanged) {
+            NetworkListCallback body = new NetworkListCallback();
+            body.containerHostLink = subscription.computeStateLink;
+            patchHostDataCollection(
+                    HostNetworkListDataCollection.DEFAULT_HOST_NETWORK_LIST_DATA_COLLECTION_LINK,
+                    body);
+        }
+        if (volumesChanged) {
+            VolumeListCallback body = new VolumeListCallback();
+            body.containerHostLink = subscription.computeStateLink;
+            patchHostDataCollection(
+                    HostVolumeListDataCollection.DEFAULT_HOST_VOLUME_LIST_DATA_COLLECTION_LINK,
+                    body);
+        }
 
-                        new ServiceDocumentQuery<ContainerState>(host, ContainerState.class).query(queryTask, (r) -> {
-                            if (r.hasException()) {
-                                logger.warning(String.format("Failed to query resource container state with id [%s]",
-                                        containerId));
-                            } else if (r.hasResult()) {
-                                cs.documentSelfLink = r.getDocumentSelfLink();
-                                patchContainerState(cs);
-                            }
-                        });
-                    }
-                }
-            } catch (SocketTimeoutException e) {
-                logger.fine(String.format("No events have been received for %s ms. Unblocking the reader.", String.valueOf(URL_CONNECTION_READ_TIMEOUT)));
-                if (simulatedIOException) {
-                    throw new IOException("Simulated IOException from an IT test.");
+        if (patches.isEmpty()) {
+            return;
+        }
+
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_PARENT_LINK, subscription.computeStateLink);
+        QueryUtil.addListValueClause(queryTask, ContainerState.FIELD_NAME_ID, patches.keySet());
+        QueryUtil.addExpandOption(queryTask);
+
+        new ServiceDocumentQuery<ContainerState>(host, ContainerState.class).query(queryTask, (r) -> {
+            if (r.hasException()) {
+                logger.warning(String.format("Failed to query resource container states with ids %s",
+                        patches.keySet()));
+            } else if (r.hasResult()) {
+                ContainerState cs = patches.get(r.getResult().id);
+                if (cs != null) {
+                    cs.documentSelfLink = r.getDocumentSelfLink();
+                    patchContainerState(cs);
                 }
             }
-        }
+        });
     }
 
-    private boolean maxAllowedNumberOfThreadsExceeded() {
-        ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
-        if (tpe.getActiveCount() >= tpe.getMaximumPoolSize()) {
-            logger.warning(String.format("Maximum allowed number of threads exceeded! Use [\"%s\"] property to increase it.",
-                    THREAD_POOL_QUEUE_SIZE_PROP_NAME));
-            return true;
-        }
+    /**
+     * Sends the containers created and destroyed on the host to the container list data
+     * collection. If a full collection of the host is in progress the delta is rejected and the
+     * stream is marked as interrupted so the next data collection lists the host containers.
+     */
+    private void patchInventoryDelta(String computeStateLink, ContainerListCallback delta) {
+        delta.containerHostLink = computeStateLink;
+        delta.incremental = true;
+
+        Operation.createPatch(host,
+                HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(delta)
+                .setReferer(host.getUri())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logger.warning(String.format("Failed to apply inventory delta of [%s]. Error: [%s]",
+                                computeStateLink, ex.getMessage()));
+                    }
+                    if (ex != null || o.getStatusCode() == Operation.STATUS_CODE_NOT_MODIFIED) {
+                        patchEventsStreamSince(computeStateLink, Utils.getSystemNowMicrosUtc());
+                    }
+                }).sendWith(host);
+    }
+
+    private void patchHostDataCollection(String dataCollectionLink, Object body) {
+        Operation.createPatch(host, dataCollectionLink)
+                .setBody(body)
+                .setReferer(host.getUri())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logger.warning(String.format("Failed to trigger [%s]. Error: [%s]",
+                                dataCollectionLink, ex.getMessage()));
+                    }
+                }).sendWith(host);
+    }
+
+    private void patchEventsStreamSince(String computeStateLink, long sinceMicros) {
+        ComputeState patch = new ComputeState();
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put(EVENTS_STREAM_SINCE_PROP_NAME, Long.toString(sinceMicros));
 
-        return false;
+        Operation.createPatch(host, computeStateLink)
+                .setBody(patch)
+                .setReferer(host.getUri())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logger.warning(String.format("Failed to patch compute state [%s]. Error: [%s]",
+                                computeStateLink, ex.getMessage()));
+                    }
+                }).sendWith(host);
     }
 
     private void queryExistingContainerStates(ComputeState compute) {
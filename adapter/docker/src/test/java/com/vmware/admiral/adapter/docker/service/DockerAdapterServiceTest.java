@@ -44,6 +44,7 @@ import javax.net.ssl.TrustManager;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vmware.admiral.adapter.common.AdapterBatchResponse;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.adapter.common.service.mock.MockTaskService.MockTaskState;
 import com.vmware.admiral.adapter.docker.mock.BaseMockDockerTestCase;
@@ -507,6 +508,40 @@ public class DockerAdapterServiceTest extends BaseMockDockerTestCase {
                 TaskState.TaskStage.FINISHED);
     }
 
+    @Test
+    public void testBatchInspectContainers() throws Throwable {
+        createProvisioningTask();
+
+        ContainerInstanceRequest request = new ContainerInstanceRequest();
+        request.resourceReferences = Arrays.asList(containerStateReference,
+                containerStateReference);
+        request.operationTypeId = ContainerOperationType.INSPECT.id;
+        request.serviceTaskCallback = ServiceTaskCallback.create(provisioningTaskLink);
+        sendBatchContainerRequest(request);
+
+        // a single callback for the whole batch
+        waitForPropertyValue(provisioningTaskLink, MockTaskState.class, "taskInfo.stage",
+                TaskState.TaskStage.FINISHED);
+    }
+
+    @Test
+    public void testBatchInspectContainersWithoutCallback() throws Throwable {
+        URI missingContainerReference = UriUtils.extendUri(host.getUri(),
+                UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK, "missing"));
+
+        ContainerInstanceRequest request = new ContainerInstanceRequest();
+        request.resourceReferences = Arrays.asList(containerStateReference,
+                missingContainerReference);
+        request.operationTypeId = ContainerOperationType.INSPECT.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        AdapterBatchResponse response = sendBatchContainerRequest(request);
+
+        assertEquals(Collections.singletonList(containerStateReference.getPath()),
+                response.finishedResourceLinks);
+        assertEquals(1, response.failedResourceLinks.size());
+        assertNotNull(response.failedResourceLinks.get(missingContainerReference.getPath()));
+    }
+
     @Test
     public void testInspectContainerWithRetry() throws Throwable {
         // verify container is running
@@ -847,6 +882,27 @@ public class DockerAdapterServiceTest extends BaseMockDockerTestCase {
         }
     }
 
+    private AdapterBatchResponse sendBatchContainerRequest(ContainerInstanceRequest request) {
+        AdapterBatchResponse[] response = new AdapterBatchResponse[1];
+        host.testStart(1);
+        host.send(Operation
+                .createPatch(dockerAdapterServiceUri)
+                .setReferer(URI.create("/"))
+                .setBodyNoCloning(request)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        host.failIteration(ex);
+                        return;
+                    }
+                    if (o.hasBody()) {
+                        response[0] = o.getBody(AdapterBatchResponse.class);
+                    }
+                    host.completeIteration();
+                }));
+        host.testWait();
+        return response[0];
+    }
+
     private void sendGetContainerStateRequest() throws Throwable {
         Operation getContainerState = Operation.createGet(containerStateReference)
                 .setCompletion((o, ex) -> {
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the hub against local fake docker endpoints. Every subscription is a separate connection
+ * to a fake endpoint that streams chunked <code>/events</code> responses, with frames
+ * deliberately split across chunk boundaries.
+ */
+public class DockerEventsHubTest {
+
+    private static final int ENDPOINTS_COUNT = Integer.getInteger(
+            "test.docker.events.hub.endpoints", 1000);
+    private static final int EVENTS_PER_ENDPOINT = Integer.getInteger(
+            "test.docker.events.hub.events.per.endpoint", 20);
+    private static final int IO_THREADS = 4;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private EventLoopGroup serverGroup;
+    private Channel serverChannel;
+    private DockerEventsHub hub;
+
+    private final Map<String, List<String>> receivedIds = new ConcurrentHashMap<>();
+    private final Map<String, Throwable> disconnects = new ConcurrentHashMap<>();
+    private final Set<String> connected = ConcurrentHashMap.newKeySet();
+    private final Set<String> ioThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger batchesCount = new AtomicInteger();
+    private final AtomicReference<CountDownLatch> eventsLatch = new AtomicReference<>();
+    private final AtomicReference<CountDownLatch> disconnectsLatch = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws Exception {
+        serverGroup = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new FakeEventsEndpoint());
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (hub != null) {
+            hub.stop();
+        }
+        serverChannel.close().sync();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void testEventsFromManyEndpoints() throws Exception {
+        hub = createHub(0);
+        eventsLatch.set(new CountDownLatch(ENDPOINTS_COUNT * EVENTS_PER_ENDPOINT));
+
+        for (int i = 0; i < ENDPOINTS_COUNT; i++) {
+            assertTrue(hub.subscribe(key(i), eventsUri(i, EVENTS_PER_ENDPOINT, false), null,
+                    false));
+        }
+        assertEquals(ENDPOINTS_COUNT, hub.getSubscriptionsCount());
+
+        assertTrue("Not all events were received",
+                eventsLatch.get().await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        for (int i = 0; i < ENDPOINTS_COUNT; i++) {
+            List<String> ids = receivedIds.get(key(i));
+            assertNotNull(ids);
+            assertEquals(EVENTS_PER_ENDPOINT, ids.size());
+            for (int j = 0; j < EVENTS_PER_ENDPOINT; j++) {
+                assertEquals(containerId(i, j), ids.get(j));
+            }
+        }
+
+        assertTrue("Events were not read by the shared I/O threads: " + ioThreads,
+                ioThreads.size() <= IO_THREADS);
+        assertTrue(batchesCount.get() <= ENDPOINTS_COUNT * EVENTS_PER_ENDPOINT);
+        assertTrue(disconnects.isEmpty());
+        assertEquals(ENDPOINTS_COUNT, connected.size());
+        assertEquals(ENDPOINTS_COUNT, hub.getSubscriptionsCount());
+    }
+
+    @Test
+    public void testDuplicateSubscription() throws Exception {
+        hub = createHub(0);
+
+        assertTrue(hub.subscribe(key(0), eventsUri(0, 0, false), null, false));
+        assertFalse(hub.subscribe(key(0), eventsUri(0, 0, false), null, false));
+        assertEquals(1, hub.getSubscriptionsCount());
+    }
+
+    @Test
+    public void testUnsubscribeIsNotReportedAsDisconnect() throws Exception {
+        hub = createHub(0);
+        eventsLatch.set(new CountDownLatch(1));
+
+        assertTrue(hub.subscribe(key(0), eventsUri(0, 1, false), null, false));
+        assertTrue(eventsLatch.get().await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(hub.unsubscribe(key(0)));
+        assertFalse(hub.unsubscribe(key(0)));
+        assertFalse(hub.isSubscribed(key(0)));
+
+        Thread.sleep(200);
+        assertTrue(disconnects.isEmpty());
+    }
+
+    @Test
+    public void testClosedStreamIsReported() throws Exception {
+        hub = createHub(0);
+        eventsLatch.set(new CountDownLatch(EVENTS_PER_ENDPOINT));
+        disconnectsLatch.set(new CountDownLatch(1));
+
+        assertTrue(hub.subscribe(key(0), eventsUri(0, EVENTS_PER_ENDPOINT, true), null, false));
+
+        assertTrue(disconnectsLatch.get().await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // the events received before the end of the stream are still delivered
+        assertEquals(0, eventsLatch.get().getCount());
+        assertTrue(disconnects.get(key(0)) instanceof IOException);
+        assertFalse(hub.isSubscribed(key(0)));
+    }
+
+    @Test
+    public void testIdleStreamFailsWhenRequested() throws Exception {
+        hub = createHub(100);
+        disconnectsLatch.set(new CountDownLatch(1));
+
+        assertTrue(hub.subscribe(key(0), eventsUri(0, 0, false), null, true));
+        assertTrue(hub.subscribe(key(1), eventsUri(1, 0, false), null, false));
+
+        assertTrue(disconnectsLatch.get().await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(disconnects.get(key(0)) instanceof IOException);
+        assertFalse(hub.isSubscribed(key(0)));
+        assertTrue(hub.isSubscribed(key(1)));
+    }
+
+    @Test
+    public void testConnectFailureIsReported() throws Exception {
+        hub = createHub(0);
+        disconnectsLatch.set(new CountDownLatch(1));
+
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        serverChannel.close().sync();
+
+        assertTrue(hub.subscribe(key(0), URI.create("http://127.0.0.1:" + port + "/events"),
+                null, false));
+
+        assertTrue(disconnectsLatch.get().await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(disconnects.get(key(0)));
+        assertFalse(connected.contains(key(0)));
+    }
+
+    private DockerEventsHub createHub(long readTimeoutMillis) {
+        return new DockerEventsHub(IO_THREADS, readTimeoutMillis, 10, 50,
+                new DockerEventsHub.EventsListener() {
+                    @Override
+                    public void onConnect(String key) {
+                        connected.add(key);
+                    }
+
+                    @Override
+                    public void onEvents(String key, List<Events> events) {
+                        ioThreads.add(Thread.currentThread().getName());
+                        batchesCount.incrementAndGet();
+                        List<String> ids = receivedIds.computeIfAbsent(key,
+                                (k) -> new CopyOnWriteArrayList<>());
+                        for (Events event : events) {
+                            ids.add(event.getId());
+                            eventsLatch.get().countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onDisconnect(String key, Throwable failure) {
+                        disconnects.put(key, failure);
+                        if (disconnectsLatch.get() != null) {
+                            disconnectsLatch.get().countDown();
+                        }
+                    }
+                });
+    }
+
+    private URI eventsUri(int endpoint, int eventsCount, boolean close) {
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        return URI.create(String.format(
+                "http://127.0.0.1:%d/events?endpoint=%d&count=%d&close=%s"
+                        + "&filters=%%7B%%22type%%22%%3A%%5B%%22container%%22%%5D%%7D",
+                port, endpoint, eventsCount, close));
+    }
+
+    private static String key(int endpoint) {
+        return "endpoint-" + endpoint;
+    }
+
+    private static String containerId(int endpoint, int event) {
+        return String.format("c%d-%d", endpoint, event);
+    }
+
+    /**
+     * Streams the requested number of container events and either keeps the connection open, as
+     * docker does, or ends the response.
+     */
+    private static class FakeEventsEndpoint extends SimpleChannelInboundHandler<Object> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+            if (!(msg instanceof HttpRequest)) {
+                return;
+            }
+
+            QueryStringDecoder decoder = new QueryStringDecoder(((HttpRequest) msg).uri());
+            int endpoint = Integer.parseInt(decoder.parameters().get("endpoint").get(0));
+            int count = Integer.parseInt(decoder.parameters().get("count").get(0));
+            boolean close = Boolean.parseBoolean(decoder.parameters().get("close").get(0));
+
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.OK);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+            response.headers().set(HttpHeaderNames.TRANSFER_ENCODING,
+                    HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+
+            StringBuilder stream = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                stream.append(String.format("{\"status\":\"start\",\"id\":\"%s\","
+                        + "\"Type\":\"container\",\"Action\":\"start\","
+                        + "\"Actor\":{\"ID\":\"%s\",\"Attributes\":{\"image\":\"alpine\"}},"
+                        + "\"time\":1500000000,\"timeNano\":1500000000000000000}\n",
+                        containerId(endpoint, i), containerId(endpoint, i)));
+            }
+
+            // split the stream in uneven chunks so that frames span several chunks
+            byte[] bytes = stream.toString().getBytes(StandardCharsets.UTF_8);
+            int chunkSize = 37 + endpoint % 50;
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, bytes.length - offset);
+                ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, offset, length)));
+            }
+
+            if (close) {
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            } else {
+                ctx.flush();
+            }
+        }
+    }
+}
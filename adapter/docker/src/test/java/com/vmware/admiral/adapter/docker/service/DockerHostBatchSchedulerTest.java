@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DockerHostBatchSchedulerTest {
+
+    private static final String SLOW_HOST = "/resources/compute/slow-host";
+    private static final String FAST_HOST = "/resources/compute/fast-host";
+
+    private DockerHostBatchScheduler scheduler;
+    private List<String> started;
+
+    @Before
+    public void setUp() {
+        scheduler = new DockerHostBatchScheduler(2);
+        started = new ArrayList<>();
+    }
+
+    @Test
+    public void testItemsAboveLimitAreQueuedPerHost() {
+        for (int i = 0; i < 4; i++) {
+            String item = "slow-" + i;
+            scheduler.submit(SLOW_HOST, () -> started.add(item));
+        }
+        assertEquals(2, started.size());
+        assertEquals(2, scheduler.getQueuedCount(SLOW_HOST));
+
+        // the queue of the slow host does not hold back the other hosts
+        scheduler.submit(FAST_HOST, () -> started.add("fast-0"));
+        assertEquals(3, started.size());
+        assertEquals("fast-0", started.get(2));
+
+        // releasing a slot starts the next item queued for the same host
+        scheduler.release(SLOW_HOST);
+        assertEquals(4, started.size());
+        assertEquals("slow-2", started.get(3));
+        assertEquals(2, scheduler.getInFlightCount(SLOW_HOST));
+        assertEquals(1, scheduler.getQueuedCount(SLOW_HOST));
+    }
+
+    @Test
+    public void testHostIsDroppedWhenIdle() {
+        scheduler.submit(SLOW_HOST, () -> started.add("slow-0"));
+        scheduler.submit(SLOW_HOST, () -> started.add("slow-1"));
+        scheduler.release(SLOW_HOST);
+        scheduler.release(SLOW_HOST);
+
+        assertEquals(0, scheduler.getInFlightCount(SLOW_HOST));
+        // releasing an unknown host is ignored
+        scheduler.release(SLOW_HOST);
+        assertEquals(0, scheduler.getInFlightCount(SLOW_HOST));
+    }
+
+    @Test
+    public void testFailingItemKeepsItsSlotUntilReleased() {
+        scheduler.submit(SLOW_HOST, () -> {
+            throw new IllegalStateException("expected failure");
+        });
+        scheduler.submit(SLOW_HOST, () -> started.add("slow-1"));
+
+        assertEquals(1, started.size());
+        assertEquals(2, scheduler.getInFlightCount(SLOW_HOST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new DockerHostBatchScheduler(0);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.xenon.common.Operation;
+
+public class DockerHostRequestPoolTest {
+
+    private static final URI SLOW_HOST = URI.create("https://slow-host:2376/containers/json");
+    private static final URI FAST_HOST = URI.create("https://fast-host:2376/containers/json");
+
+    private DockerHostRequestPool pool;
+    private List<Operation> sent;
+
+    @Before
+    public void setUp() {
+        pool = new DockerHostRequestPool(2, 3, TimeUnit.HOURS.toMicros(1));
+        sent = new ArrayList<>();
+    }
+
+    @Test
+    public void testRequestsAboveLimitAreQueuedPerHost() {
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            pool.send(createGet(SLOW_HOST, completed), sent::add);
+        }
+        assertEquals(2, sent.size());
+
+        // the queue of the slow host does not hold back the other hosts
+        pool.send(createGet(FAST_HOST, completed), sent::add);
+        assertEquals(3, sent.size());
+        assertEquals(FAST_HOST, sent.get(2).getUri());
+
+        // completing a request starts the next one queued for the same host
+        sent.get(0).complete();
+        assertEquals(4, sent.size());
+        assertEquals(SLOW_HOST, sent.get(3).getUri());
+        assertEquals(1, completed.get());
+
+        String slowHost = DockerHostRequestPool.STAT_NAME_PREFIX
+                + DockerHostRequestPool.getHostKey(SLOW_HOST);
+        Map<String, Double> stats = pool.getStats();
+        assertEquals(1, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_REQUESTS), 0);
+        assertEquals(2, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_IN_FLIGHT), 0);
+        assertEquals(1, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_QUEUED), 0);
+    }
+
+    @Test
+    public void testFailuresAreCounted() {
+        AtomicInteger completed = new AtomicInteger();
+        pool.send(createGet(SLOW_HOST, completed), sent::add);
+        pool.send(createGet(SLOW_HOST, completed), sent::add);
+        sent.get(0).complete();
+        sent.get(1).fail(new IllegalStateException("not found"));
+
+        String slowHost = DockerHostRequestPool.STAT_NAME_PREFIX
+                + DockerHostRequestPool.getHostKey(SLOW_HOST);
+        Map<String, Double> stats = pool.getStats();
+        assertEquals(2, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_REQUESTS), 0);
+        assertEquals(1, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_FAILURES), 0);
+        assertEquals(0, stats.get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_IN_FLIGHT), 0);
+        assertEquals(2, completed.get());
+    }
+
+    @Test
+    public void testRequestsAboveQueueLimitAreRejected() {
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            pool.send(createGet(SLOW_HOST, completed), sent::add);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        pool.send(Operation.createGet(SLOW_HOST).setCompletion((o, e) -> failure.set(e)),
+                sent::add);
+
+        assertEquals(2, sent.size());
+        assertNotNull(failure.get());
+        assertTrue(failure.get() instanceof IllegalStateException);
+
+        String slowHost = DockerHostRequestPool.STAT_NAME_PREFIX
+                + DockerHostRequestPool.getHostKey(SLOW_HOST);
+        assertEquals(1, pool.getStats().get(slowHost
+                + DockerHostRequestPool.STAT_NAME_SUFFIX_REJECTED), 0);
+    }
+
+    @Test
+    public void testExpiredQueuedRequestsAreNotSent() {
+        AtomicInteger completed = new AtomicInteger();
+        pool.send(createGet(SLOW_HOST, completed), sent::add);
+        pool.send(createGet(SLOW_HOST, completed), sent::add);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        pool.send(Operation.createGet(SLOW_HOST)
+                .setExpiration(1)
+                .setCompletion((o, e) -> failure.set(e)), sent::add);
+
+        sent.get(0).complete();
+        assertEquals(2, sent.size());
+        assertNotNull(failure.get());
+    }
+
+    private static Operation createGet(URI uri, AtomicInteger completed) {
+        return Operation.createGet(uri).setCompletion((o, e) -> completed.incrementAndGet());
+    }
+}
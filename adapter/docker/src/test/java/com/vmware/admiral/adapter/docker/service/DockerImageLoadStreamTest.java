@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.adapter.docker.service.DockerImageLoadStream.ImageManifest;
+import com.vmware.xenon.common.Operation;
+
+/**
+ * Runs image loads against a local fake docker endpoint which collects the uploaded tar files.
+ */
+public class DockerImageLoadStreamTest {
+
+    private static final String CONFIG_DIGEST =
+            "f2a91732366c0332ccd7afd2a5c4ff2b9af81f549370f7a19acd460f87686bc7";
+    private static final int MAX_CONCURRENT_LOADS = 2;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private EventLoopGroup serverGroup;
+    private Channel serverChannel;
+    private DockerImageLoadStream loadStream;
+    private File imageFile;
+
+    private final List<byte[]> uploads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger runningUploads = new AtomicInteger();
+    private final AtomicInteger maxRunningUploads = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        serverGroup = new NioEventLoopGroup(4);
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(16 * 1024 * 1024));
+                        ch.pipeline().addLast(new FakeImageLoadEndpoint());
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        loadStream = new DockerImageLoadStream(1, MAX_CONCURRENT_LOADS);
+
+        // large enough to be sent in many chunks
+        byte[] layer = new byte[1024 * 1024 + 123];
+        new Random(7).nextBytes(layer);
+        imageFile = File.createTempFile("test-image-load", ".tar");
+        imageFile.deleteOnExit();
+        Files.write(imageFile.toPath(), createTar(
+                "layer.tar", layer,
+                "manifest.json", String.format("[{\"Config\":\"%s.json\","
+                        + "\"RepoTags\":[\"test:latest\"],\"Layers\":[\"layer.tar\"]}]",
+                        CONFIG_DIGEST).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        loadStream.stop();
+        serverChannel.close().sync();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        imageFile.delete();
+    }
+
+    @Test
+    public void testImageManifestIsReadFromTar() throws Exception {
+        ImageManifest manifest = DockerImageLoadStream.getImageManifest(imageFile);
+        assertEquals("sha256:" + CONFIG_DIGEST, manifest.id);
+        assertEquals(Collections.singletonList("test:latest"), manifest.repoTags);
+
+        // tars saved by old docker versions have no manifest
+        File legacyImageFile = File.createTempFile("test-image-load-legacy", ".tar");
+        legacyImageFile.deleteOnExit();
+        Files.write(legacyImageFile.toPath(), createTar(
+                "repositories", "{}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(DockerImageLoadStream.getImageManifest(legacyImageFile));
+        legacyImageFile.delete();
+    }
+
+    @Test
+    public void testDeletedImageFilesAreDroppedFromCache() throws Exception {
+        File deletedImageFile = File.createTempFile("test-image-load-deleted", ".tar");
+        Files.write(deletedImageFile.toPath(), createTar(
+                "repositories", "{}".getBytes(StandardCharsets.UTF_8)));
+        DockerImageLoadStream.getImageManifest(deletedImageFile);
+        assertTrue(DockerImageLoadStream.isManifestCached(deletedImageFile));
+        assertTrue(deletedImageFile.delete());
+
+        // a read of another file drops the deleted one
+        File otherImageFile = File.createTempFile("test-image-load-other", ".tar");
+        otherImageFile.deleteOnExit();
+        Files.write(otherImageFile.toPath(), createTar(
+                "repositories", "{}".getBytes(StandardCharsets.UTF_8)));
+        DockerImageLoadStream.getImageManifest(otherImageFile);
+        assertFalse(DockerImageLoadStream.isManifestCached(deletedImageFile));
+        assertTrue(DockerImageLoadStream.isManifestCached(otherImageFile));
+        otherImageFile.delete();
+    }
+
+    @Test
+    public void testImageFileIsStreamed() throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        AtomicInteger statusCode = new AtomicInteger();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        load("outcome=success", (o, e) -> {
+            statusCode.set(o.getStatusCode());
+            if (e != null) {
+                failures.add(e);
+            }
+            completed.countDown();
+        });
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty());
+        assertEquals(Operation.STATUS_CODE_OK, statusCode.get());
+        assertEquals(1, uploads.size());
+        assertArrayEquals(Files.readAllBytes(imageFile.toPath()), uploads.get(0));
+    }
+
+    @Test
+    public void testConcurrentLoadsAreLimited() throws Exception {
+        int loadsCount = 6;
+        CountDownLatch completed = new CountDownLatch(loadsCount);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < loadsCount; i++) {
+            load("outcome=slow", (o, e) -> {
+                if (e != null) {
+                    failures.add(e);
+                }
+                completed.countDown();
+            });
+        }
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty());
+        assertEquals(loadsCount, uploads.size());
+        assertTrue(maxRunningUploads.get() <= MAX_CONCURRENT_LOADS);
+        assertEquals(0, loadStream.getRunningLoadsCount());
+    }
+
+    @Test
+    public void testLoadFailsOnErrorInResponse() throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        load("outcome=error", (o, e) -> {
+            if (e != null) {
+                failures.add(e);
+            }
+            completed.countDown();
+        });
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, failures.size());
+        assertNotNull(failures.get(0).getMessage());
+        assertTrue(failures.get(0).getMessage().contains("unexpected EOF"));
+    }
+
+    private void load(String query, Operation.CompletionHandler completionHandler) {
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        URI uri = URI.create(String.format("http://127.0.0.1:%d/images/load?%s", port, query));
+
+        loadStream.load(uri, imageFile, null, TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS),
+                completionHandler);
+    }
+
+    private static byte[] createTar(Object... nameAndContentPairs) throws Exception {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        for (int i = 0; i < nameAndContentPairs.length; i += 2) {
+            String name = (String) nameAndContentPairs[i];
+            byte[] content = (byte[]) nameAndContentPairs[i + 1];
+
+            byte[] header = new byte[512];
+            byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+            byte[] sizeBytes = String.format("%011o", content.length)
+                    .getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(sizeBytes, 0, header, 124, sizeBytes.length);
+            header[156] = '0';
+            tar.write(header);
+            tar.write(content);
+            tar.write(new byte[(512 - content.length % 512) % 512]);
+        }
+        // end of archive
+        tar.write(new byte[1024]);
+        return tar.toByteArray();
+    }
+
+    /**
+     * Collects the uploaded tar files and responds as docker does, optionally with an error in
+     * the response or after a delay.
+     */
+    private class FakeImageLoadEndpoint extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg)
+                throws Exception {
+            int running = runningUploads.incrementAndGet();
+            maxRunningUploads.accumulateAndGet(running, Math::max);
+
+            QueryStringDecoder decoder = new QueryStringDecoder(msg.uri());
+            String outcome = decoder.parameters().get("outcome").get(0);
+            uploads.add(ByteBufUtil.getBytes(msg.content()));
+
+            String body = "error".equals(outcome)
+                    ? "{\"errorDetail\":{\"message\":\"unexpected EOF\"},"
+                            + "\"error\":\"unexpected EOF\"}"
+                    : "{\"stream\":\"Loaded image: test:latest\\n\"}";
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH,
+                    response.content().readableBytes());
+
+            long delayMillis = "slow".equals(outcome) ? 200 : 0;
+            ctx.executor().schedule(() -> {
+                runningUploads.decrementAndGet();
+                ctx.writeAndFlush(response);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.xenon.common.Operation;
+
+/**
+ * Runs image pulls against a local fake docker endpoint which streams chunked
+ * <code>/images/create</code> responses, with frames deliberately split across chunk boundaries.
+ */
+public class DockerImagePullStreamTest {
+
+    private static final int LAYERS_COUNT = 5;
+    private static final int PROGRESS_FRAMES_PER_LAYER = 200;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private EventLoopGroup serverGroup;
+    private Channel serverChannel;
+    private DockerImagePullStream pullStream;
+
+    private final List<String> progressUpdates = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Operation> result = new AtomicReference<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        serverGroup = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new FakeImageCreateEndpoint());
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        pullStream = new DockerImagePullStream(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pullStream.stop();
+        serverChannel.close().sync();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void testPullProgressIsStreamed() throws Exception {
+        pull("outcome=success", 0);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(Operation.STATUS_CODE_OK, result.get().getStatusCode());
+        assertTrue(result.get().getBody(String.class).contains("Downloaded newer image"));
+
+        // byte progress alone is not reported, only the status changes of the layers
+        assertTrue(progressUpdates.size() < LAYERS_COUNT * 4);
+        assertEquals(LAYERS_COUNT + " of " + LAYERS_COUNT,
+                progressUpdates.get(progressUpdates.size() - 1));
+    }
+
+    @Test
+    public void testPullFailsOnFirstErrorFrame() throws Exception {
+        // the endpoint keeps the response open after the error frame
+        pull("outcome=error", 0);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(failure.get());
+        assertTrue(failure.get().getMessage().contains("manifest unknown"));
+        assertTrue(result.get().getBody(String.class).contains("errorDetail"));
+    }
+
+    @Test
+    public void testPullFailsOnErrorStatus() throws Exception {
+        pull("outcome=notfound", 0);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(failure.get());
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND, result.get().getStatusCode());
+        assertTrue(result.get().getBody(String.class).contains("No such image"));
+    }
+
+    @Test
+    public void testStalledPullFails() throws Exception {
+        pull("outcome=stall", 100);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof TimeoutException);
+        assertEquals(Operation.STATUS_CODE_TIMEOUT, result.get().getStatusCode());
+    }
+
+    private void pull(String query, long idleTimeoutMillis) {
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        URI uri = URI.create(String.format(
+                "http://127.0.0.1:%d/images/create?fromImage=alpine&%s", port, query));
+
+        pullStream.pull(uri, null, null, idleTimeoutMillis,
+                (progress) -> progressUpdates.add(progress.getCompletedLayersCount() + " of "
+                        + progress.getLayersCount()),
+                (o, e) -> {
+                    result.set(o);
+                    failure.set(e);
+                    completed.countDown();
+                });
+    }
+
+    /**
+     * Streams the progress of a pull of several layers, optionally failing it with an error
+     * frame or a not found response, or stalling it.
+     */
+    private static class FakeImageCreateEndpoint extends SimpleChannelInboundHandler<Object> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+            if (!(msg instanceof HttpRequest)) {
+                return;
+            }
+
+            QueryStringDecoder decoder = new QueryStringDecoder(((HttpRequest) msg).uri());
+            String outcome = decoder.parameters().get("outcome").get(0);
+
+            if ("notfound".equals(outcome)) {
+                HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                        HttpResponseStatus.NOT_FOUND);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+                response.headers().set(HttpHeaderNames.TRANSFER_ENCODING,
+                        HttpHeaderValues.CHUNKED);
+                ctx.write(response);
+                write(ctx, "{\"message\":\"No such image: alpine:latest\"}\n");
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                return;
+            }
+
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.OK);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+            response.headers().set(HttpHeaderNames.TRANSFER_ENCODING,
+                    HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+
+            if ("stall".equals(outcome)) {
+                ctx.flush();
+                return;
+            }
+
+            StringBuilder stream = new StringBuilder();
+            stream.append("{\"status\":\"Pulling from library/alpine\",\"id\":\"latest\"}\n");
+            for (int layer = 0; layer < LAYERS_COUNT; layer++) {
+                stream.append(String.format("{\"status\":\"Pulling fs layer\","
+                        + "\"progressDetail\":{},\"id\":\"layer%d\"}\n", layer));
+            }
+            for (int layer = 0; layer < LAYERS_COUNT; layer++) {
+                for (int i = 1; i <= PROGRESS_FRAMES_PER_LAYER; i++) {
+                    stream.append(String.format("{\"status\":\"Downloading\","
+                            + "\"progressDetail\":{\"current\":%d,\"total\":%d},"
+                            + "\"progress\":\"[=>   ]\",\"id\":\"layer%d\"}\n",
+                            i * 1024, PROGRESS_FRAMES_PER_LAYER * 1024, layer));
+                }
+                if ("error".equals(outcome)) {
+                    stream.append("{\"errorDetail\":{\"message\":\"manifest unknown\"},"
+                            + "\"error\":\"manifest unknown\"}\n");
+                    write(ctx, stream.toString());
+                    ctx.flush();
+                    return;
+                }
+                stream.append(String.format("{\"status\":\"Pull complete\","
+                        + "\"progressDetail\":{},\"id\":\"layer%d\"}\n", layer));
+            }
+            // the last frame is not terminated with a new line
+            stream.append("{\"status\":\"Status: Downloaded newer image for alpine:latest\"}");
+
+            write(ctx, stream.toString());
+            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+
+        private static void write(ChannelHandlerContext ctx, String stream) {
+            // split the stream in uneven chunks so that frames span several chunks
+            byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+            int chunkSize = 53;
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, bytes.length - offset);
+                ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, offset, length)));
+            }
+        }
+    }
+}
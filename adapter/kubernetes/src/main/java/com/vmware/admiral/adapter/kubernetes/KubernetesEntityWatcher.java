@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes;
+
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.DEPLOYMENT_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.POD_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.REPLICATION_CONTROLLER_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.REPLICA_SET_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.SERVICE_TYPE;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.vmware.admiral.adapter.kubernetes.service.AbstractKubernetesAdapterService.KubernetesContext;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListType;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Keeps the entities of a kubernetes host in sync through the watch API. Each kind is listed
+ * once and then watched for changes starting from the resource version of the list. The changes
+ * are reported incrementally, a kind is listed again only when the API server reports that the
+ * watched resource version is too old (410 Gone).
+ * <p>
+ * A watch request returns after the watch timeout with the events received meanwhile and is
+ * sent again from the last seen resource version. The watcher stops itself when it hasn't been
+ * requested for {@link #IDLE_TIMEOUT_MICROS}, e.g. after the host has been removed.
+ */
+public class KubernetesEntityWatcher {
+
+    public static final List<String> WATCHED_KINDS = Collections.unmodifiableList(Arrays.asList(
+            POD_TYPE, SERVICE_TYPE, DEPLOYMENT_TYPE, REPLICATION_CONTROLLER_TYPE,
+            REPLICA_SET_TYPE));
+
+    public static final long WATCH_TIMEOUT_SECONDS = Long.getLong(
+            "adapter.kubernetes.watch.timeout.seconds", 30);
+    public static final long IDLE_TIMEOUT_MICROS = Long.getLong(
+            "adapter.kubernetes.watch.idle.timeout.micros", TimeUnit.MINUTES.toMicros(15));
+    private static final long RETRY_DELAY_SECONDS = Long.getLong(
+            "adapter.kubernetes.watch.retry.delay.seconds", 5);
+
+    static final String EVENT_TYPE_DELETED = "DELETED";
+    static final String EVENT_TYPE_ERROR = "ERROR";
+
+    private static final Logger logger = Logger
+            .getLogger(KubernetesEntityWatcher.class.getName());
+
+    /**
+     * The part of a list response used by the watcher.
+     */
+    static class EntityList {
+        public ListMeta metadata;
+        public List<JsonObject> items;
+    }
+
+    static class ListMeta {
+        public String resourceVersion;
+    }
+
+    /**
+     * A single event of a watch response.
+     */
+    static class WatchEvent {
+        public String type;
+        public JsonObject object;
+    }
+
+    private final ServiceHost host;
+    private final KubernetesRemoteApiClient client;
+    private final String computeHostLink;
+    private final long watchTimeoutSeconds;
+    private final Function<EntityListCallback, DeferredResult<Void>> changeHandler;
+
+    private final Map<String, String> resourceVersions = new ConcurrentHashMap<>();
+    private volatile KubernetesContext context;
+    private volatile long lastRequestedMicros;
+    private volatile boolean stopped;
+
+    public KubernetesEntityWatcher(ServiceHost host, KubernetesRemoteApiClient client,
+            KubernetesContext context, long watchTimeoutSeconds,
+            Function<EntityListCallback, DeferredResult<Void>> changeHandler) {
+        this.host = host;
+        this.client = client;
+        this.context = context;
+        this.computeHostLink = context.host.documentSelfLink;
+        this.watchTimeoutSeconds = watchTimeoutSeconds;
+        this.changeHandler = changeHandler;
+    }
+
+    /**
+     * Lists all the watched kinds and starts watching them. The returned result completes once
+     * the initial lists are handled and fails if any of them couldn't be listed, the watcher is
+     * stopped in that case.
+     */
+    public DeferredResult<Void> start() {
+        lastRequestedMicros = Utils.getSystemNowMicrosUtc();
+
+        List<DeferredResult<Void>> lists = new ArrayList<>(WATCHED_KINDS.size());
+        for (String kind : WATCHED_KINDS) {
+            lists.add(list(kind).thenAccept(ignore -> watch(kind)));
+        }
+
+        return DeferredResult.allOf(lists)
+                .whenComplete((ignore, ex) -> {
+                    if (ex != null) {
+                        logger.warning(String.format("Failed to list the entities of host %s: %s",
+                                computeHostLink, Utils.toString(ex)));
+                        stop();
+                    }
+                })
+                .thenAccept(ignore -> {
+                });
+    }
+
+    /**
+     * Marks the watcher as requested and updates the context used to connect to the host.
+     */
+    public void refresh(KubernetesContext context) {
+        this.context = context;
+        this.lastRequestedMicros = Utils.getSystemNowMicrosUtc();
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private DeferredResult<Void> list(String kind) {
+        DeferredResult<Operation> listing = new DeferredResult<>();
+        client.listEntities(context, kind, (o, ex) -> {
+            if (ex != null) {
+                listing.fail(ex);
+            } else {
+                listing.complete(o);
+            }
+        });
+
+        return listing.thenCompose(o -> {
+            EntityList list = Utils.fromJson(o.getBody(String.class), EntityList.class);
+            EntityListCallback snapshot = createCallback(EntityListType.SNAPSHOT);
+            snapshot.kind = kind;
+            if (list.items != null) {
+                for (JsonObject item : list.items) {
+                    BaseKubernetesObject object = Utils.fromJson(item, BaseKubernetesObject.class);
+                    if (isValid(object)) {
+                        snapshot.idToEntityData.put(object.metadata.uid,
+                                createEntityData(object, kind, item));
+                    }
+                }
+            }
+
+            // the watch continues from the listed version only once the list is handled
+            String resourceVersion = list.metadata != null ? list.metadata.resourceVersion : null;
+            return changeHandler.apply(snapshot).thenAccept(ignore -> {
+                if (resourceVersion != null) {
+                    resourceVersions.put(kind, resourceVersion);
+                } else {
+                    resourceVersions.remove(kind);
+                }
+            });
+        });
+    }
+
+    private void relist(String kind) {
+        if (!checkActive()) {
+            return;
+        }
+
+        list(kind).whenComplete((ignore, ex) -> {
+            if (ex != null) {
+                logger.warning(String.format("Failed to list %s entities of host %s: %s", kind,
+                        computeHostLink, Utils.toString(ex)));
+                host.schedule(() -> relist(kind), RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+            } else {
+                watch(kind);
+            }
+        });
+    }
+
+    private void watch(String kind) {
+        if (!checkActive()) {
+            return;
+        }
+
+        client.watchEntities(context, kind, resourceVersions.get(kind), watchTimeoutSeconds,
+                (o, ex) -> {
+                    if (ex == null) {
+                        handleEvents(kind, o.getBody(String.class));
+                    } else if (o != null && o.getStatusCode() == HttpURLConnection.HTTP_GONE) {
+                        relist(kind);
+                    } else {
+                        logger.warning(String.format("Failed to watch %s entities of host %s: %s",
+                                kind, computeHostLink, Utils.toString(ex)));
+                        host.schedule(() -> watch(kind), RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+                    }
+                });
+    }
+
+    private void handleEvents(String kind, String events) {
+        EntityListCallback changes = createCallback(EntityListType.CHANGES);
+        boolean expired = false;
+        String lastResourceVersion = null;
+
+        for (String line : events == null ? new String[0] : events.split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            WatchEvent event = Utils.fromJson(line, WatchEvent.class);
+            if (event.object == null) {
+                continue;
+            }
+
+            if (EVENT_TYPE_ERROR.equals(event.type)) {
+                // the watched resource version is no longer available, the kind is listed
+                // again. Other errors are retried from the last seen resource version.
+                expired = isGone(event.object);
+                if (!expired) {
+                    logger.warning(String.format("Watch of %s entities of host %s failed: %s",
+                            kind, computeHostLink, event.object));
+                }
+                break;
+            }
+
+            BaseKubernetesObject object = Utils.fromJson(event.object,
+                    BaseKubernetesObject.class);
+            String resourceVersion = getResourceVersion(event.object);
+            if (resourceVersion != null) {
+                lastResourceVersion = resourceVersion;
+            }
+            if (!isValid(object)) {
+                continue;
+            }
+
+            String id = object.metadata.uid;
+            if (EVENT_TYPE_DELETED.equals(event.type)) {
+                changes.idToEntityData.remove(id);
+                changes.deletedIds.add(id);
+            } else {
+                changes.deletedIds.remove(id);
+                changes.idToEntityData.put(id, createEntityData(object, kind, event.object));
+            }
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(String.format("Watch of %s entities of host %s: %s changed, %s deleted",
+                    kind, computeHostLink, changes.idToEntityData.size(),
+                    changes.deletedIds.size()));
+        }
+
+        DeferredResult<Void> handled = changes.idToEntityData.isEmpty()
+                && changes.deletedIds.isEmpty()
+                ? DeferredResult.completed(null)
+                : changeHandler.apply(changes);
+
+        // the resource version advances only after the changes are handled. When handling them
+        // fails the kind is listed again, as the changes won't be reported by the next watch.
+        boolean relist = expired;
+        String resourceVersion = lastResourceVersion;
+        handled.whenComplete((ignore, ex) -> {
+            if (ex != null) {
+                logger.warning(String.format("Failed to handle %s changes of host %s: %s", kind,
+                        computeHostLink, Utils.toString(ex)));
+                relist(kind);
+                return;
+            }
+            if (resourceVersion != null) {
+                resourceVersions.put(kind, resourceVersion);
+            }
+            if (relist) {
+                relist(kind);
+            } else {
+                watch(kind);
+            }
+        });
+    }
+
+    private boolean checkActive() {
+        if (stopped) {
+            return false;
+        }
+        if (lastRequestedMicros + IDLE_TIMEOUT_MICROS < Utils.getSystemNowMicrosUtc()) {
+            logger.info(String.format("Stopping the idle entity watch of host %s",
+                    computeHostLink));
+            stop();
+            return false;
+        }
+        return true;
+    }
+
+    private EntityListCallback createCallback(EntityListType listType) {
+        EntityListCallback callback = new EntityListCallback();
+        callback.computeHostLink = computeHostLink;
+        callback.listType = listType;
+        return callback;
+    }
+
+    private static KubernetesEntityData createEntityData(BaseKubernetesObject object,
+            String kind, JsonObject json) {
+        KubernetesEntityData data = KubernetesUtil.createEntityData(object, kind);
+        data.entityJson = json.toString();
+        return data;
+    }
+
+    private static boolean isValid(BaseKubernetesObject object) {
+        return object.metadata != null && object.metadata.uid != null
+                && object.metadata.selfLink != null && object.metadata.name != null;
+    }
+
+    private static boolean isGone(JsonObject status) {
+        JsonElement code = status.get("code");
+        return code != null && code.getAsInt() == HttpURLConnection.HTTP_GONE;
+    }
+
+    private static String getResourceVersion(JsonObject object) {
+        JsonElement metadata = object.get("metadata");
+        if (metadata == null || !metadata.isJsonObject()) {
+            return null;
+        }
+        JsonElement resourceVersion = metadata.getAsJsonObject().get("resourceVersion");
+        return resourceVersion == null ? null : resourceVersion.getAsString();
+    }
+}
@@ -74,6 +74,9 @@ public class KubernetesRemoteApiClient {
     public static final String pingPath = "/healthz";
 
     public static final String LABEL_SELECTOR_QUERY = "labelSelector";
+    public static final String WATCH_QUERY = "watch";
+    public static final String RESOURCE_VERSION_QUERY = "resourceVersion";
+    public static final String TIMEOUT_SECONDS_QUERY = "timeoutSeconds";
 
     private static final Logger logger = Logger
             .getLogger(KubernetesRemoteApiClient.class.getName());
@@ -344,6 +347,47 @@ public class KubernetesRemoteApiClient {
         sendRequest(Action.GET, uri, null, context, completionHandler);
     }
 
+    /**
+     * Lists the entities of the given kind. The resource version of the returned list is the
+     * starting point for {@link #watchEntities}.
+     */
+    public void listEntities(KubernetesContext context, String kind,
+            CompletionHandler completionHandler) {
+        sendRequest(Action.GET, buildEntitiesUri(context, kind), null, context,
+                completionHandler);
+    }
+
+    /**
+     * Watches the entities of the given kind for changes after the given resource version. The
+     * API server closes the watch after the given timeout, the response body holds the watch
+     * events received meanwhile, one JSON object per line.
+     */
+    public void watchEntities(KubernetesContext context, String kind, String resourceVersion,
+            long timeoutSeconds, CompletionHandler completionHandler) {
+        URI uri = UriUtils.extendUriWithQuery(buildEntitiesUri(context, kind),
+                WATCH_QUERY, Boolean.TRUE.toString(),
+                TIMEOUT_SECONDS_QUERY, Long.toString(timeoutSeconds));
+        if (resourceVersion != null) {
+            uri = UriUtils.extendUriWithQuery(uri, RESOURCE_VERSION_QUERY, resourceVersion);
+        }
+
+        Operation op = Operation
+                .createGet(uri)
+                .setCompletion(completionHandler);
+
+        op.setExpiration(ServiceUtils.getExpirationTimeFromNowInMicros(
+                TimeUnit.SECONDS.toMicros(timeoutSeconds + REQUEST_TIMEOUT_SECONDS)));
+        prepareRequest(op, context);
+        serviceClient.send(op);
+    }
+
+    private URI buildEntitiesUri(KubernetesContext context, String kind) {
+        String apiVersionPrefix = DEPLOYMENT_TYPE.equals(kind) || REPLICA_SET_TYPE.equals(kind)
+                ? API_PREFIX_EXTENSIONS_V1BETA : API_PREFIX_V1;
+        return UriUtils.buildUri(ApiUtil.namespacePrefix(context, apiVersionPrefix)
+                + getKubernetesPath(kind));
+    }
+
     public void createEntity(KubernetesDescription description, KubernetesContext context,
             CompletionHandler completionHandler) throws IOException {
         URI uri = ApiUtil.buildKubernetesFactoryUri(description, context);
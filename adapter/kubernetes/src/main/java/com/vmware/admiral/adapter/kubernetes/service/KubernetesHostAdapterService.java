@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -31,11 +32,13 @@ import java.util.stream.Collectors;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.adapter.kubernetes.KubernetesEntityWatcher;
 import com.vmware.admiral.adapter.kubernetes.KubernetesRemoteApiClient;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.ComputeConstants;
 import com.vmware.admiral.compute.ContainerHostService;
 import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
 import com.vmware.admiral.compute.kubernetes.KubernetesHostConstants;
@@ -52,6 +55,7 @@ import com.vmware.admiral.compute.kubernetes.entities.services.Service;
 import com.vmware.admiral.compute.kubernetes.entities.services.ServiceList;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.CompletionHandler;
 import com.vmware.xenon.common.TaskState.TaskStage;
@@ -69,6 +73,15 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
     public static final String DASHBOARD_LINK_PROP_NAME = "__dashboardLink";
     public static final String DASHBOARD_INSTALLED_PROP_NAME = "__dashboardInstalled";
 
+    private final Map<String, KubernetesEntityWatcher> watchers = new ConcurrentHashMap<>();
+
+    @Override
+    public void handleStop(Operation delete) {
+        watchers.values().forEach(KubernetesEntityWatcher::stop);
+        watchers.clear();
+        super.handleStop(delete);
+    }
+
     @Override
     public void handlePatch(Operation op) {
         AdapterRequest request = op.getBody(AdapterRequest.class);
@@ -86,6 +99,9 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
                 && request.serviceTaskCallback.isEmpty()) {
             getComputeHost(request, op, request.resourceReference,
                     context -> listEntities(request, context, op, direct));
+        } else if (request.operationTypeId.equals(ContainerHostOperationType.WATCH_ENTITIES.id)) {
+            getComputeHost(request, op, request.resourceReference,
+                    context -> watchEntities(request, context, op));
         } else {
             getComputeHost(request, op, request.resourceReference,
                     context -> processOperation(request, context));
@@ -386,6 +402,70 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         allStarted.set(true);
     }
 
+    /**
+     * Starts watching the entities of the host unless they are already watched. The operation
+     * completes once the initial entity lists are applied by the entity data collection.
+     */
+    private void watchEntities(AdapterRequest request, KubernetesContext context, Operation op) {
+        updateContext(request, context);
+
+        KubernetesRemoteApiClient client = getApiClient();
+        client.getSystemServices(context, null, (o, ex) -> {
+            if (ex != null) {
+                logWarning("Failed to list the system services of host [%s]: %s",
+                        context.host.documentSelfLink, Utils.toString(ex));
+                return;
+            }
+            ServiceList serviceList = o.getBody(ServiceList.class);
+            if (serviceList.items != null) {
+                updateDashboardLink(context.host, serviceList.items.stream()
+                        .filter(s -> DASHBOARD_SERVICE_NAME.equals(s.metadata.name))
+                        .findFirst().orElse(null));
+            }
+        });
+
+        String computeHostLink = context.host.documentSelfLink;
+        AtomicBoolean created = new AtomicBoolean();
+        KubernetesEntityWatcher watcher = watchers.compute(computeHostLink, (link, current) -> {
+            if (current != null && !current.isStopped()) {
+                current.refresh(context);
+                return current;
+            }
+            created.set(true);
+            return new KubernetesEntityWatcher(getHost(), client, context,
+                    KubernetesEntityWatcher.WATCH_TIMEOUT_SECONDS, this::notifyEntityChanges);
+        });
+
+        if (!created.get()) {
+            op.complete();
+            return;
+        }
+
+        watcher.start().whenComplete((ignore, ex) -> {
+            if (ex != null) {
+                watchers.remove(computeHostLink, watcher);
+                op.fail(ex);
+            } else {
+                op.complete();
+            }
+        });
+    }
+
+    private DeferredResult<Void> notifyEntityChanges(EntityListCallback changes) {
+        return sendWithDeferredResult(Operation
+                .createPatch(this, KubernetesEntityDataCollection
+                        .DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK)
+                .setBodyNoCloning(changes))
+                .whenComplete((o, ex) -> {
+                    if (ex != null) {
+                        logWarning("Failed to update the entities of host [%s]: %s",
+                                changes.computeHostLink, Utils.toString(ex));
+                    }
+                })
+                .thenAccept(o -> {
+                });
+    }
+
     private void updateDashboardLink(ComputeState clusterHost, Service dashboardService) {
         ComputeState patchState = new ComputeState();
         patchState.customProperties = new HashMap<>();
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.adapter.kubernetes.mock.MockKubernetesWatchHost;
+import com.vmware.admiral.adapter.kubernetes.service.AbstractKubernetesAdapterService.KubernetesContext;
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.common.util.ServerX509TrustManager;
+import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListType;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
+import com.vmware.admiral.compute.kubernetes.KubernetesHostConstants;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
+import com.vmware.admiral.compute.kubernetes.entities.common.ObjectMeta;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
+
+public class KubernetesEntityWatcherTest extends BaseTestCase {
+
+    private static final String API_SERVER_LINK = "/fake-kubernetes-api";
+    private static final String COMPUTE_HOST_LINK = "/resources/compute/kubernetes-host";
+    private static final long WATCH_TIMEOUT_SECONDS = 1;
+
+    private final List<EntityListCallback> callbacks = Collections
+            .synchronizedList(new ArrayList<>());
+    private final AtomicBoolean failNextChanges = new AtomicBoolean();
+    private MockKubernetesWatchHost apiServer;
+    private KubernetesEntityWatcher watcher;
+
+    @Before
+    public void setUp() throws Throwable {
+        apiServer = new MockKubernetesWatchHost();
+        host.startServiceAndWait(apiServer, API_SERVER_LINK, null);
+
+        KubernetesContext context = new KubernetesContext();
+        context.host = new ComputeState();
+        context.host.documentSelfLink = COMPUTE_HOST_LINK;
+        context.host.address = UriUtils.buildUri(host, API_SERVER_LINK).toString();
+        context.host.customProperties = new HashMap<>();
+        context.host.customProperties.put(
+                KubernetesHostConstants.KUBERNETES_HOST_NAMESPACE_PROP_NAME,
+                KubernetesHostConstants.KUBERNETES_HOST_DEFAULT_NAMESPACE);
+
+        KubernetesRemoteApiClient client = KubernetesRemoteApiClient.create(host,
+                ServerX509TrustManager.create(host));
+        watcher = new KubernetesEntityWatcher(host, client, context, WATCH_TIMEOUT_SECONDS,
+                (changes) -> {
+                    if (changes.listType == EntityListType.CHANGES
+                            && failNextChanges.compareAndSet(true, false)) {
+                        return DeferredResult.failed(new IllegalStateException(
+                                "expected failure"));
+                    }
+                    callbacks.add(changes);
+                    return DeferredResult.completed(null);
+                });
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void testInitialListAndIncrementalChanges() throws Throwable {
+        BaseKubernetesObject pod1 = createPod("pod-1");
+        apiServer.addEntity(pod1);
+        start();
+
+        assertEquals(KubernetesEntityWatcher.WATCHED_KINDS.size(), callbacks.size());
+        EntityListCallback snapshot = getSnapshot(KubernetesUtil.POD_TYPE);
+        assertEquals(COMPUTE_HOST_LINK, snapshot.computeHostLink);
+        KubernetesEntityData data = snapshot.idToEntityData.get(pod1.metadata.uid);
+        assertNotNull(data);
+        assertEquals(pod1.metadata.name, data.name);
+        assertNotNull(data.entityJson);
+
+        BaseKubernetesObject pod2 = createPod("pod-2");
+        apiServer.addEntity(pod2);
+        waitFor(() -> getChanges().idToEntityData.containsKey(pod2.metadata.uid));
+
+        apiServer.deleteEntity(pod1);
+        waitFor(() -> getChanges().deletedIds.contains(pod1.metadata.uid));
+
+        // the changes are watched, the pods are not listed again
+        assertEquals(1, apiServer.getListCount(KubernetesUtil.POD_TYPE));
+    }
+
+    @Test
+    public void testRelistOnGoneResponse() throws Throwable {
+        start();
+
+        apiServer.expireResourceVersions(false);
+        waitFor(() -> apiServer.getListCount(KubernetesUtil.POD_TYPE) == 2);
+
+        // the watch continues from the resource version of the new list
+        BaseKubernetesObject pod = createPod("pod-1");
+        apiServer.addEntity(pod);
+        waitFor(() -> getChanges().idToEntityData.containsKey(pod.metadata.uid));
+        assertEquals(2, apiServer.getListCount(KubernetesUtil.POD_TYPE));
+    }
+
+    @Test
+    public void testRelistOnGoneEvent() throws Throwable {
+        start();
+
+        // wait for the watches to be started
+        Thread.sleep(WATCH_TIMEOUT_SECONDS * 500);
+        apiServer.expireResourceVersions(true);
+        waitFor(() -> apiServer.getListCount(KubernetesUtil.POD_TYPE) == 2);
+        assertTrue(KubernetesEntityWatcher.WATCHED_KINDS.stream()
+                .allMatch(kind -> apiServer.getListCount(kind) == 2));
+    }
+
+    @Test
+    public void testRelistWhenHandlingChangesFails() throws Throwable {
+        start();
+
+        failNextChanges.set(true);
+        BaseKubernetesObject pod = createPod("pod-1");
+        apiServer.addEntity(pod);
+
+        // the lost change is reported by the new list of the kind
+        waitFor(() -> apiServer.getListCount(KubernetesUtil.POD_TYPE) == 2);
+        waitFor(() -> {
+            EntityListCallback snapshot = getLastSnapshot(KubernetesUtil.POD_TYPE);
+            return snapshot != null && snapshot.idToEntityData.containsKey(pod.metadata.uid);
+        });
+        assertFalse(getChanges().idToEntityData.containsKey(pod.metadata.uid));
+    }
+
+    private void start() {
+        TestContext ctx = testCreate(1);
+        watcher.start().whenComplete((ignore, ex) -> {
+            if (ex != null) {
+                ctx.fail(ex);
+            } else {
+                ctx.complete();
+            }
+        });
+        ctx.await();
+    }
+
+    private EntityListCallback getSnapshot(String kind) {
+        synchronized (callbacks) {
+            return callbacks.stream()
+                    .filter(c -> c.listType == EntityListType.SNAPSHOT && kind.equals(c.kind))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    private EntityListCallback getLastSnapshot(String kind) {
+        synchronized (callbacks) {
+            return callbacks.stream()
+                    .filter(c -> c.listType == EntityListType.SNAPSHOT && kind.equals(c.kind))
+                    .reduce((first, second) -> second).orElse(null);
+        }
+    }
+
+    /**
+     * Merges all the reported changes.
+     */
+    private EntityListCallback getChanges() {
+        EntityListCallback merged = new EntityListCallback();
+        synchronized (callbacks) {
+            callbacks.stream()
+                    .filter(c -> c.listType == EntityListType.CHANGES)
+                    .forEach(c -> {
+                        merged.idToEntityData.putAll(c.idToEntityData);
+                        merged.deletedIds.addAll(c.deletedIds);
+                    });
+        }
+        return merged;
+    }
+
+    private static BaseKubernetesObject createPod(String name) {
+        BaseKubernetesObject pod = new BaseKubernetesObject();
+        pod.kind = KubernetesUtil.POD_TYPE;
+        pod.apiVersion = KubernetesUtil.KUBERNETES_API_VERSION_V1;
+        pod.metadata = new ObjectMeta();
+        pod.metadata.name = name;
+        pod.metadata.uid = name + "-uid";
+        pod.metadata.namespace = KubernetesHostConstants.KUBERNETES_HOST_DEFAULT_NAMESPACE;
+        pod.metadata.selfLink = "/api/v1/namespaces/default/pods/" + name;
+        return pod;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes.mock;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import com.vmware.admiral.adapter.kubernetes.KubernetesApiEndpointsUtil;
+import com.vmware.admiral.adapter.kubernetes.KubernetesRemoteApiClient;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Fake kubernetes API server which supports listing and watching entities. Watch requests are
+ * held until an event for the watched kind arrives or the requested timeout passes.
+ */
+public class MockKubernetesWatchHost extends StatelessService {
+
+    private static class WatchEvent {
+        final String endpoint;
+        final long resourceVersion;
+        final String json;
+
+        WatchEvent(String endpoint, long resourceVersion, String json) {
+            this.endpoint = endpoint;
+            this.resourceVersion = resourceVersion;
+            this.json = json;
+        }
+    }
+
+    private static class PendingWatch {
+        final Operation op;
+        final String endpoint;
+        final long resourceVersion;
+
+        PendingWatch(Operation op, String endpoint, long resourceVersion) {
+            this.op = op;
+            this.endpoint = endpoint;
+            this.resourceVersion = resourceVersion;
+        }
+    }
+
+    private final Map<String, Map<String, JsonObject>> entitiesByEndpoint = new LinkedHashMap<>();
+    private final List<WatchEvent> events = new ArrayList<>();
+    private final List<PendingWatch> pendingWatches = new ArrayList<>();
+    private final Map<String, AtomicInteger> listCounts = new ConcurrentHashMap<>();
+    private long resourceVersion = 1;
+    private long oldestResourceVersion = 1;
+
+    public MockKubernetesWatchHost() {
+        super(ServiceDocument.class);
+        toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+    }
+
+    public synchronized void addEntity(BaseKubernetesObject entity) {
+        JsonObject json = toJson(entity, ++resourceVersion);
+        getEntities(entity.kind).put(entity.metadata.uid, json);
+        addEvent(entity.kind, "ADDED", json);
+    }
+
+    public synchronized void deleteEntity(BaseKubernetesObject entity) {
+        getEntities(entity.kind).remove(entity.metadata.uid);
+        addEvent(entity.kind, "DELETED", toJson(entity, ++resourceVersion));
+    }
+
+    /**
+     * Drops the event history, the watches of older resource versions fail with 410 Gone. When
+     * the pending watches are notified, they receive an error event, otherwise they fail with the
+     * next watch request.
+     */
+    public synchronized void expireResourceVersions(boolean notifyPendingWatches) {
+        events.clear();
+        oldestResourceVersion = ++resourceVersion;
+
+        if (notifyPendingWatches) {
+            JsonObject status = new JsonObject();
+            status.addProperty("kind", "Status");
+            status.addProperty("code", HttpURLConnection.HTTP_GONE);
+            JsonObject error = new JsonObject();
+            error.addProperty("type", "ERROR");
+            error.add("object", status);
+
+            for (PendingWatch watch : pendingWatches) {
+                watch.op.setBody(error.toString()).complete();
+            }
+            pendingWatches.clear();
+        }
+    }
+
+    public int getListCount(String kind) {
+        AtomicInteger count = listCounts.get(KubernetesApiEndpointsUtil.getEntityEndpoint(kind));
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        String path = get.getUri().getPath();
+        String endpoint = path.substring(path.lastIndexOf(UriUtils.URI_PATH_CHAR));
+        Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
+
+        if (Boolean.parseBoolean(params.get(KubernetesRemoteApiClient.WATCH_QUERY))) {
+            long timeoutSeconds = Long.parseLong(
+                    params.get(KubernetesRemoteApiClient.TIMEOUT_SECONDS_QUERY));
+            watch(get, endpoint, Long.parseLong(
+                    params.get(KubernetesRemoteApiClient.RESOURCE_VERSION_QUERY)), timeoutSeconds);
+        } else {
+            list(get, endpoint);
+        }
+    }
+
+    private synchronized void list(Operation get, String endpoint) {
+        listCounts.computeIfAbsent(endpoint, e -> new AtomicInteger()).incrementAndGet();
+
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("resourceVersion", Long.toString(resourceVersion));
+        JsonArray items = new JsonArray();
+        Map<String, JsonObject> entities = entitiesByEndpoint.get(endpoint);
+        if (entities != null) {
+            entities.values().forEach(items::add);
+        }
+
+        JsonObject list = new JsonObject();
+        list.add("metadata", metadata);
+        list.add("items", items);
+        get.setBody(list.toString()).complete();
+    }
+
+    private synchronized void watch(Operation get, String endpoint, long fromVersion,
+            long timeoutSeconds) {
+        if (fromVersion < oldestResourceVersion) {
+            get.fail(HttpURLConnection.HTTP_GONE);
+            return;
+        }
+
+        String body = getEvents(endpoint, fromVersion);
+        if (!body.isEmpty()) {
+            get.setBody(body).complete();
+            return;
+        }
+
+        PendingWatch watch = new PendingWatch(get, endpoint, fromVersion);
+        pendingWatches.add(watch);
+        getHost().schedule(() -> {
+            synchronized (this) {
+                if (pendingWatches.remove(watch)) {
+                    get.setBody("").complete();
+                }
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void addEvent(String kind, String type, JsonObject json) {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", type);
+        event.add("object", json);
+        String endpoint = KubernetesApiEndpointsUtil.getEntityEndpoint(kind);
+        events.add(new WatchEvent(endpoint, resourceVersion, event.toString()));
+
+        for (Iterator<PendingWatch> it = pendingWatches.iterator(); it.hasNext(); ) {
+            PendingWatch watch = it.next();
+            if (watch.endpoint.equals(endpoint)) {
+                it.remove();
+                watch.op.setBody(getEvents(endpoint, watch.resourceVersion)).complete();
+            }
+        }
+    }
+
+    private String getEvents(String endpoint, long fromVersion) {
+        return events.stream()
+                .filter(e -> e.endpoint.equals(endpoint) && e.resourceVersion > fromVersion)
+                .map(e -> e.json)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private Map<String, JsonObject> getEntities(String kind) {
+        return entitiesByEndpoint.computeIfAbsent(
+                KubernetesApiEndpointsUtil.getEntityEndpoint(kind), e -> new LinkedHashMap<>());
+    }
+
+    private static JsonObject toJson(BaseKubernetesObject entity, long resourceVersion) {
+        JsonObject json = Utils.fromJson(Utils.toJson(entity), JsonObject.class);
+        json.getAsJsonObject("metadata").addProperty("resourceVersion",
+                Long.toString(resourceVersion));
+        return json;
+    }
+}
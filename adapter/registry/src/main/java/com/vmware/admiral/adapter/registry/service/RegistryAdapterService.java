@@ -18,6 +18,7 @@ import static com.vmware.admiral.service.common.RegistryService.API_VERSION_PROP
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,7 @@ import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse.Result
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.AuthUtils;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.common.util.DockerImage;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
 import com.vmware.admiral.common.util.ServiceClientFactory;
@@ -45,11 +47,15 @@ import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceClient;
+import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.common.http.netty.NettyHttpServiceClient;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 
 /**
  * Service for fulfilling image tasks backed by a registry server
@@ -92,6 +98,8 @@ public class RegistryAdapterService extends StatelessService {
 
     private ServerX509TrustManager trustManager;
 
+    private final RegistryCache cache = new RegistryCache();
+
     public class RegistryPingResponse {
         public ApiVersion apiVersion;
     }
@@ -101,7 +109,6 @@ public class RegistryAdapterService extends StatelessService {
     }
 
     private static class TokenServiceResponse {
-        @SuppressWarnings("unused")
         String expires_in;
         @SuppressWarnings("unused")
         String issued_at;
@@ -119,6 +126,9 @@ public class RegistryAdapterService extends StatelessService {
         trustManager = ServerX509TrustManager.create(getHost());
         serviceClientNoProxyList = new HashSet<>();
 
+        CommonContinuousQueries.subscribeTo(getHost(), buildContinuousQuery(),
+                this::onRegistryChange);
+
         DeferredResult.allOf(Arrays.asList(getProperty(REGISTRY_PROXY_PARAM_NAME),
                 getProperty(REGISTRY_NO_PROXY_LIST_PARAM_NAME)))
                 .whenComplete((p, ex) -> {
@@ -200,6 +210,9 @@ public class RegistryAdapterService extends StatelessService {
         public ImageRequest request;
         public RegistryAuthState registryState;
         public boolean tokenAlreadyRequested;
+        public boolean cachedTokenUsed;
+        // the authorization header built from the registry credentials
+        public String credentialsAuthorization;
     }
 
     @Override
@@ -233,7 +246,8 @@ public class RegistryAdapterService extends StatelessService {
 
         switch (context.request.getOperationType()) {
         case SEARCH:
-            fetchRegistry(context, () -> processSearchRequest(context));
+            fetchRegistry(context, () -> processCachedRequest(context,
+                    () -> processSearchRequest(context)));
             break;
 
         case PING:
@@ -241,7 +255,8 @@ public class RegistryAdapterService extends StatelessService {
             break;
 
         case LIST_TAGS:
-            fetchRegistry(context, () -> processListImageTagsRequest(context));
+            fetchRegistry(context, () -> processCachedRequest(context,
+                    () -> processListImageTagsRequest(context)));
             break;
 
         default:
@@ -252,7 +267,35 @@ public class RegistryAdapterService extends StatelessService {
 
     }
 
+    /**
+     * Serves the request from the result cache, joins an identical request in flight or sends
+     * the request and caches its result.
+     */
+    private void processCachedRequest(RequestContext context, Runnable callback) {
+        String resultKey = String.format("%s|%s|%s", context.request.getOperationType(),
+                context.request.resourceReference.getPath(),
+                context.request.customProperties.get(SEARCH_QUERY_PROP_NAME));
+        if (cache.joinOrStartResult(resultKey, context.registryState, context.operation)) {
+            return;
+        }
+
+        // the request completes this operation instead and the cache completes the waiters
+        context.operation = Operation.createPatch(getUri())
+                .setCompletion((o, e) -> cache.completeResult(resultKey,
+                        e == null ? o.getBodyRaw() : null, e, o.getStatusCode()));
+        callback.run();
+    }
+
     private void fetchRegistry(RequestContext context, Runnable callback) {
+        String registryLink = context.request.resourceReference.getPath();
+        RegistryAuthState cachedState = cache.getRegistry(registryLink);
+        if (cachedState != null) {
+            context.registryState = cachedState;
+            processAuthentication(context, cachedState.authCredentials);
+            callback.run();
+            return;
+        }
+
         URI registryStateUri = UriUtils.extendUriWithQuery(context.request.resourceReference,
                 UriUtils.URI_PARAM_ODATA_EXPAND, Boolean.TRUE.toString());
 
@@ -270,6 +313,7 @@ public class RegistryAdapterService extends StatelessService {
                         context.registryState.address =
                                 UriUtilsExtended.buildDockerRegistryUri(context.registryState.address).toString();
                     }
+                    cache.putRegistry(registryLink, context.registryState);
 
                     processAuthentication(context, context.registryState.authCredentials);
 
@@ -288,6 +332,13 @@ public class RegistryAdapterService extends StatelessService {
             return;
         }
 
+        AuthCredentialsServiceState cachedState = cache.getCredentials(authCredentialsLink);
+        if (cachedState != null) {
+            processAuthentication(context, cachedState);
+            callback.run();
+            return;
+        }
+
         sendRequest(Operation.createGet(this, authCredentialsLink)
                 .setCompletion((o, e) -> {
                     if (e != null) {
@@ -297,6 +348,7 @@ public class RegistryAdapterService extends StatelessService {
 
                     AuthCredentialsServiceState authCredentialsState = o
                             .getBody(AuthCredentialsServiceState.class);
+                    cache.putCredentials(authCredentialsLink, authCredentialsState);
                     processAuthentication(context, authCredentialsState);
 
                     callback.run();
@@ -310,6 +362,7 @@ public class RegistryAdapterService extends StatelessService {
             if (authorizationHeaderValue != null) {
                 context.request.customProperties.put(AUTHORIZATION_HEADER,
                         authorizationHeaderValue);
+                context.credentialsAuthorization = authorizationHeaderValue;
             }
         }
     }
@@ -415,12 +468,14 @@ public class RegistryAdapterService extends StatelessService {
                                 context.operation.fail(ex);
                                 return;
                             }
+                            removeCachedToken(searchUri, context);
 
                             String wwwAuthHeader = getHeader(WWW_AUTHENTICATE_HEADER,
                                     o.getResponseHeaders());
 
                             if (isBearerTokenChallenge(wwwAuthHeader)) {
                                 requestAuthorizationToken(wwwAuthHeader, context,
+                                        buildTokenKey(searchUri, context),
                                         () -> sendV2SearchRequest(searchUri, searchTerm, response,
                                                 context),
                                         (t) -> context.operation.fail(t));
@@ -464,10 +519,7 @@ public class RegistryAdapterService extends StatelessService {
                     }
                 });
 
-        String authorization = context.request.customProperties.get(AUTHORIZATION_HEADER);
-        if (authorization != null) {
-            search.addRequestHeader(AUTHORIZATION_HEADER, authorization);
-        }
+        addAuthorizationHeader(search, context);
         sendOperationWithClient(search, context);
     }
 
@@ -528,7 +580,7 @@ public class RegistryAdapterService extends StatelessService {
                                     o.getResponseHeaders());
 
                             if (isBearerTokenChallenge(wwwAuthHeader)) {
-                                requestAuthorizationToken(wwwAuthHeader, context,
+                                requestAuthorizationToken(wwwAuthHeader, context, null,
                                         () -> doPing(apiVersion, pingEndpoint, context,
                                                 failureCallback),
                                         failureCallback);
@@ -645,12 +697,14 @@ public class RegistryAdapterService extends StatelessService {
                                     context.operation.fail(ex);
                                     return;
                                 }
+                                removeCachedToken(o.getUri(), context);
 
                                 String wwwAuthHeader = getHeader(WWW_AUTHENTICATE_HEADER,
                                         o.getResponseHeaders());
 
                                 if (isBearerTokenChallenge(wwwAuthHeader)) {
                                     requestAuthorizationToken(wwwAuthHeader, context,
+                                            buildTokenKey(o.getUri(), context),
                                             () -> processV2ListImageTagsRequest(context),
                                             (t) -> context.operation.fail(t));
                                     return;
@@ -667,10 +721,7 @@ public class RegistryAdapterService extends StatelessService {
                         context.operation.complete();
                     });
 
-            String authorization = context.request.customProperties.get(AUTHORIZATION_HEADER);
-            if (authorization != null) {
-                search.addRequestHeader(AUTHORIZATION_HEADER, authorization);
-            }
+            addAuthorizationHeader(search, context);
 
             sendOperationWithClient(search, context);
 
@@ -705,8 +756,12 @@ public class RegistryAdapterService extends StatelessService {
                 .collect(Collectors.toMap(e -> e[0], e -> e[1].substring(1, e[1].length() - 1)));
     }
 
+    /**
+     * Requests a bearer token for the challenge and caches it under the token key, unless the
+     * key is <code>null</code>.
+     */
     private void requestAuthorizationToken(String wwwAuthHeader, RequestContext context,
-            Runnable successCallback, Consumer<Throwable> failureCallback) {
+            String tokenKey, Runnable successCallback, Consumer<Throwable> failureCallback) {
         try {
             Map<String, String> kvs = parseWwwAuthHeader(wwwAuthHeader);
 
@@ -733,6 +788,10 @@ public class RegistryAdapterService extends StatelessService {
                         context.request.customProperties.put(AUTHORIZATION_HEADER,
                                 authorizationHeaderValue);
                         context.tokenAlreadyRequested = true;
+                        if (tokenKey != null) {
+                            cache.putToken(tokenKey, authorizationHeaderValue,
+                                    tokenServiceResponse.expires_in);
+                        }
 
                         successCallback.run();
                     });
@@ -751,6 +810,64 @@ public class RegistryAdapterService extends StatelessService {
         }
     }
 
+    /**
+     * Adds the authorization header of the request to the operation. A bearer token cached for
+     * the same registry resource and credentials is used in place of the credentials, so the
+     * token challenge is skipped.
+     */
+    private void addAuthorizationHeader(Operation op, RequestContext context) {
+        String authorization = context.request.customProperties.get(AUTHORIZATION_HEADER);
+        if (!context.tokenAlreadyRequested) {
+            String token = cache.getToken(buildTokenKey(op.getUri(), context));
+            if (token != null) {
+                authorization = token;
+                context.cachedTokenUsed = true;
+            }
+        }
+        if (authorization != null) {
+            op.addRequestHeader(AUTHORIZATION_HEADER, authorization);
+        }
+    }
+
+    private void removeCachedToken(URI uri, RequestContext context) {
+        if (context.cachedTokenUsed) {
+            // revoked before its expiration, go through the challenge again
+            cache.removeToken(buildTokenKey(uri, context));
+            context.cachedTokenUsed = false;
+        }
+    }
+
+    /**
+     * The token scope is determined by the requested resource, so the tokens are cached per
+     * registry resource path and credentials.
+     */
+    private static String buildTokenKey(URI uri, RequestContext context) {
+        return String.format("%s://%s%s|%s", uri.getScheme(), uri.getAuthority(), uri.getPath(),
+                context.credentialsAuthorization);
+    }
+
+    private QueryTask buildContinuousQuery() {
+        Query query = Query.Builder.create()
+                .addInClause(ServiceDocument.FIELD_NAME_KIND, Arrays.asList(
+                        Utils.buildKind(RegistryState.class),
+                        Utils.buildKind(AuthCredentialsServiceState.class)))
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS))
+                .setQuery(query).build();
+        task.documentSelfLink = CommonContinuousQueries.createTaskSelfLink("registry-adapter");
+        return task;
+    }
+
+    private void onRegistryChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documentLinks == null) {
+            return;
+        }
+        queryTask.results.documentLinks.forEach(cache::invalidate);
+    }
+
     private void sendOperationWithClient(Operation op, RequestContext context) {
         String registryAddress = getRegistryHostAddress(context);
         if (serviceClientProxy == null ||
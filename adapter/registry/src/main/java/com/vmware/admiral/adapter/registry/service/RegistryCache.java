@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.registry.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.admiral.service.common.RegistryService.RegistryAuthState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+
+/**
+ * Caches of the registry adapter:
+ * <ul>
+ * <li>registry states and credentials, kept for a short time and dropped as soon as the
+ * document changes</li>
+ * <li>bearer tokens, kept until shortly before the <code>expires_in</code> returned by the token
+ * service</li>
+ * <li>search and list tags results. Concurrent identical requests are coalesced into a single
+ * request to the registry.</li>
+ * </ul>
+ */
+class RegistryCache {
+
+    private static final long STATE_TTL_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.adapter.registry.cache.state.ttl.seconds", 30));
+    private static final long RESULT_TTL_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.adapter.registry.cache.result.ttl.seconds", 30));
+    private static final int MAX_RESULTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.registry.cache.result.max.size", 1000);
+    private static final int MAX_TOKENS = Integer.getInteger(
+            "com.vmware.admiral.adapter.registry.cache.token.max.size", 1000);
+    private static final int MAX_STATES = Integer.getInteger(
+            "com.vmware.admiral.adapter.registry.cache.state.max.size", 1000);
+
+    // tokens are refreshed a bit before they expire to cover the clock skew and the latency
+    private static final long TOKEN_EXPIRATION_MARGIN_SECONDS = 10;
+    // default token lifetime according to the docker registry token specification
+    private static final long DEFAULT_TOKEN_EXPIRES_IN_SECONDS = 60;
+
+    private final Map<String, CachedValue<RegistryAuthState>> registries =
+            new LruMap<>(MAX_STATES);
+    private final Map<String, CachedValue<AuthCredentialsServiceState>> credentials =
+            new LruMap<>(MAX_STATES);
+    private final Map<String, CachedValue<String>> tokens = new LruMap<>(MAX_TOKENS);
+    private final Map<String, ResultEntry> results = new LruMap<>(MAX_RESULTS);
+    // requests in flight are kept apart from the results, so that they are never evicted and
+    // their waiters always get completed
+    private final Map<String, ResultEntry> pendingResults = new HashMap<>();
+
+    private static class CachedValue<T> {
+        final T value;
+        final long expirationMicros;
+
+        CachedValue(T value, long expirationMicros) {
+            this.value = value;
+            this.expirationMicros = expirationMicros;
+        }
+
+        boolean isValid() {
+            return expirationMicros > Utils.getSystemNowMicrosUtc();
+        }
+    }
+
+    private static class ResultEntry {
+        final String registryLink;
+        final String credentialsLink;
+        Object result;
+        long expirationMicros;
+        List<Operation> waiters = new ArrayList<>();
+        // set when the registry changes while the request to it is in flight
+        boolean stale;
+
+        ResultEntry(String registryLink, String credentialsLink) {
+            this.registryLink = registryLink;
+            this.credentialsLink = credentialsLink;
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    synchronized RegistryAuthState getRegistry(String registryLink) {
+        return getValid(registries, registryLink);
+    }
+
+    synchronized void putRegistry(String registryLink, RegistryAuthState registryState) {
+        registries.put(registryLink, new CachedValue<>(registryState,
+                Utils.fromNowMicrosUtc(STATE_TTL_MICROS)));
+    }
+
+    synchronized AuthCredentialsServiceState getCredentials(String credentialsLink) {
+        return getValid(credentials, credentialsLink);
+    }
+
+    synchronized void putCredentials(String credentialsLink,
+            AuthCredentialsServiceState credentialsState) {
+        credentials.put(credentialsLink, new CachedValue<>(credentialsState,
+                Utils.fromNowMicrosUtc(STATE_TTL_MICROS)));
+    }
+
+    /**
+     * Returns the cached authorization header value with a bearer token or <code>null</code>.
+     */
+    synchronized String getToken(String tokenKey) {
+        return getValid(tokens, tokenKey);
+    }
+
+    /**
+     * Caches the authorization header value with a bearer token for the time reported by the
+     * token service. <code>expiresIn</code> is the value of the <code>expires_in</code> field of
+     * the token response and may be <code>null</code>.
+     */
+    synchronized void putToken(String tokenKey, String authorization, String expiresIn) {
+        long expiresInSeconds = DEFAULT_TOKEN_EXPIRES_IN_SECONDS;
+        if (expiresIn != null) {
+            try {
+                expiresInSeconds = Long.parseLong(expiresIn.trim());
+            } catch (NumberFormatException e) {
+                // keep the default
+            }
+        }
+        long ttlSeconds = expiresInSeconds - TOKEN_EXPIRATION_MARGIN_SECONDS;
+        if (ttlSeconds <= 0) {
+            return;
+        }
+        tokens.put(tokenKey, new CachedValue<>(authorization,
+                Utils.fromNowMicrosUtc(TimeUnit.SECONDS.toMicros(ttlSeconds))));
+    }
+
+    synchronized void removeToken(String tokenKey) {
+        tokens.remove(tokenKey);
+    }
+
+    /**
+     * Completes the operation with the cached result or adds it to the waiters of the request in
+     * flight for the same key and returns <code>true</code>. Otherwise registers the operation as
+     * the first waiter of a new request, which the caller must send and complete with
+     * {@link #completeResult(String, Object, Throwable, int)}, and returns <code>false</code>.
+     */
+    boolean joinOrStartResult(String resultKey, RegistryAuthState registryState,
+            Operation op) {
+        Object result;
+        synchronized (this) {
+            ResultEntry pending = pendingResults.get(resultKey);
+            if (pending != null) {
+                pending.waiters.add(op);
+                return true;
+            }
+            ResultEntry entry = results.get(resultKey);
+            if (entry != null && entry.expirationMicros > Utils.getSystemNowMicrosUtc()) {
+                result = entry.result;
+            } else {
+                results.remove(resultKey);
+                entry = new ResultEntry(registryState.documentSelfLink,
+                        registryState.authCredentialsLink);
+                entry.waiters.add(op);
+                pendingResults.put(resultKey, entry);
+                return false;
+            }
+        }
+        op.setBodyNoCloning(Utils.clone(result)).complete();
+        return true;
+    }
+
+    /**
+     * Completes the waiters of the request for the given key. Successful results are cached
+     * unless the registry changed in the meantime.
+     */
+    void completeResult(String resultKey, Object result, Throwable failure, int statusCode) {
+        List<Operation> waiters;
+        synchronized (this) {
+            ResultEntry entry = pendingResults.remove(resultKey);
+            if (entry == null) {
+                return;
+            }
+            waiters = entry.waiters;
+            entry.waiters = null;
+            if (failure == null && result != null && !entry.stale) {
+                entry.result = result;
+                entry.expirationMicros = Utils.fromNowMicrosUtc(RESULT_TTL_MICROS);
+                results.put(resultKey, entry);
+            }
+        }
+
+        for (Operation waiter : waiters) {
+            if (failure != null) {
+                waiter.setStatusCode(statusCode);
+                waiter.fail(failure);
+            } else {
+                waiter.setBodyNoCloning(Utils.clone(result)).complete();
+            }
+        }
+    }
+
+    /**
+     * Drops everything cached for the document with the given link, which is either a registry
+     * or the credentials of a registry.
+     */
+    synchronized void invalidate(String documentLink) {
+        registries.remove(documentLink);
+        credentials.remove(documentLink);
+        registries.values().removeIf(r -> documentLink.equals(r.value.authCredentialsLink));
+
+        results.values().removeIf(e -> isResultOf(e, documentLink));
+        for (ResultEntry pending : pendingResults.values()) {
+            if (isResultOf(pending, documentLink)) {
+                pending.stale = true;
+            }
+        }
+    }
+
+    private static boolean isResultOf(ResultEntry entry, String documentLink) {
+        return documentLink.equals(entry.registryLink)
+                || documentLink.equals(entry.credentialsLink);
+    }
+
+    private static <T> T getValid(Map<String, CachedValue<T>> cache, String key) {
+        CachedValue<T> cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (!cached.isValid()) {
+            cache.remove(key);
+            return null;
+        }
+        return cached.value;
+    }
+}
@@ -14,6 +14,8 @@ package com.vmware.admiral.adapter.registry.mock;
 import static com.vmware.admiral.adapter.registry.mock.MockRegistryPathConstants.V2_CATALOG_PATH;
 import static com.vmware.admiral.adapter.registry.mock.MockRegistryPathConstants.V2_SEARCH_PATH;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.StatelessService;
 
@@ -29,6 +31,9 @@ public class MockV2RegistrySearchService extends StatelessService {
     private static final String LINK_HEADER_VALUE =
             String.format("<%s>; rel=\"next\"", SECOND_PAGE_PATH);
 
+    // number of the searches received, counted on their first page
+    private static final AtomicInteger searchCount = new AtomicInteger();
+
     static class V2CatalogResponse {
         String[] repositories;
     }
@@ -53,6 +58,7 @@ public class MockV2RegistrySearchService extends StatelessService {
                 break;
             }
         } else {
+            searchCount.incrementAndGet();
             response.repositories = new String[0];
             get.getResponseHeaders().put("Link", LINK_HEADER_VALUE);
         }
@@ -60,4 +66,12 @@ public class MockV2RegistrySearchService extends StatelessService {
         get.setBody(response);
         get.complete();
     }
+
+    public static int getSearchCount() {
+        return searchCount.get();
+    }
+
+    public static void resetSearchCount() {
+        searchCount.set(0);
+    }
 }
@@ -20,8 +20,10 @@ import static org.junit.Assert.fail;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.junit.Before;
@@ -31,6 +33,7 @@ import com.vmware.admiral.adapter.common.ImageOperationType;
 import com.vmware.admiral.adapter.common.service.mock.MockTaskFactoryService;
 import com.vmware.admiral.adapter.common.service.mock.MockTaskService.MockTaskState;
 import com.vmware.admiral.adapter.registry.mock.BaseMockRegistryTestCase;
+import com.vmware.admiral.adapter.registry.mock.MockV2RegistrySearchService;
 import com.vmware.admiral.adapter.registry.service.RegistryAdapterService.RegistryPingResponse;
 import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse.Result;
 import com.vmware.admiral.common.test.CommonTestStateFactory;
@@ -44,6 +47,7 @@ import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.admiral.service.common.SslTrustCertificateService;
 import com.vmware.admiral.service.common.SslTrustCertificateService.SslTrustCertificateState;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.CompletionHandler;
 import com.vmware.xenon.common.UriUtils;
 
 /**
@@ -242,6 +246,61 @@ public class RegistryAdapterServiceTest extends BaseMockRegistryTestCase {
         });
     }
 
+    @Test
+    public void testSearchResultsAreCachedUntilRegistryChanges() throws Throwable {
+        URI v2RegistryStateUri = UriUtils.buildUri(host, v2RegistryStateLink);
+        MockV2RegistrySearchService.resetSearchCount();
+
+        // identical concurrent searches are served by a single request to the registry
+        List<RegistrySearchResponse> responses = Collections.synchronizedList(new ArrayList<>());
+        host.testStart(3);
+        for (int i = 0; i < 3; i++) {
+            host.send(createSearchOperation(v2RegistryStateUri, "v2image", (o, ex) -> {
+                if (ex != null) {
+                    host.failIteration(ex);
+                    return;
+                }
+                responses.add(o.getBody(RegistrySearchResponse.class));
+                host.completeIteration();
+            }));
+        }
+        host.testWait();
+        for (RegistrySearchResponse response : responses) {
+            assertEquals("Unexpected number of results", 2, response.results.size());
+        }
+        assertEquals(1, MockV2RegistrySearchService.getSearchCount());
+
+        // a following search is served from the cache
+        host.testStart(1);
+        host.send(createSearchOperation(v2RegistryStateUri, "v2image", (o, ex) -> {
+            if (ex != null) {
+                host.failIteration(ex);
+                return;
+            }
+            host.completeIteration();
+        }));
+        host.testWait();
+        assertEquals(1, MockV2RegistrySearchService.getSearchCount());
+
+        RegistryState registryState = new RegistryState();
+        registryState.customProperties = new HashMap<>();
+        registryState.customProperties.put(RegistryService.API_VERSION_PROP_NAME, "V99");
+        doPatch(registryState, v2RegistryStateLink);
+
+        // the change of the registry drops its cached state and results
+        waitFor(() -> {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            host.testStart(1);
+            host.send(createSearchOperation(v2RegistryStateUri, "v2image", (o, ex) -> {
+                failure.set(ex);
+                host.completeIteration();
+            }));
+            host.testWait();
+            return failure.get() != null
+                    && failure.get().getMessage().contains("Unsupported registry version");
+        });
+    }
+
     @Test
     public void testUnsupportedRegistryVersion() throws Throwable {
 
@@ -512,6 +571,21 @@ public class RegistryAdapterServiceTest extends BaseMockRegistryTestCase {
         host.testWait();
     }
 
+    private Operation createSearchOperation(URI registryStateLink, String searchTerm,
+            CompletionHandler completion) {
+        ImageRequest request = new ImageRequest();
+        request.operationTypeId = ImageOperationType.SEARCH.id;
+        request.serviceTaskCallback = ServiceTaskCallback.create(provisioningTaskLink);
+        request.resourceReference = registryStateLink;
+        request.customProperties = new HashMap<>();
+        request.customProperties.put(RegistryAdapterService.SEARCH_QUERY_PROP_NAME, searchTerm);
+
+        return Operation.createPatch(registryAdapterServiceUri)
+                .setReferer(URI.create("/"))
+                .setBody(request)
+                .setCompletion(completion);
+    }
+
     private SslTrustCertificateState createSslTrustCert(String commonName) throws Throwable {
         SslTrustCertificateState sslTrustCert = new SslTrustCertificateState();
         String sslTrust1 = CommonTestStateFactory.getFileContent("test_ssl_trust.PEM").trim();
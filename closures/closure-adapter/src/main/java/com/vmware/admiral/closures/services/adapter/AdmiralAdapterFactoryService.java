@@ -11,9 +11,19 @@
 
 package com.vmware.admiral.closures.services.adapter;
 
+import java.util.EnumSet;
+
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.service.common.AbstractSecuredFactoryService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 
 public class AdmiralAdapterFactoryService extends AbstractSecuredFactoryService {
 
@@ -24,10 +34,52 @@ public class AdmiralAdapterFactoryService extends AbstractSecuredFactoryService
         super.toggleOption(ServiceOption.PERSISTENCE, true);
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+    }
+
+    @Override
+    public void handleStart(Operation startPost) {
+        super.handleStart(startPost);
+        CommonContinuousQueries.subscribeTo(getHost(), buildComputeContinuousQuery(),
+                this::onComputeChange);
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        ClosureRunnerPool runnerPool = ClosureRunnerPool.getInstance();
+        runnerPool.evictExpired();
+        runnerPool.getStats().forEach(this::setStat);
+        super.handlePeriodicMaintenance(post);
     }
 
     @Override
     public Service createServiceInstance() throws Throwable {
         return new AdmiralAdapterService();
     }
-}
\ No newline at end of file
+
+    private QueryTask buildComputeContinuousQuery() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                .setQuery(query).build();
+        task.documentSelfLink = CommonContinuousQueries.createTaskSelfLink(
+                "closure-runner-pool");
+        return task;
+    }
+
+    private void onComputeChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object document : queryTask.results.documents.values()) {
+            ComputeState compute = Utils.fromJson(document, ComputeState.class);
+            boolean removed = Action.DELETE.name().equals(compute.documentUpdateAction)
+                    || ServiceDocument.isDeleted(compute);
+            ClosureRunnerPool.getInstance().onComputeChange(compute, removed);
+        }
+    }
+}
@@ -71,6 +71,7 @@ import com.vmware.admiral.common.util.OperationUtil;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceUtils;
+import com.vmware.admiral.common.util.SubscriptionUtils;
 import com.vmware.admiral.compute.ResourceType;
 import com.vmware.admiral.compute.container.ContainerDescriptionService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
@@ -240,11 +241,30 @@ public class AdmiralAdapterService extends
 
     private void handlePlacementSelected(AdmiralAdapterTaskState state) {
         if (cachedContainerDescription == null) {
-            fetchContainerDescription(state, (contDesc) -> selectComputeStates(state, contDesc));
+            fetchContainerDescription(state, (contDesc) -> leaseOrSelectComputeStates(state,
+                    contDesc));
             return;
         }
 
-        selectComputeStates(state, cachedContainerDescription);
+        leaseOrSelectComputeStates(state, cachedContainerDescription);
+    }
+
+    private void leaseOrSelectComputeStates(AdmiralAdapterTaskState state,
+            ContainerDescription contDesc) {
+        if (state.hostSelections == null) {
+            String computeLink = ClosureRunnerPool.getInstance().lease(contDesc.image,
+                    state.placementZoneLink);
+            if (computeLink != null) {
+                // the image is known to be ready there, go straight to allocation
+                logInfo("Leased warm runner target %s for image: %s", computeLink,
+                        contDesc.image);
+                state.selectedComputeLink = computeLink;
+                proceedWithProvidedPolicy(contDesc, state);
+                return;
+            }
+        }
+
+        selectComputeStates(state, contDesc);
     }
 
     private void selectComputeStates(AdmiralAdapterTaskState state, ContainerDescription contDesc) {
@@ -686,6 +706,11 @@ public class AdmiralAdapterService extends
         if (TaskState.isFinished(imageRequest.taskInfo)) {
             // Image has been already built, proceed with container allocation
             logInfo("Image: %s is ready. Allocating docker container...", containerDesc.image);
+            if (!mustSetTaskUri(state)) {
+                // images built for a single closure are not worth keeping warm
+                ClosureRunnerPool.getInstance().offer(containerDesc.image,
+                        state.placementZoneLink, state.selectedComputeLink);
+            }
             proceedWithProvidedPolicy(containerDesc, state);
             String dockerBuildImageLink = createImageBuildRequestUri(containerDesc.image,
                     state.selectedComputeLink);
@@ -733,11 +758,12 @@ public class AdmiralAdapterService extends
         // Allocate container
         try {
             logInfo("Initiating container provisioning for closure: %s", containerDesc.env[0]);
-            startAllocationTask(allocationTask);
+            startAllocationTask(allocationTask, containerDesc.image, state.placementZoneLink);
 
             updateClosureContainerDescription(containerDesc);
 
-            proceedTo(AdmiralAdapterTaskState.SubStage.COMPLETED);
+            proceedTo(AdmiralAdapterTaskState.SubStage.COMPLETED,
+                    (s) -> s.selectedComputeLink = state.selectedComputeLink);
         } catch (Throwable ex) {
             logWarning("Unable to initiate provisioning closure: %s. Error: %s",
                     containerDesc.env[0], Utils.toString(ex));
@@ -762,7 +788,9 @@ public class AdmiralAdapterService extends
                 }));
     }
 
-    private void startAllocationTask(ContainerAllocationTaskState allocationTask) {
+    private void startAllocationTask(ContainerAllocationTaskState allocationTask, String image,
+            String placementZoneLink) {
+        String computeLink = allocationTask.hostSelections.get(0).hostLink;
         URI uri = UriUtils.buildUri(getHost(), ContainerAllocationTaskFactoryService.SELF_LINK);
         sendRequest(OperationUtil.createForcedPost(uri)
                 .setBody(allocationTask)
@@ -770,13 +798,49 @@ public class AdmiralAdapterService extends
                     if (e != null) {
                         logSevere("Exception while submitting allocation closure: %s",
                                 Utils.toString(e));
+                        ClosureRunnerPool.getInstance().retire(image, placementZoneLink,
+                                computeLink);
                         return;
                     }
 
                     logInfo("Allocation closure submitted successfully");
+                    String taskLink = o.getBody(ContainerAllocationTaskState.class)
+                            .documentSelfLink;
+                    subscribeToAllocationTask(taskLink, image, placementZoneLink, computeLink);
                 }));
     }
 
+    /**
+     * Retires the runner target of an allocation which fails, the image or the host may not be
+     * usable anymore.
+     */
+    private void subscribeToAllocationTask(String taskLink, String image,
+            String placementZoneLink, String computeLink) {
+        Consumer<Operation> notificationTarget = (op) -> {
+            if (!op.hasBody() || !Action.PATCH.equals(op.getAction())) {
+                op.complete();
+                return;
+            }
+
+            ContainerAllocationTaskState allocationState = op.getBody(
+                    ContainerAllocationTaskState.class);
+            op.complete();
+            if (TaskState.isFailed(allocationState.taskInfo)
+                    || TaskState.isCancelled(allocationState.taskInfo)) {
+                logWarning("Allocation on %s failed, retiring the runner target", computeLink);
+                ClosureRunnerPool.getInstance().retire(image, placementZoneLink, computeLink);
+                SubscriptionUtils.unsubscribeNotifications(getHost(), taskLink, op.getUri());
+            } else if (TaskState.isFinished(allocationState.taskInfo)) {
+                SubscriptionUtils.unsubscribeNotifications(getHost(), taskLink, op.getUri());
+            }
+        };
+
+        SubscriptionUtils.subscribeToNotifications(getHost(), notificationTarget,
+                e -> logWarning("Unable to subscribe to allocation task %s: %s", taskLink,
+                        Utils.toString(e)),
+                taskLink);
+    }
+
     private ContainerAllocationTaskState prepareContainerAllocationTask(
             ContainerDescription containerDesc,
             long resourceCount, String placemenStateLink) {
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.services.adapter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ComputeService.PowerState;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Pool of warm closure runner targets: docker hosts of a placement zone on which the runtime
+ * image of a closure is known to be ready. Closures leased from the pool go straight to
+ * container allocation and skip compute selection and the image checks.
+ *
+ * The pool of an image and placement zone serves leases only once it holds
+ * {@link #MIN_TARGETS} targets. Until then closures go through the full provisioning, which
+ * spreads them over the hosts of the zone and offers the selected hosts to the pool.
+ *
+ * A target is retired after {@link #MAX_USES} leases, once it is older than
+ * {@link #MAX_AGE_MICROS}, when an allocation on it fails and when its compute is removed,
+ * powered off or moved to another placement zone. The max age is kept well below the
+ * expiration of the built images.
+ */
+public class ClosureRunnerPool {
+
+    public static final String STAT_NAME_HITS = "runnerPoolHits";
+    public static final String STAT_NAME_MISSES = "runnerPoolMisses";
+    public static final String STAT_NAME_RETIRED = "runnerPoolRetired";
+    public static final String STAT_NAME_EVICTED = "runnerPoolEvicted";
+    public static final String STAT_NAME_TARGETS = "runnerPoolTargets";
+
+    private static final int MAX_USES = Integer.getInteger(
+            "closure.service.runner-pool.max-uses", 50);
+    private static final int MIN_TARGETS = Integer.getInteger(
+            "closure.service.runner-pool.min-targets", 3);
+    private static final int MAX_TARGETS_PER_POOL = Integer.getInteger(
+            "closure.service.runner-pool.max-targets", 10);
+    private static final int MAX_POOLS = Integer.getInteger(
+            "closure.service.runner-pool.max-pools", 100);
+    private static final long MAX_AGE_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "closure.service.runner-pool.max-age-seconds", 10 * 60L));
+    private static final long IDLE_TIMEOUT_MICROS = TimeUnit.SECONDS.toMicros(Long.getLong(
+            "closure.service.runner-pool.idle-timeout-seconds", 5 * 60L));
+
+    private static final ClosureRunnerPool INSTANCE = new ClosureRunnerPool(MIN_TARGETS,
+            MAX_TARGETS_PER_POOL, MAX_POOLS, MAX_USES, MAX_AGE_MICROS, IDLE_TIMEOUT_MICROS);
+
+    private final int minTargets;
+    private final int maxTargets;
+    private final int maxPools;
+    private final int maxUses;
+    private final long maxAgeMicros;
+    private final long idleTimeoutMicros;
+
+    private final ConcurrentMap<String, List<RunnerTarget>> pools = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    private static class RunnerTarget {
+        final String computeLink;
+        final String placementZoneLink;
+        final long createdMicros;
+        int uses;
+        long lastUsedMicros;
+
+        RunnerTarget(String computeLink, String placementZoneLink, long nowMicros) {
+            this.computeLink = computeLink;
+            this.placementZoneLink = placementZoneLink;
+            this.createdMicros = nowMicros;
+            this.lastUsedMicros = nowMicros;
+        }
+    }
+
+    ClosureRunnerPool(int minTargets, int maxTargets, int maxPools, int maxUses,
+            long maxAgeMicros, long idleTimeoutMicros) {
+        this.minTargets = Math.min(minTargets, maxTargets);
+        this.maxTargets = maxTargets;
+        this.maxPools = maxPools;
+        this.maxUses = maxUses;
+        this.maxAgeMicros = maxAgeMicros;
+        this.idleTimeoutMicros = idleTimeoutMicros;
+    }
+
+    public static ClosureRunnerPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Leases the least used warm target for the image in the placement zone. Returns the link
+     * of its compute state or <code>null</code> if the pool doesn't hold enough targets yet.
+     */
+    public String lease(String image, String placementZoneLink) {
+        List<RunnerTarget> targets = pools.get(buildKey(image, placementZoneLink));
+        if (targets != null) {
+            synchronized (targets) {
+                long now = Utils.getSystemNowMicrosUtc();
+                removeExpired(targets, now);
+
+                if (targets.size() >= minTargets) {
+                    RunnerTarget selected = null;
+                    for (RunnerTarget target : targets) {
+                        if (selected == null || target.uses < selected.uses) {
+                            selected = target;
+                        }
+                    }
+                    selected.uses++;
+                    selected.lastUsedMicros = now;
+                    if (selected.uses >= maxUses) {
+                        targets.remove(selected);
+                        retired.incrementAndGet();
+                    }
+                    hits.incrementAndGet();
+                    return selected.computeLink;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Offers a target on which the image has just been verified to be ready.
+     */
+    public void offer(String image, String placementZoneLink, String computeLink) {
+        if (image == null || placementZoneLink == null || computeLink == null) {
+            return;
+        }
+        String key = buildKey(image, placementZoneLink);
+        if (!pools.containsKey(key) && pools.size() >= maxPools) {
+            evictExpired();
+            if (pools.size() >= maxPools) {
+                return;
+            }
+        }
+        // the target is added within the mapping function, so that the eviction of the pool
+        // can't drop it
+        pools.compute(key, (k, targets) -> {
+            if (targets == null) {
+                targets = new ArrayList<>();
+            }
+            synchronized (targets) {
+                for (RunnerTarget target : targets) {
+                    if (target.computeLink.equals(computeLink)) {
+                        return targets;
+                    }
+                }
+                if (targets.size() < maxTargets) {
+                    targets.add(new RunnerTarget(computeLink, placementZoneLink,
+                            Utils.getSystemNowMicrosUtc()));
+                }
+                return targets;
+            }
+        });
+    }
+
+    /**
+     * Removes a target which failed to provision a runner.
+     */
+    public void retire(String image, String placementZoneLink, String computeLink) {
+        List<RunnerTarget> targets = pools.get(buildKey(image, placementZoneLink));
+        if (targets == null) {
+            return;
+        }
+        synchronized (targets) {
+            if (targets.removeIf(t -> t.computeLink.equals(computeLink))) {
+                retired.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the targets of a compute which the compute selection wouldn't choose anymore: a
+     * removed or not powered on compute, or one moved to another placement zone.
+     */
+    public void onComputeChange(ComputeState compute, boolean removed) {
+        boolean usable = !removed && compute.powerState == PowerState.ON;
+        for (List<RunnerTarget> targets : pools.values()) {
+            synchronized (targets) {
+                int size = targets.size();
+                targets.removeIf(t -> t.computeLink.equals(compute.documentSelfLink)
+                        && (!usable || !Objects.equals(t.placementZoneLink,
+                                compute.resourcePoolLink)));
+                retired.addAndGet(size - targets.size());
+            }
+        }
+    }
+
+    /**
+     * Drops the expired targets and the pools left without targets.
+     */
+    public void evictExpired() {
+        long now = Utils.getSystemNowMicrosUtc();
+        for (String key : pools.keySet()) {
+            pools.computeIfPresent(key, (k, targets) -> {
+                synchronized (targets) {
+                    removeExpired(targets, now);
+                    return targets.isEmpty() ? null : targets;
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the pool counters, keyed by stat name.
+     */
+    public Map<String, Double> getStats() {
+        long targets = 0;
+        for (List<RunnerTarget> list : pools.values()) {
+            synchronized (list) {
+                targets += list.size();
+            }
+        }
+        Map<String, Double> stats = new HashMap<>();
+        stats.put(STAT_NAME_HITS, (double) hits.get());
+        stats.put(STAT_NAME_MISSES, (double) misses.get());
+        stats.put(STAT_NAME_RETIRED, (double) retired.get());
+        stats.put(STAT_NAME_EVICTED, (double) evicted.get());
+        stats.put(STAT_NAME_TARGETS, (double) targets);
+        return stats;
+    }
+
+    private void removeExpired(List<RunnerTarget> targets, long nowMicros) {
+        int size = targets.size();
+        targets.removeIf(t -> nowMicros - t.createdMicros > maxAgeMicros
+                || nowMicros - t.lastUsedMicros > idleTimeoutMicros);
+        evicted.addAndGet(size - targets.size());
+    }
+
+    private static String buildKey(String image, String placementZoneLink) {
+        return image + "|" + placementZoneLink;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.services.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ComputeService.PowerState;
+
+public class ClosureRunnerPoolTest {
+
+    private static final String IMAGE = "vmware/photon-closure-runner_nodejs_4";
+    private static final String ZONE = "/resources/pools/zone-1";
+    private static final long HOUR_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    @Test
+    public void testLeaseMissesUntilPoolIsFilled() {
+        ClosureRunnerPool pool = new ClosureRunnerPool(2, 10, 10, 100, HOUR_MICROS,
+                HOUR_MICROS);
+
+        assertNull(pool.lease(IMAGE, ZONE));
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        // a single target is not enough, the full selection keeps spreading the closures
+        assertNull(pool.lease(IMAGE, ZONE));
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        assertNull(pool.lease(IMAGE, ZONE));
+
+        pool.offer(IMAGE, ZONE, "/hosts/2");
+        Set<String> leased = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            leased.add(pool.lease(IMAGE, ZONE));
+        }
+        // the least used target is leased
+        assertEquals(2, leased.size());
+        assertTrue(leased.contains("/hosts/1"));
+        assertTrue(leased.contains("/hosts/2"));
+
+        assertNull(pool.lease(IMAGE, "/resources/pools/zone-2"));
+        assertEquals(4.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_HITS), 0);
+        assertEquals(4.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_MISSES), 0);
+    }
+
+    @Test
+    public void testTargetRetiredAfterMaxUses() {
+        ClosureRunnerPool pool = new ClosureRunnerPool(1, 10, 10, 2, HOUR_MICROS,
+                HOUR_MICROS);
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+
+        assertEquals("/hosts/1", pool.lease(IMAGE, ZONE));
+        assertEquals("/hosts/1", pool.lease(IMAGE, ZONE));
+        assertNull(pool.lease(IMAGE, ZONE));
+        assertEquals(1.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_RETIRED), 0);
+    }
+
+    @Test
+    public void testRetireFailedTarget() {
+        ClosureRunnerPool pool = new ClosureRunnerPool(1, 10, 10, 100, HOUR_MICROS,
+                HOUR_MICROS);
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        pool.retire(IMAGE, ZONE, "/hosts/1");
+
+        assertNull(pool.lease(IMAGE, ZONE));
+        assertEquals(0.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_TARGETS), 0);
+    }
+
+    @Test
+    public void testComputeChangeRetiresUnusableTargets() {
+        ClosureRunnerPool pool = new ClosureRunnerPool(1, 10, 10, 100, HOUR_MICROS,
+                HOUR_MICROS);
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        pool.offer(IMAGE, ZONE, "/hosts/2");
+        pool.offer(IMAGE, ZONE, "/hosts/3");
+        pool.offer("other-image", ZONE, "/hosts/1");
+
+        // a powered on host in the same zone is kept
+        pool.onComputeChange(compute("/hosts/1", PowerState.ON, ZONE), false);
+        assertEquals(4.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_TARGETS), 0);
+
+        pool.onComputeChange(compute("/hosts/1", PowerState.OFF, ZONE), false);
+        pool.onComputeChange(compute("/hosts/2", PowerState.ON, "/resources/pools/other"),
+                false);
+        pool.onComputeChange(compute("/hosts/3", PowerState.ON, ZONE), true);
+
+        assertEquals(0.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_TARGETS), 0);
+        assertEquals(4.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_RETIRED), 0);
+    }
+
+    @Test
+    public void testExpiredTargetsAreEvicted() throws Throwable {
+        ClosureRunnerPool pool = new ClosureRunnerPool(1, 10, 10, 100, HOUR_MICROS,
+                TimeUnit.MILLISECONDS.toMicros(500));
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        Thread.sleep(1000);
+
+        assertNull(pool.lease(IMAGE, ZONE));
+        pool.evictExpired();
+        assertEquals(1.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_EVICTED), 0);
+
+        // the target can be offered again after the pool is dropped
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        assertNotNull(pool.lease(IMAGE, ZONE));
+    }
+
+    @Test
+    public void testPoolAndTargetLimits() {
+        ClosureRunnerPool pool = new ClosureRunnerPool(1, 2, 1, 100, HOUR_MICROS, HOUR_MICROS);
+        pool.offer(IMAGE, ZONE, "/hosts/1");
+        pool.offer(IMAGE, ZONE, "/hosts/2");
+        pool.offer(IMAGE, ZONE, "/hosts/3");
+        pool.offer("other-image", ZONE, "/hosts/1");
+
+        assertEquals(2.0, pool.getStats().get(ClosureRunnerPool.STAT_NAME_TARGETS), 0);
+        assertNull(pool.lease("other-image", ZONE));
+    }
+
+    private static ComputeState compute(String link, PowerState powerState,
+            String resourcePoolLink) {
+        ComputeState compute = new ComputeState();
+        compute.documentSelfLink = link;
+        compute.powerState = powerState;
+        compute.resourcePoolLink = resourcePoolLink;
+        return compute;
+    }
+}
@@ -11,18 +11,23 @@
 
 package com.vmware.admiral.closures.drivers.nashorn;
 
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import javax.script.Bindings;
-import javax.script.Invocable;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -40,14 +45,51 @@ import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.Utils;
 
 /**
- * Execution driver which uses 'Nashorn' implementation
+ * Execution driver which uses 'Nashorn' implementation.
+ *
+ * Script engines are kept warm in a bounded pool and every engine caches the scripts it has
+ * compiled, keyed by source. Each execution runs in a new global scope of the engine, so
+ * closures do not see each other's variables.
  */
 public class EmbeddedNashornJSDriver extends LocalDriverBase {
 
+    private static final int ENGINE_POOL_SIZE = Integer.getInteger(
+            "closure.service.nashorn.engine-pool-size", 10);
+    private static final int COMPILED_SCRIPTS_CACHE_SIZE = Integer.getInteger(
+            "closure.service.nashorn.compiled-scripts-cache-size", 100);
+
     private final ServiceHost serviceHost;
+    private final ScriptEngineManager engineManager = new ScriptEngineManager();
+    private final Queue<PooledEngine> idleEngines = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleEnginesCount = new AtomicInteger();
+
+    /**
+     * Script engine together with the scripts compiled by it. Used by one execution at a time.
+     */
+    private static class PooledEngine {
+        final ScriptEngine engine;
+        final Map<String, CompiledScript> compiledScripts;
+
+        PooledEngine(ScriptEngine engine) {
+            this.engine = engine;
+            this.compiledScripts = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                    return size() > COMPILED_SCRIPTS_CACHE_SIZE;
+                }
+            };
+        }
 
-    public interface JsDateWrap {
-        long getTime();
+        CompiledScript compile(String source) throws ScriptException {
+            CompiledScript script = compiledScripts.get(source);
+            if (script == null) {
+                script = ((Compilable) engine).compile(source);
+                compiledScripts.put(source, script);
+            }
+            return script;
+        }
     }
 
     public EmbeddedNashornJSDriver(ServiceHost serviceHost) {
@@ -78,74 +120,131 @@ public class EmbeddedNashornJSDriver extends LocalDriverBase {
         Closure closureResult = new Closure();
 
         Map<String, JsonElement> outputs = new HashMap<>();
-        ScriptEngineManager manager = new ScriptEngineManager();
-        ScriptEngine engine = manager.getEngineByName(DriverConstants.RUNTIME_NASHORN);
+        PooledEngine pooledEngine = acquireEngine(taskDef);
+        try {
+            ScriptContext context = new SimpleScriptContext();
+            Bindings bindings = pooledEngine.engine.createBindings();
+            context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+            try {
+                setBindings(closure, bindings);
+                executeScript(closure, taskDef, pooledEngine, context);
+                closureResult.state = TaskStage.FINISHED;
+
+            } catch (ScriptException e) {
+                Utils.logWarning("Exception thrown while executing script: %s", e.getMessage());
+                closureResult.state = TaskStage.FAILED;
+                closureResult.errorMsg = e.getMessage();
+            }
+
+            // populate outputs
+            populateOutputs(bindings, taskDef.outputNames, outputs);
+        } finally {
+            releaseEngine(pooledEngine);
+        }
+        closureResult.outputs = outputs;
+        return closureResult;
+
+    }
+
+    private PooledEngine acquireEngine(ClosureDescription taskDef) {
+        PooledEngine pooledEngine = idleEngines.poll();
+        if (pooledEngine != null) {
+            idleEnginesCount.decrementAndGet();
+            return pooledEngine;
+        }
+
+        ScriptEngine engine = engineManager.getEngineByName(DriverConstants.RUNTIME_NASHORN);
         if (engine == null) {
             throw new IllegalStateException("Unable to execute script with runtime: "
                     + taskDef.runtime);
         }
+        return new PooledEngine(engine);
+    }
 
-        try {
-            setBindings(closure, engine);
-            executeScript(closure, taskDef, engine);
-            closureResult.state = TaskStage.FINISHED;
-
-        } catch (ScriptException e) {
-            Utils.logWarning("Exception thrown while executing script: %s", e.getMessage());
-            closureResult.state = TaskStage.FAILED;
-            closureResult.errorMsg = e.getMessage();
+    private void releaseEngine(PooledEngine pooledEngine) {
+        // engines above the pool size are dropped
+        if (idleEnginesCount.incrementAndGet() > ENGINE_POOL_SIZE) {
+            idleEnginesCount.decrementAndGet();
+            return;
         }
-
-        // populate outputs
-        populateOutputs(engine, taskDef.outputNames, outputs);
-        closureResult.outputs = outputs;
-        return closureResult;
-
+        idleEngines.offer(pooledEngine);
     }
 
-    private void populateOutputs(ScriptEngine engine, List<String> outputNames, Map<String, JsonElement> outputs) {
+    private void populateOutputs(Bindings outBindings, List<String> outputNames,
+            Map<String, JsonElement> outputs) {
         if (outputNames != null) {
-            final Bindings outBindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
             for (String name : outputNames) {
                 Object val = outBindings.get(name);
                 logInfo("Output parameter: name: %s value: %s", name, val);
-                JsonElement convertedVal = convertToJsonElement(engine, val);
+                JsonElement convertedVal = convertToJsonElement(val);
                 outputs.put(name, convertedVal);
             }
         }
     }
 
-    private void executeScript(Closure closureRequest, ClosureDescription taskDef, ScriptEngine engine)
-            throws ScriptException {
+    private void executeScript(Closure closureRequest, ClosureDescription taskDef,
+            PooledEngine pooledEngine, ScriptContext context) throws ScriptException {
         String scriptSource = taskDef.source;
         ResourceConstraints resConstraints = taskDef.resources;
         logInfo("Using resource constraints: cpuShares = %s, ram = %s, timeout = %s",
                 resConstraints.cpuShares, resConstraints.ramMB, resConstraints.timeoutSeconds);
         logInfo("Executing script of %s:\n%s", closureRequest.documentSelfLink, scriptSource);
 
-        engine.eval(scriptSource);
+        pooledEngine.compile(scriptSource).eval(context);
     }
 
-    private void setBindings(Closure closureRequest, ScriptEngine engine) throws ScriptException {
-        final Bindings inBindings = engine.createBindings();
-
+    @SuppressWarnings("restriction")
+    private void setBindings(Closure closureRequest, Bindings inBindings) {
         inBindings.put("result", null);
         Map<String, JsonElement> inputs = closureRequest.inputs;
         JsonObject element = new JsonObject();
         if (inputs != null) {
             inputs.forEach(element::add);
-            inBindings.put("inputs", convertValue(engine, element));
+            inBindings.put("inputs", convertValue((ScriptObjectMirror) inBindings, element));
         }
-
-        engine.setBindings(inBindings, ScriptContext.ENGINE_SCOPE);
     }
 
-    private Object convertValue(ScriptEngine engine, JsonElement var) throws ScriptException {
-        return engine.eval("JSON.parse('" + var.toString() + "')", engine.getContext());
+    /**
+     * Builds the script value of a JSON element with the constructors of the given global scope,
+     * the same value <code>JSON.parse</code> would return.
+     */
+    @SuppressWarnings("restriction")
+    private Object convertValue(ScriptObjectMirror global, JsonElement var) {
+        if (var == null || var.isJsonNull()) {
+            return null;
+        } else if (var.isJsonObject()) {
+            ScriptObjectMirror object = (ScriptObjectMirror) ((ScriptObjectMirror) global
+                    .getMember("Object")).newObject();
+            for (Map.Entry<String, JsonElement> entry : var.getAsJsonObject().entrySet()) {
+                object.setMember(entry.getKey(), convertValue(global, entry.getValue()));
+            }
+            return object;
+        } else if (var.isJsonArray()) {
+            ScriptObjectMirror array = (ScriptObjectMirror) ((ScriptObjectMirror) global
+                    .getMember("Array")).newObject();
+            int i = 0;
+            for (JsonElement item : var.getAsJsonArray()) {
+                array.setSlot(i++, convertValue(global, item));
+            }
+            return array;
+        }
+
+        JsonPrimitive primitive = var.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        } else if (primitive.isNumber()) {
+            double number = primitive.getAsDouble();
+            if (number == Math.rint(number) && Math.abs(number) <= Integer.MAX_VALUE) {
+                return (int) number;
+            }
+            return number;
+        }
+        return primitive.getAsString();
     }
 
     @SuppressWarnings({ "restriction", "unchecked" })
-    private JsonElement convertToJsonElement(ScriptEngine engine, Object val) {
+    private JsonElement convertToJsonElement(Object val) {
 
         if (val == null) {
             return JsonNull.INSTANCE;
@@ -159,32 +258,37 @@ public class EmbeddedNashornJSDriver extends LocalDriverBase {
             JsonArray jsArray = new JsonArray();
             Object[] nums = (Object[]) val;
             for (Object n : nums) {
-                jsArray.add(convertToJsonElement(engine, n));
+                jsArray.add(convertToJsonElement(n));
             }
             return jsArray;
         } else if (val instanceof List) {
             JsonArray jsArray = new JsonArray();
             List<Object> objs = (List<Object>) val;
             for (Object o : objs) {
-                jsArray.add(convertToJsonElement(engine, o));
+                jsArray.add(convertToJsonElement(o));
             }
             return jsArray;
         } else if (val instanceof ScriptObjectMirror) {
             ScriptObjectMirror m = (ScriptObjectMirror) val;
             if (m.isArray()) {
-                List<Object> list = new ArrayList<>(m.values());
-                return convertToJsonElement(engine, list);
-            } else {
-                JsDateWrap jsDate = ((Invocable) engine).getInterface(val, JsDateWrap.class);
-                if (jsDate != null) {
-                    long timestampLocalTime = jsDate.getTime();
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.setTimeInMillis(timestampLocalTime);
-                    val = calendar.getTime();
+                JsonArray jsArray = new JsonArray();
+                for (Object o : m.values()) {
+                    jsArray.add(convertToJsonElement(o));
                 }
-                String stringified = Utils.toJson(val);
-                return Utils.fromJson(stringified, JsonElement.class);
+                return jsArray;
+            } else if ("Date".equals(m.getClassName())) {
+                long timestampLocalTime = ((Number) m.callMember("getTime")).longValue();
+                Calendar calendar = Calendar.getInstance();
+                calendar.setTimeInMillis(timestampLocalTime);
+                return Utils.fromJson(Utils.toJson(calendar.getTime()), JsonElement.class);
+            } else if (m.isFunction()) {
+                return JsonNull.INSTANCE;
+            }
+            JsonObject jsObject = new JsonObject();
+            for (Map.Entry<String, Object> entry : m.entrySet()) {
+                jsObject.add(entry.getKey(), convertToJsonElement(entry.getValue()));
             }
+            return jsObject;
         }
 
         return new JsonPrimitive(val.toString());
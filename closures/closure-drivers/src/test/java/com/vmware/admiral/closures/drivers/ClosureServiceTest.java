@@ -38,6 +38,7 @@ import org.junit.Test;
 import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver;
 import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.closures.services.closure.ClosureFactoryService;
+import com.vmware.admiral.closures.services.closure.ClosureTimeoutScheduler;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptionFactoryService;
 import com.vmware.admiral.closures.services.closuredescription.ResourceConstraints;
@@ -1934,6 +1935,81 @@ public class ClosureServiceTest extends BasicReusableHostTestCase {
         clean(closureDefChildURI);
     }
 
+    @Test
+    public void timeoutAfterOwnerChangeTest() throws Throwable {
+        // Create Closure Definition
+        URI factoryUri = UriUtils
+                .buildFactoryUri(this.host, ClosureDescriptionFactoryService.class);
+        this.host.testStart(1);
+        ClosureDescription closureDefState = new ClosureDescription();
+        closureDefState.name = "test";
+        closureDefState.source = "function sleep(delay) {var start = new Date().getTime();while (new Date().getTime() < start + delay) {}} sleep(20000);";
+        closureDefState.runtime = "nashorn";
+        closureDefState.documentSelfLink = UUID.randomUUID().toString();
+        ResourceConstraints constraints = new ResourceConstraints();
+        constraints.timeoutSeconds = 1;
+        closureDefState.resources = constraints;
+
+        URI closureDefChildURI = UriUtils.buildUri(this.host,
+                ClosureDescriptionFactoryService.FACTORY_LINK + "/"
+                        + closureDefState.documentSelfLink);
+        Operation post = Operation
+                .createPost(factoryUri)
+                .setBody(closureDefState)
+                .setCompletion(BasicReusableHostTestCase.getSafeHandler((o, e) -> assertNull(e)));
+        this.host.send(post);
+        this.host.testWait();
+
+        // Create Closure
+        URI factoryTaskUri = UriUtils.buildFactoryUri(this.host, ClosureFactoryService.class);
+        this.host.testStart(1);
+        Closure closureState = new Closure();
+        closureState.descriptionLink =
+                ClosureDescriptionFactoryService.FACTORY_LINK + "/"
+                        + closureDefState.documentSelfLink;
+        closureState.documentSelfLink = UUID.randomUUID().toString();
+        String closureLink = ClosureFactoryService.FACTORY_LINK + "/"
+                + closureState.documentSelfLink;
+        URI closureChildURI = UriUtils.buildUri(this.host, closureLink);
+        Operation closurePost = Operation
+                .createPost(factoryTaskUri)
+                .setBody(closureState)
+                .setCompletion(BasicReusableHostTestCase.getSafeHandler((o, e) -> assertNull(e)));
+        this.host.send(closurePost);
+        this.host.testWait();
+
+        // Executing the created Closure
+        this.host.testStart(1);
+        Operation closureExecPost = Operation
+                .createPost(closureChildURI)
+                .setBody(new Closure())
+                .setCompletion(BasicReusableHostTestCase.getSafeHandler((o, e) -> assertNull(e)));
+        this.host.send(closureExecPost);
+        this.host.testWait();
+
+        this.host.waitFor("Closure not started",
+                () -> TaskStage.STARTED == getClosure(closureState.documentSelfLink).state);
+        // let the owner track the deadline, then drop it as if the owner failed and this node
+        // took over the running closure
+        Thread.sleep(500);
+        ClosureTimeoutScheduler.getInstance(this.host,
+                TimeUnit.MILLISECONDS.toMicros(TEST_TASK_MAINTANENACE_TIMEOUT_MLS))
+                .cancel(closureLink);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(constraints.timeoutSeconds) + 1000);
+        assertEquals(TaskStage.STARTED, getClosure(closureState.documentSelfLink).state);
+
+        // the node group maintenance on the new owner tracks the deadline again
+        this.host.findService(closureLink)
+                .handleNodeGroupMaintenance(Operation.createPost(closureChildURI));
+
+        waitForCompletion(closureState.documentSelfLink, TEST_TASK_MAINTANENACE_TIMEOUT_MLS);
+        assertEquals(TaskStage.CANCELLED, getClosure(closureState.documentSelfLink).state);
+
+        clean(closureChildURI);
+        clean(closureDefChildURI);
+    }
+
     @Test
     public void invalidNegativeTest() throws Throwable {
         URI factoryUri = UriUtils.buildFactoryUri(this.host, ClosureFactoryService.class);
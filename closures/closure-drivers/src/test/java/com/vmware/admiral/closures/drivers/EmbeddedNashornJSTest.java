@@ -11,12 +11,26 @@
 
 package com.vmware.admiral.closures.drivers;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import org.junit.Test;
 
 import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
+import com.vmware.admiral.closures.services.closuredescription.ResourceConstraints;
 import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.TaskState.TaskStage;
 
 /**
  */
@@ -29,4 +43,60 @@ public class EmbeddedNashornJSTest {
         ExecutionDriver execDriver = new EmbeddedNashornJSDriver(host);
 
     }
+
+    @Test
+    public void testReusedEngineConvertsInputsAndOutputs() {
+        EmbeddedNashornJSDriver execDriver = new EmbeddedNashornJSDriver(
+                mock(ServiceHost.class));
+
+        ClosureDescription taskDef = createDescription("var counter = (typeof counter === "
+                + "'undefined') ? 1 : counter + 1;"
+                + "result = { count: counter, name: inputs.obj.name,"
+                + " sum: inputs.arr[0] + inputs.arr[1], flag: !inputs.flag };");
+
+        JsonObject obj = new JsonObject();
+        obj.addProperty("name", "test");
+        JsonArray arr = new JsonArray();
+        arr.add(new JsonPrimitive(2));
+        arr.add(new JsonPrimitive(3));
+        Map<String, JsonElement> inputs = new HashMap<>();
+        inputs.put("obj", obj);
+        inputs.put("arr", arr);
+        inputs.put("flag", new JsonPrimitive(true));
+
+        for (int i = 0; i < 3; i++) {
+            Closure closure = new Closure();
+            closure.inputs = inputs;
+            Closure result = execDriver.doExecute(closure, taskDef);
+
+            assertEquals(TaskStage.FINISHED, result.state);
+            JsonObject output = result.outputs.get("result").getAsJsonObject();
+            // every execution has its own global scope even if the engine is reused
+            assertEquals(1, output.get("count").getAsInt());
+            assertEquals("test", output.get("name").getAsString());
+            assertEquals(5, output.get("sum").getAsInt());
+            assertEquals(false, output.get("flag").getAsBoolean());
+        }
+    }
+
+    @Test
+    public void testFailedScriptExecution() {
+        EmbeddedNashornJSDriver execDriver = new EmbeddedNashornJSDriver(
+                mock(ServiceHost.class));
+
+        Closure result = execDriver.doExecute(new Closure(),
+                createDescription("result = invalid + 1;"));
+
+        assertEquals(TaskStage.FAILED, result.state);
+        assertTrue(result.errorMsg.contains("invalid"));
+    }
+
+    private static ClosureDescription createDescription(String source) {
+        ClosureDescription taskDef = new ClosureDescription();
+        taskDef.runtime = DriverConstants.RUNTIME_NASHORN;
+        taskDef.source = source;
+        taskDef.resources = new ResourceConstraints();
+        taskDef.outputNames = Arrays.asList("result");
+        return taskDef;
+    }
 }
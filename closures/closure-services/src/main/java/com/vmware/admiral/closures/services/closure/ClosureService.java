@@ -62,6 +62,9 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
 
     private final transient DriverRegistry driverRegistry;
 
+    // resolution of the execution timeout checks
+    private final long timeoutCheckIntervalMicros;
+
     public ClosureService(DriverRegistry driverRegistry, long maintenanceTimeout) {
         super(Closure.class);
 
@@ -69,34 +72,88 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
         super.toggleOption(ServiceOption.PERSISTENCE, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
         super.toggleOption(ServiceOption.INSTRUMENTATION, true);
-        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
-
-        super.setMaintenanceIntervalMicros(maintenanceTimeout);
 
+        this.timeoutCheckIntervalMicros = maintenanceTimeout;
         this.driverRegistry = driverRegistry;
     }
 
     @Override
-    public void handlePeriodicMaintenance(Operation post) {
-        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
-            logWarning("Skipping maintenance since service is not available: %s ", getUri());
+    public void handleStop(Operation delete) {
+        getTimeoutScheduler().cancel(getSelfLink());
+        super.handleStop(delete);
+    }
+
+    private ClosureTimeoutScheduler getTimeoutScheduler() {
+        return ClosureTimeoutScheduler.getInstance(getHost(), timeoutCheckIntervalMicros);
+    }
+
+    @Override
+    public void handleNodeGroupMaintenance(Operation op) {
+        op.complete();
+
+        if (!hasOption(ServiceOption.DOCUMENT_OWNER)) {
+            // the new owner tracks the deadline
+            getTimeoutScheduler().cancel(getSelfLink());
             return;
         }
 
+        // this node may have just become the owner, track the deadline of a running closure
+        sendRequest(Operation
+                .createGet(getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to fetch closure state. Reason: %s", e.getMessage());
+                        return;
+                    }
+                    Closure closure = o.getBody(Closure.class);
+                    if (closure.state == TaskStage.STARTED) {
+                        scheduleTimeout(closure);
+                    }
+                }));
+    }
+
+    /**
+     * Tracks the execution deadline of a leased closure in the host level timeout scheduler.
+     * Only the owner tracks it, the replicas are rescheduled if they become the owner.
+     */
+    private void scheduleTimeout(Closure closure) {
+        if (closure.lastLeasedTimeMillis == null || !hasOption(ServiceOption.DOCUMENT_OWNER)) {
+            return;
+        }
+        sendRequest(Operation
+                .createGet(this, closure.descriptionLink)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Failed to fetch closure definition. Reason: %s",
+                                Utils.toString(e));
+                        return;
+                    }
+                    ClosureDescription taskDef = o.getBody(ClosureDescription.class);
+                    if (taskDef.resources == null || taskDef.resources.timeoutSeconds == null) {
+                        logWarning("No constraints constraints bound to closure.");
+                        return;
+                    }
+                    long deadlineMillis = closure.lastLeasedTimeMillis
+                            + TimeUnit.SECONDS.toMillis(taskDef.resources.timeoutSeconds);
+                    getTimeoutScheduler().schedule(getSelfLink(), deadlineMillis,
+                            this::handleTimeout);
+                }));
+    }
+
+    private void handleTimeout() {
         sendRequest(Operation
                 .createGet(getUri())
                 .setCompletion((op, ex) -> {
                     if (ex != null) {
                         logWarning("Failed to fetch closure state. Reason: %s", ex.getMessage());
-                        post.fail(new Exception("Unable to fetch closure state."));
                     } else {
                         Closure closure = op.getBody(Closure.class);
-                        handleMaintenance(post, closure);
+                        handleTimeout(closure);
                     }
                 }));
     }
 
-    private void handleMaintenance(Operation post, Closure closure) {
+    private void handleTimeout(Closure closure) {
         sendRequest(Operation
                 .createGet(this, closure.descriptionLink)
                 .setCompletion((o, e) -> {
@@ -111,12 +168,9 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
                                         logWarning("Self delete failed: %s", Utils.toString(dex));
                                     }
                                 }));
-
-                        post.fail(new Exception("Unable to fetch closure definition: " + e
-                                .getMessage()));
                     } else {
                         ClosureDescription taskDef = o.getBody(ClosureDescription.class);
-                        processMaintenance(post, closure, taskDef);
+                        processTimeout(closure, taskDef);
                     }
                 }));
     }
@@ -139,6 +193,11 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
         } else {
             this.setState(startOp, closure);
             startOp.setBody(closure).complete();
+
+            if (closure.state == TaskStage.STARTED) {
+                // restarted while running, track the deadline again
+                scheduleTimeout(closure);
+            }
         }
     }
 
@@ -360,7 +419,11 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
     private void handleStateChanged(Closure closure) {
         fetchLogs(closure, () -> {
         });
+        if (closure.state == TaskStage.STARTED) {
+            scheduleTimeout(closure);
+        }
         if (isDone(closure)) {
+            getTimeoutScheduler().cancel(getSelfLink());
             sendRequest(Operation
                     .createGet(this, closure.descriptionLink)
                     .setCompletion((op, ex) -> {
@@ -616,17 +679,18 @@ public class ClosureService<T extends TaskServiceDocument<E>, E extends Enum<E>>
                 }));
     }
 
-    private void processMaintenance(Operation op, Closure closure, ClosureDescription taskDef) {
+    private void processTimeout(Closure closure, ClosureDescription taskDef) {
         if (closure == null) {
-            logWarning("Skip maintenance call...");
+            logWarning("Skip timeout check...");
             return;
         }
 
         if (isTaskExpired(closure, taskDef)) {
             completeCancelTask(taskDef, closure);
+        } else if (closure.state == TaskStage.STARTED) {
+            // leased again since the deadline was scheduled
+            scheduleTimeout(closure);
         }
-
-        op.complete();
     }
 
     private void completeCancelTask(ClosureDescription closureDesc, Closure closure) {
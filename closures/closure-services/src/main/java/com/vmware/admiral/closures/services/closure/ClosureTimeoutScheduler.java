@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.services.closure;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Host level hashed timer wheel tracking the execution deadlines of the running closures. A
+ * single timer advances the wheel, so closures which are not running cost nothing, and a
+ * running closure costs a single slot entry until its deadline fires or it completes.
+ */
+public class ClosureTimeoutScheduler {
+
+    private static final int WHEEL_SIZE = Integer.getInteger(
+            "closure.service.timeout.wheel-size", 512);
+
+    private static final ConcurrentMap<String, ClosureTimeoutScheduler> schedulers =
+            new ConcurrentHashMap<>();
+
+    private final ServiceHost host;
+    private final long tickMillis;
+    private final List<List<Timeout>> wheel;
+    private final ConcurrentMap<String, Timeout> timeouts = new ConcurrentHashMap<>();
+    private long lastProcessedTick;
+
+    private static class Timeout {
+        final String closureLink;
+        final long deadlineTick;
+        final Runnable action;
+
+        Timeout(String closureLink, long deadlineTick, Runnable action) {
+            this.closureLink = closureLink;
+            this.deadlineTick = deadlineTick;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Returns the scheduler of the host, creating it with the given tick if there is none.
+     */
+    public static ClosureTimeoutScheduler getInstance(ServiceHost host, long tickMicros) {
+        return schedulers.computeIfAbsent(host.getId(), id -> {
+            ClosureTimeoutScheduler scheduler = new ClosureTimeoutScheduler(host,
+                    Math.max(1, TimeUnit.MICROSECONDS.toMillis(tickMicros)));
+            scheduler.scheduleTick();
+            return scheduler;
+        });
+    }
+
+    private ClosureTimeoutScheduler(ServiceHost host, long tickMillis) {
+        this.host = host;
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel.add(new LinkedList<>());
+        }
+        this.lastProcessedTick = toTick(System.currentTimeMillis());
+    }
+
+    /**
+     * Runs the action once the deadline of the closure passes. Replaces any deadline already
+     * tracked for the closure.
+     */
+    public void schedule(String closureLink, long deadlineMillis, Runnable action) {
+        synchronized (this) {
+            long deadlineTick = Math.max(toTick(deadlineMillis), lastProcessedTick + 1);
+            Timeout timeout = new Timeout(closureLink, deadlineTick, action);
+            timeouts.put(closureLink, timeout);
+            wheel.get(slotOf(deadlineTick)).add(timeout);
+        }
+    }
+
+    /**
+     * Stops tracking the deadline of the closure.
+     */
+    public void cancel(String closureLink) {
+        // the slot entry is dropped when its slot is next visited
+        timeouts.remove(closureLink);
+    }
+
+    public int size() {
+        return timeouts.size();
+    }
+
+    private void scheduleTick() {
+        host.schedule(this::tick, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        if (host.isStopping()) {
+            schedulers.remove(host.getId(), this);
+            return;
+        }
+
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long currentTick = toTick(System.currentTimeMillis());
+            // visit every slot at most once even if the timer fell behind a whole rotation
+            long firstTick = Math.max(lastProcessedTick + 1, currentTick - WHEEL_SIZE + 1);
+            for (long tick = firstTick; tick <= currentTick; tick++) {
+                Iterator<Timeout> it = wheel.get(slotOf(tick)).iterator();
+                while (it.hasNext()) {
+                    Timeout timeout = it.next();
+                    if (timeouts.get(timeout.closureLink) != timeout) {
+                        // cancelled or replaced
+                        it.remove();
+                    } else if (timeout.deadlineTick <= currentTick) {
+                        it.remove();
+                        timeouts.remove(timeout.closureLink, timeout);
+                        expired.add(timeout);
+                    }
+                }
+            }
+            lastProcessedTick = Math.max(lastProcessedTick, currentTick);
+        }
+
+        for (Timeout timeout : expired) {
+            try {
+                timeout.action.run();
+            } catch (Throwable e) {
+                Utils.log(getClass(), getClass().getSimpleName(), Level.WARNING,
+                        "Failed to process timeout of closure %s: %s", timeout.closureLink,
+                        Utils.toString(e));
+            }
+        }
+
+        scheduleTick();
+    }
+
+    private long toTick(long timeMillis) {
+        return timeMillis / tickMillis;
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick % WHEEL_SIZE);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vmware.admiral.closures.services.closure.ClosureTimeoutScheduler;
+import com.vmware.xenon.common.BasicReusableHostTestCase;
+
+public class ClosureTimeoutSchedulerTest extends BasicReusableHostTestCase {
+
+    private static final long TICK_MICROS = TimeUnit.MILLISECONDS.toMicros(50);
+
+    @Test
+    public void testExpiredTimeoutsFireOnce() throws Throwable {
+        ClosureTimeoutScheduler scheduler = ClosureTimeoutScheduler.getInstance(this.host,
+                TICK_MICROS);
+
+        CountDownLatch fired = new CountDownLatch(2);
+        AtomicInteger firedCount = new AtomicInteger();
+        long now = System.currentTimeMillis();
+        scheduler.schedule("/closures/past", now - 1000, () -> {
+            firedCount.incrementAndGet();
+            fired.countDown();
+        });
+        scheduler.schedule("/closures/soon", now + 200, () -> {
+            firedCount.incrementAndGet();
+            fired.countDown();
+        });
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        // give a chance for duplicate firing
+        Thread.sleep(300);
+        assertEquals(2, firedCount.get());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testCancelledAndReplacedTimeoutsDoNotFire() throws Throwable {
+        ClosureTimeoutScheduler scheduler = ClosureTimeoutScheduler.getInstance(this.host,
+                TICK_MICROS);
+
+        AtomicInteger cancelledCount = new AtomicInteger();
+        AtomicInteger replacedCount = new AtomicInteger();
+        CountDownLatch fired = new CountDownLatch(1);
+        long now = System.currentTimeMillis();
+
+        scheduler.schedule("/closures/cancelled", now + 100, cancelledCount::incrementAndGet);
+        scheduler.cancel("/closures/cancelled");
+
+        scheduler.schedule("/closures/replaced", now + 100, replacedCount::incrementAndGet);
+        scheduler.schedule("/closures/replaced", now + 400, fired::countDown);
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        assertEquals(0, cancelledCount.get());
+        assertEquals(0, replacedCount.get());
+    }
+}
@@ -43,6 +43,7 @@ public interface ManagementUriParts {
     String UTIL = "/util";
     String LONG_URI_GET = UTIL + "/long-uri-get";
     String DANGLING_DESCRIPTIONS_CLEANUP = UTIL + "/cleanup-dangling-descriptions";
+    String BOOT_STATS = UTIL + "/boot-stats";
 
     String CERT_DISTRIBUTION_ADD_REGISTRY = CONFIG + "/cert-dist-add-reg";
     String CERT_DISTRIBUTION_ADD_HOST = CONFIG + "/certs-dist-add-host";
@@ -88,6 +89,7 @@ public interface ManagementUriParts {
     String EPZ_COMPUTE_ENUMERATION_TASKS = RESOURCES + "/epz-compute-enumeration-tasks";
     String EPZ_PERIODIC_ENUMERATION = RESOURCES + "/epz-periodic-enumeration";
     String PLACEMENT_PERIODIC_UPDATE = RESOURCES + "/placement-periodic-update";
+    String RESOURCE_POOL_MEMBERSHIP_INDEX = RESOURCES + "/resource-pool-membership-index";
 
     String CONTAINERS = RESOURCES + "/containers";
     String CONTAINER_STATS = RESOURCES + "/container-stats";
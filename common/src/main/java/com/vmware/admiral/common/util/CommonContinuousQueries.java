@@ -83,7 +83,20 @@ public class CommonContinuousQueries {
      */
     public static void subscribeTo(ServiceHost host, ContinuousQueryId queryId,
             Consumer<Operation> consumer) {
-        QueryTask task = getQueryTask(host, queryId);
+        subscribeTo(host, getQueryTask(host, queryId), consumer);
+    }
+
+    /**
+     * Subscribes a consumer to a continuous query which is specific to a single component. The
+     * task must have the {@link QueryOption#CONTINUOUS} option and a unique self link, see
+     * {@link #createTaskSelfLink(String)}.
+     */
+    public static void subscribeTo(ServiceHost host, QueryTask task,
+            Consumer<Operation> consumer) {
+        if (task.documentExpirationTimeMicros == 0) {
+            task.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(
+                    TimeUnit.DAYS.toMicros(QUERY_TASK_EXPIRATION_DAYS));
+        }
         Operation.createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
                 .setBody(task)
                 .setReferer(host.getUri())
@@ -159,6 +172,13 @@ public class CommonContinuousQueries {
     }
 
     private static String getTaskSelfLink(ContinuousQueryId queryId) {
-        return QUERY_TASK_SELF_LINK_PREFIX + "-" + queryId.name().toLowerCase();
+        return createTaskSelfLink(queryId.name().toLowerCase());
+    }
+
+    /**
+     * Creates a continuous query task self link which is unique for the current host run.
+     */
+    public static String createTaskSelfLink(String name) {
+        return QUERY_TASK_SELF_LINK_PREFIX + "-" + name;
     }
 }
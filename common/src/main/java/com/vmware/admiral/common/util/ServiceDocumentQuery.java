@@ -11,7 +11,9 @@
 
 package com.vmware.admiral.common.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +31,7 @@ import com.vmware.xenon.services.common.QueryTask.NumericRange;
 import com.vmware.xenon.services.common.QueryTask.Query;
 import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm;
 import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 import com.vmware.xenon.services.common.ServiceUriPaths;
 
@@ -196,6 +199,69 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
                 }));
     }
 
+    /**
+     * Streaming variant of {@link #query(QueryTask, Consumer)}. The query is always submitted as
+     * direct, so no polling of the query task is needed, and the results are delivered page by
+     * page. While the consumer processes a page the next one is already being fetched, but no
+     * more than one page is prefetched ahead of the consumer, so memory stays bounded no matter
+     * how large the result set is.
+     *
+     * The consumer receives each page together with a callback which must be invoked once the
+     * page is processed in order to get the next one. Not invoking it stops the stream. The last
+     * page is marked with {@link ServiceDocumentQueryPage#isLast()}, failures are delivered as a
+     * last page with an exception.
+     *
+     * @param q
+     *            Fully defined {@link QueryTask}, count queries are not supported.
+     * @param selectFields
+     *            Optional names of the fields to retrieve. When not empty only these fields (and
+     *            the self link) are selected and populated in the returned documents instead of
+     *            the whole documents.
+     * @param pageConsumer
+     *            The consumer of the result pages.
+     */
+    public void stream(QueryTask q, Collection<String> selectFields,
+            ServiceDocumentQueryPageConsumer<T> pageConsumer) {
+        AssertUtil.assertNotNull(q, "queryTask");
+        AssertUtil.assertNotNull(pageConsumer, "pageConsumer");
+        AssertUtil.assertTrue(!isCountQuery(q), "count queries can not be streamed");
+
+        if (q.documentExpirationTimeMicros == 0) {
+            q.documentExpirationTimeMicros = getDefaultQueryExpiration();
+        }
+        if (q.querySpec.resultLimit == null) {
+            q.querySpec.resultLimit = DEFAULT_QUERY_RESULT_LIMIT;
+        }
+        if (q.querySpec.options == null) {
+            q.querySpec.options = EnumSet.noneOf(QueryOption.class);
+        }
+        if (selectFields != null && !selectFields.isEmpty()) {
+            selectFields(q, selectFields);
+        }
+        q.querySpec.options.add(QueryOption.SINGLE_USE);
+        q.taskInfo.isDirect = true;
+
+        new QueryStream(pageConsumer).start(q);
+    }
+
+    private static void selectFields(QueryTask q, Collection<String> fields) {
+        q.querySpec.options.remove(QueryOption.EXPAND_CONTENT);
+        q.querySpec.options.add(QueryOption.EXPAND_SELECTED_FIELDS);
+        q.querySpec.selectTerms = new ArrayList<>(fields.size() + 1);
+        q.querySpec.selectTerms.add(selectTerm(ServiceDocument.FIELD_NAME_SELF_LINK));
+        for (String field : fields) {
+            if (!ServiceDocument.FIELD_NAME_SELF_LINK.equals(field)) {
+                q.querySpec.selectTerms.add(selectTerm(field));
+            }
+        }
+    }
+
+    private static QueryTerm selectTerm(String propertyName) {
+        QueryTerm term = new QueryTerm();
+        term.propertyName = propertyName;
+        return term;
+    }
+
     private void processQuery(QueryTask q,
             Consumer<ServiceDocumentQueryElementResult<T>> handler) {
         if (TaskState.isFailed(q.taskInfo)) {
@@ -320,7 +386,8 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
 
     private boolean isExpandQuery(QueryTask q) {
         return q.querySpec.options != null
-                && q.querySpec.options.contains(QueryOption.EXPAND_CONTENT);
+                && (q.querySpec.options.contains(QueryOption.EXPAND_CONTENT)
+                        || q.querySpec.options.contains(QueryOption.EXPAND_SELECTED_FIELDS));
     }
 
     private boolean isCountQuery(QueryTask q) {
@@ -435,4 +502,185 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
         }
     }
 
+    /**
+     * Consumer of the pages delivered by {@link ServiceDocumentQuery#stream}.
+     */
+    @FunctionalInterface
+    public interface ServiceDocumentQueryPageConsumer<T extends ServiceDocument> {
+        /**
+         * @param page
+         *            The current page of results.
+         * @param next
+         *            To be invoked when the page is processed in order to receive the next page.
+         *            Has no effect for the last page.
+         */
+        void accept(ServiceDocumentQueryPage<T> page, Runnable next);
+    }
+
+    public static class ServiceDocumentQueryPage<T extends ServiceDocument> {
+        private Throwable exception;
+        private List<T> documents = Collections.emptyList();
+        private List<String> documentLinks = Collections.emptyList();
+        private boolean last;
+
+        public boolean hasException() {
+            return exception != null;
+        }
+
+        public Throwable getException() {
+            return exception;
+        }
+
+        /**
+         * @return The documents of the page, empty when the query is not expanded.
+         */
+        public List<T> getDocuments() {
+            return documents;
+        }
+
+        public List<String> getDocumentLinks() {
+            return documentLinks;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+    }
+
+    /**
+     * Keeps the state of a single {@link ServiceDocumentQuery#stream} call. The consumer is never
+     * invoked concurrently: a fetched page is either delivered right away or, if the consumer is
+     * still busy with the previous one, parked until it asks for the next page.
+     */
+    private class QueryStream {
+        private final ServiceDocumentQueryPageConsumer<T> consumer;
+        private boolean consumerBusy;
+        private ServiceDocumentQueryPage<T> prefetchedPage;
+        private String prefetchedNextPageLink;
+
+        QueryStream(ServiceDocumentQueryPageConsumer<T> consumer) {
+            this.consumer = consumer;
+        }
+
+        void start(QueryTask q) {
+            host.sendRequest(Operation
+                    .createPost(UriUtils.buildUri(host, ServiceUriPaths.CORE_QUERY_TASKS))
+                    .setBody(q)
+                    .setReferer(host.getUri())
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            onPage(errorPage(e), null);
+                            return;
+                        }
+                        try {
+                            QueryTask rsp = o.getBody(QueryTask.class);
+                            if (TaskState.isFailed(rsp.taskInfo)) {
+                                onPage(errorPage(new IllegalStateException(
+                                        rsp.taskInfo.failure.message)), null);
+                            } else if (rsp.querySpec.resultLimit != null
+                                    && rsp.querySpec.resultLimit != Integer.MAX_VALUE
+                                    && !rsp.querySpec.options.contains(QueryOption.TOP_RESULTS)) {
+                                // paginated results: the first page is behind the next page link
+                                fetch(rsp.results.nextPageLink);
+                            } else {
+                                onPage(toPage(rsp, true), null);
+                            }
+                        } catch (Throwable ex) {
+                            onPage(errorPage(ex), null);
+                        }
+                    }));
+        }
+
+        private void fetch(String pageLink) {
+            if (pageLink == null) {
+                ServiceDocumentQueryPage<T> page = new ServiceDocumentQueryPage<>();
+                page.last = true;
+                onPage(page, null);
+                return;
+            }
+
+            host.sendRequest(Operation
+                    .createGet(UriUtils.buildUri(host, pageLink))
+                    .setReferer(host.getUri())
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            onPage(errorPage(e), null);
+                            return;
+                        }
+                        try {
+                            QueryTask rsp = o.getBody(QueryTask.class);
+                            String nextPageLink = rsp.results.nextPageLink;
+                            onPage(toPage(rsp, nextPageLink == null), nextPageLink);
+                        } catch (Throwable ex) {
+                            onPage(errorPage(ex), null);
+                        }
+                    }));
+        }
+
+        private void onPage(ServiceDocumentQueryPage<T> page, String nextPageLink) {
+            synchronized (this) {
+                if (consumerBusy) {
+                    prefetchedPage = page;
+                    prefetchedNextPageLink = nextPageLink;
+                    return;
+                }
+                consumerBusy = true;
+            }
+            deliver(page, nextPageLink);
+        }
+
+        private void next() {
+            ServiceDocumentQueryPage<T> page;
+            String nextPageLink;
+            synchronized (this) {
+                page = prefetchedPage;
+                nextPageLink = prefetchedNextPageLink;
+                prefetchedPage = null;
+                prefetchedNextPageLink = null;
+                consumerBusy = page != null;
+            }
+            if (page != null) {
+                deliver(page, nextPageLink);
+            }
+        }
+
+        private void deliver(ServiceDocumentQueryPage<T> page, String nextPageLink) {
+            if (!page.last) {
+                // prefetch while the consumer is processing the current page
+                fetch(nextPageLink);
+            }
+            try {
+                consumer.accept(page, page.last ? () -> {
+                } : this::next);
+            } catch (Throwable ex) {
+                host.log(Level.WARNING, "Failure consuming query page: %s", Utils.toString(ex));
+            }
+        }
+
+        private ServiceDocumentQueryPage<T> toPage(QueryTask rsp, boolean last) {
+            ServiceDocumentQueryPage<T> page = new ServiceDocumentQueryPage<>();
+            page.last = last;
+            if (rsp.results.documentLinks != null) {
+                page.documentLinks = rsp.results.documentLinks;
+            }
+            if (type != null && isExpandQuery(rsp) && rsp.results.documents != null) {
+                page.documents = new ArrayList<>(page.documentLinks.size());
+                for (String link : page.documentLinks) {
+                    Object json = rsp.results.documents.get(link);
+                    if (json != null) {
+                        page.documents.add(Utils.fromJson(json, type));
+                    }
+                }
+            }
+            return page;
+        }
+
+        private ServiceDocumentQueryPage<T> errorPage(Throwable e) {
+            ServiceDocumentQueryPage<T> page = new ServiceDocumentQueryPage<>();
+            page.exception = e;
+            page.last = true;
+            return page;
+        }
+    }
+
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.service.common.ExtensibilitySubscriptionManager.ExtensibilityNotificationBatch;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Delivers extensibility notifications to the subscriber endpoints. Each endpoint has its own
+ * queue and a limited number of notifications in flight. Failed notifications are retried with
+ * an exponential backoff, the slot of the endpoint stays taken meanwhile so that an endpoint
+ * which is down is not flooded with retries.
+ * <p>
+ * When batching is enabled, the asynchronous notifications which queue up for an endpoint are
+ * sent together in a single {@link ExtensibilityNotificationBatch}. Blocking notifications are
+ * always sent one by one and go ahead of the queued asynchronous ones.
+ * <p>
+ * The queue depth, the number of sent, retried and failed notifications and the delivery
+ * latency are reported as stats of the owning service.
+ */
+class ExtensibilityNotificationDelivery {
+
+    static final String STAT_NAME_QUEUED = "extensibilityNotificationsQueued";
+    static final String STAT_NAME_SENT = "extensibilityNotificationsSent";
+    static final String STAT_NAME_BATCHES_SENT = "extensibilityNotificationBatchesSent";
+    static final String STAT_NAME_RETRIED = "extensibilityNotificationsRetried";
+    static final String STAT_NAME_FAILED = "extensibilityNotificationsFailed";
+    static final String STAT_NAME_LATENCY_MICROS = "extensibilityNotificationLatencyMicros";
+
+    private final Service service;
+    private final int maxConcurrentPerEndpoint;
+    private final int maxBatchSize;
+    private final int retryCount;
+    private final long retryWaitSeconds;
+    private final long maxRetryWaitSeconds;
+
+    private final Map<URI, EndpointQueue> endpoints = new HashMap<>();
+    private int queuedCount;
+
+    private static class Notification {
+        final ServiceDocument body;
+        final boolean blocking;
+        final Consumer<Throwable> failureHandler;
+        final long queuedMicros = Utils.getSystemNowMicrosUtc();
+
+        Notification(ServiceDocument body, boolean blocking,
+                Consumer<Throwable> failureHandler) {
+            this.body = body;
+            this.blocking = blocking;
+            this.failureHandler = failureHandler;
+        }
+    }
+
+    private static class EndpointQueue {
+        final URI endpoint;
+        final Deque<Notification> pending = new ArrayDeque<>();
+        int inFlight;
+
+        EndpointQueue(URI endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    ExtensibilityNotificationDelivery(Service service, int maxConcurrentPerEndpoint,
+            int maxBatchSize, int retryCount, long retryWaitSeconds, long maxRetryWaitSeconds) {
+        this.service = service;
+        this.maxConcurrentPerEndpoint = Math.max(1, maxConcurrentPerEndpoint);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.retryCount = retryCount;
+        this.retryWaitSeconds = retryWaitSeconds;
+        this.maxRetryWaitSeconds = maxRetryWaitSeconds;
+    }
+
+    /**
+     * Queues a notification for the given endpoint. The failure handler is called when the
+     * notification couldn't be delivered after all the retries.
+     */
+    void send(URI endpoint, ServiceDocument body, boolean blocking,
+            Consumer<Throwable> failureHandler) {
+        Notification notification = new Notification(body, blocking, failureHandler);
+        EndpointQueue queue;
+        synchronized (this) {
+            queue = endpoints.computeIfAbsent(endpoint, EndpointQueue::new);
+            if (blocking) {
+                queue.pending.addFirst(notification);
+            } else {
+                queue.pending.addLast(notification);
+            }
+            queuedCount++;
+        }
+        dispatch(queue);
+    }
+
+    synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    private void dispatch(EndpointQueue queue) {
+        List<List<Notification>> batches = new ArrayList<>();
+        int queued;
+        synchronized (this) {
+            while (queue.inFlight < maxConcurrentPerEndpoint && !queue.pending.isEmpty()) {
+                List<Notification> batch = takeBatch(queue.pending);
+                queue.inFlight++;
+                queuedCount -= batch.size();
+                batches.add(batch);
+            }
+            if (queue.inFlight == 0 && queue.pending.isEmpty()) {
+                endpoints.remove(queue.endpoint, queue);
+            }
+            queued = queuedCount;
+        }
+        service.setStat(STAT_NAME_QUEUED, queued);
+
+        for (List<Notification> batch : batches) {
+            post(queue, batch, retryCount);
+        }
+    }
+
+    private List<Notification> takeBatch(Deque<Notification> pending) {
+        Notification first = pending.poll();
+        if (first.blocking || maxBatchSize == 1) {
+            return Collections.singletonList(first);
+        }
+        List<Notification> batch = new ArrayList<>();
+        batch.add(first);
+        while (batch.size() < maxBatchSize && pending.peek() != null
+                && !pending.peek().blocking) {
+            batch.add(pending.poll());
+        }
+        return batch;
+    }
+
+    private void post(EndpointQueue queue, List<Notification> batch, int retriesLeft) {
+        ServiceDocument body;
+        if (batch.size() == 1) {
+            body = batch.get(0).body;
+        } else {
+            ExtensibilityNotificationBatch notificationBatch =
+                    new ExtensibilityNotificationBatch();
+            notificationBatch.notifications = new ArrayList<>(batch.size());
+            batch.forEach(n -> notificationBatch.notifications.add(n.body));
+            body = notificationBatch;
+        }
+
+        service.sendRequest(Operation.createPost(queue.endpoint)
+                .setBody(body)
+                .setReferer(service.getUri())
+                .setCompletion((o, e) -> {
+                    if (e == null) {
+                        onDelivered(batch);
+                        finished(queue);
+                        return;
+                    }
+
+                    Utils.logWarning("Retrying [%s] times to notify [%s]. Error: [%s]",
+                            retriesLeft, queue.endpoint, e.getMessage());
+
+                    if (retriesLeft <= 1) {
+                        Utils.logWarning("Cannot notify [%s] for [%s] tasks. Error: %s",
+                                queue.endpoint, batch.size(), e.getMessage());
+                        service.adjustStat(STAT_NAME_FAILED, batch.size());
+                        batch.forEach(n -> n.failureHandler.accept(e));
+                        finished(queue);
+                    } else if (o.getStatusCode() == Operation.STATUS_CODE_TIMEOUT) {
+                        // Call to ExtensibilitySubscriptionCallback will resume the service
+                        // task.
+                        Utils.logWarning("Request to [%s] for [%s] tasks expired!",
+                                queue.endpoint, batch.size());
+                        finished(queue);
+                    } else {
+                        service.adjustStat(STAT_NAME_RETRIED, batch.size());
+                        long waitSeconds = getRetryWaitSeconds(retryCount - retriesLeft);
+                        service.getHost().schedule(() -> post(queue, batch, retriesLeft - 1),
+                                waitSeconds, TimeUnit.SECONDS);
+                    }
+                }));
+    }
+
+    private void onDelivered(List<Notification> batch) {
+        long nowMicros = Utils.getSystemNowMicrosUtc();
+        for (Notification notification : batch) {
+            service.setStat(STAT_NAME_LATENCY_MICROS, nowMicros - notification.queuedMicros);
+        }
+        service.adjustStat(STAT_NAME_SENT, batch.size());
+        if (batch.size() > 1) {
+            service.adjustStat(STAT_NAME_BATCHES_SENT, 1);
+        }
+    }
+
+    private void finished(EndpointQueue queue) {
+        synchronized (this) {
+            queue.inFlight--;
+        }
+        dispatch(queue);
+    }
+
+    /**
+     * Returns the wait before the given retry, doubled on each retry and limited to the maximum
+     * retry wait.
+     */
+    long getRetryWaitSeconds(int retry) {
+        long waitSeconds = retryWaitSeconds << Math.min(retry, 30);
+        return Math.min(waitSeconds, Math.max(retryWaitSeconds, maxRetryWaitSeconds));
+    }
+}
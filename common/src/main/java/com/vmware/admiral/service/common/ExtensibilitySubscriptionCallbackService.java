@@ -66,7 +66,8 @@ public class ExtensibilitySubscriptionCallbackService extends StatefulService {
         @UsageOption(option = PropertyUsageOption.REQUIRED)
         public URI serviceCallback;
 
-        @Documentation(description = "Task state json")
+        @Documentation(
+                description = "Json of the task state fields declared by the notification payload.")
         @UsageOption(option = PropertyUsageOption.REQUIRED)
         public String taskStateJson;
 
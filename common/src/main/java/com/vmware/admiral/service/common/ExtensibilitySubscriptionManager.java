@@ -13,9 +13,9 @@ package com.vmware.admiral.service.common;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -59,6 +59,13 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
             "com.vmware.admiral.service.extensibility.notification.retries", 3);
     private static final int NOTIFICATION_RETRY_WAIT = Integer.getInteger(
             "com.vmware.admiral.service.extensibility.notification.wait", 15);
+    private static final int NOTIFICATION_MAX_RETRY_WAIT = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.max.wait", 240);
+    private static final int NOTIFICATION_MAX_CONCURRENT = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.max.concurrent", 8);
+    // 1 disables batching of asynchronous notifications
+    private static final int NOTIFICATION_BATCH_SIZE = Integer.getInteger(
+            "com.vmware.admiral.service.extensibility.notification.batch.size", 1);
     private static final Duration EXTENSIBILITY_TIMEOUT = Duration.parse(
             System.getProperty("com.vmware.admiral.service.extensibility.timeout", "PT30M"));
 
@@ -74,7 +81,20 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
 
     private AtomicBoolean initialized = new AtomicBoolean();
 
+    private final ExtensibilityNotificationDelivery notificationDelivery =
+            new ExtensibilityNotificationDelivery(this, NOTIFICATION_MAX_CONCURRENT,
+                    NOTIFICATION_BATCH_SIZE, NOTIFICATION_RETRY_COUNT, NOTIFICATION_RETRY_WAIT,
+                    NOTIFICATION_MAX_RETRY_WAIT);
+
+    /**
+     * Asynchronous notifications sent together to a subscriber, when batching is enabled.
+     */
+    public static class ExtensibilityNotificationBatch extends ServiceDocument {
+        public List<ServiceDocument> notifications;
+    }
+
     public ExtensibilitySubscriptionManager() {
+        super.toggleOption(ServiceOption.INSTRUMENTATION, true);
     }
 
     @Override
@@ -270,9 +290,16 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
         logFine("Sending blocking notification to [%s] for [%s]",
                 extensibility.callbackReference, state.documentSelfLink);
 
+        // Notification payload will give information about the task to subscriber and the reply
+        // payload tells which fields are acceptable for response.
+        ServiceTaskCallbackResponse notificationPayloadData = PayloadProjection.project(state,
+                notificationPayload.getClass());
+        ServiceTaskCallbackResponse replyPayloadData = PayloadProjection.project(state,
+                replyPayload.getClass());
+
         // Create callback which will handle response from subscriber client.
         ExtensibilitySubscriptionCallback callbackState = new ExtensibilitySubscriptionCallback();
-        callbackState.taskStateJson = Utils.toJson(state);
+        callbackState.taskStateJson = Utils.toJson(notificationPayloadData);
         callbackState.taskStateClassName = state.getClass().getSimpleName();
 
         // Set callback to service task which will be resumed, once subscriber finished.
@@ -301,8 +328,9 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                             .getBody(ExtensibilitySubscriptionCallback.class);
 
                     sendExternalNotification(extensibility,
-                            buildDataToSend(notificationPayload, replyPayload, result),
-                            state, NOTIFICATION_RETRY_COUNT);
+                            buildDataToSend(notificationPayload, notificationPayloadData,
+                                    replyPayloadData, result),
+                            state, true);
                 }));
     }
 
@@ -323,80 +351,43 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 extensibility.callbackReference, state.documentSelfLink);
         // Task is filtered to provide only fields declared as notification payload.
         T notificationPayloadState = prepareTaskNotificationPayload(notificationPayload, state);
-        sendExternalNotification(extensibility, notificationPayloadState, state,
-                NOTIFICATION_RETRY_COUNT);
+        sendExternalNotification(extensibility, notificationPayloadState, state, false);
     }
 
     @SuppressWarnings("unchecked")
     private <T> T prepareTaskNotificationPayload(ServiceTaskCallbackResponse notificationPayload,
             T state) {
-        String stateAsJson = Utils.toJson(state);
-        ServiceTaskCallbackResponse notificationPayloadData = Utils.fromJson(
-                stateAsJson, notificationPayload.getClass());
+        ServiceTaskCallbackResponse notificationPayloadData = PayloadProjection.project(state,
+                notificationPayload.getClass());
         notificationPayloadData.taskInfo.stage = TaskStage.STARTED;
         notificationPayloadData.taskSubStage = DefaultSubStage.CREATED;
-        String payLoadAsJson = Utils.toJson(notificationPayloadData);
         // Filter task fields in order to leave only notification payload fields.
-        T filteredTask = (T) Utils.fromJson(payLoadAsJson, state.getClass());
-        return filteredTask;
+        return (T) PayloadProjection.move(notificationPayloadData, state.getClass());
     }
 
     /**
-     * Sends a service document to external url. Supports retry in case of an error and if task
-     * service is provided this method will call failTask when no more retries left.
+     * Queues a service document for delivery to external url. The delivery is retried in case of
+     * an error and the task is failed when no more retries are left.
      *
      * @param extensibility extensibility state
      * @param body          document to send
      * @param state         - task state
-     * @param retriesLeft   number of retries left before give up
+     * @param blocking      whether the task waits for the subscriber
      */
     @SuppressWarnings("rawtypes")
     private <T extends TaskServiceDocument> void sendExternalNotification(
             ExtensibilitySubscription extensibility,
-            ServiceDocument body, T state,
-            int retriesLeft) {
+            ServiceDocument body, T state, boolean blocking) {
 
-        sendRequest(Operation.createPost(extensibility.callbackReference)
-                .setBody(body)
-                .setCompletion((o, e) -> {
-                    if (e != null) {
-                        logWarning(
-                                "Retrying [%s] times to notify [%s]. Error: [%s]",
-                                retriesLeft, extensibility.callbackReference,
-                                e.getMessage());
-
-                        if (retriesLeft <= 1) {
-                            logWarning("Cannot notify [%s] for task [%s]. Error: %s",
-                                    extensibility.callbackReference, body.documentSelfLink,
-                                    e.getMessage());
-
-                            failTask(e.getMessage(), state.documentSelfLink);
-                        } else if (o.getStatusCode() == Operation.STATUS_CODE_TIMEOUT) {
-                            // Call to ExtensibilitySubscriptionCallback will resume the service
-                            // task.
-                            logWarning("Request to [%s] for task [%s] expired!",
-                                    extensibility.callbackReference, body.documentSelfLink);
-                        } else {
-                            getHost().schedule(() -> {
-                                sendExternalNotification(extensibility, body, state,
-                                        retriesLeft - 1);
-                            }, NOTIFICATION_RETRY_WAIT, TimeUnit.SECONDS);
-
-                        }
-                    }
-                }));
+        notificationDelivery.send(extensibility.callbackReference, body, blocking,
+                e -> failTask(e.getMessage(), state.documentSelfLink));
     }
 
-    @SuppressWarnings("rawtypes")
-    private <T extends TaskServiceDocument> ServiceDocument buildDataToSend(
-            ServiceTaskCallbackResponse notificationPayload,
-            ServiceTaskCallbackResponse replyPayload,
+    private ServiceDocument buildDataToSend(ServiceTaskCallbackResponse notificationPayload,
+            ServiceTaskCallbackResponse notificationPayloadData,
+            ServiceTaskCallbackResponse replyPayloadData,
             ExtensibilitySubscriptionCallback result) {
 
-        // Notification payload will give information about the task to subscriber.
-        ServiceTaskCallbackResponse notificationPayloadData = Utils.fromJson(
-                result.taskStateJson, notificationPayload.getClass());
-
         //Copy enhanced payload (if some enhancements to payload have been made)
         PropertyUtils.mergeObjects(notificationPayload, notificationPayloadData,
                 PropertyUtils.SHALLOW_MERGE_STRATEGY);
@@ -404,11 +395,6 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                 .customProperties != null ? filterSystemProperties(notificationPayload
                 .customProperties) : null;
 
-        // Get service reply payload in order to notify subscriber which fields are acceptable for
-        // response.
-        ServiceTaskCallbackResponse replyPayloadData = Utils.fromJson(
-                result.taskStateJson, replyPayload.getClass());
-
         ExtensibilitySubscriptionCallback data = new ExtensibilitySubscriptionCallback();
         data.serviceCallback = UriUtils.buildUri(getHost(), result.documentSelfLink);
         data.notificationPayload = Utils.toJson(notificationPayload);
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded ring buffer of log data kept off-heap. The buffer grows on demand up to its capacity,
+ * after that the oldest data is overwritten by the appended one.
+ * <p>
+ * The data is addressed by absolute offsets counted from the first byte ever written, so a
+ * reader can continue from the offset it has reached even when the data in front of it has
+ * been dropped meanwhile.
+ */
+public class LogBuffer {
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+    private static final byte LINE_SEPARATOR = '\n';
+
+    /**
+     * Data read from the buffer.
+     */
+    public static class Chunk {
+        /**
+         * Absolute offset of the first byte of the data.
+         */
+        public final long offset;
+
+        /**
+         * Absolute offset following the last byte of the buffer at the time of the read.
+         */
+        public final long endOffset;
+
+        public final byte[] data;
+
+        Chunk(long offset, long endOffset, byte[] data) {
+            this.offset = offset;
+            this.endOffset = endOffset;
+            this.data = data;
+        }
+    }
+
+    private final int capacity;
+    private ByteBuffer buffer;
+    private long startOffset;
+    private long endOffset;
+    private long lastAppendTimeMicros;
+
+    public LogBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("'capacity' must be positive.");
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getStartOffset() {
+        return startOffset;
+    }
+
+    public synchronized long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Time of the last append or reset, 0 if the buffer hasn't been written yet.
+     */
+    public synchronized long getLastAppendTimeMicros() {
+        return lastAppendTimeMicros;
+    }
+
+    /**
+     * Drops the buffered data and writes the given one instead. The offsets keep growing, so the
+     * readers of the old data continue from the beginning of the new one.
+     */
+    public synchronized void reset(byte[] data, long timeMicros) {
+        startOffset = endOffset;
+        write(data, 0, data.length);
+        lastAppendTimeMicros = timeMicros;
+    }
+
+    public synchronized void append(byte[] data, long timeMicros) {
+        write(data, 0, data.length);
+        lastAppendTimeMicros = timeMicros;
+    }
+
+    /**
+     * Reads up to <code>maxLength</code> bytes starting from the given absolute offset. Offsets
+     * of data which has been overwritten already are moved to the oldest available data.
+     */
+    public synchronized Chunk read(long offset, int maxLength) {
+        long from = Math.max(Math.min(offset, endOffset), startOffset);
+        int length = (int) Math.min(Math.max(maxLength, 0), endOffset - from);
+        return new Chunk(from, endOffset, copy(from, length));
+    }
+
+    /**
+     * Reads the last <code>lines</code> lines of the buffer.
+     */
+    public synchronized Chunk tail(int lines) {
+        if (lines <= 0) {
+            return new Chunk(endOffset, endOffset, new byte[0]);
+        }
+
+        // a separator which terminates the data doesn't start a new line
+        long position = endOffset > startOffset && get(endOffset - 1) == LINE_SEPARATOR
+                ? endOffset - 1 : endOffset;
+        long from = position;
+        int remaining = lines;
+        while (remaining > 0 && position > startOffset) {
+            position--;
+            if (get(position) == LINE_SEPARATOR) {
+                remaining--;
+                if (remaining == 0) {
+                    from = position + 1;
+                    break;
+                }
+            }
+            from = position;
+        }
+        return new Chunk(from, endOffset, copy(from, (int) (endOffset - from)));
+    }
+
+    private void write(byte[] data, int offset, int length) {
+        if (length >= capacity) {
+            // only the last part of the data fits, everything buffered so far is overwritten
+            endOffset += length - capacity;
+            startOffset = endOffset;
+            offset += length - capacity;
+            length = capacity;
+        }
+        if (length == 0) {
+            return;
+        }
+
+        ensureSize((int) Math.min((long) capacity, endOffset - startOffset + length));
+
+        int size = buffer.capacity();
+        int position = (int) (endOffset % size);
+        int first = Math.min(length, size - position);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(data, offset, first);
+        if (first < length) {
+            target.position(0);
+            target.put(data, offset + first, length - first);
+        }
+
+        endOffset += length;
+        startOffset = Math.max(startOffset, endOffset - size);
+    }
+
+    private void ensureSize(int size) {
+        if (buffer != null && buffer.capacity() >= size) {
+            return;
+        }
+
+        int newSize = buffer == null ? INITIAL_SIZE : buffer.capacity();
+        while (newSize < size) {
+            newSize *= 2;
+        }
+        newSize = Math.min(newSize, capacity);
+
+        // the data is placed at the positions of its offsets in the resized buffer
+        byte[] data = copy(startOffset, (int) (endOffset - startOffset));
+        long start = startOffset;
+        buffer = ByteBuffer.allocateDirect(newSize);
+        endOffset = start;
+        startOffset = start;
+        if (data.length > 0) {
+            int position = (int) (start % newSize);
+            int first = Math.min(data.length, newSize - position);
+            ByteBuffer target = buffer.duplicate();
+            target.position(position);
+            target.put(data, 0, first);
+            if (first < data.length) {
+                target.position(0);
+                target.put(data, first, data.length - first);
+            }
+            endOffset = start + data.length;
+        }
+    }
+
+    private byte[] copy(long from, int length) {
+        byte[] data = new byte[length];
+        if (length == 0) {
+            return data;
+        }
+
+        int size = buffer.capacity();
+        int position = (int) (from % size);
+        int first = Math.min(length, size - position);
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(data, 0, first);
+        if (first < length) {
+            source.position(0);
+            source.get(data, first, length - first);
+        }
+        return data;
+    }
+
+    private byte get(long offset) {
+        return buffer.get((int) (offset % buffer.capacity()));
+    }
+}
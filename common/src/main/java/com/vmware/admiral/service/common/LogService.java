@@ -11,21 +11,33 @@
 
 package com.vmware.admiral.service.common;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.photon.controller.model.ServiceUtils;
+import com.vmware.admiral.service.common.LogBuffer.Chunk;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
 import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 
 /**
  * LogService is log management service which maintains the logs of a container.
+ * <p>
+ * The service is not persisted, the log data is kept in a bounded off-heap {@link LogBuffer}
+ * and only the metadata of the log is part of the service state. PUT replaces the log data,
+ * PATCH appends to it. GET returns the whole log or a part of it selected with the
+ * {@link #TAIL_QUERY_PARAM}, {@link #OFFSET_QUERY_PARAM} and {@link #LENGTH_QUERY_PARAM} query
+ * parameters. With {@link #FOLLOW_QUERY_PARAM} a GET waits for data following the given offset
+ * to be appended.
  */
 public class LogService extends StatefulService {
     private static final String CONTAINER_LOG_MAX_SIZE_PROPERTY = "container.log.max.size";
@@ -35,9 +47,47 @@ public class LogService extends StatefulService {
 
     public static final String FACTORY_LINK = ManagementUriParts.LOGS;
 
+    /**
+     * Number of trailing lines to return.
+     */
+    public static final String TAIL_QUERY_PARAM = "tail";
+
+    /**
+     * Absolute offset of the first byte to return, as reported in
+     * {@link LogServiceState#nextOffset} of a previous request.
+     */
+    public static final String OFFSET_QUERY_PARAM = "offset";
+
+    /**
+     * Maximum number of bytes to return.
+     */
+    public static final String LENGTH_QUERY_PARAM = "length";
+
+    /**
+     * When <code>true</code> the request is held until there is data following the requested
+     * offset or {@link #FOLLOW_TIMEOUT_MICROS} passes.
+     */
+    public static final String FOLLOW_QUERY_PARAM = "follow";
+
+    /**
+     * Adapter request property, when set the fetched logs are appended to the existing ones
+     * instead of replacing them.
+     */
+    public static final String APPEND_LOGS_PROP_NAME = "__appendLogs";
+
+    /**
+     * Adapter request property, when set the logs are fetched with timestamps only to find the
+     * lines which are stored already, the timestamps are not stored.
+     */
+    public static final String STRIP_TIMESTAMPS_PROP_NAME = "__stripTimestamps";
+
     protected static final long DEFAULT_EXPIRATION_MICROS = Long.getLong(
             "com.vmware.admiral.service.common.expiration.micros", TimeUnit.MINUTES.toMicros(5));
 
+    public static final long FOLLOW_TIMEOUT_MICROS = Long.getLong(
+            "com.vmware.admiral.service.common.log.follow.timeout.micros",
+            TimeUnit.SECONDS.toMicros(30));
+
     public static class LogServiceState
             extends com.vmware.admiral.service.common.MultiTenantDocument {
 
@@ -51,17 +101,57 @@ public class LogService extends StatefulService {
                 PropertyIndexingOption.STORE_ONLY,
                 PropertyIndexingOption.EXCLUDE_FROM_SIGNATURE })
         public byte[] logs;
+
+        @Documentation(description = "Offset of the first byte of the returned log data.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Long offset;
+
+        @Documentation(description = "Offset to continue reading or following the log from.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Long nextOffset;
+
+        @Documentation(description = "Docker timestamp of the last stored log line, known when "
+                + "the logs are fetched with timestamps.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public String lastLogTimestamp;
+
+        /**
+         * Set on writes of log data in which each line starts with its docker timestamp. The
+         * lines of an appended one which are not newer than {@link #lastLogTimestamp} are
+         * skipped.
+         */
+        @Documentation(description = "Whether the written log lines start with docker "
+                + "timestamps.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Boolean timestamped;
+
+        @Documentation(description = "Whether the docker timestamps of the written log lines "
+                + "are removed before storing them.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Boolean stripTimestamps;
+    }
+
+    private static class PendingFollow {
+        final Operation get;
+        final long offset;
+        final int maxLength;
+
+        PendingFollow(Operation get, long offset, int maxLength) {
+            this.get = get;
+            this.offset = offset;
+            this.maxLength = maxLength;
+        }
     }
 
+    private final LogBuffer logBuffer = new LogBuffer(MAX_LOG_SIZE);
+    private final List<PendingFollow> pendingFollows = new ArrayList<>();
+
     public LogService() {
         super(LogServiceState.class);
-        super.toggleOption(Service.ServiceOption.PERSISTENCE, true);
         super.toggleOption(Service.ServiceOption.DOCUMENT_OWNER, true);
         super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
 
-        /* Workaround for https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-         * to not overload the storage with container logs.
-         * Remove when bug is fixed.*/
+        // the logs are kept in memory only, release them when they are no longer requested
         super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
         super.setMaintenanceIntervalMicros(DEFAULT_EXPIRATION_MICROS);
     }
@@ -72,14 +162,48 @@ public class LogService extends StatefulService {
             return;
         }
 
-        /* Disabled until https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-         * is fixed */
-        // Set the expiration time to be 15 minutes by default.
-        // LogServiceState state = startPost.getBody(LogServiceState.class);
-        // state.documentExpirationTimeMicros = ServiceUtils
-        //         .getExpirationTimeFromNowInMicros(
-        //         DEFAULT_EXPIRATION_MICROS);
-        startPost.complete();
+        LogServiceState state = startPost.getBody(LogServiceState.class);
+        if (state.logs != null) {
+            logBuffer.reset(getLogData(state, null, state), Utils.getSystemNowMicrosUtc());
+        }
+        state.logs = null;
+        state.timestamped = null;
+        state.stripTimestamps = null;
+        startPost.setBody(state).complete();
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
+        int maxLength;
+        long offset;
+        try {
+            maxLength = params.containsKey(LENGTH_QUERY_PARAM)
+                    ? Integer.parseInt(params.get(LENGTH_QUERY_PARAM)) : Integer.MAX_VALUE;
+            offset = params.containsKey(OFFSET_QUERY_PARAM)
+                    ? Long.parseLong(params.get(OFFSET_QUERY_PARAM)) : -1;
+        } catch (NumberFormatException e) {
+            get.fail(new IllegalArgumentException("Invalid log range: " + e.getMessage()));
+            return;
+        }
+
+        if (Boolean.parseBoolean(params.get(FOLLOW_QUERY_PARAM))) {
+            follow(get, offset < 0 ? logBuffer.getEndOffset() : offset, maxLength);
+            return;
+        }
+
+        Chunk chunk;
+        if (params.containsKey(TAIL_QUERY_PARAM)) {
+            try {
+                chunk = logBuffer.tail(Integer.parseInt(params.get(TAIL_QUERY_PARAM)));
+            } catch (NumberFormatException e) {
+                get.fail(new IllegalArgumentException("Invalid log tail: " + e.getMessage()));
+                return;
+            }
+        } else {
+            chunk = logBuffer.read(offset < 0 ? 0 : offset, maxLength);
+        }
+        get.setBody(createResponse(getState(get), chunk)).complete();
     }
 
     @Override
@@ -92,19 +216,62 @@ public class LogService extends StatefulService {
         LogServiceState newState = put.getBody(LogServiceState.class);
 
         if (newState.logs != null) {
-            currentState.logs = newState.logs;
+            currentState.lastLogTimestamp = null;
+            logBuffer.reset(getLogData(newState, null, currentState),
+                    Utils.getSystemNowMicrosUtc());
         }
         // workaround for NullPointerException in xenon when the service has no REPLICATION option
         if (currentState.documentEpoch == null) {
             currentState.documentEpoch = 0L;
         }
         setState(put, currentState);
-        put.setBody(currentState).complete();
+        put.setBody(createResponse(currentState, logBuffer.read(0, Integer.MAX_VALUE)))
+                .complete();
+        completePendingFollows();
+    }
+
+    /**
+     * Appends the logs of the body. Fetches which continue the previous one, marked with
+     * {@link #APPEND_LOGS_PROP_NAME}, start at the second of the last stored line and are
+     * fetched with timestamps, the lines which are not newer than
+     * {@link LogServiceState#lastLogTimestamp} are stored already and skipped.
+     */
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!checkForBody(patch)) {
+            return;
+        }
+
+        LogServiceState currentState = getState(patch);
+        if (currentState.documentEpoch == null) {
+            currentState.documentEpoch = 0L;
+        }
+
+        LogServiceState patchState = patch.getBody(LogServiceState.class);
+        if (patchState.logs != null && patchState.logs.length > 0) {
+            byte[] data = getLogData(patchState, currentState.lastLogTimestamp, currentState);
+            if (data.length > 0) {
+                logBuffer.append(data, Utils.getSystemNowMicrosUtc());
+            }
+        }
+        patch.setBody(createResponse(currentState,
+                logBuffer.read(logBuffer.getEndOffset(), 0))).complete();
+        completePendingFollows();
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        synchronized (pendingFollows) {
+            LogServiceState state = getState(delete);
+            for (PendingFollow follow : pendingFollows) {
+                follow.get.setBody(createResponse(state,
+                        logBuffer.read(follow.offset, follow.maxLength))).complete();
+            }
+            pendingFollows.clear();
+        }
+        super.handleStop(delete);
     }
 
-    /* Workaround for https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-     * to not overload the storage with container logs.
-     * Remove when bug is fixed.*/
     @Override
     public void handlePeriodicMaintenance(Operation post) {
         if (getProcessingStage() != ProcessingStage.AVAILABLE) {
@@ -117,7 +284,8 @@ public class LogService extends StatefulService {
 
     protected void doMaintenance(Operation post, String selfLink, long documentExpirationTime) {
         sendRequest(Operation
-                .createGet(this, selfLink)
+                .createGet(UriUtils.extendUriWithQuery(UriUtils.buildUri(getHost(), selfLink),
+                        LENGTH_QUERY_PARAM, "0"))
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         post.fail(ex);
@@ -149,14 +317,6 @@ public class LogService extends StatefulService {
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
-        ServiceUtils.setRetentionLimit(template);
-
-        /* Workaround until https://www.pivotaltracker.com/n/projects/1471320/stories/143794415
-         * is fixed. Keep minimum versions of this state, because it is going to be kept until
-         * the container is existing. */
-        // com.vmware.photon.controller.model.ServiceUtils.setRetentionLimit(template);
-        template.documentDescription.versionRetentionFloor = 1;
-        template.documentDescription.versionRetentionLimit = 2;
 
         // resource reference prop:
         ServiceDocumentDescription.PropertyDescription pd = template.documentDescription
@@ -170,6 +330,72 @@ public class LogService extends StatefulService {
         return template;
     }
 
+    private void follow(Operation get, long offset, int maxLength) {
+        PendingFollow follow = new PendingFollow(get, offset, maxLength);
+        synchronized (pendingFollows) {
+            if (logBuffer.getEndOffset() <= offset) {
+                pendingFollows.add(follow);
+                getHost().schedule(() -> completeFollow(follow),
+                        FOLLOW_TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+                return;
+            }
+        }
+        get.setBody(createResponse(getState(get), logBuffer.read(offset, maxLength)))
+                .complete();
+    }
+
+    private void completeFollow(PendingFollow follow) {
+        synchronized (pendingFollows) {
+            if (!pendingFollows.remove(follow)) {
+                return;
+            }
+        }
+        follow.get.setBody(createResponse(getState(follow.get),
+                logBuffer.read(follow.offset, follow.maxLength))).complete();
+    }
+
+    private void completePendingFollows() {
+        List<PendingFollow> completed = new ArrayList<>();
+        synchronized (pendingFollows) {
+            long endOffset = logBuffer.getEndOffset();
+            for (Iterator<PendingFollow> it = pendingFollows.iterator(); it.hasNext(); ) {
+                PendingFollow follow = it.next();
+                if (follow.offset < endOffset) {
+                    it.remove();
+                    completed.add(follow);
+                }
+            }
+        }
+        for (PendingFollow follow : completed) {
+            follow.get.setBody(createResponse(getState(follow.get),
+                    logBuffer.read(follow.offset, follow.maxLength))).complete();
+        }
+    }
+
+    /**
+     * Returns the log data of a write to store. The data of timestamped writes is limited to the
+     * lines logged after the given timestamp and the timestamp of its last line is kept in the
+     * state.
+     */
+    private static byte[] getLogData(LogServiceState body, String after,
+            LogServiceState state) {
+        if (!Boolean.TRUE.equals(body.timestamped)) {
+            return body.logs;
+        }
+        TimestampedLogs logs = TimestampedLogs.parse(body.logs, after,
+                Boolean.TRUE.equals(body.stripTimestamps));
+        state.lastLogTimestamp = logs.lastTimestamp;
+        return logs.data;
+    }
+
+    private static LogServiceState createResponse(LogServiceState state, Chunk chunk) {
+        LogServiceState response = Utils.clone(state);
+        response.logs = chunk.data;
+        response.offset = chunk.offset;
+        response.nextOffset = chunk.offset + chunk.data.length;
+        return response;
+    }
+
     // Default is 16 MB. Not recommended to be increased as it is likely to cause performance
     // problems. A grand maximum of 64 MB, when we will fail when receiving the response from
     // Docker. Currently, if the log goes over 64MB, we will still fail, because we won't be able to
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Copies the fields of an object to a new instance of another class, e.g. a task state to its
+ * notification payload, keeping only the fields which both classes declare. This is what
+ * converting the object to JSON and back to the other class does, without the JSON.
+ * <p>
+ * The pairs of fields are resolved once per source and target class. Immutable values are
+ * copied as they are, other values are cloned. A value which the target field doesn't accept,
+ * e.g. the sub stage of one task copied to the sub stage of another, is converted through JSON.
+ */
+final class PayloadProjection {
+
+    private static final ClassValue<ConcurrentMap<Class<?>, PayloadProjection>> projections =
+            new ClassValue<ConcurrentMap<Class<?>, PayloadProjection>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, PayloadProjection> computeValue(
+                        Class<?> sourceType) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final Class<?> targetType;
+    // null when the target has no constructor without arguments
+    private final Constructor<?> targetConstructor;
+    private final FieldCopy[] fieldCopies;
+
+    private static final class FieldCopy {
+        final Field source;
+        final Field target;
+        // the boxed type of the target field, null if its type can't be resolved to a class
+        final Class<?> targetClass;
+        // whether both fields are declared with the same concrete type
+        final boolean sameType;
+
+        FieldCopy(Field source, Field target, Type sourceType, Type targetType) {
+            this.source = source;
+            this.target = target;
+            this.targetClass = targetType instanceof Class
+                    ? MethodType.methodType((Class<?>) targetType).wrap().returnType()
+                    : null;
+            this.sameType = isConcrete(sourceType) && sourceType.equals(targetType);
+        }
+    }
+
+    private PayloadProjection(Class<?> sourceType, Class<?> targetType) {
+        this.targetType = targetType;
+        this.targetConstructor = getDefaultConstructor(targetType);
+
+        Map<String, Field> targetFields = getSerializedFields(targetType);
+        List<FieldCopy> copies = new ArrayList<>();
+        getSerializedFields(sourceType).forEach((name, sourceField) -> {
+            Field targetField = targetFields.get(name);
+            if (targetField != null) {
+                copies.add(new FieldCopy(sourceField, targetField,
+                        resolveType(sourceType, sourceField),
+                        resolveType(targetType, targetField)));
+            }
+        });
+        this.fieldCopies = copies.toArray(new FieldCopy[copies.size()]);
+    }
+
+    /**
+     * Returns a new instance of the target class with copies of the fields of the source which
+     * the target class declares.
+     */
+    static <T> T project(Object source, Class<T> targetType) {
+        return forTypes(source.getClass(), targetType).copy(source, false);
+    }
+
+    /**
+     * Same as {@link #project(Object, Class)} for a source which is not used afterwards, so its
+     * values are moved to the new instance rather than cloned.
+     */
+    static <T> T move(Object source, Class<T> targetType) {
+        return forTypes(source.getClass(), targetType).copy(source, true);
+    }
+
+    private static PayloadProjection forTypes(Class<?> sourceType, Class<?> targetType) {
+        ConcurrentMap<Class<?>, PayloadProjection> targets = projections.get(sourceType);
+        PayloadProjection projection = targets.get(targetType);
+        if (projection == null) {
+            projection = targets.computeIfAbsent(targetType,
+                    t -> new PayloadProjection(sourceType, t));
+        }
+        return projection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T copy(Object source, boolean move) {
+        try {
+            T target = (T) newTarget();
+            for (FieldCopy fieldCopy : fieldCopies) {
+                Object value = fieldCopy.source.get(source);
+                if (value != null) {
+                    fieldCopy.target.set(target, copyValue(fieldCopy, value, move));
+                }
+            }
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Cannot copy %s to %s",
+                    source.getClass().getName(), targetType.getName()), e);
+        }
+    }
+
+    private Object newTarget() throws ReflectiveOperationException {
+        if (targetConstructor != null) {
+            return targetConstructor.newInstance();
+        }
+        // let the JSON deserializer allocate the instance
+        return Utils.fromJson("{}", targetType);
+    }
+
+    private Object copyValue(FieldCopy fieldCopy, Object value, boolean move)
+            throws ReflectiveOperationException {
+        boolean immutable = isImmutable(value);
+        if (fieldCopy.sameType || (fieldCopy.targetClass != null
+                && fieldCopy.targetClass.isInstance(value)
+                && (immutable || fieldCopy.targetClass == Object.class))) {
+            return immutable || move ? value : Utils.clone(value);
+        }
+
+        // convert the value as part of an instance of the target class, so that the JSON
+        // deserializer resolves the generic type of the field in the context of the class
+        String json = String.format("{\"%s\":%s}", fieldCopy.target.getName(),
+                Utils.toJson(value));
+        return fieldCopy.target.get(Utils.fromJson(json, targetType));
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Enum || value instanceof Boolean
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof Character || value instanceof URI;
+    }
+
+    private static boolean isConcrete(Type type) {
+        if (type instanceof Class) {
+            return true;
+        }
+        if (type instanceof ParameterizedType) {
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                if (!isConcrete(argument)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the fields which the JSON serializer writes, by name. Fields hidden by a field with
+     * the same name in a subclass are skipped.
+     */
+    private static Map<String, Field> getSerializedFields(Class<?> type) {
+        Map<String, Field> fields = new LinkedHashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic() || fields.containsKey(field.getName())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.put(field.getName(), field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Resolves a field declared with a type variable of a superclass, e.g. the sub stage of a
+     * task, to the type argument given by the class.
+     */
+    private static Type resolveType(Class<?> type, Field field) {
+        Type fieldType = field.getGenericType();
+        if (!(fieldType instanceof TypeVariable)) {
+            return fieldType;
+        }
+
+        Map<TypeVariable<?>, Type> arguments = new HashMap<>();
+        for (Class<?> c = type; c != null && c != field.getDeclaringClass();
+                c = c.getSuperclass()) {
+            Type superType = c.getGenericSuperclass();
+            if (!(superType instanceof ParameterizedType)) {
+                continue;
+            }
+            ParameterizedType parameterized = (ParameterizedType) superType;
+            TypeVariable<?>[] variables = ((Class<?>) parameterized.getRawType())
+                    .getTypeParameters();
+            Type[] actual = parameterized.getActualTypeArguments();
+            for (int i = 0; i < variables.length; i++) {
+                arguments.put(variables[i], arguments.getOrDefault(actual[i], actual[i]));
+            }
+        }
+        return arguments.getOrDefault(fieldType, fieldType);
+    }
+
+    private static Constructor<?> getDefaultConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
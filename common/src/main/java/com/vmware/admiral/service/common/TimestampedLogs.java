@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Log data fetched from docker with timestamps: every log line starts with the RFC3339 time it
+ * was logged at, followed by a space. The lines of multiplexed streams are framed with an 8 byte
+ * header of the stream type, 3 zero bytes and the big endian length of the frame.
+ */
+class TimestampedLogs {
+
+    private static final int FRAME_HEADER_LENGTH = 8;
+    private static final byte LINE_SEPARATOR = '\n';
+    private static final byte TIMESTAMP_SEPARATOR = ' ';
+
+    /**
+     * The lines which were logged after the given time.
+     */
+    final byte[] data;
+
+    /**
+     * Timestamp of the last line of the data, or the given time when no line was kept.
+     */
+    final String lastTimestamp;
+
+    private TimestampedLogs(byte[] data, String lastTimestamp) {
+        this.data = data;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Keeps the lines logged after the <code>after</code> timestamp, all of them when it is
+     * <code>null</code>. A line without a timestamp goes along with the line before it. With
+     * <code>strip</code> the timestamps are removed from the kept lines.
+     */
+    static TimestampedLogs parse(byte[] data, String after, boolean strip) {
+        Instant afterTime = parseTimestamp(after);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        String lastTimestamp = after;
+        boolean skip = false;
+
+        int position = 0;
+        while (position < data.length) {
+            boolean framed = isFrameHeader(data, position);
+            int start = framed ? position + FRAME_HEADER_LENGTH : position;
+            int end = framed ? (int) Math.min(data.length, start + getFrameLength(data, position))
+                    : indexOf(data, LINE_SEPARATOR, start, data.length) + 1;
+            if (end <= start) {
+                end = data.length;
+            }
+
+            int separator = indexOf(data, TIMESTAMP_SEPARATOR, start, end);
+            String timestamp = separator > start
+                    ? new String(data, start, separator - start, StandardCharsets.US_ASCII)
+                    : null;
+            Instant time = parseTimestamp(timestamp);
+            if (time != null) {
+                skip = afterTime != null && !time.isAfter(afterTime);
+            }
+
+            if (!skip) {
+                if (time != null) {
+                    lastTimestamp = timestamp;
+                }
+                if (time != null && strip) {
+                    int from = separator + 1;
+                    if (framed) {
+                        out.write(data, position, 4);
+                        writeInt(out, end - from);
+                    }
+                    out.write(data, from, end - from);
+                } else {
+                    out.write(data, position, end - position);
+                }
+            }
+            position = end;
+        }
+        return new TimestampedLogs(out.toByteArray(), lastTimestamp);
+    }
+
+    /**
+     * Returns the time of a docker timestamp, <code>null</code> if it is not valid.
+     */
+    static Instant parseTimestamp(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static boolean isFrameHeader(byte[] data, int position) {
+        return position + FRAME_HEADER_LENGTH <= data.length && data[position] >= 0
+                && data[position] <= 2 && data[position + 1] == 0 && data[position + 2] == 0
+                && data[position + 3] == 0;
+    }
+
+    private static long getFrameLength(byte[] data, int position) {
+        return ((data[position + 4] & 0xFFL) << 24) | ((data[position + 5] & 0xFFL) << 16)
+                | ((data[position + 6] & 0xFFL) << 8) | (data[position + 7] & 0xFFL);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int indexOf(byte[] data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
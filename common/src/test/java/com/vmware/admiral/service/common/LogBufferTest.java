@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.vmware.admiral.service.common.LogBuffer.Chunk;
+
+public class LogBufferTest {
+
+    @Test
+    public void testAppendAndRead() {
+        LogBuffer buffer = new LogBuffer(1024);
+        buffer.append("line-1\n".getBytes(), 1);
+        buffer.append("line-2\n".getBytes(), 2);
+
+        Chunk chunk = buffer.read(0, Integer.MAX_VALUE);
+        assertEquals("line-1\nline-2\n", new String(chunk.data));
+        assertEquals(0, chunk.offset);
+        assertEquals(14, chunk.endOffset);
+        assertEquals(2, buffer.getLastAppendTimeMicros());
+
+        chunk = buffer.read(7, 4);
+        assertEquals("line", new String(chunk.data));
+        assertEquals(7, chunk.offset);
+
+        chunk = buffer.read(100, 10);
+        assertEquals(0, chunk.data.length);
+        assertEquals(14, chunk.offset);
+    }
+
+    @Test
+    public void testOverwriteOldestData() {
+        LogBuffer buffer = new LogBuffer(10);
+        buffer.append("0123456".getBytes(), 1);
+        buffer.append("789abc".getBytes(), 2);
+
+        assertEquals(3, buffer.getStartOffset());
+        assertEquals(13, buffer.getEndOffset());
+        assertEquals("3456789abc", new String(buffer.read(0, Integer.MAX_VALUE).data));
+
+        Chunk chunk = buffer.read(1, 3);
+        assertEquals(3, chunk.offset);
+        assertEquals("345", new String(chunk.data));
+
+        buffer.append("the data doesn't fit".getBytes(), 3);
+        assertEquals("oesn't fit", new String(buffer.read(0, Integer.MAX_VALUE).data));
+        assertEquals(33, buffer.getEndOffset());
+    }
+
+    @Test
+    public void testGrowKeepsData() {
+        LogBuffer buffer = new LogBuffer(1024 * 1024);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            String line = "line-" + i + "\n";
+            expected.append(line);
+            buffer.append(line.getBytes(), i);
+        }
+
+        assertEquals(expected.toString(), new String(buffer.read(0, Integer.MAX_VALUE).data));
+    }
+
+    @Test
+    public void testReset() {
+        LogBuffer buffer = new LogBuffer(1024);
+        buffer.append("old\n".getBytes(), 1);
+        buffer.reset("new\n".getBytes(), 2);
+
+        Chunk chunk = buffer.read(0, Integer.MAX_VALUE);
+        assertEquals("new\n", new String(chunk.data));
+        assertEquals(4, chunk.offset);
+    }
+
+    @Test
+    public void testTail() {
+        LogBuffer buffer = new LogBuffer(1024);
+        buffer.append("line-1\nline-2\nline-3\n".getBytes(), 1);
+
+        assertEquals("line-3\n", new String(buffer.tail(1).data));
+        assertEquals("line-2\nline-3\n", new String(buffer.tail(2).data));
+        assertEquals("line-1\nline-2\nline-3\n", new String(buffer.tail(10).data));
+        assertEquals(0, buffer.tail(0).data.length);
+
+        buffer.append("partial".getBytes(), 2);
+        assertEquals("partial", new String(buffer.tail(1).data));
+        assertEquals("line-3\npartial", new String(buffer.tail(2).data));
+    }
+}
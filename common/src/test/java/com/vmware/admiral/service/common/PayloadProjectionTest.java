@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.BaseExtensibilityCallbackResponse;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.Utils;
+
+public class PayloadProjectionTest {
+
+    @Test
+    public void testProjectionMatchesJsonConversion() {
+        TestTaskState task = createTask();
+
+        TestPayload payload = PayloadProjection.project(task, TestPayload.class);
+        TestPayload jsonPayload = Utils.fromJson(Utils.toJson(task), TestPayload.class);
+
+        assertEquals(Utils.toJson(jsonPayload), Utils.toJson(payload));
+        assertEquals(task.resourceName, payload.resourceName);
+        assertEquals(task.resourceLinks, payload.resourceLinks);
+        assertEquals(task.resourceCount, payload.resourceCount);
+        assertEquals(task.customProperties, payload.customProperties);
+    }
+
+    @Test
+    public void testProjectionCopiesMutableValues() {
+        TestTaskState task = createTask();
+
+        TestPayload payload = PayloadProjection.project(task, TestPayload.class);
+        payload.taskInfo.stage = TaskStage.STARTED;
+        payload.resourceLinks.add("/resources/3");
+
+        assertNotSame(task.taskInfo, payload.taskInfo);
+        assertEquals(TaskStage.CREATED, task.taskInfo.stage);
+        assertEquals(2, task.resourceLinks.size());
+    }
+
+    @Test
+    public void testProjectionToTaskConvertsSubStage() {
+        TestTaskState task = createTask();
+
+        TestPayload payload = PayloadProjection.project(task, TestPayload.class);
+        payload.taskSubStage = DefaultSubStage.CREATED;
+        TestTaskState filteredTask = PayloadProjection.move(payload, TestTaskState.class);
+
+        assertEquals(TestTaskState.SubStage.CREATED, filteredTask.taskSubStage);
+        assertEquals(task.resourceName, filteredTask.resourceName);
+        assertEquals(task.resourceLinks, filteredTask.resourceLinks);
+        // not declared by the payload
+        assertNull(filteredTask.documentSelfLink);
+    }
+
+    private static TestTaskState createTask() {
+        TestTaskState task = new TestTaskState();
+        task.documentSelfLink = "/tasks/test";
+        task.taskInfo = new TaskState();
+        task.taskInfo.stage = TaskStage.CREATED;
+        task.taskSubStage = TestTaskState.SubStage.PROCESSING;
+        task.resourceName = "test-resource";
+        task.resourceLinks = new ArrayList<>(Arrays.asList("/resources/1", "/resources/2"));
+        task.resourceCount = 2;
+        task.customProperties = new HashMap<>();
+        task.customProperties.put("key", "value");
+        return task;
+    }
+
+    private static class TestTaskState extends TaskServiceDocument<TestTaskState.SubStage> {
+        enum SubStage {
+            CREATED, PROCESSING, COMPLETED
+        }
+
+        public String resourceName;
+        public List<String> resourceLinks;
+        public long resourceCount;
+    }
+
+    protected static class TestPayload extends BaseExtensibilityCallbackResponse {
+        public String resourceName;
+        public List<String> resourceLinks;
+        public long resourceCount;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TimestampedLogsTest {
+
+    private static final String LOGS = "2017-05-04T10:00:00.1Z same line\n"
+            + "2017-05-04T10:00:00.12Z same line\n"
+            + "2017-05-04T10:00:01Z other line\n";
+
+    @Test
+    public void testKeepLinesAfterTimestamp() {
+        TimestampedLogs logs = TimestampedLogs.parse(LOGS.getBytes(), "2017-05-04T10:00:00.1Z",
+                true);
+
+        // the repeated line is kept as it is newer, the fraction digits are compared by value
+        assertEquals("same line\nother line\n", new String(logs.data));
+        assertEquals("2017-05-04T10:00:01Z", logs.lastTimestamp);
+    }
+
+    @Test
+    public void testKeepAllLinesWithTimestamps() {
+        TimestampedLogs logs = TimestampedLogs.parse(LOGS.getBytes(), null, false);
+
+        assertEquals(LOGS, new String(logs.data));
+        assertEquals("2017-05-04T10:00:01Z", logs.lastTimestamp);
+    }
+
+    @Test
+    public void testNothingNewKeepsLastTimestamp() {
+        TimestampedLogs logs = TimestampedLogs.parse(LOGS.getBytes(), "2017-05-04T10:00:01Z",
+                true);
+
+        assertEquals(0, logs.data.length);
+        assertEquals("2017-05-04T10:00:01Z", logs.lastTimestamp);
+    }
+
+    @Test
+    public void testLinesWithoutTimestamp() {
+        TimestampedLogs logs = TimestampedLogs.parse(("2017-05-04T10:00:00Z first\n"
+                + "continued\n"
+                + "2017-05-04T10:00:02Z second\n"
+                + "continued\n").getBytes(), "2017-05-04T10:00:01Z", true);
+
+        // a line without timestamp goes along with the line before it
+        assertEquals("second\ncontinued\n", new String(logs.data));
+
+        logs = TimestampedLogs.parse("--".getBytes(), null, true);
+        assertEquals("--", new String(logs.data));
+        assertNull(logs.lastTimestamp);
+    }
+
+    @Test
+    public void testMultiplexedStream() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeFrame(data, 1, "2017-05-04T10:00:00Z out line\n");
+        // the frame length 266 contains a line separator byte
+        String err = "2017-05-04T10:00:02Z " + String.join("", Collections.nCopies(244, "e"))
+                + "\n";
+        writeFrame(data, 2, err);
+
+        TimestampedLogs logs = TimestampedLogs.parse(data.toByteArray(),
+                "2017-05-04T10:00:01Z", true);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writeFrame(expected, 2, err.substring(err.indexOf(' ') + 1));
+        assertArrayEquals(expected.toByteArray(), logs.data);
+        assertEquals("2017-05-04T10:00:02Z", logs.lastTimestamp);
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int stream, String line) {
+        byte[] payload = line.getBytes();
+        out.write(stream);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(payload.length >>> 24);
+        out.write(payload.length >>> 16);
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(payload, 0, payload.length);
+    }
+}
@@ -12,9 +12,7 @@
 package com.vmware.admiral.compute;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,7 +22,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -34,17 +31,14 @@ import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonPrimitive;
 
 import com.vmware.admiral.closures.services.closure.Closure;
-import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.common.util.YamlMapper;
 import com.vmware.admiral.compute.content.Binding;
 import com.vmware.admiral.compute.content.Binding.ComponentBinding;
 import com.vmware.admiral.compute.content.ComponentTemplate;
 import com.vmware.admiral.compute.content.CompositeTemplate;
 import com.vmware.admiral.compute.content.NestedState;
-import com.vmware.photon.controller.model.resources.ResourceState;
 import com.vmware.xenon.common.LocalizableValidationException;
 
 /**
@@ -153,26 +147,31 @@ public class BindingEvaluator {
     }
 
     /**
-     * Applies the binding on a Component, after a dependent component is provisioned.
+     * Applies the binding on a Component, after a dependent component is provisioned. The
+     * bindings are evaluated in a single pass and the state is serialized and deserialized at
+     * most once, regardless of the number of bindings.
      */
 
     public static NestedState evaluateProvisioningTimeBindings(
             NestedState state,
             List<Binding> bindings,
             Map<String, NestedState> provisionedResources) {
-        NestedState result = state;
-        Map<String, Object> evaluatedBindingMap = new HashMap<>();
+        Map<Binding, Object> evaluatedBindings = new LinkedHashMap<>();
         for (Binding binding : bindings) {
             if (!binding.isProvisioningTimeBinding()) {
                 continue;
             }
             try {
-                evaluateProvisioningTimeBinding(binding, provisionedResources, evaluatedBindingMap);
-            } catch (ReflectiveOperationException | IOException e) {
+                evaluateProvisioningTimeBinding(binding, provisionedResources, evaluatedBindings);
+            } catch (ReflectiveOperationException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        if (evaluatedBindings.isEmpty()) {
+            return state;
+        }
+
         try {
             final Map<String, Object> resultBindingMap = new HashMap<>();
             sanitizeState(state, (normalizedState) -> {
@@ -186,16 +185,13 @@ public class BindingEvaluator {
 
             });
 
-            applyEvaluatedState(resultBindingMap, evaluatedBindingMap, bindings);
-            if (!evaluatedBindingMap.isEmpty()) {
-                result = TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
-                        state.object.getClass());
-            }
+            evaluatedBindings.forEach((binding, value) -> setValue(resultBindingMap,
+                    binding.targetFieldPath, value));
+            return TemplateSerializationUtils.deserializeServiceDocument(resultBindingMap,
+                    state.object.getClass());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        return result;
     }
 
     private static void sanitizeState(NestedState state, Consumer<NestedState> serializationCall)
@@ -225,30 +221,9 @@ public class BindingEvaluator {
 
     }
 
-    private static void applyEvaluatedState(Map<String, Object> resultBindingMap,
-            Map<String, Object> evaluatedBindingMap, List<Binding> bindings) {
-        evaluatedBindingMap.forEach((k, v) -> {
-            Binding targetBinding = findBindingByExpression(k, bindings);
-            if (targetBinding != null) {
-                setValue(resultBindingMap, targetBinding.targetFieldPath, v);
-            }
-        });
-
-    }
-
-    private static Binding findBindingByExpression(String k, List<Binding> bindings) {
-        for (Binding b : bindings) {
-            if (k.equalsIgnoreCase(b.placeholder.bindingExpression)) {
-                return b;
-            }
-        }
-
-        return null;
-    }
-
     private static void evaluateProvisioningTimeBinding(Binding binding,
-            Map<String, NestedState> provisionedResources, Map<String, Object> evaluatedBindings)
-            throws ReflectiveOperationException, IOException {
+            Map<String, NestedState> provisionedResources, Map<Binding, Object> evaluatedBindings)
+            throws ReflectiveOperationException {
 
         String componentName = BindingUtils
                 .extractComponentNameFromBindingExpression(binding.placeholder.bindingExpression);
@@ -258,12 +233,11 @@ public class BindingEvaluator {
             return;
         }
 
-        Object value = getFieldValueByPath(
-                BindingUtils.convertToFieldPath(binding.placeholder.bindingExpression),
-                provisionedResource);
+        Object value = CompiledBindingPath.forExpression(binding.placeholder.bindingExpression)
+                .getValue(provisionedResource);
 
         value = BindingUtils.valueForBinding(binding, value);
-        evaluatedBindings.put(binding.placeholder.bindingExpression, value);
+        evaluatedBindings.put(binding, value);
     }
 
     @SuppressWarnings("unchecked")
@@ -311,14 +285,15 @@ public class BindingEvaluator {
         visited.add(componentName);
 
         String bindingExpression = binding.placeholder.bindingExpression;
-        List<String> sourceFieldPath = BindingUtils.convertToFieldPath(bindingExpression);
+        CompiledBindingPath sourcePath = CompiledBindingPath.forExpression(bindingExpression);
+        List<String> sourceFieldPath = sourcePath.getFieldPath();
         String sourceComponentName = BindingUtils
                 .extractComponentNameFromBindingExpression(bindingExpression);
 
         @SuppressWarnings("rawtypes")
         ComponentTemplate sourceTemplate = componentNameToDescription.get(sourceComponentName);
 
-        Object rootSourceValue = getFieldValueByPath(sourceFieldPath, sourceTemplate.data);
+        Object rootSourceValue = sourcePath.getValue(sourceTemplate.data);
 
         // if the source value is null it may be bound to something else
         if (rootSourceValue == null) {
@@ -415,171 +390,6 @@ public class BindingEvaluator {
         }
     }
 
-    private static String convertSnakeCaseToCamelCase(String fieldName) {
-        List<String> words = Arrays.asList(fieldName.split("_"));
-
-        Function<String, String> capitalizeString = w -> Character.toUpperCase(w.charAt(0)) + w
-                .substring(1);
-
-        String reduce = words.subList(1, words.size()).stream()
-                .map(capitalizeString)
-                .reduce("", String::concat);
-
-        return words.get(0) + reduce;
-    }
-
-    private static String valueFromMapString(String value, String fieldName) {
-        String[] split = value.split("=");
-        if (split.length == 2) {
-            if (split[0].trim().equals(fieldName)) {
-                return split[1].trim();
-            }
-        }
-        return null;
-    }
-
-    @SuppressWarnings("rawtypes")
-    private static Object getFieldValueByPath(List<String> fieldPath, Object startObject)
-            throws ReflectiveOperationException {
-
-        boolean isCurrentFieldLink = false;
-        boolean isParentFieldLink = false;
-
-        NestedState currentNestedState = null;
-        Object value = null;
-
-        if (startObject instanceof NestedState) {
-            value = ((NestedState) startObject).object;
-            currentNestedState = (NestedState) startObject;
-        } else {
-            value = startObject;
-        }
-
-        for (int i = 0; i < fieldPath.size(); ++i) {
-            String fieldName = fieldPath.get(i);
-            if (value == null) {
-                return null;
-            }
-
-            // this field contains links
-            isCurrentFieldLink =
-                    NestedState.getNestedObjectType(value.getClass(), fieldName) != null;
-
-            // special case for a map
-            if (value instanceof Map) {
-                value = ((Map) value).get(fieldName);
-
-                if (isCurrentFieldLink) {
-                    String link = (String) value;
-                    value = currentNestedState.children.get(link).object;
-                    currentNestedState = currentNestedState.children.get(link);
-                }
-
-                continue;
-            }
-
-            if (value instanceof List) {
-                value = ((List) value).get(Integer.parseInt(fieldName));
-
-                /**
-                 * Here we have an index e.g. "0". We have to know if the List is a list of links
-                 * in order to take the corresponding child of the NestedState if needed. So we keep
-                 * a flag if the "parent" field is a link field
-                 */
-                if (isParentFieldLink) {
-                    String link = (String) value;
-                    value = currentNestedState.children.get(link).object;
-                    currentNestedState = currentNestedState.children.get(link);
-                }
-
-                continue;
-            }
-
-            if (value.getClass().isArray()) {
-                value = ((Object[]) value)[Integer.parseInt(fieldName)];
-
-                if (isParentFieldLink) {
-                    String link = (String) value;
-                    value = currentNestedState.children.get(link).object;
-                    currentNestedState = currentNestedState.children.get(link);
-                }
-
-                continue;
-            }
-
-            // if the value is a string, then check it's key=value
-            if (value instanceof String) {
-                value = valueFromMapString((String) value, fieldName);
-
-                if (value == null) {
-                    return null;
-                }
-                continue;
-            }
-
-            Class<?> type = value.getClass();
-            Field field = PropertyUtils.findField(type, fieldName);
-            if (field == null) {
-                String snakeCaseFieldName = convertSnakeCaseToCamelCase(fieldName);
-                field = PropertyUtils.findField(type, snakeCaseFieldName);
-            }
-
-            if (field != null) {
-                if (value instanceof Closure) {
-                    value = fromClosureMap(value, field);
-                } else {
-                    value = field.get(value);
-
-                    if (value instanceof String && isCurrentFieldLink) {
-                        String link = (String) value;
-                        value = currentNestedState.children.get(link).object;
-                        currentNestedState = currentNestedState.children.get(link);
-                    }
-                }
-            } else {
-                // handle special case, as we implicitly put any not know property into
-                // customProperties.
-                value = tryGetValueFromCustomProperties(type, value, fieldName);
-            }
-            isParentFieldLink = isCurrentFieldLink;
-        }
-        return value;
-    }
-
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private static Object fromClosureMap(Object value, Field field) throws IllegalAccessException {
-        Map values = (Map) field.get(value);
-        Map convertedMap = new HashMap(values.size());
-
-        values.forEach((k, v) -> {
-            Object objVal;
-            if (v instanceof JsonPrimitive) {
-                objVal = ((JsonPrimitive) v).getAsString();
-            } else {
-                objVal = v.toString();
-            }
-            convertedMap.put(k, objVal);
-        });
-
-        return convertedMap;
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Object tryGetValueFromCustomProperties(Class<?> type, Object value,
-            String fieldName) {
-        Object result = null;
-        Field field = PropertyUtils.findField(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES);
-        if (field != null) {
-            try {
-                Map<String, Object> customProperties = (Map<String, Object>) field.get(value);
-                result = customProperties.get(fieldName);
-            } catch (ReflectiveOperationException e) {
-                // Do nothing here
-            }
-        }
-        return result;
-    }
-
     private static Map<String, ComponentTemplate<?>> getComponentNameToDescription(
             CompositeTemplate compositeTemplate) {
         if (compositeTemplate.components == null) {
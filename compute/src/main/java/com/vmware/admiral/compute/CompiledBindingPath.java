@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.google.gson.JsonPrimitive;
+
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.common.util.PropertyUtils;
+import com.vmware.admiral.compute.content.NestedState;
+import com.vmware.photon.controller.model.resources.ResourceState;
+
+/**
+ * The field path of a binding expression, compiled once and then evaluated against any number of
+ * objects. The path segments are parsed when the path is compiled and the accessors of the fields
+ * of each class along the path are resolved once per class and field name, as method handles, so
+ * evaluating a path does no reflective lookups. Names which are not fields, e.g. custom
+ * properties, are looked up every time rather than cached, so the cache stays bounded by the
+ * fields of the classes.
+ */
+final class CompiledBindingPath {
+
+    private static final int MAX_CACHED_PATHS = Integer.getInteger(
+            "com.vmware.admiral.compute.binding.path.cache.size", 10000);
+
+    private static final ConcurrentMap<String, CompiledBindingPath> paths =
+            new ConcurrentHashMap<>();
+
+    // the accessors of the existing fields of the objects along the paths, maps, lists and arrays
+    // are walked directly
+    private static final ClassValue<ConcurrentMap<String, FieldAccessor>> fieldAccessors =
+            new ClassValue<ConcurrentMap<String, FieldAccessor>>() {
+                @Override
+                protected ConcurrentMap<String, FieldAccessor> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static final ClassValue<FieldAccessor> customPropertiesAccessors =
+            new ClassValue<FieldAccessor>() {
+                @Override
+                protected FieldAccessor computeValue(Class<?> type) {
+                    return new FieldAccessor(type, ResourceState.FIELD_NAME_CUSTOM_PROPERTIES,
+                            false);
+                }
+            };
+
+    private final List<String> fieldPath;
+    private final String[] segments;
+    // the segments parsed as list indexes, -1 if a segment is not a number
+    private final int[] indexes;
+
+    /**
+     * Accessor of a field of a class. Knows whether the field holds links to children of a
+     * {@link NestedState}. The field itself is resolved on first use, only when the path goes
+     * through a plain object rather than a map, a list or a string.
+     */
+    private static final class FieldAccessor {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,
+                Object.class);
+
+        final Class<?> type;
+        final String fieldName;
+        final boolean link;
+
+        private volatile boolean resolved;
+        private volatile MethodHandle getter;
+
+        FieldAccessor(Class<?> type, String fieldName, boolean link) {
+            this.type = type;
+            this.fieldName = fieldName;
+            this.link = link;
+        }
+
+        boolean exists() {
+            if (!resolved) {
+                // resolving the field more than once on concurrent first use is harmless
+                getter = resolveGetter();
+                resolved = true;
+            }
+            return getter != null;
+        }
+
+        Object get(Object target) throws ReflectiveOperationException {
+            try {
+                return getter.invokeExact(target);
+            } catch (RuntimeException | Error | ReflectiveOperationException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectiveOperationException(t);
+            }
+        }
+
+        private MethodHandle resolveGetter() {
+            Field field = PropertyUtils.findField(type, fieldName);
+            if (field == null) {
+                field = PropertyUtils.findField(type, convertSnakeCaseToCamelCase(fieldName));
+            }
+            if (field == null) {
+                return null;
+            }
+            try {
+                field.setAccessible(true);
+                return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private CompiledBindingPath(List<String> fieldPath) {
+        this.fieldPath = Collections.unmodifiableList(fieldPath);
+        this.segments = fieldPath.toArray(new String[fieldPath.size()]);
+        this.indexes = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            indexes[i] = parseIndex(segments[i]);
+        }
+    }
+
+    /**
+     * Returns the compiled field path of the given binding expression.
+     */
+    static CompiledBindingPath forExpression(String bindingExpression) {
+        CompiledBindingPath path = paths.get(bindingExpression);
+        if (path == null) {
+            if (paths.size() >= MAX_CACHED_PATHS) {
+                paths.clear();
+            }
+            path = paths.computeIfAbsent(bindingExpression,
+                    e -> new CompiledBindingPath(BindingUtils.convertToFieldPath(e)));
+        }
+        return path;
+    }
+
+    List<String> getFieldPath() {
+        return fieldPath;
+    }
+
+    /**
+     * Returns the value at the end of the path, starting from the given object or
+     * {@link NestedState}. Link fields are followed to the children of the nested state.
+     */
+    @SuppressWarnings("rawtypes")
+    Object getValue(Object startObject) throws ReflectiveOperationException {
+        boolean isParentFieldLink = false;
+
+        NestedState currentNestedState = null;
+        Object value = null;
+
+        if (startObject instanceof NestedState) {
+            value = ((NestedState) startObject).object;
+            currentNestedState = (NestedState) startObject;
+        } else {
+            value = startObject;
+        }
+
+        for (int i = 0; i < segments.length; ++i) {
+            String fieldName = segments[i];
+            if (value == null) {
+                return null;
+            }
+
+            // special case for a map, maps never contain link fields
+            if (value instanceof Map) {
+                value = ((Map) value).get(fieldName);
+                continue;
+            }
+
+            if (value instanceof List) {
+                value = ((List) value).get(getIndex(i));
+
+                /**
+                 * Here we have an index e.g. "0". We have to know if the List is a list of links
+                 * in order to take the corresponding child of the NestedState if needed. So we keep
+                 * a flag if the "parent" field is a link field
+                 */
+                if (isParentFieldLink) {
+                    String link = (String) value;
+                    value = currentNestedState.children.get(link).object;
+                    currentNestedState = currentNestedState.children.get(link);
+                }
+
+                continue;
+            }
+
+            if (value.getClass().isArray()) {
+                value = ((Object[]) value)[getIndex(i)];
+
+                if (isParentFieldLink) {
+                    String link = (String) value;
+                    value = currentNestedState.children.get(link).object;
+                    currentNestedState = currentNestedState.children.get(link);
+                }
+
+                continue;
+            }
+
+            // if the value is a string, then check it's key=value
+            if (value instanceof String) {
+                value = valueFromMapString((String) value, fieldName);
+
+                if (value == null) {
+                    return null;
+                }
+                continue;
+            }
+
+            Class<?> type = value.getClass();
+            FieldAccessor accessor = getFieldAccessor(type, fieldName);
+
+            // this field contains links
+            boolean isCurrentFieldLink = accessor.link;
+
+            if (accessor.exists()) {
+                if (value instanceof Closure) {
+                    value = fromClosureMap(accessor.get(value));
+                } else {
+                    value = accessor.get(value);
+
+                    if (value instanceof String && isCurrentFieldLink) {
+                        String link = (String) value;
+                        value = currentNestedState.children.get(link).object;
+                        currentNestedState = currentNestedState.children.get(link);
+                    }
+                }
+            } else {
+                // handle special case, as we implicitly put any not know property into
+                // customProperties.
+                value = tryGetValueFromCustomProperties(type, value, fieldName);
+            }
+            isParentFieldLink = isCurrentFieldLink;
+        }
+        return value;
+    }
+
+    private int getIndex(int segment) {
+        int index = indexes[segment];
+        // not a number, fail as when parsing the segment
+        return index >= 0 ? index : Integer.parseInt(segments[segment]);
+    }
+
+    private static FieldAccessor getFieldAccessor(Class<?> type, String fieldName) {
+        ConcurrentMap<String, FieldAccessor> accessors = fieldAccessors.get(type);
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            accessor = new FieldAccessor(type, fieldName,
+                    NestedState.getNestedObjectType(type, fieldName) != null);
+            if (accessor.exists()) {
+                FieldAccessor existing = accessors.putIfAbsent(fieldName, accessor);
+                if (existing != null) {
+                    accessor = existing;
+                }
+            }
+        }
+        return accessor;
+    }
+
+    static int getCachedFieldAccessorCount(Class<?> type) {
+        return fieldAccessors.get(type).size();
+    }
+
+    private static int parseIndex(String segment) {
+        try {
+            int index = Integer.parseInt(segment);
+            return index >= 0 ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Object fromClosureMap(Object closureValues) {
+        Map values = (Map) closureValues;
+        Map convertedMap = new HashMap(values.size());
+
+        values.forEach((k, v) -> {
+            Object objVal;
+            if (v instanceof JsonPrimitive) {
+                objVal = ((JsonPrimitive) v).getAsString();
+            } else {
+                objVal = v.toString();
+            }
+            convertedMap.put(k, objVal);
+        });
+
+        return convertedMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object tryGetValueFromCustomProperties(Class<?> type, Object value,
+            String fieldName) {
+        Object result = null;
+        FieldAccessor accessor = customPropertiesAccessors.get(type);
+        if (accessor.exists()) {
+            try {
+                Map<String, Object> customProperties = (Map<String, Object>) accessor
+                        .get(value);
+                result = customProperties.get(fieldName);
+            } catch (ReflectiveOperationException e) {
+                // Do nothing here
+            }
+        }
+        return result;
+    }
+
+    private static String valueFromMapString(String value, String fieldName) {
+        String[] split = value.split("=");
+        if (split.length == 2) {
+            if (split[0].trim().equals(fieldName)) {
+                return split[1].trim();
+            }
+        }
+        return null;
+    }
+
+    private static String convertSnakeCaseToCamelCase(String fieldName) {
+        List<String> words = Arrays.asList(fieldName.split("_"));
+
+        Function<String, String> capitalizeString = w -> Character.toUpperCase(w.charAt(0)) + w
+                .substring(1);
+
+        String reduce = words.subList(1, words.size()).stream()
+                .map(capitalizeString)
+                .reduce("", String::concat);
+
+        return words.get(0) + reduce;
+    }
+}
@@ -104,6 +104,11 @@ public class ContainerHostService extends StatelessService {
     public static final String NUMBER_OF_CONTAINERS_PER_HOST_PROP_NAME = "__Containers";
     public static final String NUMBER_OF_SYSTEM_CONTAINERS_PROP_NAME = "__systemContainers";
     public static final String RETRIES_COUNT_PROP_NAME = "__retriesCount";
+    /**
+     * Time in microseconds since when the docker events of the host are being streamed without
+     * interruption, <code>"0"</code> when the host is not subscribed for events.
+     */
+    public static final String EVENTS_STREAM_SINCE_PROP_NAME = "__eventsStreamSince";
 
     public static final String DOCKER_HOST_PORT_PROP_NAME = "__dockerHostPort";
     public static final String DOCKER_HOST_PATH_PROP_NAME = "__dockerHostPath";
@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult.ResourcePoolData;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryFilter;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+
+/**
+ * In-memory index of the computes which participate in each resource pool, used by the
+ * {@link ResourcePoolQueryHelper} instead of executing the query of every resource pool on each
+ * call, e.g. on each host data collection and placement.
+ *
+ * The computes and resource pools are loaded once on start and then kept current by continuous
+ * queries. The resource pool queries are evaluated in memory when a compute or a resource pool
+ * changes. Before answering, the index applies the changes made since the previous sync with a
+ * single (and usually empty) query per document kind, so the result is never older than the
+ * call. Queries which can't be evaluated in memory are left to the helper.
+ */
+public class ResourcePoolMembershipIndexService extends StatelessService
+        implements ResourcePoolQueryHelper.MembershipIndex {
+
+    public static final String SELF_LINK = ManagementUriParts.RESOURCE_POOL_MEMBERSHIP_INDEX;
+
+    /**
+     * Time subtracted from the start of the previous sync when querying for changes, to tolerate
+     * clock differences between the nodes updating the computes.
+     */
+    private static final long SYNC_MARGIN_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.pool.index.sync.margin.micros",
+            TimeUnit.SECONDS.toMicros(2));
+
+    private static final long TOMBSTONE_EXPIRATION_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private static final ServiceDocumentDescription COMPUTE_DESCRIPTION =
+            ServiceDocumentDescription.Builder.create().buildDescription(ComputeState.class);
+    private static final ServiceDocumentDescription RESOURCE_POOL_DESCRIPTION =
+            ServiceDocumentDescription.Builder.create().buildDescription(ResourcePoolState.class);
+
+    private static final Map<ServiceHost, ResourcePoolMembershipIndexService> INDEXES =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, ComputeState> computesByLink = new HashMap<>();
+    private final Map<String, IndexedResourcePool> resourcePoolsByLink = new HashMap<>();
+    private final Map<String, Set<String>> resourcePoolLinksByComputeLink = new HashMap<>();
+    // versions of the recently deleted documents, ignore late notifications for them
+    private final Map<String, ServiceDocument> deletedDocuments = new HashMap<>();
+
+    private volatile boolean ready;
+    private boolean syncInProgress;
+    private long lastSyncStartMicros;
+    private List<Consumer<Throwable>> currentSyncCallbacks = new ArrayList<>();
+    private List<Consumer<Throwable>> nextSyncCallbacks = new ArrayList<>();
+
+    private static class IndexedResourcePool {
+        final ResourcePoolState state;
+        // null if the query of the resource pool can't be evaluated in memory
+        final QueryFilter filter;
+        final Set<String> computeLinks = new HashSet<>();
+
+        IndexedResourcePool(ResourcePoolState state, QueryFilter filter) {
+            this.state = state;
+            this.filter = filter;
+        }
+
+        boolean contains(ComputeState compute) {
+            return filter != null && filter.evaluate(compute, COMPUTE_DESCRIPTION);
+        }
+    }
+
+    public ResourcePoolMembershipIndexService() {
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+    }
+
+    /**
+     * Returns the index of the given host or <code>null</code> if it is not started or not loaded
+     * yet.
+     */
+    public static ResourcePoolMembershipIndexService getIndex(ServiceHost host) {
+        ResourcePoolMembershipIndexService index = INDEXES.get(host);
+        return index != null && index.ready ? index : null;
+    }
+
+    @Override
+    public void handleStart(Operation start) {
+        start.complete();
+
+        INDEXES.put(getHost(), this);
+        ResourcePoolQueryHelper.registerMembershipIndex(getHost(), this);
+        CommonContinuousQueries.subscribeTo(getHost(),
+                buildContinuousQuery(ResourcePoolState.class, "resource-pool-index-pools"),
+                (op) -> onChange(op, ResourcePoolState.class));
+        CommonContinuousQueries.subscribeTo(getHost(),
+                buildContinuousQuery(ComputeState.class, "resource-pool-index-computes"),
+                (op) -> onChange(op, ComputeState.class));
+        load();
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        INDEXES.remove(getHost(), this);
+        ResourcePoolQueryHelper.unregisterMembershipIndex(getHost(), this);
+        ready = false;
+
+        super.handleStop(delete);
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+
+        long expiration = Utils.getNowMicrosUtc() - TOMBSTONE_EXPIRATION_MICROS;
+        synchronized (this) {
+            deletedDocuments.values()
+                    .removeIf(d -> d.documentUpdateTimeMicros < expiration);
+        }
+    }
+
+    @Override
+    public DeferredResult<QueryResult> query(Collection<String> resourcePoolLinks,
+            Collection<String> computeLinks, Query additionalQueryClauses,
+            Query additionalResourcePoolQueryClauses, boolean expandComputes) {
+        if (!ready) {
+            return DeferredResult.completed(null);
+        }
+
+        QueryFilter computeFilter = createFilter(additionalQueryClauses);
+        QueryFilter resourcePoolFilter = createFilter(additionalResourcePoolQueryClauses);
+        if ((additionalQueryClauses != null && computeFilter == null)
+                || (additionalResourcePoolQueryClauses != null && resourcePoolFilter == null)) {
+            return DeferredResult.completed(null);
+        }
+
+        DeferredResult<QueryResult> result = new DeferredResult<>();
+        sync((e) -> result.complete(e != null ? null
+                : buildResult(resourcePoolLinks, computeLinks, computeFilter,
+                        resourcePoolFilter, expandComputes)));
+        return result;
+    }
+
+    /**
+     * Applies the compute and resource pool changes since the previous sync and calls the
+     * callback, with a failure if the changes can not be retrieved. Concurrent calls are
+     * coalesced into a single sync.
+     */
+    public void sync(Consumer<Throwable> callback) {
+        synchronized (this) {
+            if (syncInProgress) {
+                // the running query may have started before the caller's last change
+                nextSyncCallbacks.add(callback);
+                return;
+            }
+            syncInProgress = true;
+            currentSyncCallbacks.add(callback);
+        }
+        doSync();
+    }
+
+    private void doSync() {
+        long syncStartMicros = Utils.getNowMicrosUtc();
+        long sinceMicros;
+        synchronized (this) {
+            sinceMicros = lastSyncStartMicros - SYNC_MARGIN_MICROS;
+        }
+
+        queryUpdatedSince(ResourcePoolState.class, sinceMicros, this::updateResourcePool,
+                (poolsFailure) -> {
+                    if (poolsFailure != null) {
+                        completeSync(poolsFailure, syncStartMicros);
+                        return;
+                    }
+                    queryUpdatedSince(ComputeState.class, sinceMicros, this::updateCompute,
+                            (computesFailure) -> completeSync(computesFailure,
+                                    syncStartMicros));
+                });
+    }
+
+    private <T extends ServiceDocument> void queryUpdatedSince(Class<T> type, long sinceMicros,
+            Consumer<T> updater, Consumer<Throwable> completion) {
+        new ServiceDocumentQuery<>(getHost(), type).queryUpdatedSince(sinceMicros, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failed to sync resource pool membership index: %s",
+                        Utils.toString(r.getException()));
+                completion.accept(r.getException());
+            } else if (r.hasResult()) {
+                updater.accept(r.getResult());
+            } else {
+                completion.accept(null);
+            }
+        });
+    }
+
+    private void completeSync(Throwable failure, long syncStartMicros) {
+        List<Consumer<Throwable>> callbacks;
+        boolean syncAgain;
+        synchronized (this) {
+            if (failure == null) {
+                lastSyncStartMicros = syncStartMicros;
+            }
+            callbacks = currentSyncCallbacks;
+            currentSyncCallbacks = nextSyncCallbacks;
+            nextSyncCallbacks = new ArrayList<>();
+            syncAgain = !currentSyncCallbacks.isEmpty();
+            syncInProgress = syncAgain;
+        }
+
+        for (Consumer<Throwable> callback : callbacks) {
+            callback.accept(failure);
+        }
+        if (syncAgain) {
+            doSync();
+        }
+    }
+
+    /**
+     * Builds the result the same way the {@link ResourcePoolQueryHelper} does, from a consistent
+     * view of the index. Returns <code>null</code> if a selected resource pool has a query which
+     * can't be evaluated in memory.
+     */
+    private synchronized QueryResult buildResult(Collection<String> resourcePoolLinks,
+            Collection<String> computeLinks, QueryFilter computeFilter,
+            QueryFilter resourcePoolFilter, boolean expandComputes) {
+        boolean hasResourcePoolLinks = resourcePoolLinks != null && !resourcePoolLinks.isEmpty();
+        boolean hasComputeLinks = computeLinks != null && !computeLinks.isEmpty();
+        Set<String> requestedComputeLinks = hasComputeLinks ? new HashSet<>(computeLinks) : null;
+
+        List<IndexedResourcePool> resourcePools = new ArrayList<>();
+        if (hasResourcePoolLinks) {
+            for (String resourcePoolLink : resourcePoolLinks) {
+                IndexedResourcePool resourcePool = resourcePoolsByLink.get(resourcePoolLink);
+                if (resourcePool != null) {
+                    resourcePools.add(resourcePool);
+                }
+            }
+        } else {
+            for (IndexedResourcePool resourcePool : resourcePoolsByLink.values()) {
+                if (resourcePoolFilter == null || resourcePoolFilter.evaluate(
+                        resourcePool.state, RESOURCE_POOL_DESCRIPTION)) {
+                    resourcePools.add(resourcePool);
+                }
+            }
+        }
+
+        QueryResult result = new QueryResult();
+        for (IndexedResourcePool resourcePool : resourcePools) {
+            if (resourcePool.filter == null) {
+                return null;
+            }
+
+            ResourcePoolData rpData = new ResourcePoolData();
+            rpData.resourcePoolState = Utils.clone(resourcePool.state);
+            rpData.computeStateLinks = new HashSet<>();
+            for (String computeLink : resourcePool.computeLinks) {
+                if (hasComputeLinks ? requestedComputeLinks.contains(computeLink)
+                        : matches(computeFilter, computeLink)) {
+                    rpData.computeStateLinks.add(computeLink);
+                    addCompute(result, computeLink, expandComputes)
+                            .add(resourcePool.state.documentSelfLink);
+                }
+            }
+
+            // resource pools without computes are not returned when querying specific computes
+            if (!hasResourcePoolLinks && hasComputeLinks && rpData.computeStateLinks.isEmpty()) {
+                continue;
+            }
+            result.resourcesPools.put(resourcePool.state.documentSelfLink, rpData);
+        }
+
+        if (!hasResourcePoolLinks) {
+            // computes without a resource pool
+            Collection<String> candidateLinks = hasComputeLinks ? requestedComputeLinks
+                    : computesByLink.keySet();
+            for (String computeLink : candidateLinks) {
+                if (!result.computesByLink.containsKey(computeLink)
+                        && computesByLink.containsKey(computeLink)
+                        && (hasComputeLinks || matches(computeFilter, computeLink))) {
+                    addCompute(result, computeLink, expandComputes);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean matches(QueryFilter computeFilter, String computeLink) {
+        return computeFilter == null
+                || computeFilter.evaluate(computesByLink.get(computeLink), COMPUTE_DESCRIPTION);
+    }
+
+    /**
+     * Adds the compute to the result and returns its set of resource pool links.
+     */
+    private Set<String> addCompute(QueryResult result, String computeLink,
+            boolean expandComputes) {
+        if (!result.computesByLink.containsKey(computeLink)) {
+            result.computesByLink.put(computeLink,
+                    expandComputes ? Utils.clone(computesByLink.get(computeLink)) : null);
+        }
+        return result.rpLinksByComputeLink.computeIfAbsent(computeLink, k -> new HashSet<>());
+    }
+
+    private void load() {
+        long loadStartMicros = Utils.getNowMicrosUtc();
+        loadAll(ResourcePoolState.class, this::updateResourcePool,
+                () -> loadAll(ComputeState.class, this::updateCompute, () -> {
+                    synchronized (this) {
+                        lastSyncStartMicros = loadStartMicros;
+                        logInfo("Resource pool membership index loaded with %d resource pools"
+                                + " and %d computes", resourcePoolsByLink.size(),
+                                computesByLink.size());
+                    }
+                    ready = true;
+                }));
+    }
+
+    private <T extends ServiceDocument> void loadAll(Class<T> type, Consumer<T> updater,
+            Runnable completion) {
+        QueryTask q = QueryUtil.buildQuery(type, true);
+        QueryUtil.addExpandOption(q);
+
+        new ServiceDocumentQuery<>(getHost(), type).stream(q, null, (page, next) -> {
+            if (page.hasException()) {
+                logWarning("Failed to load resource pool membership index, retrying: %s",
+                        Utils.toString(page.getException()));
+                getHost().schedule(this::load, QueryUtil.QUERY_RETRY_INTERVAL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+            for (T document : page.getDocuments()) {
+                updater.accept(document);
+            }
+            if (!page.isLast()) {
+                next.run();
+                return;
+            }
+            completion.run();
+        });
+    }
+
+    private QueryTask buildContinuousQuery(Class<? extends ServiceDocument> type, String name) {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(type)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                .setQuery(query).build();
+        task.documentSelfLink = CommonContinuousQueries.createTaskSelfLink(name);
+        return task;
+    }
+
+    private void onChange(Operation op, Class<? extends ServiceDocument> type) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object document : queryTask.results.documents.values()) {
+            if (type == ComputeState.class) {
+                updateCompute(document instanceof ComputeState ? (ComputeState) document
+                        : Utils.fromJson(document, ComputeState.class));
+            } else {
+                updateResourcePool(document instanceof ResourcePoolState
+                        ? (ResourcePoolState) document
+                        : Utils.fromJson(document, ResourcePoolState.class));
+            }
+        }
+    }
+
+    private synchronized void updateCompute(ComputeState state) {
+        if (isOutOfOrder(computesByLink.get(state.documentSelfLink), state)) {
+            return;
+        }
+
+        removeCompute(state.documentSelfLink);
+        if (isDeleted(state)) {
+            deletedDocuments.put(state.documentSelfLink, state);
+            return;
+        }
+
+        deletedDocuments.remove(state.documentSelfLink);
+        computesByLink.put(state.documentSelfLink, state);
+        for (IndexedResourcePool resourcePool : resourcePoolsByLink.values()) {
+            if (resourcePool.contains(state)) {
+                addMember(resourcePool, state.documentSelfLink);
+            }
+        }
+    }
+
+    private synchronized void updateResourcePool(ResourcePoolState state) {
+        IndexedResourcePool previous = resourcePoolsByLink.get(state.documentSelfLink);
+        if (isOutOfOrder(previous != null ? previous.state : null, state)) {
+            return;
+        }
+
+        removeResourcePool(state.documentSelfLink);
+        if (isDeleted(state)) {
+            deletedDocuments.put(state.documentSelfLink, state);
+            return;
+        }
+
+        deletedDocuments.remove(state.documentSelfLink);
+        QueryFilter filter = createFilter(state.query);
+        if (filter == null) {
+            logFine("Query of resource pool %s is not evaluated in memory",
+                    state.documentSelfLink);
+        }
+        IndexedResourcePool resourcePool = new IndexedResourcePool(state, filter);
+        resourcePoolsByLink.put(state.documentSelfLink, resourcePool);
+        for (ComputeState compute : computesByLink.values()) {
+            if (resourcePool.contains(compute)) {
+                addMember(resourcePool, compute.documentSelfLink);
+            }
+        }
+    }
+
+    private boolean isOutOfOrder(ServiceDocument current, ServiceDocument state) {
+        ServiceDocument previous = current != null ? current
+                : deletedDocuments.get(state.documentSelfLink);
+        return previous != null && previous.documentVersion > state.documentVersion;
+    }
+
+    private void addMember(IndexedResourcePool resourcePool, String computeLink) {
+        resourcePool.computeLinks.add(computeLink);
+        resourcePoolLinksByComputeLink.computeIfAbsent(computeLink, k -> new HashSet<>())
+                .add(resourcePool.state.documentSelfLink);
+    }
+
+    private void removeCompute(String computeLink) {
+        computesByLink.remove(computeLink);
+        Set<String> resourcePoolLinks = resourcePoolLinksByComputeLink.remove(computeLink);
+        if (resourcePoolLinks == null) {
+            return;
+        }
+        for (String resourcePoolLink : resourcePoolLinks) {
+            resourcePoolsByLink.get(resourcePoolLink).computeLinks.remove(computeLink);
+        }
+    }
+
+    private void removeResourcePool(String resourcePoolLink) {
+        IndexedResourcePool resourcePool = resourcePoolsByLink.remove(resourcePoolLink);
+        if (resourcePool == null) {
+            return;
+        }
+        for (String computeLink : resourcePool.computeLinks) {
+            Set<String> resourcePoolLinks = resourcePoolLinksByComputeLink.get(computeLink);
+            resourcePoolLinks.remove(resourcePoolLink);
+            if (resourcePoolLinks.isEmpty()) {
+                resourcePoolLinksByComputeLink.remove(computeLink);
+            }
+        }
+    }
+
+    /**
+     * Returns a filter evaluating the query in memory or <code>null</code> if the query is not
+     * set or is not supported by {@link QueryFilter}.
+     */
+    private static QueryFilter createFilter(Query query) {
+        if (query == null) {
+            return null;
+        }
+        try {
+            return QueryFilter.create(query);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean isDeleted(ServiceDocument state) {
+        return Action.DELETE.name().equals(state.documentUpdateAction)
+                || ServiceDocument.isDeleted(state);
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -110,12 +111,24 @@ public class ContainerHostDataCollectionService extends StatefulService {
             "com.vmware.admiral.compute.container.host.frequency.interval.micros",
             TimeUnit.SECONDS.toMicros(20));
 
+    /**
+     * How often the full list-and-diff of containers, networks and volumes runs for hosts whose
+     * inventory is kept up to date by an uninterrupted docker events stream.
+     */
+    private static final long ANTI_ENTROPY_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.host.anti.entropy.interval.micros",
+            TimeUnit.HOURS.toMicros(1));
+
     public static final String RESOURCE_POOL_CPU_USAGE_CUSTOM_PROP = "__cpuUsage";
     public static final String RESOURCE_POOL_AVAILABLE_MEMORY_CUSTOM_PROP = "__availableMemory";
 
     protected volatile AtomicBoolean scheduled = new AtomicBoolean(false);
     protected long maintenanceIntervalInitial = TimeUnit.SECONDS.toMicros(90);
 
+    // the last time the full inventory of a host was collected, kept only by the owner node. After
+    // restart or owner change every host gets a full collection.
+    private final Map<String, Long> lastFullCollectionMicrosByHost = new ConcurrentHashMap<>();
+
     public static ServiceDocument buildDefaultStateInstance() {
         ContainerHostDataCollectionState state = new ContainerHostDataCollectionState();
         state.documentSelfLink = HOST_INFO_DATA_COLLECTION_LINK;
@@ -265,11 +278,7 @@ public class ContainerHostDataCollectionService extends StatefulService {
                                 if (ContainerHostUtil.isKubernetesHost(computeState)) {
                                     updateKubernetesEntities(computeState.documentSelfLink);
                                 } else {
-                                    // These can be changed back to accepting only the self link
-                                    // because the adapter can only be docker.
-                                    updateContainerHostContainers(computeState);
-                                    updateContainerHostNetworks(computeState);
-                                    updateContainerHostVolumes(computeState.documentSelfLink);
+                                    updateContainerHostInventory(computeState);
                                 }
                                 updateHostStats(computeState);
 
@@ -804,15 +813,50 @@ public class ContainerHostDataCollectionService extends StatefulService {
             if (PowerState.ON == compute.powerState) {
                 if (ContainerHostUtil.isKubernetesHost(compute)) {
                     updateKubernetesEntities(compute.documentSelfLink);
+                } else if (isFullInventoryCollectionRequired(compute)) {
+                    updateContainerHostInventory(compute);
                 } else {
-                    updateContainerHostContainers(compute);
-                    updateContainerHostNetworks(compute);
-                    updateContainerHostVolumes(compute.documentSelfLink);
+                    logFine("Skipping inventory collection for host %s, kept up to date by events.",
+                            compute.documentSelfLink);
                 }
             }
         }
     }
 
+    /**
+     * The full list-and-diff is needed unless the host streams its docker events and there was no
+     * gap in the stream since the last full collection. Even then it runs once per
+     * {@link #ANTI_ENTROPY_INTERVAL_MICROS} to repair anything the events might have missed.
+     */
+    private boolean isFullInventoryCollectionRequired(ComputeState compute) {
+        long streamSinceMicros = PropertyUtils.getPropertyLong(compute.customProperties,
+                ContainerHostService.EVENTS_STREAM_SINCE_PROP_NAME).orElse(0L);
+        if (streamSinceMicros <= 0) {
+            return true;
+        }
+
+        Long lastFullCollectionMicros = lastFullCollectionMicrosByHost
+                .get(compute.documentSelfLink);
+        if (lastFullCollectionMicros == null || lastFullCollectionMicros < streamSinceMicros) {
+            // events might have been lost before the stream was (re)established
+            return true;
+        }
+
+        return lastFullCollectionMicros + ANTI_ENTROPY_INTERVAL_MICROS
+                < Utils.getSystemNowMicrosUtc();
+    }
+
+    private void updateContainerHostInventory(ComputeState compute) {
+        lastFullCollectionMicrosByHost.put(compute.documentSelfLink,
+                Utils.getSystemNowMicrosUtc());
+
+        // These can be changed back to accepting only the self link
+        // because the adapter can only be docker.
+        updateContainerHostContainers(compute);
+        updateContainerHostNetworks(compute);
+        updateContainerHostVolumes(compute.documentSelfLink);
+    }
+
     private QueryTask createDockerComputeDescriptionQuery() {
         QueryTask q = QueryUtil.buildQuery(ComputeDescription.class, true);
         QueryTask.Query hostTypeClause = new QueryTask.Query()
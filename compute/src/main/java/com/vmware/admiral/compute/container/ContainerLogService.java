@@ -13,6 +13,13 @@ package com.vmware.admiral.compute.container;
 
 import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
 
+import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
@@ -34,6 +41,12 @@ public class ContainerLogService extends StatelessService {
     public static final String SELF_LINK = ManagementUriParts.CONTAINER_LOGS;
     public static final String CONTAINER_ID_QUERY_PARAM = "id";
 
+    private static final String SINCE_PARAM = "since";
+    private static final String TIMESTAMPS_PARAM = "timestamps";
+    private static final List<String> LOG_READ_PARAMS = Arrays.asList(
+            LogService.TAIL_QUERY_PARAM, LogService.OFFSET_QUERY_PARAM,
+            LogService.LENGTH_QUERY_PARAM, LogService.FOLLOW_QUERY_PARAM);
+
     @Override
     public void handleGet(Operation get) {
         Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
@@ -47,17 +60,90 @@ public class ContainerLogService extends StatelessService {
         final String containerLogsLink = UriUtils.buildUriPath(LogService.FACTORY_LINK,
                 containerId);
 
-        sendRequest(Operation.createGet(this, containerLogsLink)
+        if (Boolean.parseBoolean(params.get(LogService.FOLLOW_QUERY_PARAM))) {
+            // fetch the new logs first, the follow request waits for them to be appended
+            sendRequest(Operation.createGet(UriUtils.extendUriWithQuery(
+                    UriUtils.buildUri(getHost(), containerLogsLink),
+                    LogService.LENGTH_QUERY_PARAM, "0"))
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            requestLog(get, containerId, getFetchParams(params, null));
+                        } else {
+                            requestLog(null, containerId, getFetchParams(params,
+                                    o.getBody(LogServiceState.class)));
+                            sendRequest(Operation.createGet(buildLogsUri(containerLogsLink,
+                                    params))
+                                    .setCompletion((op, ex) -> {
+                                        if (ex != null) {
+                                            get.fail(ex);
+                                        } else {
+                                            get.setBody(op.getBody(LogServiceState.class))
+                                                    .complete();
+                                        }
+                                    }));
+                        }
+                    }));
+            return;
+        }
+
+        sendRequest(Operation.createGet(buildLogsUri(containerLogsLink, params))
                 .setCompletion((o, e) -> {
                     if (e != null) {
-                        requestLog(get, containerId, params);
+                        requestLog(get, containerId, getFetchParams(params, null));
                     } else {
-                        get.setBody(o.getBody(LogServiceState.class)).complete();
-                        requestLog(null, containerId, params);
+                        LogServiceState logState = o.getBody(LogServiceState.class);
+                        get.setBody(logState).complete();
+                        requestLog(null, containerId, getFetchParams(params, logState));
                     }
                 }));
     }
 
+    private URI buildLogsUri(String containerLogsLink, Map<String, String> params) {
+        List<String> query = new ArrayList<>();
+        for (String param : LOG_READ_PARAMS) {
+            if (params.containsKey(param)) {
+                query.add(param);
+                query.add(params.get(param));
+            }
+        }
+        URI logsUri = UriUtils.buildUri(getHost(), containerLogsLink);
+        if (query.isEmpty()) {
+            return logsUri;
+        }
+        return UriUtils.extendUriWithQuery(logsUri, query.toArray(new String[query.size()]));
+    }
+
+    /**
+     * The logs are fetched with timestamps, which are stripped before storing them unless they
+     * are requested. Unless a specific part of the log is requested, only the logs since the
+     * second of the last stored line are fetched and appended to the stored ones, the lines
+     * which are not newer than that line are skipped when appending.
+     */
+    private static Map<String, String> getFetchParams(Map<String, String> params,
+            LogServiceState logState) {
+        Map<String, String> fetchParams = new HashMap<>(params);
+        if (!Boolean.parseBoolean(params.get(TIMESTAMPS_PARAM))) {
+            fetchParams.put(TIMESTAMPS_PARAM, Boolean.TRUE.toString());
+            fetchParams.put(LogService.STRIP_TIMESTAMPS_PROP_NAME, Boolean.TRUE.toString());
+        }
+
+        if (logState == null || logState.lastLogTimestamp == null
+                || params.containsKey(SINCE_PARAM)
+                || params.containsKey(LogService.TAIL_QUERY_PARAM)) {
+            return fetchParams;
+        }
+
+        long since;
+        try {
+            since = Instant.parse(logState.lastLogTimestamp).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return fetchParams;
+        }
+        fetchParams.put(SINCE_PARAM, Long.toString(since));
+        fetchParams.put(LogService.APPEND_LOGS_PROP_NAME, Boolean.TRUE.toString());
+        return fetchParams;
+    }
+
     private void requestLog(Operation get, String containerId, Map<String, String> params) {
         sendRequest(Operation.createGet(this,
                 UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK, containerId))
@@ -121,7 +207,12 @@ public class ContainerLogService extends StatelessService {
         ServiceDocument d = super.getDocumentTemplate();
         addServiceRequestRoute(d, Action.GET,
                 String.format("Get container logs. Provide the ContainerState id in URI query "
-                        + "parameter with key \"%s\".", CONTAINER_ID_QUERY_PARAM),
+                        + "parameter with key \"%s\". The part of the log to return can be "
+                        + "selected with the \"%s\", \"%s\" and \"%s\" parameters, with "
+                        + "\"%s\" the request waits for new logs following the given offset.",
+                        CONTAINER_ID_QUERY_PARAM, LogService.TAIL_QUERY_PARAM,
+                        LogService.OFFSET_QUERY_PARAM, LogService.LENGTH_QUERY_PARAM,
+                        LogService.FOLLOW_QUERY_PARAM),
                 LogServiceState.class);
         return d;
     }
@@ -13,19 +13,25 @@ package com.vmware.admiral.compute.container;
 
 import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
-import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
@@ -38,15 +44,49 @@ public class ContainerStatsService extends StatelessService {
     public static final String CONTAINER_ID_QUERY_PARAM = "id";
 
     private static final long INSPECT_INTERVAL = TimeUnit.SECONDS.toMicros(70);
-    private static final int MAX_SIZE = 10;
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, Long> inspectCache = new LinkedHashMap(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > MAX_SIZE;
-        }
-    };
+    /**
+     * For how long the last collected stats of a container are returned without asking the
+     * adapter again. Well below the 20 seconds the UI refreshes the stats at, so a single viewer
+     * always gets fresh stats while concurrent viewers share them. Requests that arrive while
+     * stats are being collected always share the collection, regardless of this value.
+     */
+    private static final long STATS_CACHE_TTL = TimeUnit.MILLISECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.compute.container.stats.cache.ttl.millis",
+            TimeUnit.SECONDS.toMillis(5)));
+
+    private static final int MAX_SIZE = Integer.getInteger(
+            "com.vmware.admiral.compute.container.stats.cache.size", 1000);
+
+    private static final ConcurrentMap<String, StatsEntry> statsCache =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Request body for getting the stats of many containers at once.
+     */
+    public static class ContainerStatsRequest {
+        /** Ids of the containers to get stats for. */
+        public List<String> containerIds;
+    }
+
+    /**
+     * Response of a bulk stats request. Containers whose stats could not be retrieved are
+     * missing from the response.
+     */
+    public static class ContainerStatsResponse {
+        /** Stats by container id. */
+        public Map<String, ServiceStats> statsByContainerId;
+    }
+
+    /**
+     * Collection state of a container. Operations waiting for stats are queued in
+     * {@code waiters} while a collection is in flight.
+     */
+    private static class StatsEntry {
+        volatile long lastInspectMicros;
+        volatile long lastStatsMicros;
+        volatile List<Operation> waiters;
+    }
 
     @Override
     public void handleGet(Operation get) {
@@ -58,35 +98,101 @@ public class ContainerStatsService extends StatelessService {
             return;
         }
 
-        getContainerStateAndProcess(get, containerId);
+        getStats(get, containerId);
+    }
+
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ContainerStatsRequest request = post.getBody(ContainerStatsRequest.class);
+        if (request.containerIds == null || request.containerIds.isEmpty()) {
+            post.fail(new IllegalArgumentException("'containerIds' expected."));
+            return;
+        }
+
+        ContainerStatsResponse response = new ContainerStatsResponse();
+        response.statsByContainerId = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(request.containerIds.size());
+        for (String containerId : request.containerIds) {
+            Operation get = Operation.createGet(getUri())
+                    .setExpiration(post.getExpirationMicrosUtc())
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            logFine("No stats for container '%s': %s", containerId,
+                                    Utils.toString(e));
+                        } else if (o.hasBody()) {
+                            response.statsByContainerId.put(containerId,
+                                    o.getBody(ServiceStats.class));
+                        }
+                        if (remaining.decrementAndGet() == 0) {
+                            response.statsByContainerId = new HashMap<>(
+                                    response.statsByContainerId);
+                            post.setBody(response).complete();
+                        }
+                    });
+            getStats(get, containerId);
+        }
     }
 
     /**
-     * start processing the request - first fetch the ContainerState
+     * Joins the in-flight stats collection of the container or starts a new one.
      */
-    private void getContainerStateAndProcess(Operation op, String id) {
+    private void getStats(Operation op, String id) {
         final String containerLink = UriUtils.buildUriPath(ContainerFactoryService.SELF_LINK, id);
 
+        StatsEntry entry = statsCache.computeIfAbsent(containerLink, k -> new StatsEntry());
+        synchronized (entry) {
+            if (entry.waiters != null) {
+                entry.waiters.add(op);
+                return;
+            }
+            if (STATS_CACHE_TTL > 0
+                    && entry.lastStatsMicros > Utils.fromNowMicrosUtc(-STATS_CACHE_TTL)) {
+                forwardStatsResponse(op, containerLink);
+                return;
+            }
+            entry.waiters = new ArrayList<>();
+            entry.waiters.add(op);
+        }
+        evictIfNeeded();
+
+        getContainerStateAndProcess(entry, containerLink);
+    }
+
+    /**
+     * start processing the request - first fetch the ContainerState
+     */
+    private void getContainerStateAndProcess(StatsEntry entry, String containerLink) {
         sendRequest(Operation
                 .createGet(UriUtils.buildUri(getHost(), containerLink))
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         logWarning("Container '%s' not found", containerLink);
-                        op.fail(Operation.STATUS_CODE_NOT_FOUND);
+                        statsCache.remove(containerLink, entry);
+                        for (Operation op : takeWaiters(entry)) {
+                            op.fail(Operation.STATUS_CODE_NOT_FOUND);
+                        }
                         return;
                     }
-                    ServiceUtils.handleExceptions(op, () -> {
+                    try {
                         ContainerState containerState = o.getBody(ContainerState.class);
-                        processInspect(containerState, () ->
-                                processStatsRequest(op, containerState));
-                    });
+                        processInspect(entry, containerState, () ->
+                                processStatsRequest(entry, containerState));
+                    } catch (Throwable e) {
+                        for (Operation op : takeWaiters(entry)) {
+                            op.fail(e);
+                        }
+                    }
                 }));
     }
 
     /**
      * Request getting stats through the adapter and then return /stats as body response
      */
-    private void processStatsRequest(Operation op, ContainerState containerState) {
+    private void processStatsRequest(StatsEntry entry, ContainerState containerState) {
         AdapterRequest request = new AdapterRequest();
         request.resourceReference = UriUtils.buildUri(getHost(), containerState.documentSelfLink);
         request.operationTypeId = ContainerOperationType.STATS.id;
@@ -99,17 +205,21 @@ public class ContainerStatsService extends StatelessService {
                         // do not return, just log warning, previous /stats will be returned
                         logWarning("Exception in stats request for container: %s. Error: %s",
                                 containerState.documentSelfLink, Utils.toString(ex));
+                    } else {
+                        entry.lastStatsMicros = Utils.getNowMicrosUtc();
+                    }
+                    for (Operation op : takeWaiters(entry)) {
+                        forwardStatsResponse(op, containerState.documentSelfLink);
                     }
-                    forwardStatsResponse(op, containerState);
                 }));
     }
 
     /**
      * Executes /stats request to the container state and copy its response to the GET operation.
      */
-    private void forwardStatsResponse(Operation op, ContainerState containerState) {
+    private void forwardStatsResponse(Operation op, String containerLink) {
         sendRequest(Operation
-                .createGet(UriUtils.buildStatsUri(getHost(), containerState.documentSelfLink))
+                .createGet(UriUtils.buildStatsUri(getHost(), containerLink))
                 .setExpiration(op.getExpirationMicrosUtc())
                 .setCompletion((o, e) -> {
                     op.setBodyNoCloning(o.getBodyRaw());
@@ -123,8 +233,8 @@ public class ContainerStatsService extends StatelessService {
                 }));
     }
 
-    private void processInspect(ContainerState container, Runnable callback) {
-        if (!isInspectionNeeded(container)) {
+    private void processInspect(StatsEntry entry, ContainerState container, Runnable callback) {
+        if (!isInspectionNeeded(entry)) {
             callback.run();
             return;
         }
@@ -145,15 +255,41 @@ public class ContainerStatsService extends StatelessService {
                 }));
     }
 
-    private boolean isInspectionNeeded(ContainerState container) {
-        Long lastInspect = inspectCache.get(container.documentSelfLink);
-        if (lastInspect == null || lastInspect < Utils.fromNowMicrosUtc(-INSPECT_INTERVAL)) {
-            inspectCache.put(container.documentSelfLink, Utils.getNowMicrosUtc());
+    private boolean isInspectionNeeded(StatsEntry entry) {
+        if (entry.lastInspectMicros < Utils.fromNowMicrosUtc(-INSPECT_INTERVAL)) {
+            entry.lastInspectMicros = Utils.getNowMicrosUtc();
             return true;
         }
         return false;
     }
 
+    private static List<Operation> takeWaiters(StatsEntry entry) {
+        synchronized (entry) {
+            List<Operation> waiters = entry.waiters;
+            entry.waiters = null;
+            return waiters != null ? waiters : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Keeps the cache bounded. Expired entries go first, then any idle ones.
+     */
+    private static void evictIfNeeded() {
+        if (statsCache.size() <= MAX_SIZE) {
+            return;
+        }
+        long expiration = Utils.fromNowMicrosUtc(-Math.max(INSPECT_INTERVAL, STATS_CACHE_TTL));
+        statsCache.values().removeIf((e) -> e.waiters == null
+                && e.lastInspectMicros < expiration && e.lastStatsMicros < expiration);
+
+        Iterator<StatsEntry> it = statsCache.values().iterator();
+        while (statsCache.size() > MAX_SIZE && it.hasNext()) {
+            if (it.next().waiters == null) {
+                it.remove();
+            }
+        }
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
@@ -161,6 +297,10 @@ public class ContainerStatsService extends StatelessService {
                 String.format("Get container stats. Provide the ContainerState id in URI query "
                         + "parameter with key \"%s\".", CONTAINER_ID_QUERY_PARAM),
                 ContainerStats.class);
+        addServiceRequestRoute(template, Action.POST,
+                "Get the stats of many containers. Provide the ContainerState ids in the "
+                        + "'containerIds' field of the body.",
+                ContainerStatsResponse.class);
         return template;
     }
 
@@ -71,6 +71,10 @@ import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 
 /**
  * Synchronize the ContainerStates with a list of container IDs
@@ -108,6 +112,13 @@ public class HostContainerListDataCollection extends StatefulService {
         public Map<String, String> containerIdsAndImage = new HashMap<>();
         public Map<String, PowerState> containerIdsAndState = new HashMap<>();
         public boolean unlockDataCollectionForHost;
+        /**
+         * When set the callback carries only the containers created and removed since the last
+         * collection, usually derived from the docker events, instead of the full list of host
+         * containers.
+         */
+        public boolean incremental;
+        public Set<String> removedContainerIds = new HashSet<>();
 
         public void addIdAndNames(String id, String[] names) {
             AssertUtil.assertNotNull(id, "containerId");
@@ -347,7 +358,74 @@ public class HostContainerListDataCollection extends StatefulService {
             // continue with the data collection.
         }
 
-        queryExistingContainerStates(body);
+        if (body.incremental) {
+            queryChangedContainerStates(body);
+        } else {
+            queryExistingContainerStates(body);
+        }
+    }
+
+    /**
+     * Applies an inventory delta: only the container states matching the created or removed
+     * containers are loaded and reconciled, without listing the host containers.
+     */
+    private void queryChangedContainerStates(ContainerListCallback body) {
+        String containerHostLink = body.containerHostLink;
+        Set<String> changedIds = new HashSet<>(body.containerIdsAndNames.keySet());
+        changedIds.addAll(body.removedContainerIds);
+        Set<String> createdNames = new HashSet<>();
+        for (String names : body.containerIdsAndNames.values()) {
+            if (names != null) {
+                createdNames.addAll(
+                        Arrays.asList(names.split(ContainerListCallback.NAME_SEPARATOR)));
+            }
+        }
+
+        if (changedIds.isEmpty()) {
+            unlockCurrentDataCollectionForHost(containerHostLink);
+            return;
+        }
+
+        // match by id or, for containers still being provisioned, by name
+        Query changedClause = QueryUtil.addListValueClause(ContainerState.FIELD_NAME_ID,
+                changedIds, MatchType.TERM);
+        if (!createdNames.isEmpty()) {
+            Query namesClause = QueryUtil.addListValueClause(
+                    QuerySpecification.buildCollectionItemName(ContainerState.FIELD_NAME_NAMES),
+                    createdNames, MatchType.TERM);
+            namesClause.occurance = Occurance.SHOULD_OCCUR;
+            changedClause.occurance = Occurance.SHOULD_OCCUR;
+            changedClause = new Query().addBooleanClause(changedClause)
+                    .addBooleanClause(namesClause);
+        }
+
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_PARENT_LINK, containerHostLink);
+        queryTask.querySpec.query.addBooleanClause(changedClause);
+        QueryUtil.addExpandOption(queryTask);
+        QueryUtil.addBroadcastOption(queryTask);
+
+        List<ContainerState> changedContainerStates = new ArrayList<>();
+        new ServiceDocumentQuery<ContainerState>(getHost(), ContainerState.class)
+                .query(queryTask, (r) -> {
+                    if (r.hasException()) {
+                        logSevere("Failed to query for changed ContainerState instances: %s",
+                                r.getException() instanceof CancellationException
+                                        ? r.getException().getMessage()
+                                        : Utils.toString(r.getException()));
+                        unlockCurrentDataCollectionForHost(containerHostLink);
+                    } else if (r.hasResult()) {
+                        ContainerState containerState = r.getResult();
+                        // a container with another id and the same name is reconciled when its
+                        // own removal is received
+                        if (containerState.id == null || changedIds.contains(containerState.id)) {
+                            changedContainerStates.add(containerState);
+                        }
+                    } else {
+                        updateContainerStates(body, changedContainerStates, containerHostLink,
+                                true);
+                    }
+                });
     }
 
     private void queryExistingContainerStates(ContainerListCallback body) {
@@ -382,7 +460,8 @@ public class HostContainerListDataCollection extends StatefulService {
                             callback.hostAdapterReference = ContainerHostDataCollectionService
                                     .getDefaultHostAdapter(getHost());
                         }
-                        updateContainerStates(callback, existingContainerStates, containerHostLink);
+                        updateContainerStates(callback, existingContainerStates, containerHostLink,
+                                false);
                     } else {
                         unlockCurrentDataCollectionForHost(containerHostLink);
                     }
@@ -405,7 +484,7 @@ public class HostContainerListDataCollection extends StatefulService {
     }
 
     private void updateContainerStates(ContainerListCallback callback,
-            List<ContainerState> containerStates, String containerHostLink) {
+            List<ContainerState> containerStates, String containerHostLink, boolean incremental) {
         final List<String> systemContainersToInstall = SystemContainerDescriptions
                 .getSystemContainerNames();
         for (ContainerState existingContainerState : containerStates) {
@@ -498,9 +577,13 @@ public class HostContainerListDataCollection extends StatefulService {
                         containersLeft.add(containerState);
                     }
 
-                    for (String systemContainerName : systemContainersToInstall) {
-                        installSystemContainerToHost(containerHostLink,
-                                systemContainerName, null);
+                    // an incremental update does not see all the host containers so the missing
+                    // system containers are left to the full data collection
+                    if (!incremental) {
+                        for (String systemContainerName : systemContainersToInstall) {
+                            installSystemContainerToHost(containerHostLink,
+                                    systemContainerName, null);
+                        }
                     }
 
                     createDiscoveredContainers(containersLeft, (e) -> {
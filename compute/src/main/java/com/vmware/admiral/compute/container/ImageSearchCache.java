@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Caches the image results of the template search for a short time, so that repeating a search
+ * while typing in the catalog doesn't repeat the search in all registries. The whole cache is
+ * dropped when a registry changes, since every cached search depends on the registries visible
+ * to its tenant.
+ */
+class ImageSearchCache {
+
+    private static final long RESULT_TTL_MICROS = TimeUnit.MILLISECONDS.toMicros(Long.getLong(
+            "com.vmware.admiral.compute.template.search.cache.ttl.millis", 10000));
+    private static final int MAX_RESULTS = Integer.getInteger(
+            "com.vmware.admiral.compute.template.search.cache.max.size", 500);
+
+    private final Map<String, CachedResults> results = new LinkedHashMap<String, CachedResults>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResults> eldest) {
+            return size() > MAX_RESULTS;
+        }
+    };
+
+    // incremented on each invalidation, so that searches which started before it are not cached
+    private long generation;
+
+    private static class CachedResults {
+        final List<TemplateSpec> templates;
+        final long expirationMicros;
+
+        CachedResults(List<TemplateSpec> templates, long expirationMicros) {
+            this.templates = templates;
+            this.expirationMicros = expirationMicros;
+        }
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns copies of the cached image results of the search with the given key or
+     * <code>null</code>.
+     */
+    List<TemplateSpec> get(String searchKey) {
+        CachedResults cached;
+        synchronized (this) {
+            cached = results.get(searchKey);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expirationMicros <= Utils.getSystemNowMicrosUtc()) {
+                results.remove(searchKey);
+                return null;
+            }
+        }
+        return copy(cached.templates);
+    }
+
+    /**
+     * Caches the complete image results of a search unless the cache was invalidated after the
+     * search started.
+     */
+    void put(String searchKey, long searchGeneration, List<TemplateSpec> templates) {
+        List<TemplateSpec> copy = copy(templates);
+        synchronized (this) {
+            if (searchGeneration != generation) {
+                return;
+            }
+            results.put(searchKey, new CachedResults(copy,
+                    Utils.fromNowMicrosUtc(RESULT_TTL_MICROS)));
+        }
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        results.clear();
+    }
+
+    private static List<TemplateSpec> copy(List<TemplateSpec> templates) {
+        List<TemplateSpec> copy = new ArrayList<>(templates.size());
+        for (TemplateSpec template : templates) {
+            copy.add(Utils.clone(template));
+        }
+        return copy;
+    }
+}
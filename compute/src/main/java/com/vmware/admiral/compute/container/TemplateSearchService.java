@@ -31,9 +31,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -45,6 +45,7 @@ import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptio
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptionFactoryService;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.AssertUtil;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.DockerImage;
 import com.vmware.admiral.common.util.OperationUtil;
@@ -60,13 +61,16 @@ import com.vmware.admiral.service.common.MultiTenantDocument;
 import com.vmware.admiral.service.common.RegistryService.RegistryState;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentQueryResult;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
 import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
 import com.vmware.xenon.services.common.ServiceUriPaths;
 
@@ -83,6 +87,11 @@ public class TemplateSearchService extends StatelessService {
     public static final String IMAGES_ONLY_PARAM = "imagesOnly";
     public static final String CLOSURES_ONLY_PARAM = "closuresOnly";
 
+    private static final long TEMPLATES_DEADLINE_MILLIS = Long.getLong(
+            "com.vmware.admiral.compute.template.search.templates.deadline.millis", 10000);
+    private static final long IMAGES_DEADLINE_MILLIS = Long.getLong(
+            "com.vmware.admiral.compute.template.search.images.deadline.millis", 15000);
+
     public static class Response {
         public Collection<TemplateSpec> results;
         public boolean isPartialResult;
@@ -90,6 +99,95 @@ public class TemplateSearchService extends StatelessService {
 
     public static class ClosuresResponse {
         public Collection<ClosureDescription> results;
+        public boolean isPartialResult;
+    }
+
+    private final ImageSearchCache imageSearchCache = new ImageSearchCache();
+
+    /**
+     * Collects the results of the sources of a single search, which run concurrently, and
+     * completes the search once all of them have finished or missed their deadlines. The search
+     * is partial if a source missed its deadline or reported partial results.
+     */
+    private static class SearchContext<T> {
+        private final BiConsumer<List<T>, Boolean> completion;
+        private final List<T> results = new ArrayList<>();
+        private int pendingSources;
+        private boolean isPartialResult;
+
+        SearchContext(BiConsumer<List<T>, Boolean> completion) {
+            this.completion = completion;
+        }
+
+        synchronized SearchSource<T> addSource(String name) {
+            pendingSources++;
+            return new SearchSource<>(this, name);
+        }
+
+        void sourceFinished(List<T> sourceResults, boolean isSourcePartialResult) {
+            synchronized (this) {
+                results.addAll(sourceResults);
+                isPartialResult |= isSourcePartialResult;
+                if (--pendingSources > 0) {
+                    return;
+                }
+            }
+            completion.accept(new ArrayList<>(results), isPartialResult);
+        }
+    }
+
+    /**
+     * A source of a search. Its results are added to the search only when it finishes before
+     * its deadline, anything it returns after that is ignored.
+     */
+    private static class SearchSource<T>
+            implements BiConsumer<ServiceDocumentQueryElementResult<T>, Boolean> {
+        private final SearchContext<T> search;
+        private final String name;
+        private final List<T> results = new ArrayList<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        SearchSource(SearchContext<T> search, String name) {
+            this.search = search;
+            this.name = name;
+        }
+
+        @Override
+        public void accept(ServiceDocumentQueryElementResult<T> r, Boolean isPartialResult) {
+            if (r.hasException() || !r.hasResult()) {
+                if (r.hasException()) {
+                    Utils.logWarning("Query failure: %s", Utils.toString(r.getException()));
+                }
+
+                if (finished.compareAndSet(false, true)) {
+                    List<T> sourceResults;
+                    synchronized (this) {
+                        sourceResults = new ArrayList<>(results);
+                    }
+                    search.sourceFinished(sourceResults, Boolean.TRUE.equals(isPartialResult));
+                }
+
+            } else if (!finished.get()) {
+                synchronized (this) {
+                    results.add(r.getResult());
+                }
+            }
+        }
+
+        void expire() {
+            if (finished.compareAndSet(false, true)) {
+                Utils.logWarning("Search of %s didn't finish in time, returning partial results",
+                        name);
+                search.sourceFinished(Collections.emptyList(), true);
+            }
+        }
+    }
+
+    @Override
+    public void handleStart(Operation post) {
+        CommonContinuousQueries.subscribeTo(getHost(), buildRegistriesContinuousQuery(),
+                this::onRegistryChange);
+        super.handleStart(post);
     }
 
     @Override
@@ -128,69 +226,46 @@ public class TemplateSearchService extends StatelessService {
                         "compute.template.search.options");
             }
 
-            Set<TemplateSpec> results = Collections.newSetFromMap(new ConcurrentHashMap<>());
-
-            // shared callback called by individual queries as they finish (successfully or not)
-            AtomicInteger queriesCountdown = new AtomicInteger(2);
-            if (templatesOnly || imagesOnly) {
-                queriesCountdown.decrementAndGet();
+            SearchContext<TemplateSpec> search = new SearchContext<>(
+                    (results, isPartialResult) -> {
+                        Response response = new Response();
+                        response.results = prependOfficialResults(results);
+                        response.isPartialResult = isPartialResult;
+                        get.setBody(response);
+                        get.complete();
+                    });
+
+            // add all the sources before starting any of them so that a source which finishes
+            // right away doesn't complete the search
+            SearchSource<TemplateSpec> templateSource = imagesOnly ? null
+                    : search.addSource("templates");
+            SearchSource<TemplateSpec> imageSource = templatesOnly ? null
+                    : search.addSource("images");
+
+            if (templateSource != null) {
+                scheduleDeadline(templateSource, TEMPLATES_DEADLINE_MILLIS);
+                executeTemplateQuery(get, query, queryParams, templateSource);
             }
-
-            BiConsumer<ServiceDocumentQueryElementResult<TemplateSpec>, Boolean> resultConsumer =
-                    (r, isPartialResult) -> {
-                        if (r.hasException() || !r.hasResult()) {
-                            if (r.hasException()) {
-                                Utils.logWarning("Query failure: %s",
-                                        Utils.toString(r.getException()));
-                            }
-
-                            if (queriesCountdown.decrementAndGet() == 0) {
-                                Response response = new Response();
-                                response.results = prependOfficialResults(new ArrayList<>(results));
-                                if (isPartialResult != null) {
-                                    response.isPartialResult = isPartialResult;
-                                }
-                                get.setBody(response);
-                                get.complete();
-                            }
-
-                        } else if (r.hasResult()) {
-                            results.add(r.getResult());
-                        }
-                    };
-
-            if (!imagesOnly) {
-                executeTemplateQuery(get, query, queryParams, resultConsumer);
-            }
-            if (!templatesOnly) {
-                executeImageQuery(get, queryParams, registryFilter, resultConsumer);
+            if (imageSource != null) {
+                scheduleDeadline(imageSource, IMAGES_DEADLINE_MILLIS);
+                executeImageQuery(get, queryParams, registryFilter, imageSource);
             }
         }
     }
 
     private void queryClosures(Operation get, Map<String, String> queryParams, String query) {
-        AtomicInteger queriesCountdown = new AtomicInteger(2);
-        queriesCountdown.decrementAndGet();
-        Set<ClosureDescription> results = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        Consumer<ServiceDocumentQueryElementResult<ClosureDescription>> resultConsumer = (r) -> {
-            if (r.hasException() || !r.hasResult()) {
-                if (r.hasException()) {
-                    Utils.logWarning("Query failure: %s", Utils.toString(r.getException()));
-                }
-
-                if (queriesCountdown.decrementAndGet() == 0) {
+        SearchContext<ClosureDescription> search = new SearchContext<>(
+                (results, isPartialResult) -> {
                     ClosuresResponse response = new ClosuresResponse();
-                    response.results = new ArrayList<>(results);
+                    response.results = results;
+                    response.isPartialResult = isPartialResult;
                     get.setBody(response);
                     get.complete();
-                }
+                });
 
-            } else if (r.hasResult()) {
-                results.add(r.getResult());
-            }
-        };
-
-        executeClosuresQuery(get, query, queryParams, resultConsumer);
+        SearchSource<ClosureDescription> closureSource = search.addSource("closures");
+        scheduleDeadline(closureSource, TEMPLATES_DEADLINE_MILLIS);
+        executeClosuresQuery(get, query, queryParams, (r) -> closureSource.accept(r, null));
     }
 
     private void executeClosuresQuery(Operation get, String query, Map<String, String> queryParams,
@@ -418,6 +493,17 @@ public class TemplateSearchService extends StatelessService {
             tenantLinks.add(tenantLink);
         }
 
+        String searchKey = getImageSearchKey(get, queryParams);
+        List<TemplateSpec> cachedTemplates = imageSearchCache.get(searchKey);
+        if (cachedTemplates != null) {
+            for (TemplateSpec template : cachedTemplates) {
+                resultConsumer.accept(result(template, cachedTemplates.size()), null);
+            }
+            resultConsumer.accept(noResult(), false);
+            return;
+        }
+        long searchGeneration = imageSearchCache.getGeneration();
+
         // pass on the query parameters to the image search service
         imageSearchUri = UriUtils.extendUriWithQuery(imageSearchUri, flattenQueryParams(
                 queryParams));
@@ -426,27 +512,76 @@ public class TemplateSearchService extends StatelessService {
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         resultConsumer.accept(error(ex), null);
-                    } else {
-                        RegistrySearchResponse response = o.getBody(RegistrySearchResponse.class);
-                        if (response.results != null) {
-                            filterResultsByRegistryPath(response.results, tenantLinks, (res, t) -> {
-                                if (t != null && !t.isEmpty()) {
-                                    resultConsumer.accept(error(t.iterator().next()), null);
-                                    return;
-                                }
-
-                                for (Result result : res) {
-                                    resultConsumer.accept(result(createTemplateFromImageResult(
-                                            result), res.size()), null);
-                                }
-
-                                resultConsumer.accept(noResult(), response.isPartialResult);
-                            });
-                        }
+                        return;
+                    }
+
+                    RegistrySearchResponse response = o.getBody(RegistrySearchResponse.class);
+                    if (response.results == null) {
+                        resultConsumer.accept(noResult(), response.isPartialResult);
+                        return;
                     }
+
+                    filterResultsByRegistryPath(response.results, tenantLinks, (res, t) -> {
+                        if (t != null && !t.isEmpty()) {
+                            resultConsumer.accept(error(t.iterator().next()), null);
+                            return;
+                        }
+
+                        List<TemplateSpec> templates = new ArrayList<>(res.size());
+                        for (Result result : res) {
+                            templates.add(createTemplateFromImageResult(result));
+                        }
+
+                        // partial results are not cached so that the next search retries the
+                        // registries which didn't respond
+                        if (!response.isPartialResult) {
+                            imageSearchCache.put(searchKey, searchGeneration, templates);
+                        }
+
+                        for (TemplateSpec template : templates) {
+                            resultConsumer.accept(result(template, templates.size()), null);
+                        }
+
+                        resultConsumer.accept(noResult(), response.isPartialResult);
+                    });
                 }));
     }
 
+    /**
+     * Returns the key of the image results of a search, built of all the parameters passed to the
+     * image search service, including the tenant, and the user of the request.
+     */
+    private String getImageSearchKey(Operation get, Map<String, String> queryParams) {
+        StringBuilder key = new StringBuilder();
+        new TreeMap<>(queryParams).forEach((k, v) -> key.append(k).append('=').append(v)
+                .append('&'));
+        AuthorizationContext authorizationContext = get.getAuthorizationContext();
+        if (authorizationContext != null && authorizationContext.getClaims() != null) {
+            key.append('|').append(authorizationContext.getClaims().getSubject());
+        }
+        return key.toString();
+    }
+
+    private void onRegistryChange(Operation op) {
+        op.complete();
+        imageSearchCache.invalidateAll();
+    }
+
+    private QueryTask buildRegistriesContinuousQuery() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(RegistryState.class)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOption(QueryOption.CONTINUOUS)
+                .setQuery(query).build();
+        task.documentSelfLink = CommonContinuousQueries.createTaskSelfLink("template-search");
+        return task;
+    }
+
+    private void scheduleDeadline(SearchSource<?> source, long deadlineMillis) {
+        getHost().schedule(source::expire, deadlineMillis, TimeUnit.MILLISECONDS);
+    }
+
     private void filterResultsByRegistryPath(List<Result> results, List<String> tenantLinks,
             BiConsumer<Collection<Result>, Collection<Throwable>> consumer) {
         RegistryUtil.findRegistries(getHost(), tenantLinks, null, (registries, failures) -> {
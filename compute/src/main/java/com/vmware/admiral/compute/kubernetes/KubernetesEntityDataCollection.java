@@ -112,6 +112,24 @@ public class KubernetesEntityDataCollection extends StatefulService {
          * deployed from admiral.
          */
         public String compositeComponentId;
+
+        /**
+         * The entity as returned by the kubernetes API server. When set, it is used to update the
+         * state of the entity.
+         */
+        public String entityJson;
+    }
+
+    public enum EntityListType {
+        /**
+         * All the entities of the host, or of the given kind only when it is set.
+         */
+        SNAPSHOT,
+
+        /**
+         * The entities added, modified or deleted since the previous update.
+         */
+        CHANGES
     }
 
     public static class EntityListCallback extends ServiceTaskCallbackResponse {
@@ -119,6 +137,22 @@ public class KubernetesEntityDataCollection extends StatefulService {
         public String computeHostLink;
         public Map<String, KubernetesEntityData> idToEntityData = new ConcurrentHashMap<>();
         public boolean unlockDataCollectionForHost;
+
+        /**
+         * The type of the entity list, null for a request to start syncing the entities of the
+         * host.
+         */
+        public EntityListType listType;
+
+        /**
+         * The kind of the entities in a snapshot, null when the snapshot holds all kinds.
+         */
+        public String kind;
+
+        /**
+         * The IDs of the entities deleted since the previous update.
+         */
+        public Set<String> deletedIds = new HashSet<>();
     }
 
     public KubernetesEntityDataCollection() {
@@ -206,6 +240,11 @@ public class KubernetesEntityDataCollection extends StatefulService {
             return;
         }
 
+        if (body.listType != null) {
+            updateEntities(op, body);
+            return;
+        }
+
         KubernetesEntityDataCollectionState state = getState(op);
         if (body.unlockDataCollectionForHost) {
             // patch to mark that there is no active entity data collection for a given host.
@@ -228,6 +267,31 @@ public class KubernetesEntityDataCollection extends StatefulService {
             op.complete();
         }
 
+        // the adapter keeps watching the entities of the host and patches the changes back, the
+        // request completes once the initial entity list has been applied
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.WATCH_ENTITIES.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), body.computeHostLink);
+        sendRequest(Operation
+                .createPatch(getDefaultListingAdapter(getHost()))
+                .setBody(request)
+                .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_QUEUE_FOR_SERVICE_AVAILABILITY)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning("Failed to watch the entities of host [%s]: %s",
+                                body.computeHostLink, Utils.toString(ex));
+                    }
+                    unlockCurrentDataCollectionForHost(body.computeHostLink);
+                }));
+    }
+
+    /**
+     * Applies an entity list reported by the adapter. A snapshot replaces the entity states of
+     * the host, changes are applied only to the listed entities. The operation completes once
+     * the entity states are updated, so that the changes of a host are applied in order.
+     */
+    private void updateEntities(Operation op, EntityListCallback body) {
         List<ResourceState> entityStates = new ArrayList<>();
 
         QueryTask q = getKubernetesStatesQueryTask();
@@ -237,6 +301,33 @@ public class KubernetesEntityDataCollection extends StatefulService {
                 .setTermMatchValue(body.computeHostLink)
                 .setOccurance(Occurance.MUST_OCCUR));
 
+        if (body.listType == EntityListType.SNAPSHOT) {
+            if (body.kind != null) {
+                q.querySpec.query.addBooleanClause(new QueryTask.Query()
+                        .setTermPropertyName(ServiceDocument.FIELD_NAME_KIND)
+                        .setTermMatchValue(Utils.buildKind(KubernetesUtil
+                                .createKubernetesEntityState(body.kind).getClass()))
+                        .setOccurance(Occurance.MUST_OCCUR));
+            }
+        } else {
+            Set<String> ids = new HashSet<>(body.idToEntityData.keySet());
+            ids.addAll(body.deletedIds);
+            if (ids.isEmpty()) {
+                op.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+                op.complete();
+                return;
+            }
+
+            Query idClause = new Query().setOccurance(Occurance.MUST_OCCUR);
+            for (String id : ids) {
+                idClause.addBooleanClause(new Query()
+                        .setTermPropertyName(BaseKubernetesState.FIELD_NAME_ID)
+                        .setTermMatchValue(id)
+                        .setOccurance(Occurance.SHOULD_OCCUR));
+            }
+            q.querySpec.query.addBooleanClause(idClause);
+        }
+
         new ServiceDocumentQuery<ResourceState>(getHost(), ResourceState.class).query(q,
                 (r) -> {
                     if (r.hasException()) {
@@ -244,45 +335,34 @@ public class KubernetesEntityDataCollection extends StatefulService {
                                 r.getException() instanceof CancellationException
                                         ? r.getException().getMessage()
                                         : Utils.toString(r.getException()));
-                        unlockCurrentDataCollectionForHost(body.computeHostLink);
+                        op.fail(r.getException());
                     } else if (r.hasResult()) {
                         entityStates.add(r.getResult());
                     } else {
-                        AdapterRequest request = new AdapterRequest();
-                        request.operationTypeId = ContainerHostOperationType.LIST_ENTITIES.id;
-                        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
-                        request.resourceReference = UriUtils.buildUri(getHost(),
-                                body.computeHostLink);
-                        sendRequest(Operation
-                                .createPatch(getDefaultListingAdapter(getHost()))
-                                .setBody(request)
-                                .addPragmaDirective(
-                                        Operation.PRAGMA_DIRECTIVE_QUEUE_FOR_SERVICE_AVAILABILITY)
-                                .setCompletion(
-                                        (o, ex) -> {
-                                            if (ex == null) {
-                                                EntityListCallback callback = o
-                                                        .getBody(EntityListCallback.class);
-                                                callback.computeHostLink = body.computeHostLink;
-                                                updateEntityStates(callback, entityStates);
-                                            } else {
-                                                unlockCurrentDataCollectionForHost(
-                                                        body.computeHostLink);
-                                            }
-                                        }));
+                        AtomicBoolean completed = new AtomicBoolean();
+                        updateEntityStates(body, entityStates, () -> {
+                            if (completed.compareAndSet(false, true)) {
+                                // the state of the data collection itself is not changed
+                                op.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+                                op.complete();
+                            }
+                        });
                     }
                 });
     }
 
     private void updateEntityStates(EntityListCallback callback,
-            List<ResourceState> entityStates) {
+            List<ResourceState> entityStates, Runnable done) {
 
         for (ResourceState entityState : entityStates) {
-            boolean exists = false;
+            KubernetesEntityData data = null;
             if (entityState.id != null) {
-                exists = callback.idToEntityData.remove(entityState.id) != null;
+                data = callback.idToEntityData.remove(entityState.id);
             }
-            if (!exists) {
+            if (data != null) {
+                handleModifiedEntity(entityState, data);
+            } else if (callback.listType == EntityListType.SNAPSHOT
+                    || callback.deletedIds.contains(entityState.id)) {
                 handleMissingEntity(entityState);
             }
         }
@@ -297,7 +377,7 @@ public class KubernetesEntityDataCollection extends StatefulService {
                             if (ex != null) {
                                 logSevere("Failure to retrieve host [%s]. Error: %s",
                                         callback.computeHostLink, Utils.toString(ex));
-                                unlockCurrentDataCollectionForHost(callback.computeHostLink);
+                                done.run();
                                 return;
                             }
                             ComputeState host = o.getBody(ComputeState.class);
@@ -314,6 +394,9 @@ public class KubernetesEntityDataCollection extends StatefulService {
                                     continue;
                                 }
 
+                                if (data.entityJson != null) {
+                                    state.setKubernetesEntityFromJson(data.entityJson);
+                                }
                                 state.name = data.name;
                                 state.id = entry.getKey();
                                 state.documentSelfLink = entry.getKey();
@@ -328,9 +411,7 @@ public class KubernetesEntityDataCollection extends StatefulService {
                                 }
                             }
                             createCompositeComponents(compositeIdsToCreate, () ->
-                                    createDiscoveredEntities(entitiesLeft, () ->
-                                            unlockCurrentDataCollectionForHost(
-                                                    callback.computeHostLink)));
+                                    createDiscoveredEntities(entitiesLeft, done));
                         });
         sendRequest(operation);
     }
@@ -492,6 +573,25 @@ public class KubernetesEntityDataCollection extends StatefulService {
                         }));
     }
 
+    private void handleModifiedEntity(ResourceState state, KubernetesEntityData data) {
+        if (data.entityJson == null) {
+            return;
+        }
+
+        BaseKubernetesState patchState = KubernetesUtil.createKubernetesEntityState(data.kind);
+        patchState.setKubernetesEntityFromJson(data.entityJson);
+        sendRequest(Operation
+                .createPatch(this, state.documentSelfLink)
+                .setBody(patchState)
+                .setCompletion(
+                        (op, ex) -> {
+                            if (ex != null) {
+                                logWarning("Failed updating KubernetesState of entity %s: %s",
+                                        state.documentSelfLink, Utils.toString(ex));
+                            }
+                        }));
+    }
+
     private BaseKubernetesState checkForCompositeComponentId(BaseKubernetesState state,
             KubernetesEntityData data) {
         if (data.compositeComponentId == null || data.compositeComponentId.isEmpty()) {
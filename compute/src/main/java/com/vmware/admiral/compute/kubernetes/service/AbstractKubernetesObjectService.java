@@ -12,7 +12,6 @@
 package com.vmware.admiral.compute.kubernetes.service;
 
 import com.vmware.admiral.common.util.PropertyUtils;
-import com.vmware.admiral.compute.kubernetes.maintenance.KubernetesMaintenance;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatefulService;
@@ -20,7 +19,6 @@ import com.vmware.xenon.common.StatefulService;
 public abstract class AbstractKubernetesObjectService<T extends BaseKubernetesState>
         extends StatefulService {
 
-    private volatile KubernetesMaintenance kubernetesMaintenance;
     private Class<T> stateType;
 
     protected AbstractKubernetesObjectService(Class<T> stateType) {
@@ -28,9 +26,7 @@ public abstract class AbstractKubernetesObjectService<T extends BaseKubernetesSt
         super.toggleOption(ServiceOption.PERSISTENCE, true);
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
-        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
         super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
-        super.setMaintenanceIntervalMicros(KubernetesMaintenance.MAINTENANCE_INTERVAL_MICROS);
         this.stateType = stateType;
     }
 
@@ -41,7 +37,6 @@ public abstract class AbstractKubernetesObjectService<T extends BaseKubernetesSt
         }
 
         T state = post.getBody(stateType);
-        startMonitoringState(state);
 
         try {
             post.setBody(state);
@@ -75,32 +70,6 @@ public abstract class AbstractKubernetesObjectService<T extends BaseKubernetesSt
         patch.complete();
     }
 
-    private void startMonitoringState(T body) {
-        if (body.kubernetesSelfLink != null) {
-            getHost().registerForServiceAvailability((o, ex) -> {
-                if (ex != null) {
-                    logWarning("Skipping maintenance because service failed to start: %s",
-                            ex.getMessage());
-                } else {
-                    handlePeriodicMaintenance(o);
-                }
-            }, getSelfLink());
-        }
-    }
-
-    @Override
-    public void handlePeriodicMaintenance(Operation post) {
-        if (getProcessingStage() != ProcessingStage.AVAILABLE) {
-            logFine("Skipping maintenance since service is not available: %s ", getUri());
-            return;
-        }
-
-        if (kubernetesMaintenance == null) {
-            kubernetesMaintenance = KubernetesMaintenance.create(getHost(), getSelfLink());
-        }
-        kubernetesMaintenance.handlePeriodicMaintenance(post);
-    }
-
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
@@ -23,6 +23,7 @@ import com.vmware.admiral.compute.HostConfigCertificateDistributionService;
 import com.vmware.admiral.compute.PlacementCapacityUpdateTaskService;
 import com.vmware.admiral.compute.RegistryConfigCertificateDistributionService;
 import com.vmware.admiral.compute.RegistryHostConfigService;
+import com.vmware.admiral.compute.ResourcePoolMembershipIndexService;
 import com.vmware.admiral.compute.ResourceType;
 import com.vmware.admiral.compute.cluster.ClusterService;
 import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
@@ -131,7 +132,8 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                 PodFactoryService.class,
                 ServiceEntityFactoryHandler.class,
                 GenericKubernetesEntityFactoryService.class,
-                PKSCreateEndpointService.class);
+                PKSCreateEndpointService.class,
+                ResourcePoolMembershipIndexService.class);
 
         startServiceFactories(host, CaSigningCertService.class,
                 GroupResourcePlacementService.class,
@@ -20,7 +20,9 @@ import java.util.Map;
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListType;
 import com.vmware.admiral.compute.kubernetes.service.BaseKubernetesState;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
@@ -75,6 +77,28 @@ public class MockKubernetesHostAdapterService extends BaseMockAdapterService {
             op.setBody(callbackResponse);
             op.complete();
 
+        } else if (ContainerHostOperationType.WATCH_ENTITIES.id.equals(request.operationTypeId)) {
+            EntityListCallback snapshot = new EntityListCallback();
+            snapshot.computeHostLink = request.resourceReference.getPath();
+            snapshot.listType = EntityListType.SNAPSHOT;
+            for (BaseKubernetesState entity : MockKubernetesAdapterService
+                    .getKubernetesEntities()) {
+                snapshot.idToEntityData
+                        .put(entity.id, createEntityData(entity.getEntityAsBaseKubernetesObject(),
+                                entity.getType()));
+            }
+            sendRequest(Operation
+                    .createPatch(this, KubernetesEntityDataCollection
+                            .DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK)
+                    .setBody(snapshot)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            op.fail(e);
+                        } else {
+                            op.complete();
+                        }
+                    }));
+
         } else if (ContainerHostOperationType.INFO.id.equals(request.operationTypeId)) {
             sendRequest(Operation
                     .createGet(request.resourceReference)
@@ -15,10 +15,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import com.google.gson.JsonPrimitive;
@@ -519,6 +523,74 @@ public class BindingEvaluatorTest {
 
     }
 
+    @Test
+    public void testEvaluateProvisioningBindingsWithSameExpression() {
+        List<Binding> bindings = Arrays.asList(
+                binding(Arrays.asList("parentLink"), "_resource~A~address"),
+                new Binding(Arrays.asList("hostname"), "${_resource~A~address}:2376",
+                        new BindingPlaceholder("_resource~A~address")));
+
+        Map<String, NestedState> containers = new HashMap<>();
+        ContainerState containerState = new ContainerState();
+        containerState.address = "10.0.0.1";
+        containers.put("A", new NestedState(containerState));
+
+        NestedState evalObj = BindingEvaluator.evaluateProvisioningTimeBindings(
+                new NestedState(new ContainerState()), bindings, containers);
+
+        assertEquals("10.0.0.1", ((ContainerState) evalObj.object).parentLink);
+        assertEquals("10.0.0.1:2376", ((ContainerState) evalObj.object).hostname);
+    }
+
+    /**
+     * Measures the evaluation of the provisioning time bindings of a large template, a component
+     * bound to many fields of many provisioned components. The numbers are only logged since they
+     * depend on the environment.
+     */
+    @Test
+    public void testProvisioningTimeBindingsLatency() {
+        int components = Integer.getInteger("test.bindings.components", 100);
+        int iterations = Integer.getInteger("test.bindings.iterations", 200);
+
+        Map<String, NestedState> provisionedResources = new HashMap<>();
+        List<Binding> bindings = new ArrayList<>();
+        for (int i = 0; i < components; i++) {
+            String name = "C" + i;
+            ContainerState containerState = new ContainerState();
+            containerState.address = "10.0.0." + i;
+            containerState.parentLink = "host-" + i;
+            containerState.customProperties = new HashMap<>();
+            containerState.customProperties.put("key", "value-" + i);
+            provisionedResources.put(name, new NestedState(containerState));
+
+            bindings.add(binding(Arrays.asList("env", String.valueOf(3 * i)),
+                    "_resource~" + name + "~address"));
+            bindings.add(binding(Arrays.asList("env", String.valueOf(3 * i + 1)),
+                    "_resource~" + name + "~parent_link"));
+            bindings.add(binding(Arrays.asList("env", String.valueOf(3 * i + 2)),
+                    "_resource~" + name + "~key"));
+        }
+
+        NestedState evalObj = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            evalObj = BindingEvaluator.evaluateProvisioningTimeBindings(
+                    new NestedState(new ContainerState()), bindings, provisionedResources);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        String[] env = ((ContainerState) evalObj.object).env;
+        assertEquals(3 * components, env.length);
+        assertEquals("10.0.0.7", env[21]);
+        assertEquals("host-7", env[22]);
+        assertEquals("value-7", env[23]);
+
+        Logger.getLogger(BindingEvaluatorTest.class.getName()).log(Level.INFO,
+                String.format("Evaluated %d provisioning time bindings in %d us (avg of %d)",
+                        bindings.size(),
+                        TimeUnit.NANOSECONDS.toMicros(elapsedNanos / iterations), iterations));
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static CompositeTemplate createCompositeTemplate(
             List<? extends ResourceState> containerDescriptions,
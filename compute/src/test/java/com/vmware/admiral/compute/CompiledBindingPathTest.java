@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.resources.ResourceState;
+
+public class CompiledBindingPathTest {
+
+    public static class TestState extends ResourceState {
+        public String hostAddress;
+    }
+
+    @Test
+    public void testOnlyExistingFieldsAreCached() throws Throwable {
+        TestState state = new TestState();
+        state.hostAddress = "10.0.0.1";
+        state.customProperties = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            state.customProperties.put("key" + i, "value-" + i);
+        }
+
+        assertEquals("10.0.0.1", CompiledBindingPath.forExpression("A~hostAddress")
+                .getValue(state));
+        assertEquals("10.0.0.1", CompiledBindingPath.forExpression("A~host_address")
+                .getValue(state));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value-" + i, CompiledBindingPath.forExpression("A~key" + i)
+                    .getValue(state));
+        }
+        assertNull(CompiledBindingPath.forExpression("A~missing").getValue(state));
+
+        // the custom property and missing names are not cached
+        assertEquals(2, CompiledBindingPath.getCachedFieldAccessorCount(TestState.class));
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ComputeBaseTest;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+
+public class ResourcePoolMembershipIndexServiceTest extends ComputeBaseTest {
+
+    private static final String CONTAINER_HOST_PROP_NAME = "__containerHost";
+
+    private ResourcePoolMembershipIndexService index;
+
+    @Before
+    public void setUp() throws Throwable {
+        waitFor(() -> ResourcePoolMembershipIndexService.getIndex(host) != null);
+        index = ResourcePoolMembershipIndexService.getIndex(host);
+    }
+
+    @Test
+    public void testIndexResultMatchesResourcePoolQueries() throws Throwable {
+        ResourcePoolState rp1 = createResourcePool();
+        ResourcePoolState rp2 = createResourcePool();
+        ComputeState c1 = createCompute(rp1.documentSelfLink, true);
+        ComputeState c2 = createCompute(rp2.documentSelfLink, false);
+        ComputeState c3 = createCompute(null, true);
+        sync();
+
+        QueryResult result = query(ResourcePoolQueryHelper.create(host));
+        assertTrue(result.resourcesPools.get(rp1.documentSelfLink).computeStateLinks
+                .contains(c1.documentSelfLink));
+        assertTrue(result.resourcesPools.get(rp2.documentSelfLink).computeStateLinks
+                .contains(c2.documentSelfLink));
+        assertEquals(Collections.singleton(rp1.documentSelfLink),
+                result.rpLinksByComputeLink.get(c1.documentSelfLink));
+        assertTrue(result.rpLinksByComputeLink.get(c3.documentSelfLink).isEmpty());
+        assertEquals(c1.documentSelfLink,
+                result.computesByLink.get(c1.documentSelfLink).documentSelfLink);
+
+        // the same result as the resource pool queries
+        stopIndex();
+        QueryResult queryResult = query(ResourcePoolQueryHelper.create(host));
+        assertEquals(queryResult.computesByLink.keySet(), result.computesByLink.keySet());
+        assertEquals(queryResult.rpLinksByComputeLink, result.rpLinksByComputeLink);
+        assertEquals(queryResult.resourcesPools.keySet(), result.resourcesPools.keySet());
+    }
+
+    @Test
+    public void testIndexAppliesAdditionalClauses() throws Throwable {
+        ResourcePoolState rp = createResourcePool();
+        ComputeState c1 = createCompute(rp.documentSelfLink, true);
+        ComputeState c2 = createCompute(rp.documentSelfLink, false);
+        sync();
+
+        ResourcePoolQueryHelper helper = ResourcePoolQueryHelper.createForResourcePool(host,
+                rp.documentSelfLink);
+        helper.setAdditionalQueryClausesProvider(qb -> qb.addCompositeFieldClause(
+                ComputeState.FIELD_NAME_CUSTOM_PROPERTIES, CONTAINER_HOST_PROP_NAME, "true"));
+        QueryResult result = query(helper);
+
+        assertEquals(Collections.singleton(c1.documentSelfLink),
+                result.resourcesPools.get(rp.documentSelfLink).computeStateLinks);
+        assertFalse(result.computesByLink.containsKey(c2.documentSelfLink));
+
+        result = query(ResourcePoolQueryHelper.createForComputes(host,
+                Arrays.asList(c2.documentSelfLink)));
+        assertEquals(Collections.singleton(c2.documentSelfLink), result.computesByLink.keySet());
+        assertEquals(Collections.singleton(rp.documentSelfLink),
+                result.rpLinksByComputeLink.get(c2.documentSelfLink));
+    }
+
+    @Test
+    public void testIndexTracksChanges() throws Throwable {
+        ResourcePoolState rp1 = createResourcePool();
+        ResourcePoolState rp2 = createResourcePool();
+        ComputeState c1 = createCompute(rp1.documentSelfLink, true);
+        sync();
+
+        // move the compute to the other resource pool
+        ComputeState patch = new ComputeState();
+        patch.resourcePoolLink = rp2.documentSelfLink;
+        doPatch(patch, c1.documentSelfLink);
+        sync();
+
+        QueryResult result = query(ResourcePoolQueryHelper.create(host));
+        assertTrue(result.resourcesPools.get(rp1.documentSelfLink).computeStateLinks.isEmpty());
+        assertEquals(Collections.singleton(c1.documentSelfLink),
+                result.resourcesPools.get(rp2.documentSelfLink).computeStateLinks);
+
+        delete(rp2.documentSelfLink);
+        sync();
+
+        result = query(ResourcePoolQueryHelper.create(host));
+        assertNull(result.resourcesPools.get(rp2.documentSelfLink));
+        assertTrue(result.rpLinksByComputeLink.get(c1.documentSelfLink).isEmpty());
+
+        // the helper syncs the index before reading it
+        delete(c1.documentSelfLink);
+        result = query(ResourcePoolQueryHelper.create(host));
+        assertFalse(result.computesByLink.containsKey(c1.documentSelfLink));
+    }
+
+    @Test
+    public void testReadRightAfterUpdateOfIndexedCompute() throws Throwable {
+        ResourcePoolState rp1 = createResourcePool();
+        ResourcePoolState rp2 = createResourcePool();
+        ComputeState c1 = createCompute(rp1.documentSelfLink, true);
+        sync();
+
+        // no sync and no waiting for the notifications, the helper syncs the index itself
+        ComputeState patch = new ComputeState();
+        patch.resourcePoolLink = rp2.documentSelfLink;
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put(CONTAINER_HOST_PROP_NAME, "false");
+        doPatch(patch, c1.documentSelfLink);
+
+        ResourcePoolQueryHelper helper = ResourcePoolQueryHelper.createForResourcePool(host,
+                rp2.documentSelfLink);
+        QueryResult result = query(helper);
+        assertEquals(Collections.singleton(c1.documentSelfLink),
+                result.resourcesPools.get(rp2.documentSelfLink).computeStateLinks);
+        assertEquals("false", result.computesByLink.get(c1.documentSelfLink)
+                .customProperties.get(CONTAINER_HOST_PROP_NAME));
+
+        result = query(ResourcePoolQueryHelper.createForResourcePool(host,
+                rp1.documentSelfLink));
+        assertTrue(result.resourcesPools.get(rp1.documentSelfLink).computeStateLinks.isEmpty());
+    }
+
+    private ResourcePoolState createResourcePool() throws Throwable {
+        ResourcePoolState rp = new ResourcePoolState();
+        rp.name = UUID.randomUUID().toString();
+        return doPost(rp, ResourcePoolService.FACTORY_LINK);
+    }
+
+    private ComputeState createCompute(String resourcePoolLink, boolean containerHost)
+            throws Throwable {
+        ComputeState cs = new ComputeState();
+        cs.descriptionLink = "test-description";
+        cs.resourcePoolLink = resourcePoolLink;
+        cs.customProperties = new HashMap<>();
+        cs.customProperties.put(CONTAINER_HOST_PROP_NAME, Boolean.toString(containerHost));
+        return doPost(cs, ComputeService.FACTORY_LINK);
+    }
+
+    private QueryResult query(ResourcePoolQueryHelper helper) throws Throwable {
+        helper.setExpandComputes(true);
+        AtomicReference<QueryResult> result = new AtomicReference<>();
+        host.testStart(1);
+        helper.query(qr -> {
+            if (qr.error != null) {
+                host.failIteration(qr.error);
+            } else {
+                result.set(qr);
+                host.completeIteration();
+            }
+        });
+        host.testWait();
+        assertNotNull(result.get());
+        return result.get();
+    }
+
+    private void stopIndex() throws Throwable {
+        host.testStart(1);
+        host.send(Operation
+                .createDelete(UriUtils.buildUri(host, ResourcePoolMembershipIndexService.SELF_LINK))
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private void sync() throws Throwable {
+        host.testStart(1);
+        index.sync((e) -> {
+            if (e != null) {
+                host.failIteration(e);
+            } else {
+                host.completeIteration();
+            }
+        });
+        host.testWait();
+    }
+}
@@ -17,8 +17,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -33,6 +37,8 @@ import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.ContainerStatsService.ContainerStatsRequest;
+import com.vmware.admiral.compute.container.ContainerStatsService.ContainerStatsResponse;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.HttpVersion;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.RequestProtocol;
@@ -238,19 +244,100 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
             assertTrue(mockAdapterService.isStatsInvokedForResource(containerLink));
             assertTrue(mockAdapterService.isInspectInvokedForResource(containerLink));
 
+            // the stats collected just now are returned without asking the adapter again
             mockAdapterService.reset();
             response = sender.sendAndWait(Operation.createGet(uri));
             assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
             stats = response.getBody(ServiceStats.class);
             assertNotNull(stats);
             assertEquals(ServiceStats.KIND, stats.documentKind);
-            assertTrue(mockAdapterService.isStatsInvokedForResource(containerLink));
+            assertFalse(mockAdapterService.isStatsInvokedForResource(containerLink));
             assertFalse(mockAdapterService.isInspectInvokedForResource(containerLink));
         } finally {
             stopService(mockAdapterService);
         }
     }
 
+    @Test
+    public void testConcurrentContainerStatsShareAdapterCall() throws Throwable {
+        MockAdapterService mockAdapterService = new MockAdapterService();
+        try {
+            startMockAdapterService(mockAdapterService);
+            String containerId = UriUtils.getLastPathSegment(
+                    createContainerWithMockAdapter().documentSelfLink);
+            URI uri = UriUtils.buildUri(host, ContainerStatsService.SELF_LINK, String.format(
+                    "%s=%s", ContainerStatsService.CONTAINER_ID_QUERY_PARAM, containerId));
+
+            int requests = 5;
+            mockAdapterService.holdStats = true;
+            host.testStart(requests);
+            for (int i = 0; i < requests; i++) {
+                host.send(Operation.createGet(uri)
+                        .setCompletion((o, e) -> {
+                            if (e != null) {
+                                host.failIteration(e);
+                                return;
+                            }
+                            assertEquals(ServiceStats.KIND,
+                                    o.getBody(ServiceStats.class).documentKind);
+                            host.completeIteration();
+                        }));
+            }
+            waitFor(() -> mockAdapterService.statsCount.get() == 1);
+            mockAdapterService.releaseStats();
+            host.testWait();
+
+            assertEquals(1, mockAdapterService.statsCount.get());
+        } finally {
+            stopService(mockAdapterService);
+        }
+    }
+
+    @Test
+    public void testBulkContainerStats() throws Throwable {
+        MockAdapterService mockAdapterService = new MockAdapterService();
+        try {
+            startMockAdapterService(mockAdapterService);
+            String firstId = UriUtils.getLastPathSegment(
+                    createContainerWithMockAdapter().documentSelfLink);
+            String secondId = UriUtils.getLastPathSegment(
+                    createContainerWithMockAdapter().documentSelfLink);
+
+            ContainerStatsRequest request = new ContainerStatsRequest();
+            request.containerIds = Arrays.asList(firstId, secondId, "no-container");
+            TestRequestSender sender = host.getTestRequestSender();
+            ContainerStatsResponse response = sender.sendAndWait(Operation
+                    .createPost(host, ContainerStatsService.SELF_LINK)
+                    .setBody(request), ContainerStatsResponse.class);
+
+            assertEquals(2, response.statsByContainerId.size());
+            assertEquals(ServiceStats.KIND,
+                    response.statsByContainerId.get(firstId).documentKind);
+            assertEquals(ServiceStats.KIND,
+                    response.statsByContainerId.get(secondId).documentKind);
+            assertEquals(2, mockAdapterService.statsCount.get());
+        } finally {
+            stopService(mockAdapterService);
+        }
+    }
+
+    private void startMockAdapterService(MockAdapterService mockAdapterService)
+            throws Throwable {
+        stopService(mockAdapterService);
+
+        URI adapterServiceUri = UriUtils.buildUri(host, ManagementUriParts.ADAPTER_DOCKER);
+        host.startService(Operation.createPost(adapterServiceUri), mockAdapterService);
+        waitForServiceAvailability(ManagementUriParts.ADAPTER_DOCKER);
+    }
+
+    private ContainerState createContainerWithMockAdapter() throws Throwable {
+        ContainerState container = new ContainerState();
+        container.image = "test-image";
+        container.adapterManagementReference = UriUtils
+                .buildUri(ManagementUriParts.ADAPTER_DOCKER);
+        return doPost(container, ContainerFactoryService.SELF_LINK);
+    }
+
     private ContainerState createContainerState(String containerDescriptionLink) {
         ContainerState container = new ContainerState();
         container.descriptionLink = containerDescriptionLink;
@@ -347,6 +434,17 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
 
         private final Set<String> resourcesInvokedStats = new ConcurrentSkipListSet<>();
         private final Set<String> resourcesInvokedInspect = new ConcurrentSkipListSet<>();
+        private final List<Operation> heldStats = new CopyOnWriteArrayList<>();
+        final AtomicInteger statsCount = new AtomicInteger();
+        volatile boolean holdStats;
+
+        public void releaseStats() {
+            holdStats = false;
+            for (Operation op : heldStats) {
+                heldStats.remove(op);
+                op.complete();
+            }
+        }
 
         public boolean isInspectInvokedForResource(String link) {
             return resourcesInvokedInspect.contains(link);
@@ -368,6 +466,11 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
                 logInfo(">>>> Invoking MockAdapterService handlePatch for Stats for: %s",
                         state.resourceReference);
                 resourcesInvokedStats.add(state.resourceReference.getPath());
+                statsCount.incrementAndGet();
+                if (holdStats) {
+                    heldStats.add(op);
+                    return;
+                }
             } else if (ContainerOperationType.INSPECT.id.equals(state.operationTypeId)) {
                 logInfo(">>>> Invoking MockAdapterService handlePatch for Inspect for: %s",
                         state.resourceReference);
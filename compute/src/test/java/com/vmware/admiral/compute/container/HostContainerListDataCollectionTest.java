@@ -30,6 +30,7 @@ import org.junit.Test;
 
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
@@ -51,6 +52,7 @@ import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.services.common.QueryTask;
 
 public class HostContainerListDataCollectionTest extends ComputeBaseTest {
     private static final String TEST_PREEXISTING_CONTAINER_ID = "preexisting-container";
@@ -305,6 +307,62 @@ public class HostContainerListDataCollectionTest extends ComputeBaseTest {
         assertEquals(PowerState.RETIRED, cs.powerState);
     }
 
+    @Test
+    public void testIncrementalRemovedContainer() throws Throwable {
+        ContainerState removed = createContainerState(PowerState.RUNNING);
+        ContainerState untouched = createContainerState(PowerState.RUNNING);
+
+        containerListBody.incremental = true;
+        containerListBody.removedContainerIds.add(removed.id);
+        startAndWaitHostContainerListDataCollection();
+
+        removed = getDocument(ContainerState.class, removed.documentSelfLink);
+        assertEquals(PowerState.RETIRED, removed.powerState);
+
+        // containers not part of the delta are left as they are, even though the host does not
+        // report them
+        untouched = getDocument(ContainerState.class, untouched.documentSelfLink);
+        assertEquals(PowerState.RUNNING, untouched.powerState);
+    }
+
+    @Test
+    public void testIncrementalCreatedContainer() throws Throwable {
+        String containerId = UUID.randomUUID().toString();
+        String containerName = "name_" + containerId;
+        String containerImage = "image:ver";
+
+        containerListBody.incremental = true;
+        containerListBody.addIdAndNames(containerId, new String[] { "/" + containerName });
+        containerListBody.containerIdsAndImage.put(containerId, containerImage);
+        containerListBody.containerIdsAndState.put(containerId, PowerState.STOPPED);
+        startAndWaitHostContainerListDataCollection();
+
+        ContainerState[] discovered = new ContainerState[1];
+        waitFor("Container not discovered", () -> {
+            QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                    ContainerState.FIELD_NAME_ID, containerId);
+            QueryUtil.addExpandOption(queryTask);
+            List<ContainerState> result = new ArrayList<>();
+            host.testStart(1);
+            new ServiceDocumentQuery<>(host, ContainerState.class).query(queryTask, (r) -> {
+                if (r.hasException()) {
+                    host.failIteration(r.getException());
+                } else if (r.hasResult()) {
+                    result.add(r.getResult());
+                } else {
+                    host.completeIteration();
+                }
+            });
+            host.testWait();
+            discovered[0] = result.isEmpty() ? null : result.get(0);
+            return discovered[0] != null;
+        });
+
+        assertEquals(Collections.singletonList(containerName), discovered[0].names);
+        assertEquals(containerImage, discovered[0].image);
+        assertEquals(COMPUTE_HOST_LINK, discovered[0].parentLink);
+    }
+
     @Test
     public void testStoppedContainer() throws Throwable {
         String image = "image:ver";
@@ -353,6 +411,16 @@ public class HostContainerListDataCollectionTest extends ComputeBaseTest {
         assertTrue(cvLatest.compareTo(cv22) > 0);
     }
 
+    private ContainerState createContainerState(PowerState powerState) throws Throwable {
+        ContainerState cs = new ContainerState();
+        cs.id = UUID.randomUUID().toString();
+        cs.names = new ArrayList<>(Collections.singletonList("name_" + cs.id));
+        cs.parentLink = COMPUTE_HOST_LINK;
+        cs.powerState = powerState;
+
+        return doPost(cs, ContainerFactoryService.SELF_LINK);
+    }
+
     private void testStateStuckInProvisioning(boolean isSystemContainerMissingOnHost)
             throws Throwable {
         String systemContainerId = extractId(systemContainerLink);
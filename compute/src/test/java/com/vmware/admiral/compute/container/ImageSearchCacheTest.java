@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.TemplateSpec.TemplateType;
+
+public class ImageSearchCacheTest {
+
+    private static final String SEARCH_KEY = "q=test-image&|user";
+
+    private ImageSearchCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ImageSearchCache();
+    }
+
+    @Test
+    public void testCachedResultsAreCopies() {
+        cache.put(SEARCH_KEY, cache.getGeneration(), Collections.singletonList(
+                createTemplate("test-image")));
+
+        List<TemplateSpec> cached = cache.get(SEARCH_KEY);
+        assertEquals(1, cached.size());
+        assertEquals("test-image", cached.get(0).name);
+        assertNull(cache.get("q=other-image&|user"));
+
+        // changing the returned results doesn't change the cache
+        cached.get(0).name = "changed";
+        assertEquals("test-image", cache.get(SEARCH_KEY).get(0).name);
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(SEARCH_KEY, cache.getGeneration(), Collections.singletonList(
+                createTemplate("test-image")));
+
+        cache.invalidateAll();
+
+        assertNull(cache.get(SEARCH_KEY));
+    }
+
+    @Test
+    public void testResultsOfSearchStartedBeforeInvalidationAreNotCached() {
+        long searchGeneration = cache.getGeneration();
+
+        cache.invalidateAll();
+        cache.put(SEARCH_KEY, searchGeneration, Collections.singletonList(
+                createTemplate("test-image")));
+
+        assertNull(cache.get(SEARCH_KEY));
+    }
+
+    private static TemplateSpec createTemplate(String name) {
+        TemplateSpec template = new TemplateSpec();
+        template.templateType = TemplateType.CONTAINER_IMAGE_DESCRIPTION;
+        template.name = name;
+        return template;
+    }
+}
@@ -17,7 +17,12 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -27,6 +32,7 @@ import org.junit.Test;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceDocumentQuery.ServiceDocumentQueryElementResult;
+import com.vmware.admiral.common.util.ServiceDocumentQuery.ServiceDocumentQueryPage;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.xenon.common.Service;
@@ -311,6 +317,134 @@ public class ServiceDocumentQueryTest extends ComputeBaseTest {
         });
     }
 
+    @Test
+    public void testStreamPages() throws Throwable {
+        String image = "stream-" + UUID.randomUUID();
+        int count = 25;
+        createDescriptions(image, count);
+
+        QueryTask qt = buildImageQuery(image);
+        qt.querySpec.resultLimit = 10;
+        AtomicInteger pages = new AtomicInteger();
+        descs = stream(qt, null, (page) -> {
+            pages.incrementAndGet();
+            assertTrue(page.getDocuments().size() <= 10);
+        });
+
+        assertEquals(count, descs.size());
+        assertTrue(pages.get() >= 3);
+        for (ContainerDescription desc : descs) {
+            assertEquals(image, desc.image);
+            assertNotNull(desc.hostname);
+        }
+
+        // no results
+        descs = stream(buildImageQuery("stream-" + UUID.randomUUID()), null, (page) -> {
+        });
+        assertEquals(0, descs.size());
+    }
+
+    @Test
+    public void testStreamSelectedFields() throws Throwable {
+        String image = "stream-" + UUID.randomUUID();
+        int count = 5;
+        createDescriptions(image, count);
+
+        descs = stream(buildImageQuery(image),
+                Collections.singletonList(ContainerDescription.FIELD_NAME_IMAGE), (page) -> {
+                });
+
+        assertEquals(count, descs.size());
+        for (ContainerDescription desc : descs) {
+            assertNotNull(desc.documentSelfLink);
+            assertEquals(image, desc.image);
+            assertNull(desc.hostname);
+        }
+    }
+
+    /**
+     * Compares the time needed to go through a large paginated result set with
+     * {@link ServiceDocumentQuery#query} and with {@link ServiceDocumentQuery#stream}. The numbers
+     * are only logged since they depend on the environment.
+     */
+    @Test
+    public void testStreamLatencyComparedToQuery() throws Throwable {
+        String image = "stream-" + UUID.randomUUID();
+        int count = Integer.getInteger("test.query.stream.documents", 500);
+        int pageSize = 50;
+        int iterations = 5;
+        createDescriptions(image, count);
+
+        long queryNanos = 0;
+        long streamNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            QueryTask qt = buildImageQuery(image);
+            qt.querySpec.resultLimit = pageSize;
+            long start = System.nanoTime();
+            host.testStart(1);
+            query.query(qt, handler(false));
+            host.testWait();
+            queryNanos += System.nanoTime() - start;
+            assertEquals(count, descs.size());
+
+            qt = buildImageQuery(image);
+            qt.querySpec.resultLimit = pageSize;
+            start = System.nanoTime();
+            descs = stream(qt, null, (page) -> {
+            });
+            streamNanos += System.nanoTime() - start;
+            assertEquals(count, descs.size());
+        }
+
+        host.log("Paginated query of %d documents: query %d ms, stream %d ms (avg of %d)",
+                count, TimeUnit.NANOSECONDS.toMillis(queryNanos / iterations),
+                TimeUnit.NANOSECONDS.toMillis(streamNanos / iterations), iterations);
+    }
+
+    private void createDescriptions(String image, int count) throws Throwable {
+        for (int i = 0; i < count; i++) {
+            ContainerDescription desc = new ContainerDescription();
+            desc.image = image;
+            desc.hostname = "host-" + i;
+            doPost(desc, ContainerDescriptionService.FACTORY_LINK);
+        }
+    }
+
+    private QueryTask buildImageQuery(String image) {
+        QueryTask qt = QueryUtil.buildPropertyQuery(ContainerDescription.class,
+                ContainerDescription.FIELD_NAME_IMAGE, image);
+        QueryUtil.addExpandOption(qt);
+        return qt;
+    }
+
+    private List<ContainerDescription> stream(QueryTask qt, Collection<String> selectFields,
+            Consumer<ServiceDocumentQueryPage<ContainerDescription>> pageValidator)
+            throws Throwable {
+        List<ContainerDescription> results = Collections.synchronizedList(new ArrayList<>());
+        host.testStart(1);
+        query.stream(qt, selectFields, (page, next) -> {
+            if (page.hasException()) {
+                host.failIteration(page.getException());
+                return;
+            }
+            try {
+                pageValidator.accept(page);
+            } catch (Throwable e) {
+                host.failIteration(e);
+                return;
+            }
+            results.addAll(page.getDocuments());
+            if (page.isLast()) {
+                host.completeIteration();
+            } else {
+                // ask for the next page asynchronously, the way a real consumer would do
+                host.schedule(next, 1, TimeUnit.MILLISECONDS);
+            }
+        });
+        host.testWait();
+        return results;
+    }
+
     private List<ContainerDescription> queryDocument(String documentSelfLink) throws Throwable {
         host.testStart(1);
         query.queryDocument(documentSelfLink, handler(true));
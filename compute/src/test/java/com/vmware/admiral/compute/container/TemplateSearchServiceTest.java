@@ -12,19 +12,25 @@
 package com.vmware.admiral.compute.container;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse;
+import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse.Result;
 import com.vmware.admiral.closures.drivers.DriverConstants;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptionFactoryService;
@@ -34,8 +40,12 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService.Containe
 import com.vmware.admiral.compute.container.TemplateSearchService.Response;
 import com.vmware.admiral.compute.container.TemplateSpec.TemplateType;
 import com.vmware.admiral.host.interceptor.OperationInterceptorRegistry;
+import com.vmware.admiral.image.service.ContainerImageService;
+import com.vmware.admiral.service.common.RegistryFactoryService;
+import com.vmware.admiral.service.common.RegistryService.RegistryState;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 
@@ -50,6 +60,9 @@ public class TemplateSearchServiceTest extends ComputeBaseTest {
 
     private static final String TEST_CLOSURE_DESC_NAME = "test-closure";
 
+    private static final String TEST_REGISTRY_ADDRESS = "test-registry:5000";
+    private static final String TEST_REGISTRY_IMAGE_NAME = TEST_REGISTRY_ADDRESS + "/test-image";
+
     // match both the CompositeDesc and the ContainerDesc name
     private static final String TEST_COMMON = "*y*";
 
@@ -219,6 +232,84 @@ public class TemplateSearchServiceTest extends ComputeBaseTest {
                 });
     }
 
+    @Test
+    public void testSearchCompletesWhenOneSourceHasNoResults() throws Throwable {
+        // the image search is skipped for a wildcard only query, the template search returns
+        // all the templates
+        verifyTemplateSearchResult("*", false, false, false, false, null, (o) -> {
+            Response response = o.getBody(Response.class);
+            assertNotNull("results", response.results);
+            assertFalse("isPartialResult", response.isPartialResult);
+            assertTrue("results.size", response.results.stream()
+                    .anyMatch(t -> TEST_COMPOSITE_DESC_NAME.equals(t.name)));
+        });
+    }
+
+    @Test
+    public void testImageResultsAreCached() throws Throwable {
+        MockImageSearchService imageSearchService = startMockImageSearchService();
+        createRegistry("test-registry");
+
+        verifyImageSearchResult();
+        assertEquals(1, imageSearchService.searchCount.get());
+
+        // the same search is answered from the cache, once the notification of the registry
+        // creation has dropped the cache
+        waitForCachedImageSearch(imageSearchService);
+    }
+
+    @Test
+    public void testPartialImageResultsAreNotCached() throws Throwable {
+        MockImageSearchService imageSearchService = startMockImageSearchService();
+        imageSearchService.isPartialResult = true;
+        createRegistry("test-registry");
+
+        verifyImageSearchResult();
+        verifyImageSearchResult();
+        assertEquals(2, imageSearchService.searchCount.get());
+    }
+
+    @Test
+    public void testImageCacheIsInvalidatedOnRegistryChange() throws Throwable {
+        MockImageSearchService imageSearchService = startMockImageSearchService();
+        createRegistry("test-registry");
+
+        waitForCachedImageSearch(imageSearchService);
+
+        // the cache is dropped once the registry change is notified
+        createRegistry("other-registry");
+        int searchCount = imageSearchService.searchCount.get();
+        waitFor(() -> {
+            verifyImageSearchResult();
+            return imageSearchService.searchCount.get() > searchCount;
+        });
+    }
+
+    @Test
+    public void testPartialResultWhenImageSearchMissesDeadline() throws Throwable {
+        MockImageSearchService imageSearchService = startMockImageSearchService();
+        imageSearchService.holdSearches = true;
+
+        Field deadlineField = TemplateSearchService.class
+                .getDeclaredField("IMAGES_DEADLINE_MILLIS");
+        long deadline = getPrivateField(deadlineField, null);
+        setFinalStatic(deadlineField, 100L);
+        try {
+            // the templates are returned without the images which didn't finish in time
+            verifyTemplateSearchResult(TEST_COMPOSITE_DESC_NAME, false, false, false, false,
+                    null, (o) -> {
+                        Response response = o.getBody(Response.class);
+                        assertTrue("isPartialResult", response.isPartialResult);
+                        assertEquals("results.size", 1, response.results.size());
+                        assertEquals("results[0].name", TEST_COMPOSITE_DESC_NAME,
+                                response.results.iterator().next().name);
+                    });
+            assertEquals(1, imageSearchService.searchCount.get());
+        } finally {
+            setFinalStatic(deadlineField, deadline);
+        }
+    }
+
     private void verifyTemplateSearchResult(String query) throws Throwable {
         verifyTemplateSearchResult(query, true, false, false, false, null, (o) -> {
             Response response = o.getBody(Response.class);
@@ -320,6 +411,68 @@ public class TemplateSearchServiceTest extends ComputeBaseTest {
                 });
     }
 
+    private void waitForCachedImageSearch(MockImageSearchService imageSearchService)
+            throws Throwable {
+        waitFor(() -> {
+            int searchCount = imageSearchService.searchCount.get();
+            verifyImageSearchResult();
+            return imageSearchService.searchCount.get() == searchCount;
+        });
+    }
+
+    private void verifyImageSearchResult() throws Throwable {
+        verifyTemplateSearchResult(TEST_REGISTRY_IMAGE_NAME, false, false, true, false, null,
+                (o) -> {
+                    Response response = o.getBody(Response.class);
+                    assertNotNull("results", response.results);
+                    assertEquals("results.size", 1, response.results.size());
+                    assertEquals("results[0].name", TEST_REGISTRY_IMAGE_NAME,
+                            response.results.iterator().next().name);
+                });
+    }
+
+    private void createRegistry(String name) throws Throwable {
+        waitForServiceAvailability(RegistryFactoryService.SELF_LINK);
+        RegistryState registry = new RegistryState();
+        registry.name = name;
+        registry.address = "http://" + TEST_REGISTRY_ADDRESS;
+        doPost(registry, RegistryFactoryService.SELF_LINK);
+    }
+
+    private MockImageSearchService startMockImageSearchService() throws Throwable {
+        MockImageSearchService imageSearchService = new MockImageSearchService();
+        host.startService(Operation.createPost(
+                UriUtils.buildUri(host, ContainerImageService.SELF_LINK)), imageSearchService);
+        waitForServiceAvailability(ContainerImageService.SELF_LINK);
+        return imageSearchService;
+    }
+
+    /**
+     * Returns a single image of the test registry for any search and counts the searches.
+     */
+    private static class MockImageSearchService extends StatelessService {
+        final AtomicInteger searchCount = new AtomicInteger();
+        volatile boolean isPartialResult;
+        volatile boolean holdSearches;
+
+        @Override
+        public void handleGet(Operation get) {
+            searchCount.incrementAndGet();
+            if (holdSearches) {
+                return;
+            }
+
+            Result result = new Result();
+            result.name = TEST_REGISTRY_IMAGE_NAME;
+            result.registry = TEST_REGISTRY_ADDRESS;
+            RegistrySearchResponse response = new RegistrySearchResponse();
+            response.results = new ArrayList<>(Collections.singletonList(result));
+            response.numResults = 1;
+            response.isPartialResult = isPartialResult;
+            get.setBody(response).complete();
+        }
+    }
+
     private void startClosureDescriptionService() {
         host.startService(
                 Operation.createPost(UriUtils.buildFactoryUri(host,
@@ -18,6 +18,7 @@ import static org.junit.Assert.assertTrue;
 import static com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CancellationException;
@@ -34,6 +35,8 @@ import com.vmware.admiral.compute.container.CompositeComponentService.CompositeC
 import com.vmware.admiral.compute.container.ComputeBaseTest;
 import com.vmware.admiral.compute.content.kubernetes.KubernetesUtil;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListType;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityData;
 import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.KubernetesEntityDataCollectionState;
 import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
 import com.vmware.admiral.compute.kubernetes.entities.common.ObjectMeta;
@@ -384,4 +387,42 @@ public class KubernetesEntityDataCollectionTest extends ComputeBaseTest {
         assertEquals(4, compositeComponent.componentLinks.size());
 
     }
+
+    @Test
+    public void testApplyEntityChanges() throws Throwable {
+        MockKubernetesAdapterService
+                .addEntity(makeEntity("pod-1", "my_prog_1", KubernetesUtil.POD_TYPE, null));
+        MockKubernetesAdapterService
+                .addEntity(makeEntity("pod-2", "name-for-pod", KubernetesUtil.POD_TYPE, null));
+        startDataCollectionAndWait();
+        Assert.assertEquals(2, getEntities(PodState.class).size());
+
+        BaseKubernetesState added = makeEntity("pod-3", "added-pod", KubernetesUtil.POD_TYPE,
+                null);
+        BaseKubernetesState modified = makeEntity("pod-2", "name-for-pod",
+                KubernetesUtil.POD_TYPE, null);
+        modified.getMetadata().selfLink = "modified";
+
+        EntityListCallback changes = new EntityListCallback();
+        changes.computeHostLink = COMPUTE_HOST_LINK;
+        changes.listType = EntityListType.CHANGES;
+        changes.deletedIds.add("pod-1");
+        for (BaseKubernetesState entity : Arrays.asList(added, modified)) {
+            KubernetesEntityData data = KubernetesUtil.createEntityData(
+                    entity.getEntityAsBaseKubernetesObject(), entity.getType());
+            data.entityJson = Utils.toJson(entity.getEntityAsBaseKubernetesObject());
+            changes.idToEntityData.put(entity.id, data);
+        }
+
+        host.getTestRequestSender().sendAndWait(Operation
+                .createPatch(host, DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK)
+                .setBodyNoCloning(changes));
+
+        waitFor(() -> {
+            List<PodState> pods = getEntities(PodState.class);
+            return pods.size() == 2 && pods.stream().anyMatch(p -> "pod-3".equals(p.id))
+                    && pods.stream().anyMatch(p -> "pod-2".equals(p.id) && p.pod != null
+                            && "modified".equals(p.pod.metadata.selfLink));
+        });
+    }
 }
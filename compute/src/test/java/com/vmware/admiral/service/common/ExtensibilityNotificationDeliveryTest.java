@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.service.common.ExtensibilitySubscriptionManager.ExtensibilityNotificationBatch;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceStats.ServiceStat;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+
+public class ExtensibilityNotificationDeliveryTest extends BaseTestCase {
+
+    private static final String RECEIVER_LINK = "/test-notification-receiver";
+    private static final String OWNER_LINK = "/test-notification-owner";
+    private static final long RESPONSE_DELAY_MILLIS = 200;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger posts = new AtomicInteger();
+    private final AtomicInteger notifications = new AtomicInteger();
+
+    private volatile boolean failRequests;
+    private StatelessService owner;
+
+    @Before
+    public void setUp() throws Throwable {
+        host.startServiceAndWait(new NotificationReceiverService(), RECEIVER_LINK, null);
+
+        owner = new StatelessService();
+        owner.toggleOption(ServiceOption.INSTRUMENTATION, true);
+        host.startServiceAndWait(owner, OWNER_LINK, null);
+    }
+
+    @Test
+    public void testConcurrentNotificationsPerEndpointAreLimited() throws Throwable {
+        ExtensibilityNotificationDelivery delivery = new ExtensibilityNotificationDelivery(owner,
+                2, 1, 3, 1, 1);
+
+        int count = 10;
+        for (int i = 0; i < count; i++) {
+            delivery.send(getReceiverUri(), new ServiceDocument(), false, (e) -> {
+            });
+        }
+
+        waitFor(() -> notifications.get() == count);
+        assertEquals(count, posts.get());
+        assertTrue("max in flight: " + maxInFlight.get(), maxInFlight.get() <= 2);
+        waitFor(() -> getStatValue(ExtensibilityNotificationDelivery.STAT_NAME_SENT) == count);
+        assertEquals(0, delivery.getQueuedCount());
+    }
+
+    @Test
+    public void testQueuedAsyncNotificationsAreBatched() throws Throwable {
+        ExtensibilityNotificationDelivery delivery = new ExtensibilityNotificationDelivery(owner,
+                1, 10, 3, 1, 1);
+
+        // the first notification is sent right away, the rest wait for it in the queue
+        int count = 11;
+        for (int i = 0; i < count; i++) {
+            delivery.send(getReceiverUri(), new ServiceDocument(), false, (e) -> {
+            });
+        }
+
+        waitFor(() -> notifications.get() == count);
+        assertEquals(2, posts.get());
+        waitFor(() -> getStatValue(
+                ExtensibilityNotificationDelivery.STAT_NAME_BATCHES_SENT) == 1);
+    }
+
+    @Test
+    public void testFailureHandlerIsCalledAfterRetries() throws Throwable {
+        ExtensibilityNotificationDelivery delivery = new ExtensibilityNotificationDelivery(owner,
+                1, 1, 3, 0, 0);
+        failRequests = true;
+
+        AtomicInteger failures = new AtomicInteger();
+        delivery.send(getReceiverUri(), new ServiceDocument(), true,
+                (e) -> failures.incrementAndGet());
+
+        waitFor(() -> failures.get() == 1);
+        assertEquals(3, posts.get());
+        waitFor(() -> getStatValue(ExtensibilityNotificationDelivery.STAT_NAME_FAILED) == 1);
+        assertEquals(2, (long) getStatValue(ExtensibilityNotificationDelivery.STAT_NAME_RETRIED));
+    }
+
+    @Test
+    public void testRetryWaitIsDoubled() {
+        ExtensibilityNotificationDelivery delivery = new ExtensibilityNotificationDelivery(owner,
+                1, 1, 5, 15, 100);
+
+        assertEquals(15, delivery.getRetryWaitSeconds(0));
+        assertEquals(30, delivery.getRetryWaitSeconds(1));
+        assertEquals(60, delivery.getRetryWaitSeconds(2));
+        assertEquals(100, delivery.getRetryWaitSeconds(3));
+        assertEquals(100, delivery.getRetryWaitSeconds(100));
+    }
+
+    private URI getReceiverUri() {
+        return UriUtils.buildUri(host, RECEIVER_LINK);
+    }
+
+    private double getStatValue(String name) {
+        ServiceStat stat = owner.getStat(name);
+        return stat == null ? 0 : stat.latestValue;
+    }
+
+    /**
+     * Counts the received notifications and responds after a delay.
+     */
+    private class NotificationReceiverService extends StatelessService {
+
+        @Override
+        public void handlePost(Operation post) {
+            posts.incrementAndGet();
+            ExtensibilityNotificationBatch batch = post
+                    .getBody(ExtensibilityNotificationBatch.class);
+            notifications.addAndGet(batch.notifications != null
+                    ? batch.notifications.size() : 1);
+
+            if (failRequests) {
+                post.fail(new IllegalStateException("subscriber is down"));
+                return;
+            }
+
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            getHost().schedule(() -> {
+                inFlight.decrementAndGet();
+                post.complete();
+            }, RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
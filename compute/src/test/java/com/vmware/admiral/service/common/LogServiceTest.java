@@ -24,6 +24,8 @@ import com.vmware.admiral.compute.container.ComputeBaseTest;
 import com.vmware.admiral.compute.container.ContainerFactoryService;
 import com.vmware.admiral.service.common.LogService.LogServiceState;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
 
 public class LogServiceTest extends ComputeBaseTest {
 
@@ -43,6 +45,81 @@ public class LogServiceTest extends ComputeBaseTest {
         assertEquals(new String(logState.logs), new String(newLogState.logs));
     }
 
+    @Test
+    public void testAppendAndReadLog() throws Throwable {
+        LogServiceState logState = new LogServiceState();
+        logState.logs = ("2017-05-04T10:00:00.1Z line-1\n"
+                + "2017-05-04T10:00:00.12Z line-2\n").getBytes();
+        logState.timestamped = true;
+        logState.stripTimestamps = true;
+        String logLink = doPost(logState, LogService.FACTORY_LINK).documentSelfLink;
+
+        // the continuation repeats the lines of the same second, a repeated line is not
+        // mistaken for one which is stored already
+        LogServiceState patch = new LogServiceState();
+        patch.logs = ("2017-05-04T10:00:00.1Z line-1\n"
+                + "2017-05-04T10:00:00.12Z line-2\n"
+                + "2017-05-04T10:00:00.5Z line-2\n"
+                + "2017-05-04T10:00:01Z line-3\n").getBytes();
+        patch.timestamped = true;
+        patch.stripTimestamps = true;
+        doPatch(patch, logLink);
+
+        LogServiceState log = getDocument(LogServiceState.class, logLink);
+        assertEquals("line-1\nline-2\nline-2\nline-3\n", new String(log.logs));
+        assertEquals("2017-05-04T10:00:01Z", log.lastLogTimestamp);
+        assertEquals(Long.valueOf(0), log.offset);
+        assertEquals(Long.valueOf(28), log.nextOffset);
+
+        log = getDocument(LogServiceState.class, logLink, LogService.TAIL_QUERY_PARAM, "2");
+        assertEquals("line-2\nline-3\n", new String(log.logs));
+
+        log = getDocument(LogServiceState.class, logLink, LogService.OFFSET_QUERY_PARAM, "7",
+                LogService.LENGTH_QUERY_PARAM, "6");
+        assertEquals("line-2", new String(log.logs));
+        assertEquals(Long.valueOf(13), log.nextOffset);
+
+        // PUT replaces the logs
+        logState = getDocument(LogServiceState.class, logLink);
+        logState.logs = "replaced\n".getBytes();
+        doPut(logState);
+        log = getDocument(LogServiceState.class, logLink);
+        assertEquals("replaced\n", new String(log.logs));
+        assertEquals(Long.valueOf(28), log.offset);
+        assertNull(log.lastLogTimestamp);
+    }
+
+    @Test
+    public void testFollowLog() throws Throwable {
+        LogServiceState logState = new LogServiceState();
+        logState.logs = "line-1\n".getBytes();
+        String logLink = doPost(logState, LogService.FACTORY_LINK).documentSelfLink;
+
+        TestContext ctx = testCreate(1);
+        LogServiceState[] followed = new LogServiceState[1];
+        host.send(Operation.createGet(UriUtils.extendUriWithQuery(
+                UriUtils.buildUri(host, logLink),
+                LogService.FOLLOW_QUERY_PARAM, Boolean.TRUE.toString(),
+                LogService.OFFSET_QUERY_PARAM, "7"))
+                .setReferer(host.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        ctx.failIteration(e);
+                        return;
+                    }
+                    followed[0] = o.getBody(LogServiceState.class);
+                    ctx.completeIteration();
+                }));
+
+        LogServiceState patch = new LogServiceState();
+        patch.logs = "line-2\n".getBytes();
+        doPatch(patch, logLink);
+        ctx.await();
+
+        assertEquals("line-2\n", new String(followed[0].logs));
+        assertEquals(Long.valueOf(14), followed[0].nextOffset);
+    }
+
     @Test
     public void testMaxLogSize() {
         int maxLogSize = LogService.MAX_LOG_SIZE;
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocument.Documentation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Reports how long the phases of the host startup took, see {@link HostStartupPlan}.
+ */
+public class BootStatsService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.BOOT_STATS;
+
+    public static class PhaseStats {
+        @Documentation(description = "The phases started before this one.")
+        public List<String> dependencies;
+
+        @Documentation(description = "Time since the start of the host when the phase started.")
+        public Long startOffsetMicros;
+
+        @Documentation(description = "Time the phase took to start its services.")
+        public Long durationMicros;
+
+        @Documentation(description = "The reason the phase failed, if it failed.")
+        public String failure;
+    }
+
+    public static class BootStats extends ServiceDocument {
+        @Documentation(description = "Time the host started.")
+        public Long startTimeMicros;
+
+        @Documentation(description = "Time from the start of the host to the end of the last"
+                + " phase.")
+        public Long durationMicros;
+
+        @Documentation(description = "The startup phases, in the order they started.")
+        public Map<String, PhaseStats> phases = new LinkedHashMap<>();
+
+        public synchronized void recordPhase(String name, String[] dependencies,
+                long phaseStartMicros, long phaseEndMicros, Throwable failure) {
+            if (startTimeMicros == null) {
+                startTimeMicros = phaseStartMicros;
+            }
+
+            PhaseStats stats = new PhaseStats();
+            stats.dependencies = new ArrayList<>(Arrays.asList(dependencies));
+            stats.startOffsetMicros = phaseStartMicros - startTimeMicros;
+            stats.durationMicros = phaseEndMicros - phaseStartMicros;
+            if (failure != null) {
+                stats.failure = Utils.toString(failure);
+            }
+            phases.put(name, stats);
+            durationMicros = Math.max(durationMicros == null ? 0 : durationMicros,
+                    phaseEndMicros - startTimeMicros);
+        }
+
+        public synchronized BootStats copy() {
+            return Utils.clone(this);
+        }
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        get.setBody(((ManagementHost) getHost()).getBootStats().copy()).complete();
+    }
+
+    @Override
+    public ServiceDocument getDocumentTemplate() {
+        ServiceDocument d = super.getDocumentTemplate();
+        addServiceRequestRoute(d, Action.GET, "Get the duration of the host startup phases.",
+                BootStats.class);
+        return d;
+    }
+}
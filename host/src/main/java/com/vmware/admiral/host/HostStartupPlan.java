@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import com.vmware.admiral.host.BootStatsService.BootStats;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
+import com.vmware.xenon.common.OperationContext;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Starts groups of host services, called phases, in the order of their declared dependencies.
+ * A phase starts once all the phases it depends on are done, phases which don't depend on each
+ * other start concurrently. The duration of each phase is recorded in the {@link BootStats} of
+ * the host.
+ * <p>
+ * The phases run with the authorization context of the thread which executes the plan.
+ */
+public class HostStartupPlan {
+
+    public static final long STARTUP_TIMEOUT_SECONDS = Long.getLong(
+            "host.startup.timeout.seconds", 600);
+
+    /**
+     * Starts the services of a phase. The phase is done when the action returns.
+     */
+    @FunctionalInterface
+    public interface StartAction {
+        void start() throws Throwable;
+    }
+
+    private static class Phase {
+        final String name;
+        final StartAction action;
+        final String[] dependencies;
+
+        Phase(String name, StartAction action, String[] dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final ServiceHost host;
+    private final BootStats bootStats;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+    public HostStartupPlan(ServiceHost host, BootStats bootStats) {
+        this.host = host;
+        this.bootStats = bootStats;
+    }
+
+    public HostStartupPlan addPhase(String name, StartAction action, String... dependencies) {
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup phase: " + name);
+        }
+        phases.put(name, new Phase(name, action, dependencies));
+        return this;
+    }
+
+    /**
+     * Runs the phases and waits for all of them to be done. Fails with the failure of the first
+     * failed phase, the phases depending on it are not started.
+     */
+    public void execute() throws Throwable {
+        List<Phase> ordered = sortPhases();
+        AuthorizationContext authContext = OperationContext.getAuthorizationContext();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "host-startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<String, DeferredResult<Void>> results = new HashMap<>();
+            for (Phase phase : ordered) {
+                List<DeferredResult<Void>> dependencies = new ArrayList<>();
+                for (String dependency : phase.dependencies) {
+                    dependencies.add(results.get(dependency));
+                }
+                results.put(phase.name, DeferredResult.allOf(dependencies)
+                        .thenCompose(ignore -> run(phase, executor, authContext)));
+            }
+
+            await(new ArrayList<>(results.values()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private DeferredResult<Void> run(Phase phase, ExecutorService executor,
+            AuthorizationContext authContext) {
+        DeferredResult<Void> result = new DeferredResult<>();
+        executor.execute(() -> {
+            OperationContext.setAuthorizationContext(authContext);
+            long startMicros = Utils.getSystemNowMicrosUtc();
+            Throwable failure = null;
+            try {
+                phase.action.start();
+            } catch (Throwable e) {
+                failure = e;
+                host.log(Level.SEVERE, "Startup phase %s failed: %s", phase.name,
+                        Utils.toString(e));
+            } finally {
+                OperationContext.setAuthorizationContext(null);
+            }
+
+            long endMicros = Utils.getSystemNowMicrosUtc();
+            bootStats.recordPhase(phase.name, phase.dependencies, startMicros, endMicros,
+                    failure);
+            host.log(Level.INFO, "Startup phase %s took %d millis", phase.name,
+                    TimeUnit.MICROSECONDS.toMillis(endMicros - startMicros));
+
+            if (failure != null) {
+                result.fail(failure);
+            } else {
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    private void await(List<DeferredResult<Void>> results) throws Throwable {
+        CountDownLatch latch = new CountDownLatch(results.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (DeferredResult<Void> result : results) {
+            result.whenComplete((ignore, e) -> {
+                if (e != null) {
+                    failure.compareAndSet(null, e instanceof CompletionException
+                            && e.getCause() != null ? e.getCause() : e);
+                }
+                latch.countDown();
+            });
+        }
+
+        if (!latch.await(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Startup phases did not finish in "
+                    + STARTUP_TIMEOUT_SECONDS + " seconds.");
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Orders the phases so that each phase follows its dependencies.
+     */
+    private List<Phase> sortPhases() {
+        List<Phase> ordered = new ArrayList<>(phases.size());
+        Map<String, Integer> remainingDependencies = new HashMap<>();
+        for (Phase phase : phases.values()) {
+            for (String dependency : phase.dependencies) {
+                if (!phases.containsKey(dependency)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Startup phase %s depends on unknown phase %s", phase.name,
+                            dependency));
+                }
+            }
+            remainingDependencies.put(phase.name, phase.dependencies.length);
+        }
+
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (Phase phase : phases.values()) {
+                if (remainingDependencies.get(phase.name) != 0 || ordered.contains(phase)) {
+                    continue;
+                }
+                ordered.add(phase);
+                added = true;
+                for (Phase other : phases.values()) {
+                    for (String dependency : other.dependencies) {
+                        if (dependency.equals(phase.name)) {
+                            remainingDependencies.merge(other.name, -1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (ordered.size() != phases.size()) {
+            throw new IllegalArgumentException("Startup phases have cyclic dependencies: "
+                    + remainingDependencies);
+        }
+        return ordered;
+    }
+}
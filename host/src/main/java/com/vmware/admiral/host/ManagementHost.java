@@ -38,6 +38,7 @@ import com.vmware.admiral.common.util.AuthUtils;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.SecurityUtils;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
+import com.vmware.admiral.host.BootStatsService.BootStats;
 import com.vmware.admiral.host.interceptor.AuthCredentialsInterceptor;
 import com.vmware.admiral.host.interceptor.InUsePlacementZoneInterceptor;
 import com.vmware.admiral.host.interceptor.OperationInterceptorRegistry;
@@ -64,6 +65,7 @@ import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceClient;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.common.http.netty.NettyHttpListener;
 import com.vmware.xenon.common.http.netty.NettyHttpServiceClient;
 import com.vmware.xenon.services.common.MigrationTaskService;
@@ -129,6 +131,8 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
 
     private OperationInterceptorRegistry interceptors = new OperationInterceptorRegistry();
 
+    private final BootStats bootStats = new BootStats();
+
     public static void main(String[] args) throws Throwable {
         ManagementHost h = new ManagementHost();
         h.initializeHostAndServices(args);
@@ -151,6 +155,7 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
     }
 
     protected ManagementHost initializeHostAndServices(String[] args) throws Throwable {
+        bootStats.startTimeMicros = Utils.getSystemNowMicrosUtc();
         log(Level.INFO, "Initializing ...");
         initialize(args);
 
@@ -166,11 +171,17 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
 
         log(Level.INFO, "**** Management host starting ... ****");
 
-        startFabricServices();
-        startManagementServices();
-        startClosureServices(this, startMockHostAdapterInstance);
-        startLoadBalancerServices(this);
-        startSwaggerService();
+        new HostStartupPlan(this, bootStats)
+                .addPhase("fabric", this::startFabricServices)
+                .addPhase("management", this::startManagementServices, "fabric")
+                // both patch the node health check and migration services of the management
+                // phase
+                .addPhase("closures",
+                        () -> startClosureServices(this, startMockHostAdapterInstance),
+                        "management")
+                .addPhase("load-balancer", () -> startLoadBalancerServices(this), "management")
+                .addPhase("swagger", this::startSwaggerService)
+                .execute();
 
         log(Level.INFO, "**** Management host started. ****");
 
@@ -249,9 +260,13 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
     protected void startCommonServices() throws Throwable {
         this.log(Level.INFO, "Common service starting ...");
 
-        HostInitCommonServiceConfig.startServices(this);
-        HostInitAuthServiceConfig.startServices(this);
-        HostInitUpgradeServiceConfig.startServices(this);
+        new HostStartupPlan(this, bootStats)
+                .addPhase("common", () -> HostInitCommonServiceConfig.startServices(this))
+                // both patch the node health check and migration services of the common phase
+                .addPhase("auth", () -> HostInitAuthServiceConfig.startServices(this), "common")
+                .addPhase("upgrade", () -> HostInitUpgradeServiceConfig.startServices(this),
+                        "common")
+                .execute();
 
         registerForServiceAvailability(AuthBootstrapService.startTask(this), true,
                 AuthBootstrapService.FACTORY_LINK);
@@ -273,15 +288,26 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
         registerForServiceAvailability(ContainerLoadBalancerBootstrapService.startTask(this), true,
                 ContainerLoadBalancerBootstrapService.FACTORY_LINK);
 
-        HostInitComputeServicesConfig.startServices(this, false);
-        HostInitComputeBackgroundServicesConfig.startServices(this);
-        HostInitRequestServicesConfig.startServices(this);
-        HostInitImageServicesConfig.startServices(this);
-        HostInitUiServicesConfig.startServices(this);
-        HostInitHarborServices.startServices(this, startMockHostAdapterInstance);
-        HostInitDockerAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitKubernetesAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitRegistryAdapterServiceConfig.startServices(this);
+        // the services of the compute group are used by the other groups which depend on it
+        new HostStartupPlan(this, bootStats)
+                .addPhase("compute",
+                        () -> HostInitComputeServicesConfig.startServices(this, false))
+                .addPhase("compute-background",
+                        () -> HostInitComputeBackgroundServicesConfig.startServices(this),
+                        "compute")
+                .addPhase("request",
+                        () -> HostInitRequestServicesConfig.startServices(this), "compute")
+                .addPhase("image", () -> HostInitImageServicesConfig.startServices(this))
+                .addPhase("ui", () -> HostInitUiServicesConfig.startServices(this))
+                .addPhase("harbor", () -> HostInitHarborServices.startServices(this,
+                        startMockHostAdapterInstance))
+                .addPhase("docker-adapter", () -> HostInitDockerAdapterServiceConfig
+                        .startServices(this, startMockHostAdapterInstance), "compute")
+                .addPhase("kubernetes-adapter", () -> HostInitKubernetesAdapterServiceConfig
+                        .startServices(this, startMockHostAdapterInstance), "compute")
+                .addPhase("registry-adapter",
+                        () -> HostInitRegistryAdapterServiceConfig.startServices(this))
+                .execute();
 
         this.log(Level.INFO, "Management services started.");
     }
@@ -474,6 +500,8 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
 
         startPeerListener();
 
+        startService(new BootStatsService());
+
         log(Level.INFO, "Setting authorization context ...");
         // Set system user's authorization context to allow the services start privileged access.
         setAuthorizationContext(getSystemAuthorizationContext());
@@ -583,6 +611,13 @@ public class ManagementHost extends ServiceHost implements IExtensibilityRegistr
         return super.getSystemAuthorizationContext();
     }
 
+    /**
+     * Durations of the startup phases of the host, see {@link HostStartupPlan}.
+     */
+    public BootStats getBootStats() {
+        return bootStats;
+    }
+
     @Override
     public ExtensibilitySubscriptionManager getExtensibilityRegistry() {
         return extensibilityRegistry;
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.host.BootStatsService.BootStats;
+import com.vmware.xenon.common.OperationContext;
+
+public class HostStartupPlanTest extends BaseTestCase {
+
+    @Test
+    public void testPhasesFollowDependencies() throws Throwable {
+        List<String> started = new CopyOnWriteArrayList<>();
+        BootStats stats = new BootStats();
+
+        // declared in reverse order on purpose
+        new HostStartupPlan(host, stats)
+                .addPhase("c", () -> started.add("c"), "a", "b")
+                .addPhase("b", () -> started.add("b"), "a")
+                .addPhase("a", () -> started.add("a"))
+                .execute();
+
+        assertEquals(3, started.size());
+        assertTrue(started.indexOf("a") < started.indexOf("b"));
+        assertTrue(started.indexOf("b") < started.indexOf("c"));
+        assertEquals(3, stats.phases.size());
+        assertEquals(2, stats.phases.get("c").dependencies.size());
+        assertNotNull(stats.durationMicros);
+    }
+
+    @Test
+    public void testIndependentPhasesRunConcurrently() throws Throwable {
+        // each phase waits for the other one to start
+        CountDownLatch latch = new CountDownLatch(2);
+        HostStartupPlan.StartAction action = () -> {
+            latch.countDown();
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Phases didn't run concurrently");
+            }
+        };
+
+        new HostStartupPlan(host, new BootStats())
+                .addPhase("a", action)
+                .addPhase("b", action)
+                .execute();
+    }
+
+    @Test
+    public void testPhasesRunWithCallerAuthorizationContext() throws Throwable {
+        List<Object> contexts = new CopyOnWriteArrayList<>();
+        host.setSystemAuthorizationContext();
+        try {
+            new HostStartupPlan(host, new BootStats())
+                    .addPhase("a", () -> contexts.add(OperationContext.getAuthorizationContext()))
+                    .execute();
+        } finally {
+            host.resetAuthorizationContext();
+        }
+
+        assertEquals(1, contexts.size());
+        assertNotNull(contexts.get(0));
+    }
+
+    @Test
+    public void testFailedPhaseStopsDependents() throws Throwable {
+        List<String> started = new CopyOnWriteArrayList<>();
+        BootStats stats = new BootStats();
+        try {
+            new HostStartupPlan(host, stats)
+                    .addPhase("a", () -> {
+                        throw new IllegalStateException("expected failure");
+                    })
+                    .addPhase("b", () -> started.add("b"), "a")
+                    .execute();
+            fail("expected the failure of the phase");
+        } catch (IllegalStateException e) {
+            assertEquals("expected failure", e.getMessage());
+        }
+
+        assertTrue(started.isEmpty());
+        assertNotNull(stats.phases.get("a").failure);
+        assertFalse(stats.phases.containsKey("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() throws Throwable {
+        new HostStartupPlan(host, new BootStats())
+                .addPhase("a", () -> {
+                }, "missing")
+                .execute();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCyclicDependencies() throws Throwable {
+        new HostStartupPlan(host, new BootStats())
+                .addPhase("a", () -> {
+                }, "b")
+                .addPhase("b", () -> {
+                }, "a")
+                .execute();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicatePhase() throws Throwable {
+        new HostStartupPlan(host, new BootStats())
+                .addPhase("a", () -> {
+                })
+                .addPhase("a", () -> {
+                });
+    }
+}
@@ -12,6 +12,8 @@
 package com.vmware.admiral.host;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -23,12 +25,15 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -38,6 +43,8 @@ import org.junit.rules.TemporaryFolder;
 import com.vmware.admiral.common.test.BaseTestCase;
 import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.compute.ComputeConstants;
+import com.vmware.admiral.host.BootStatsService.BootStats;
+import com.vmware.admiral.host.BootStatsService.PhaseStats;
 import com.vmware.admiral.host.interceptor.AuthCredentialsInterceptor;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationFactoryService;
 import com.vmware.admiral.service.common.ConfigurationService.ConfigurationState;
@@ -138,6 +145,69 @@ public class ManagementHostTest {
         }
     }
 
+    @Test
+    public void testBootStats() throws Throwable {
+        try (TestManagementHost host = new TestManagementHost(true)) {
+            host.start();
+            host.startFabricServices();
+            host.startManagementServices();
+
+            BootStats stats = doGet(host, BootStats.class,
+                    UriUtils.buildUri(host, BootStatsService.SELF_LINK));
+            for (String phase : Arrays.asList("common", "auth", "upgrade", "compute", "request",
+                    "docker-adapter", "registry-adapter")) {
+                PhaseStats phaseStats = stats.phases.get(phase);
+                assertNotNull("Missing startup phase " + phase, phaseStats);
+                assertNull(phaseStats.failure);
+                assertTrue(phaseStats.durationMicros >= 0);
+            }
+
+            // a phase starts after the phases it depends on are done
+            PhaseStats compute = stats.phases.get("compute");
+            PhaseStats request = stats.phases.get("request");
+            assertEquals(Arrays.asList("compute"), request.dependencies);
+            assertTrue(request.startOffsetMicros
+                    >= compute.startOffsetMicros + compute.durationMicros);
+            assertNotNull(stats.durationMicros);
+        }
+    }
+
+    /**
+     * Measures the startup of the host services. The first iteration starts with an empty sandbox,
+     * the following ones restart the host on the sandbox of the previous one. The numbers are only
+     * logged since they depend on the environment, so the measurement runs only when
+     * <code>test.startup.iterations</code> is set.
+     */
+    @Test
+    public void testStartupLatency() throws Throwable {
+        int iterations = Integer.getInteger("test.startup.iterations", 0);
+        if (iterations <= 0) {
+            return;
+        }
+
+        Map<String, Long> phaseMicros = new LinkedHashMap<>();
+        long totalMicros = 0;
+        for (int i = 0; i < iterations; i++) {
+            try (TestManagementHost host = new TestManagementHost(true)) {
+                host.start();
+                host.startFabricServices();
+                host.startManagementServices();
+
+                BootStats stats = host.getBootStats().copy();
+                totalMicros += stats.durationMicros;
+                stats.phases.forEach((name, phase) -> phaseMicros.merge(name,
+                        phase.durationMicros, Long::sum));
+            }
+        }
+
+        Logger logger = Logger.getLogger(ManagementHostTest.class.getName());
+        logger.log(Level.INFO, String.format("Started host services in %d ms (avg of %d)",
+                TimeUnit.MICROSECONDS.toMillis(totalMicros / iterations), iterations));
+        phaseMicros.forEach((name, micros) -> logger.log(Level.INFO, String.format(
+                "Startup phase %s took %d ms", name,
+                TimeUnit.MICROSECONDS.toMillis(micros / iterations))));
+    }
+
     @Test
     public void testManagementHostInitializationEnablesDynamicLoading() throws Throwable {
         try (TestManagementHost host = new TestManagementHost(false)) {
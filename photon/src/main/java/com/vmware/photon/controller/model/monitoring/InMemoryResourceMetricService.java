@@ -11,16 +11,15 @@
 
 package com.vmware.photon.controller.model.monitoring;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
 
 import com.vmware.photon.controller.model.UriPaths;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
-import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
 import com.vmware.xenon.common.StatefulService;
 
 /**
@@ -44,11 +43,27 @@ public class InMemoryResourceMetricService extends StatefulService {
 
     public static class InMemoryResourceMetric extends ServiceDocument {
         /**
-         * Map of metric key to the time series stats
+         * Map of metric key to the compact time bins
+         */
+        public Map<String, TimeBinSeries> timeBins;
+
+        /**
+         * Map of metric key to the time series stats. Accepted from older clients only; the
+         * service converts it to {@link #timeBins}.
          */
         public Map <String, TimeSeriesStats> timeSeriesStats;
     }
 
+    @Override
+    public void handleStart(Operation start) {
+        if (start.hasBody()) {
+            InMemoryResourceMetric state = getBody(start);
+            normalize(state);
+            start.setBody(state);
+        }
+        start.complete();
+    }
+
     @Override
     public void handlePut(Operation put) {
         if (!put.hasBody()) {
@@ -56,23 +71,43 @@ public class InMemoryResourceMetricService extends StatefulService {
         }
         InMemoryResourceMetric currentState = getState(put);
         InMemoryResourceMetric updatedState = getBody(put);
-        // merge the state
-        for (Entry<String, TimeSeriesStats> tsStats : updatedState.timeSeriesStats.entrySet()) {
-            TimeSeriesStats currentStats = currentState.timeSeriesStats.get(tsStats.getKey());
-            if (currentStats == null) {
-                currentState.timeSeriesStats.put(tsStats.getKey(), tsStats.getValue());
+        normalize(currentState);
+        normalize(updatedState);
+        // merge the state, bin by bin
+        for (Entry<String, TimeBinSeries> bins : updatedState.timeBins.entrySet()) {
+            TimeBinSeries currentBins = currentState.timeBins.get(bins.getKey());
+            if (currentBins == null) {
+                currentState.timeBins.put(bins.getKey(), bins.getValue());
             } else {
-                for (Entry<Long, TimeBin> bin : tsStats.getValue().bins.entrySet()) {
-                    for (int i = 0; i < bin.getValue().count; i++) {
-                        currentStats.add(TimeUnit.MILLISECONDS.toMicros(bin.getKey()), bin.getValue().avg, bin.getValue().avg);
-                    }
-                }
+                currentBins.merge(bins.getValue());
             }
         }
         setState(put, currentState);
         put.setBody(null).complete();
     }
 
+    /**
+     * Moves any time series stats into the compact time bins.
+     */
+    private static void normalize(InMemoryResourceMetric state) {
+        if (state.timeBins == null) {
+            state.timeBins = new HashMap<>();
+        }
+        if (state.timeSeriesStats == null) {
+            return;
+        }
+        for (Entry<String, TimeSeriesStats> tsStats : state.timeSeriesStats.entrySet()) {
+            TimeBinSeries bins = TimeBinSeries.fromTimeSeriesStats(tsStats.getValue());
+            TimeBinSeries currentBins = state.timeBins.get(tsStats.getKey());
+            if (currentBins == null) {
+                state.timeBins.put(tsStats.getKey(), bins);
+            } else {
+                currentBins.merge(bins);
+            }
+        }
+        state.timeSeriesStats = null;
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
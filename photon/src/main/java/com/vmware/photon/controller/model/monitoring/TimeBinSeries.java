@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.monitoring;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
+
+/**
+ * Compact, mergeable time series. Every bin keeps count, sum, min, max and the latest value in
+ * parallel primitive arrays ordered by bin start, so two series merge in O(bins) without losing
+ * any of the aggregates, and the serialized form carries no per bin objects.
+ *
+ * Only the newest {@link #maxBins} bins are retained.
+ */
+public class TimeBinSeries {
+
+    public long binDurationMillis;
+    public int maxBins;
+
+    /**
+     * Bin start times in milliseconds, ascending. All the other arrays are indexed the same way.
+     */
+    public long[] binStarts;
+    public double[] counts;
+    public double[] sums;
+    public double[] mins;
+    public double[] maxs;
+    public double[] latests;
+    public long[] latestTimesMicros;
+
+    public TimeBinSeries() {
+    }
+
+    public TimeBinSeries(int maxBins, long binDurationMillis) {
+        if (maxBins <= 0 || binDurationMillis <= 0) {
+            throw new IllegalArgumentException("maxBins and binDurationMillis must be positive");
+        }
+        this.maxBins = maxBins;
+        this.binDurationMillis = binDurationMillis;
+        allocate(0);
+    }
+
+    /**
+     * Converts Xenon time series stats, keeping whatever aggregates they carry.
+     */
+    public static TimeBinSeries fromTimeSeriesStats(TimeSeriesStats stats) {
+        TimeBinSeries series = new TimeBinSeries(stats.numBins, stats.binDurationMillis);
+        series.allocate(stats.bins.size());
+        int i = 0;
+        for (Entry<Long, TimeBin> entry : stats.bins.entrySet()) {
+            TimeBin bin = entry.getValue();
+            double avg = bin.avg != null ? bin.avg : 0;
+            series.binStarts[i] = entry.getKey();
+            series.counts[i] = bin.count;
+            series.sums[i] = bin.sum != null ? bin.sum : avg * bin.count;
+            series.mins[i] = bin.min != null ? bin.min : avg;
+            series.maxs[i] = bin.max != null ? bin.max : avg;
+            series.latests[i] = bin.latest != null ? bin.latest : avg;
+            // the sample time is not known, order by the bin instead
+            series.latestTimesMicros[i] = TimeUnit.MILLISECONDS.toMicros(entry.getKey());
+            i++;
+        }
+        series.trim();
+        return series;
+    }
+
+    public int size() {
+        return binStarts == null ? 0 : binStarts.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds a single sample to the bin it belongs to.
+     */
+    public void add(long timeMicros, double value) {
+        long binStart = normalize(TimeUnit.MICROSECONDS.toMillis(timeMicros));
+        int size = size();
+        int index = binStarts == null ? -1 : Arrays.binarySearch(binStarts, binStart);
+        if (index >= 0) {
+            counts[index]++;
+            sums[index] += value;
+            mins[index] = Math.min(mins[index], value);
+            maxs[index] = Math.max(maxs[index], value);
+            if (timeMicros >= latestTimesMicros[index]) {
+                latests[index] = value;
+                latestTimesMicros[index] = timeMicros;
+            }
+            return;
+        }
+
+        index = -index - 1;
+        if (size >= maxBins && index == 0) {
+            // older than everything retained
+            return;
+        }
+        TimeBinSeries previous = copy();
+        allocate(size + 1);
+        copyBins(previous, 0, this, 0, index);
+        binStarts[index] = binStart;
+        counts[index] = 1;
+        sums[index] = value;
+        mins[index] = value;
+        maxs[index] = value;
+        latests[index] = value;
+        latestTimesMicros[index] = timeMicros;
+        copyBins(previous, index, this, index + 1, size - index);
+        trim();
+    }
+
+    /**
+     * Merges the bins of the given series into this one. Bins with the same start are combined,
+     * the rest are interleaved by start time, in a single pass over both series.
+     */
+    public void merge(TimeBinSeries other) {
+        if (other == null || other.isEmpty()) {
+            return;
+        }
+        if (other.binDurationMillis != binDurationMillis) {
+            other = other.rebin(binDurationMillis);
+        }
+
+        int size = size();
+        int otherSize = other.size();
+        TimeBinSeries previous = copy();
+        allocate(size + otherSize);
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < otherSize) {
+            if (j == otherSize
+                    || (i < size && previous.binStarts[i] < other.binStarts[j])) {
+                copyBins(previous, i++, this, k++, 1);
+            } else if (i == size || other.binStarts[j] < previous.binStarts[i]) {
+                copyBins(other, j++, this, k++, 1);
+            } else {
+                copyBins(previous, i++, this, k, 1);
+                combine(k++, other, j++);
+            }
+        }
+
+        if (k < binStarts.length) {
+            TimeBinSeries merged = copy();
+            allocate(k);
+            copyBins(merged, 0, this, 0, k);
+        }
+        trim();
+    }
+
+    /**
+     * Returns the bin at the given index in Xenon's representation.
+     */
+    public TimeBin toTimeBin(int index) {
+        TimeBin bin = new TimeBin();
+        bin.count = counts[index];
+        bin.sum = sums[index];
+        bin.avg = counts[index] == 0 ? 0 : sums[index] / counts[index];
+        bin.min = mins[index];
+        bin.max = maxs[index];
+        bin.latest = latests[index];
+        return bin;
+    }
+
+    private void combine(int index, TimeBinSeries other, int otherIndex) {
+        counts[index] += other.counts[otherIndex];
+        sums[index] += other.sums[otherIndex];
+        mins[index] = Math.min(mins[index], other.mins[otherIndex]);
+        maxs[index] = Math.max(maxs[index], other.maxs[otherIndex]);
+        if (other.latestTimesMicros[otherIndex] >= latestTimesMicros[index]) {
+            latests[index] = other.latests[otherIndex];
+            latestTimesMicros[index] = other.latestTimesMicros[otherIndex];
+        }
+    }
+
+    /**
+     * Returns a copy of this series with the bins normalized to a different duration. Bins that
+     * fall into the same new bin are combined.
+     */
+    private TimeBinSeries rebin(long durationMillis) {
+        TimeBinSeries result = new TimeBinSeries(Math.max(maxBins, 1), durationMillis);
+        result.allocate(size());
+        int k = -1;
+        for (int i = 0; i < size(); i++) {
+            long binStart = result.normalize(binStarts[i]);
+            if (k >= 0 && result.binStarts[k] == binStart) {
+                result.combine(k, this, i);
+            } else {
+                copyBins(this, i, result, ++k, 1);
+                result.binStarts[k] = binStart;
+            }
+        }
+        TimeBinSeries trimmed = new TimeBinSeries(result.maxBins, durationMillis);
+        trimmed.allocate(k + 1);
+        copyBins(result, 0, trimmed, 0, k + 1);
+        return trimmed;
+    }
+
+    private long normalize(long timeMillis) {
+        return (timeMillis / binDurationMillis) * binDurationMillis;
+    }
+
+    /**
+     * Drops the oldest bins beyond {@link #maxBins}.
+     */
+    private void trim() {
+        int excess = size() - maxBins;
+        if (excess <= 0) {
+            return;
+        }
+        binStarts = Arrays.copyOfRange(binStarts, excess, binStarts.length);
+        counts = Arrays.copyOfRange(counts, excess, counts.length);
+        sums = Arrays.copyOfRange(sums, excess, sums.length);
+        mins = Arrays.copyOfRange(mins, excess, mins.length);
+        maxs = Arrays.copyOfRange(maxs, excess, maxs.length);
+        latests = Arrays.copyOfRange(latests, excess, latests.length);
+        latestTimesMicros = Arrays.copyOfRange(latestTimesMicros, excess,
+                latestTimesMicros.length);
+    }
+
+    private TimeBinSeries copy() {
+        TimeBinSeries copy = new TimeBinSeries();
+        copy.binDurationMillis = binDurationMillis;
+        copy.maxBins = maxBins;
+        copy.binStarts = binStarts;
+        copy.counts = counts;
+        copy.sums = sums;
+        copy.mins = mins;
+        copy.maxs = maxs;
+        copy.latests = latests;
+        copy.latestTimesMicros = latestTimesMicros;
+        return copy;
+    }
+
+    private void allocate(int size) {
+        binStarts = new long[size];
+        counts = new double[size];
+        sums = new double[size];
+        mins = new double[size];
+        maxs = new double[size];
+        latests = new double[size];
+        latestTimesMicros = new long[size];
+    }
+
+    private static void copyBins(TimeBinSeries from, int fromIndex, TimeBinSeries to,
+            int toIndex, int length) {
+        if (length <= 0) {
+            return;
+        }
+        System.arraycopy(from.binStarts, fromIndex, to.binStarts, toIndex, length);
+        System.arraycopy(from.counts, fromIndex, to.counts, toIndex, length);
+        System.arraycopy(from.sums, fromIndex, to.sums, toIndex, length);
+        System.arraycopy(from.mins, fromIndex, to.mins, toIndex, length);
+        System.arraycopy(from.maxs, fromIndex, to.maxs, toIndex, length);
+        System.arraycopy(from.latests, fromIndex, to.latests, toIndex, length);
+        System.arraycopy(from.latestTimesMicros, fromIndex, to.latestTimesMicros, toIndex,
+                length);
+    }
+}
@@ -143,7 +143,6 @@ public class IPAddressService extends StatefulService {
         super.toggleOption(ServiceOption.PERSISTENCE, true);
         super.toggleOption(ServiceOption.REPLICATION, true);
         super.toggleOption(ServiceOption.OWNER_SELECTION, true);
-        super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
     }
 
     @Override
@@ -178,6 +177,20 @@ public class IPAddressService extends StatefulService {
 
         IPAddressState currentState = getState(patch);
 
+        // an allocated address can't be taken over by another resource
+        IPAddressState requestedState = patch.getBody(IPAddressState.class);
+        if (requestedState.ipAddressStatus == IPAddressStatus.ALLOCATED
+                && currentState.ipAddressStatus == IPAddressStatus.ALLOCATED
+                && requestedState.connectedResourceLink != null
+                && !requestedState.connectedResourceLink
+                        .equals(currentState.connectedResourceLink)) {
+            patch.setStatusCode(Operation.STATUS_CODE_CONFLICT);
+            patch.fail(new IllegalStateException(String.format(
+                    "IP address %s is already allocated to %s", currentState.ipAddress,
+                    currentState.connectedResourceLink)));
+            return;
+        }
+
         ResourceUtils.handlePatch(patch, currentState, getStateDescription(),
                 IPAddressState.class, op -> {
                     IPAddressState patchState = patch.getBody(IPAddressState.class);
@@ -16,7 +16,6 @@ import static com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOp
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
@@ -24,14 +23,15 @@ import java.util.stream.Collectors;
 
 import com.vmware.photon.controller.model.UriPaths;
 import com.vmware.photon.controller.model.query.QueryUtils;
-import com.vmware.photon.controller.model.resources.IPAddressService;
 import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState;
 import com.vmware.photon.controller.model.resources.ResourceUtils;
 import com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState;
 import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
 import com.vmware.photon.controller.model.support.IPVersion;
 import com.vmware.photon.controller.model.tasks.ServiceTaskCallback.ServiceTaskCallbackResponse;
-import com.vmware.photon.controller.model.util.IpHelper;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationRequest;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationResponse;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.SubnetRangeIPAddressAllocatorState;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
@@ -39,9 +39,7 @@ import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription;
 import com.vmware.xenon.common.ServiceErrorResponse;
 import com.vmware.xenon.common.TaskState;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
-import com.vmware.xenon.services.common.QueryTask;
 import com.vmware.xenon.services.common.QueryTask.Query.Builder;
 import com.vmware.xenon.services.common.TaskService;
 
@@ -67,6 +65,14 @@ public class IPAddressAllocationTaskService extends
 
         // Resource requesting IP address
         public String connectedResourceLink;
+
+        // Number of IP addresses to allocate
+        public int allocationCount;
+
+        // IP addresses allocated so far, with their resource links and ranges
+        public List<String> ipAddresses = new ArrayList<>();
+        public List<String> ipAddressLinks = new ArrayList<>();
+        public List<String> subnetRangeLinks = new ArrayList<>();
     }
 
     /**
@@ -162,7 +168,8 @@ public class IPAddressAllocationTaskService extends
         public List<String> ipAddresses;
 
         /**
-         * For allocation, number of IP addresses to allocate. Not used for de-allocation.
+         * For allocation, number of IP addresses to allocate, one if not set. Not used for
+         * de-allocation.
          */
         public int allocationCount;
 
@@ -397,6 +404,7 @@ public class IPAddressAllocationTaskService extends
     private void allocateIpAddress(IPAddressAllocationTaskState state) {
         IPAddressAllocationContext context = new IPAddressAllocationContext();
         context.connectedResourceLink = state.connectedResourceLink;
+        context.allocationCount = Math.max(1, state.allocationCount);
         this.retrieveSubnet(state.subnetLink, context)
                 .thenCompose(this::retrieveIpRanges)
                 .thenAccept(ctxt -> {
@@ -456,180 +464,131 @@ public class IPAddressAllocationTaskService extends
     }
 
     /**
-     * Allocates IP address for a subnet, by recursively checking all the IP address subnet ranges
-     * associated to the subnet.
+     * Allocates IP addresses for a subnet, by recursively requesting the missing addresses from
+     * the allocators of the IP address subnet ranges associated to the subnet.
      *
      * @param context
      *            Allocation context information.
      */
     private void allocateIpAddressForSubnet(IPAddressAllocationContext context) {
+        if (context.ipAddresses.size() >= context.allocationCount) {
+            proceedTo(IPAddressAllocationTaskState.SubStage.FINISHED, s -> {
+                s.ipAddresses = context.ipAddresses;
+                s.ipAddressLinks = context.ipAddressLinks;
+                s.subnetRangeLinks = context.subnetRangeLinks;
+            });
+            return;
+        }
+
         if (!context.subnetRangeStatesIterator.hasNext()) {
             String message = String.format("No IP addresses are available for subnet %s",
                     context.subnetState.documentSelfLink);
+            releaseIpAddresses(context.ipAddressLinks);
             failTask(new Exception(message), message);
             return;
         }
 
         SubnetRangeState rangeState = context.subnetRangeStatesIterator.next();
-        retrieveExistingIpAddressesFromRange(rangeState)
-                .thenAccept((existingIpAddresses) -> {
-                    if (!allocateIpAddressFromRange(context.subnetState, rangeState,
-                            existingIpAddresses, context.connectedResourceLink)) {
-                        allocateIpAddressForSubnet(context);
-                    }
-                });
-    }
-
-    /**
-     * Retrieves existing IP address resources created with different status within a specific range
-     *
-     * @param rangeState
-     *            Subnet range information.
-     * @return List of IP Addresses created within that range.
-     */
-    private DeferredResult<List<IPAddressState>> retrieveExistingIpAddressesFromRange(
-            SubnetRangeState rangeState) {
-        QueryTask.Query getIpAddressQuery = QueryTask.Query.Builder.create()
-                .addFieldClause(IPAddressState.FIELD_NAME_SUBNET_RANGE_LINK,
-                        rangeState.documentSelfLink)
-                .build();
-
-        QueryUtils.QueryByPages<IPAddressState> queryByPages = new QueryUtils.QueryByPages<>(
-                this.getHost(),
-                getIpAddressQuery,
-                IPAddressState.class, null);
-
-        return queryByPages.collectDocuments(Collectors.toList());
-    }
-
-    /**
-     * Allocates an IP address from an existing IP address range.
-     *
-     * @param existingIpAddressStates
-     *            List of existing IP address resources that are created within that range.
-     * @param subnetRangeState
-     *            Subnet range state information.
-     * @return True if IP address is allocated from within the range. False otherwise.
-     */
-    private boolean allocateIpAddressFromRange(SubnetState subnetState,
-            SubnetRangeState subnetRangeState,
-            List<IPAddressState> existingIpAddressStates, String resourceLink) {
-        if (!IPVersion.IPv4.equals(subnetRangeState.ipVersion)) {
+        if (!IPVersion.IPv4.equals(rangeState.ipVersion)) {
             logWarning(() -> String.format("Not allocating from IP address range %s. Currently, "
-                    + "only IPv4 is supported", subnetRangeState.documentSelfLink));
-            return false;
-        }
-
-        HashSet<Long> unavailableIpAddresses = new HashSet<>();
-        unavailableIpAddresses.add(IpHelper.ipStringToLong(subnetState.gatewayAddress));
-
-        // Allocate an IP address, if there is an existing IP address document that is available.
-        for (IPAddressState addressState : existingIpAddressStates) {
-            if (addressState.ipAddressStatus == IPAddressState.IPAddressStatus.AVAILABLE) {
-                addressState.ipAddressStatus = IPAddressState.IPAddressStatus.ALLOCATED;
-                addressState.connectedResourceLink = resourceLink;
-                updateExistingIpAddressResource(addressState, subnetRangeState.documentSelfLink);
-                return true;
-            }
-
-            unavailableIpAddresses.add(IpHelper.ipStringToLong(addressState.ipAddress));
+                    + "only IPv4 is supported", rangeState.documentSelfLink));
+            allocateIpAddressForSubnet(context);
+            return;
         }
 
-        // Allocate IP address document and create the document.
-        long beginAddress = IpHelper.ipStringToLong(subnetRangeState.startIPAddress);
-        long endAddress = IpHelper.ipStringToLong(subnetRangeState.endIPAddress);
-
-        for (long address = beginAddress; address <= endAddress; address++) {
-            if (!unavailableIpAddresses.contains(address)) {
-                String ipAddress = IpHelper.longToIpString(address);
-                createNewIpAddressResource(ipAddress, subnetRangeState.documentSelfLink,
-                        resourceLink);
-                return true;
-            }
-        }
+        IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+        request.requestType = IPAddressAllocationRequest.RequestType.ALLOCATE;
+        request.count = context.allocationCount - context.ipAddresses.size();
+        request.connectedResourceLink = context.connectedResourceLink;
 
-        return false;
+        allocateIpAddressesFromRange(rangeState.documentSelfLink, request, true)
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        releaseIpAddresses(context.ipAddressLinks);
+                        failTask(e, "Failed to allocate IP addresses from subnet range %s: %s",
+                                rangeState.documentSelfLink, e.getMessage());
+                        return;
+                    }
+                    for (int i = 0; i < response.ipAddresses.size(); i++) {
+                        context.ipAddresses.add(response.ipAddresses.get(i));
+                        context.ipAddressLinks.add(response.ipAddressLinks.get(i));
+                        context.subnetRangeLinks.add(rangeState.documentSelfLink);
+                    }
+                    allocateIpAddressForSubnet(context);
+                });
     }
 
     /**
-     * Creates new IP address resource with the specified IP address and moves the task state to
-     * completed, once it is done. Then it creates IP Address resource, it first creates it with
-     * AVAILABLE state. It then changes the state to ALLOCATED. This is done in two steps, due to
-     * concurrency issues. When multiple allocation requests are invoked at the same time, they end
-     * up creating single IP Address resource. Only one of them succeeds in their PATCH and the
-     * other one will retry the allocation operation.
+     * Requests IP addresses from the allocator of a subnet range. The allocator is started on
+     * the first request for the range.
      *
-     * @param ipAddress
-     *            IP address to use for the new IP address resource.
-     * @param subnetRangeResourceLink
-     *            Subnet range resource link to use for the new IP address resource.
-     * @param connectedResourceLink
-     *            Link to the resource this IP is assigned to.
+     * @param subnetRangeLink
+     *            Subnet range resource link.
+     * @param request
+     *            Allocation request.
+     * @param startAllocator
+     *            Whether to start the allocator if it doesn't exist.
+     * @return The allocated IP addresses, which may be fewer than requested.
      */
-    private void createNewIpAddressResource(String ipAddress, String subnetRangeResourceLink,
-            String connectedResourceLink) {
-        IPAddressState ipAddressState = new IPAddressState();
-        ipAddressState.ipAddressStatus = IPAddressState.IPAddressStatus.AVAILABLE;
-        ipAddressState.ipAddress = ipAddress;
-        ipAddressState.subnetRangeLink = subnetRangeResourceLink;
-        ipAddressState.documentSelfLink = generateIPAddressDocumentSelfLink(subnetRangeResourceLink,
-                ipAddress);
-
-        sendRequest(Operation.createPost(this, IPAddressService.FACTORY_LINK)
-                .setBody(ipAddressState)
+    private DeferredResult<IPAddressAllocationResponse> allocateIpAddressesFromRange(
+            String subnetRangeLink, IPAddressAllocationRequest request, boolean startAllocator) {
+        String allocatorLink = SubnetRangeIPAddressAllocatorService
+                .getAllocatorLink(subnetRangeLink);
+        DeferredResult<IPAddressAllocationResponse> result = new DeferredResult<>();
+        sendRequest(Operation.createPatch(this, allocatorLink)
+                .setBody(request)
                 .setCompletion((o, e) -> {
-                    if (e != null) {
-                        logWarning(() -> String.format(
-                                "Failed to create new IP address resource %s for subnet %s for allocation due to error %s. "
-                                        +
-                                        "Will re-attempt allocation with a different IP Address.",
-                                ipAddress, subnetRangeResourceLink, e.getMessage()));
-                        proceedTo(IPAddressAllocationTaskState.SubStage.ALLOCATE_IP_ADDRESS, null);
-                    } else {
-                        IPAddressState availableIPAddress = o.getBody(IPAddressState.class);
-                        availableIPAddress.ipAddressStatus = IPAddressState.IPAddressStatus.ALLOCATED;
-                        availableIPAddress.connectedResourceLink = connectedResourceLink;
-                        updateExistingIpAddressResource(availableIPAddress,
-                                subnetRangeResourceLink);
+                    if (e == null) {
+                        result.complete(o.getBody(IPAddressAllocationResponse.class));
+                        return;
+                    }
+                    if (!startAllocator || o.getStatusCode() != Operation.STATUS_CODE_NOT_FOUND) {
+                        result.fail(e);
+                        return;
                     }
+
+                    SubnetRangeIPAddressAllocatorState allocatorState =
+                            new SubnetRangeIPAddressAllocatorState();
+                    allocatorState.documentSelfLink = allocatorLink;
+                    allocatorState.subnetRangeLink = subnetRangeLink;
+                    sendWithDeferredResult(Operation.createPost(this,
+                            SubnetRangeIPAddressAllocatorService.FACTORY_LINK)
+                            .setBody(allocatorState))
+                            .thenCompose(ignore -> allocateIpAddressesFromRange(
+                                    subnetRangeLink, request, false))
+                            .whenComplete((response, ex) -> {
+                                if (ex != null) {
+                                    result.fail(ex);
+                                } else {
+                                    result.complete(response);
+                                }
+                            });
                 }));
+        return result;
     }
 
     /**
-     * Updates an existing IP address resource and moves the task state to completed, once it is
-     * done.
+     * Releases the IP addresses allocated by a task which failed to allocate all of them.
      *
-     * @param addressState
-     *            New IP address state.
-     * @param subnetRangeResourceLink
-     *            Resource link of the subnet range on which IP address is parented to.
+     * @param ipAddressLinks
+     *            Resource links of the allocated IP addresses.
      */
-    private void updateExistingIpAddressResource(IPAddressState addressState,
-            String subnetRangeResourceLink) {
-        sendRequest(Operation.createPatch(this, addressState.documentSelfLink)
-                .setBody(addressState)
-                .setCompletion((o, e) -> {
-                    if (e != null) {
-                        failTask(e, "Failed to update existing IP address resource %s",
-                                addressState.documentSelfLink);
-                        return;
-                    }
+    private void releaseIpAddresses(List<String> ipAddressLinks) {
+        IPAddressState addressState = new IPAddressState();
+        addressState.ipAddressStatus = IPAddressState.IPAddressStatus.RELEASED;
+        addressState.connectedResourceLink = ResourceUtils.NULL_LINK_VALUE;
 
-                    if (o.getStatusCode() == Operation.STATUS_CODE_NOT_MODIFIED) {
-                        // Another concurrent request obtained the IP Address. So, try to request IP
-                        // address once again.
-                        logWarning(() -> String.format(
-                                "IP Address %s is already allocated. Will re-attempt allocation with a different IP Address.",
-                                addressState.ipAddress));
-                        proceedTo(IPAddressAllocationTaskState.SubStage.ALLOCATE_IP_ADDRESS, null);
-                    } else {
-                        proceedTo(IPAddressAllocationTaskState.SubStage.FINISHED, s -> {
-                            s.ipAddresses.add(addressState.ipAddress);
-                            s.ipAddressLinks.add(addressState.documentSelfLink);
-                            s.subnetRangeLinks.add(subnetRangeResourceLink);
-                        });
-                    }
-                }));
+        for (String ipAddressLink : ipAddressLinks) {
+            sendRequest(Operation.createPatch(this, ipAddressLink)
+                    .setBody(addressState)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            logWarning(() -> String.format(
+                                    "Failed to release IP address resource %s due to failure %s",
+                                    ipAddressLink, e.getMessage()));
+                        }
+                    }));
+        }
     }
 
     /**
@@ -733,15 +692,6 @@ public class IPAddressAllocationTaskService extends
         sendSelfPatch(state, TaskState.TaskStage.STARTED, patchBodyConfigurator);
     }
 
-    private static String generateIPAddressDocumentSelfLink(String subnetRangeSelfLink,
-            String ipAddress) {
-        if (subnetRangeSelfLink == null || subnetRangeSelfLink.isEmpty()) {
-            return ipAddress;
-        }
-
-        return UriUtils.getLastPathSegment(subnetRangeSelfLink) + ID_SEPARATOR + ipAddress;
-    }
-
     private void sendCallbackResponse(IPAddressAllocationTaskState state) {
         IPAddressAllocationTaskResult result;
         if (state.taskInfo.stage == TaskState.TaskStage.FAILED) {
@@ -15,12 +15,14 @@ import static com.vmware.photon.controller.model.resources.IPAddressService.IPAd
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import com.vmware.photon.controller.model.UriPaths;
 import com.vmware.photon.controller.model.query.QueryUtils;
 import com.vmware.photon.controller.model.resources.IPAddressService;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationRequest;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
@@ -105,34 +107,63 @@ public class IPAddressReleaseTaskService extends StatelessService {
     }
 
     /**
-     * Releases IP Addresses and marks them as available.
+     * Releases IP Addresses and marks them as available. The allocators of the subnet ranges are
+     * notified about the addresses which can be allocated again.
      *
      * @param ipAddressStates
      *            IP Address states
      */
-    private DeferredResult<List<Operation>> markIPAddressesAsAvailable(
+    private DeferredResult<Void> markIPAddressesAsAvailable(
             List<IPAddressService.IPAddressState> ipAddressStates) {
         IPAddressService.IPAddressState addressState = new IPAddressService.IPAddressState();
         addressState.ipAddressStatus = IPAddressService.IPAddressState.IPAddressStatus.AVAILABLE;
 
-        List<DeferredResult<Operation>> ipAddressOperations = new ArrayList<>();
+        List<DeferredResult<IPAddressService.IPAddressState>> ipAddressOperations =
+                new ArrayList<>();
         for (IPAddressService.IPAddressState ipAddressState : ipAddressStates) {
             Operation patchOp = Operation.createPatch(this, ipAddressState.documentSelfLink)
-                    .setBody(addressState)
-                    .setCompletion((o, e) -> {
+                    .setBody(addressState);
+
+            ipAddressOperations.add(this.sendWithDeferredResult(patchOp)
+                    .handle((o, e) -> {
                         if (e != null) {
                             logWarning(
                                     "Failed to mark IP address resource %s as available due to failure %s",
                                     ipAddressState.ipAddress, e.getMessage());
-                        } else {
-                            logInfo("The IP address %s is made available",
-                                    ipAddressState.ipAddress);
+                            return null;
                         }
-                    });
-
-            ipAddressOperations.add(this.sendWithDeferredResult(patchOp));
+                        logInfo("The IP address %s is made available", ipAddressState.ipAddress);
+                        return ipAddressState;
+                    }));
         }
 
-        return DeferredResult.allOf(ipAddressOperations);
+        return DeferredResult.allOf(ipAddressOperations)
+                .thenAccept(this::notifyAllocators);
+    }
+
+    private void notifyAllocators(List<IPAddressService.IPAddressState> availableIpAddresses) {
+        Map<String, List<String>> ipAddressesByRange = availableIpAddresses.stream()
+                .filter(ipAddressState -> ipAddressState != null
+                        && ipAddressState.subnetRangeLink != null)
+                .collect(Collectors.groupingBy(ipAddressState -> ipAddressState.subnetRangeLink,
+                        Collectors.mapping(ipAddressState -> ipAddressState.ipAddress,
+                                Collectors.toList())));
+
+        ipAddressesByRange.forEach((subnetRangeLink, ipAddresses) -> {
+            IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+            request.requestType = IPAddressAllocationRequest.RequestType.RELEASE;
+            request.ipAddresses = ipAddresses;
+
+            sendRequest(Operation.createPatch(this,
+                    SubnetRangeIPAddressAllocatorService.getAllocatorLink(subnetRangeLink))
+                    .setBody(request)
+                    .setCompletion((o, e) -> {
+                        // an allocator which is not started takes the addresses from the index
+                        if (e != null && o.getStatusCode() != Operation.STATUS_CODE_NOT_FOUND) {
+                            logWarning("Failed to notify the allocator of subnet range %s due to"
+                                    + " failure %s", subnetRangeLink, e.getMessage());
+                        }
+                    }));
+        });
     }
 }
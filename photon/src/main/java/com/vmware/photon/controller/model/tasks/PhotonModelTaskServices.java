@@ -34,6 +34,7 @@ public class PhotonModelTaskServices {
             ProvisionComputeTaskService.FACTORY_LINK,
             ProvisionNetworkTaskService.FACTORY_LINK,
             IPAddressAllocationTaskService.FACTORY_LINK,
+            SubnetRangeIPAddressAllocatorService.FACTORY_LINK,
             ProvisionSubnetTaskService.FACTORY_LINK,
             ProvisionLoadBalancerTaskService.FACTORY_LINK,
             SnapshotTaskService.FACTORY_LINK,
@@ -67,6 +68,8 @@ public class PhotonModelTaskServices {
                 () -> TaskFactoryService.create(ProvisionNetworkTaskService.class));
         host.startFactory(IPAddressAllocationTaskService.class,
                 () -> TaskFactoryService.create(IPAddressAllocationTaskService.class));
+        host.startFactory(SubnetRangeIPAddressAllocatorService.class,
+                () -> SubnetRangeIPAddressAllocatorService.createFactory());
         host.startFactory(ProvisionSubnetTaskService.class,
                 () -> TaskFactoryService.create(ProvisionSubnetTaskService.class));
         host.startFactory(ProvisionLoadBalancerTaskService.class,
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.tasks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.vmware.photon.controller.model.UriPaths;
+import com.vmware.photon.controller.model.query.QueryUtils;
+import com.vmware.photon.controller.model.resources.IPAddressService;
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState;
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState.IPAddressStatus;
+import com.vmware.photon.controller.model.resources.ResourceUtils;
+import com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState;
+import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
+import com.vmware.photon.controller.model.support.IPVersion;
+import com.vmware.photon.controller.model.util.IpHelper;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.FactoryService;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
+import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+
+/**
+ * In-memory service which allocates the IP addresses of a single subnet range. It keeps a bitmap
+ * of the addresses in the range which are not available, i.e. have an {@link IPAddressState} which
+ * is allocated or released, plus the gateway of the subnet. The bitmap is built from the index on
+ * the first request the owner receives and is dropped when the owner changes.
+ * <p>
+ * Allocation and release requests are sent as PATCH and are processed one at a time on the owner,
+ * so concurrent allocations never pick the same address. Allocating an address creates its
+ * {@link IPAddressState} with a link derived from the range and the address, or reuses the
+ * existing one if the address was released and is available again. Both fail if another
+ * resource holds the address, so a stale bitmap never assigns an address twice.
+ */
+public class SubnetRangeIPAddressAllocatorService extends StatefulService {
+
+    public static final String FACTORY_LINK = UriPaths.RESOURCES
+            + "/subnet-range-ip-address-allocators";
+
+    public static FactoryService createFactory() {
+        return FactoryService.createIdempotent(SubnetRangeIPAddressAllocatorService.class);
+    }
+
+    /**
+     * State of the allocator, identifies the subnet range.
+     */
+    public static class SubnetRangeIPAddressAllocatorState extends ServiceDocument {
+        public static final String FIELD_NAME_SUBNET_RANGE_LINK = "subnetRangeLink";
+
+        @Documentation(description = "Link to the subnet range which addresses are allocated.")
+        @PropertyOptions(usage = {
+                PropertyUsageOption.REQUIRED,
+                PropertyUsageOption.LINK,
+                PropertyUsageOption.SINGLE_ASSIGNMENT })
+        public String subnetRangeLink;
+    }
+
+    /**
+     * PATCH body requesting the allocation or the release of addresses from the range.
+     */
+    public static class IPAddressAllocationRequest {
+        public enum RequestType {
+            ALLOCATE, RELEASE
+        }
+
+        public RequestType requestType;
+
+        /**
+         * For allocation, the number of addresses to allocate.
+         */
+        public int count;
+
+        /**
+         * For allocation, the resource which the addresses are allocated to.
+         */
+        public String connectedResourceLink;
+
+        /**
+         * For release, the addresses which became available.
+         */
+        public List<String> ipAddresses;
+    }
+
+    /**
+     * PATCH response of an allocation request. It may contain fewer addresses than requested if
+     * the range is exhausted.
+     */
+    public static class IPAddressAllocationResponse {
+        public List<String> ipAddresses = new ArrayList<>();
+        public List<String> ipAddressLinks = new ArrayList<>();
+    }
+
+    /**
+     * Addresses of the range which are not available for allocation, by offset from the start
+     * address. Allocation continues from the last allocated address, so that an allocation doesn't
+     * scan the allocated addresses at the beginning of the range again.
+     */
+    private static class AddressBitmap {
+        final long startAddress;
+        final int size;
+        final BitSet unavailable;
+        int nextOffset;
+
+        AddressBitmap(long startAddress, int size) {
+            this.startAddress = startAddress;
+            this.size = size;
+            this.unavailable = new BitSet(size);
+        }
+
+        void setUnavailable(String ipAddress) {
+            int offset = toOffset(ipAddress);
+            if (offset >= 0) {
+                this.unavailable.set(offset);
+            }
+        }
+
+        void setAvailable(String ipAddress) {
+            int offset = toOffset(ipAddress);
+            if (offset >= 0) {
+                this.unavailable.clear(offset);
+            }
+        }
+
+        /**
+         * Marks the next available address as unavailable and returns it or returns
+         * <code>null</code> if all addresses in the range are unavailable.
+         */
+        String take() {
+            int offset = this.unavailable.nextClearBit(this.nextOffset);
+            if (offset >= this.size) {
+                offset = this.unavailable.nextClearBit(0);
+                if (offset >= this.size) {
+                    return null;
+                }
+            }
+            this.unavailable.set(offset);
+            this.nextOffset = offset + 1 < this.size ? offset + 1 : 0;
+            return IpHelper.longToIpString(this.startAddress + offset);
+        }
+
+        private int toOffset(String ipAddress) {
+            if (ipAddress == null) {
+                return -1;
+            }
+            long offset = IpHelper.ipStringToLong(ipAddress) - this.startAddress;
+            return offset >= 0 && offset < this.size ? (int) offset : -1;
+        }
+    }
+
+    // built on the first request, accessed only while processing a request
+    private AddressBitmap bitmap;
+
+    public SubnetRangeIPAddressAllocatorService() {
+        super(SubnetRangeIPAddressAllocatorState.class);
+        super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
+        super.toggleOption(ServiceOption.REPLICATION, true);
+    }
+
+    /**
+     * Returns the link of the allocator of the given subnet range.
+     */
+    public static String getAllocatorLink(String subnetRangeLink) {
+        return UriUtils.buildUriPath(FACTORY_LINK, UriUtils.getLastPathSegment(subnetRangeLink));
+    }
+
+    @Override
+    public void handleStart(Operation start) {
+        if (!start.hasBody()) {
+            start.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        SubnetRangeIPAddressAllocatorState state = getBody(start);
+        if (state.subnetRangeLink == null) {
+            start.fail(new IllegalArgumentException("subnetRangeLink is required"));
+            return;
+        }
+        start.complete();
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!patch.hasBody()) {
+            patch.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        IPAddressAllocationRequest request = patch.getBody(IPAddressAllocationRequest.class);
+        if (request.requestType == null) {
+            patch.fail(new IllegalArgumentException("requestType is required"));
+            return;
+        }
+
+        SubnetRangeIPAddressAllocatorState state = getState(patch);
+        if (request.requestType == IPAddressAllocationRequest.RequestType.RELEASE) {
+            release(request);
+            patch.complete();
+            return;
+        }
+
+        if (request.connectedResourceLink == null) {
+            patch.fail(new IllegalArgumentException("connectedResourceLink is required"));
+            return;
+        }
+
+        IPAddressAllocationResponse response = new IPAddressAllocationResponse();
+        DeferredResult<Void> ready = this.bitmap != null
+                ? DeferredResult.completed(null)
+                : buildBitmap(state.subnetRangeLink);
+        ready.thenCompose(ignore -> allocate(state, request, response, false))
+                .whenComplete((ignore, e) -> {
+                    if (e != null) {
+                        this.bitmap = null;
+                        releaseIpAddresses(response.ipAddressLinks);
+                        patch.fail(e);
+                        return;
+                    }
+                    patch.setBody(response).complete();
+                });
+    }
+
+    @Override
+    public void handleNodeGroupMaintenance(Operation op) {
+        // the owner may have changed, the new owner rebuilds the bitmap from the index
+        this.bitmap = null;
+        op.complete();
+    }
+
+    private void release(IPAddressAllocationRequest request) {
+        if (this.bitmap == null || request.ipAddresses == null) {
+            // the addresses are taken from the index when the bitmap is built
+            return;
+        }
+        for (String ipAddress : request.ipAddresses) {
+            this.bitmap.setAvailable(ipAddress);
+        }
+    }
+
+    /**
+     * Allocates the missing addresses of the request. Addresses which fail to be allocated, e.g.
+     * because another document uses them, stay unavailable and other addresses are taken instead.
+     * When the range looks exhausted, the bitmap is built again once, in case addresses were
+     * released without notifying the allocator.
+     */
+    private DeferredResult<Void> allocate(SubnetRangeIPAddressAllocatorState state,
+            IPAddressAllocationRequest request, IPAddressAllocationResponse response,
+            boolean rebuilt) {
+        int missing = Math.max(1, request.count) - response.ipAddresses.size();
+        if (missing <= 0) {
+            return DeferredResult.completed(null);
+        }
+
+        List<String> ipAddresses = new ArrayList<>(missing);
+        for (int i = 0; i < missing; i++) {
+            String ipAddress = this.bitmap.take();
+            if (ipAddress == null) {
+                break;
+            }
+            ipAddresses.add(ipAddress);
+        }
+
+        if (ipAddresses.isEmpty()) {
+            if (rebuilt) {
+                return DeferredResult.completed(null);
+            }
+            return buildBitmap(state.subnetRangeLink)
+                    .thenCompose(ignore -> allocate(state, request, response, true));
+        }
+
+        List<DeferredResult<IPAddressState>> allocations = new ArrayList<>(ipAddresses.size());
+        for (String ipAddress : ipAddresses) {
+            allocations.add(allocateIpAddress(state.subnetRangeLink, ipAddress,
+                    request.connectedResourceLink));
+        }
+
+        return DeferredResult.allOf(allocations).thenCompose(addressStates -> {
+            for (IPAddressState addressState : addressStates) {
+                if (addressState != null) {
+                    response.ipAddresses.add(addressState.ipAddress);
+                    response.ipAddressLinks.add(addressState.documentSelfLink);
+                }
+            }
+            return allocate(state, request, response, rebuilt);
+        });
+    }
+
+    /**
+     * Creates the allocated {@link IPAddressState} of the address. The POST fails if the document
+     * exists, in which case it is allocated with a PATCH, which only succeeds if the address is
+     * available. An address which fails to be allocated stays unavailable in the bitmap.
+     *
+     * @return the allocated address or <code>null</code> if it couldn't be allocated
+     */
+    private DeferredResult<IPAddressState> allocateIpAddress(String subnetRangeLink,
+            String ipAddress, String connectedResourceLink) {
+        IPAddressState addressState = new IPAddressState();
+        addressState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        addressState.ipAddress = ipAddress;
+        addressState.subnetRangeLink = subnetRangeLink;
+        addressState.connectedResourceLink = connectedResourceLink;
+        addressState.documentSelfLink = UriUtils.buildUriPath(IPAddressService.FACTORY_LINK,
+                UriUtils.getLastPathSegment(subnetRangeLink)
+                        + IPAddressAllocationTaskService.ID_SEPARATOR + ipAddress);
+
+        DeferredResult<IPAddressState> result = new DeferredResult<>();
+        Operation.createPost(this, IPAddressService.FACTORY_LINK)
+                .setBody(addressState)
+                .setCompletion((o, e) -> {
+                    if (e == null) {
+                        result.complete(addressState);
+                    } else if (o.getStatusCode() == Operation.STATUS_CODE_CONFLICT) {
+                        // the address was allocated before, take it over if it is available
+                        allocateExistingIpAddress(addressState, result);
+                    } else {
+                        logAllocationFailure(addressState, e);
+                        result.complete(null);
+                    }
+                })
+                .sendWith(this);
+        return result;
+    }
+
+    private void allocateExistingIpAddress(IPAddressState addressState,
+            DeferredResult<IPAddressState> result) {
+        IPAddressState patchState = new IPAddressState();
+        patchState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        patchState.connectedResourceLink = addressState.connectedResourceLink;
+
+        Operation.createPatch(this, addressState.documentSelfLink)
+                .setBody(patchState)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logAllocationFailure(addressState, e);
+                        result.complete(null);
+                        return;
+                    }
+                    result.complete(addressState);
+                })
+                .sendWith(this);
+    }
+
+    private void logAllocationFailure(IPAddressState addressState, Throwable e) {
+        logWarning(() -> String.format("Failed to allocate IP address %s from subnet range %s:"
+                + " %s", addressState.ipAddress, addressState.subnetRangeLink, e.getMessage()));
+    }
+
+    /**
+     * Releases the addresses allocated by a request which failed.
+     */
+    private void releaseIpAddresses(List<String> ipAddressLinks) {
+        IPAddressState addressState = new IPAddressState();
+        addressState.ipAddressStatus = IPAddressStatus.RELEASED;
+        addressState.connectedResourceLink = ResourceUtils.NULL_LINK_VALUE;
+
+        for (String ipAddressLink : ipAddressLinks) {
+            Operation.createPatch(this, ipAddressLink)
+                    .setBody(addressState)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            logWarning(() -> String.format("Failed to release IP address %s:"
+                                    + " %s", ipAddressLink, e.getMessage()));
+                        }
+                    })
+                    .sendWith(this);
+        }
+    }
+
+    /**
+     * Builds the bitmap of the range from the range and subnet documents and the IP address
+     * documents of the range which are not available.
+     */
+    private DeferredResult<Void> buildBitmap(String subnetRangeLink) {
+        return sendWithDeferredResult(Operation.createGet(this, subnetRangeLink),
+                SubnetRangeState.class)
+                .thenCompose(rangeState -> {
+                    if (!IPVersion.IPv4.equals(rangeState.ipVersion)) {
+                        throw new IllegalStateException(String.format("Cannot allocate from"
+                                + " IP address range %s. Currently, only IPv4 is supported",
+                                subnetRangeLink));
+                    }
+
+                    long startAddress = IpHelper.ipStringToLong(rangeState.startIPAddress);
+                    long endAddress = IpHelper.ipStringToLong(rangeState.endIPAddress);
+                    AddressBitmap newBitmap = new AddressBitmap(startAddress,
+                            IpHelper.safeLongToInt(endAddress - startAddress + 1));
+
+                    return sendWithDeferredResult(
+                            Operation.createGet(this, rangeState.subnetLink), SubnetState.class)
+                            .thenCompose(subnetState -> {
+                                newBitmap.setUnavailable(subnetState.gatewayAddress);
+                                return collectUnavailableIpAddresses(subnetRangeLink,
+                                        newBitmap);
+                            });
+                })
+                .thenAccept(newBitmap -> {
+                    logFine(() -> String.format("Built bitmap of subnet range %s with %d"
+                            + " unavailable addresses", subnetRangeLink,
+                            newBitmap.unavailable.cardinality()));
+                    this.bitmap = newBitmap;
+                });
+    }
+
+    private DeferredResult<AddressBitmap> collectUnavailableIpAddresses(String subnetRangeLink,
+            AddressBitmap newBitmap) {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(IPAddressState.class)
+                .addFieldClause(IPAddressState.FIELD_NAME_SUBNET_RANGE_LINK, subnetRangeLink)
+                .addFieldClause(IPAddressState.FIELD_NAME_IP_ADDRESS_STATUS,
+                        IPAddressStatus.AVAILABLE.toString(), Occurance.MUST_NOT_OCCUR)
+                .build();
+
+        return new QueryUtils.QueryByPages<>(getHost(), query, IPAddressState.class, null)
+                .queryDocuments(addressState -> newBitmap.setUnavailable(addressState.ipAddress))
+                .thenApply(ignore -> newBitmap);
+    }
+}
@@ -57,11 +57,17 @@ import com.vmware.xenon.services.common.QueryTask.Query;
  *
  * <p>By default computes are not expanded and values in {@link QueryResult#computesByLink} are
  * {@code null}. Use {@link ResourcePoolQueryHelper#setExpandComputes(boolean)} to change this.
+ *
+ * <p>When a {@link MembershipIndex} is registered for the host, the helper asks it first and
+ * queries the documents only if the index can't answer.
  */
 public class ResourcePoolQueryHelper {
     private static final int PAGE_SIZE = Integer
             .getInteger(UriPaths.PROPERTY_PREFIX + "rp.query.helper.page.size", 1024);
 
+    private static final Map<ServiceHost, MembershipIndex> MEMBERSHIP_INDEXES =
+            new ConcurrentHashMap<>();
+
     // input fields
     private final ServiceHost host;
     private Collection<String> resourcePoolLinks;
@@ -123,6 +129,21 @@ public class ResourcePoolQueryHelper {
         }
     }
 
+    /**
+     * Index of the computes in each resource pool, kept current as computes and resource pools
+     * change, so that the resource pool queries are not executed on each call of the helper.
+     */
+    public interface MembershipIndex {
+        /**
+         * Returns the result for the given input or completes with {@code null} if the index
+         * can't provide it, e.g. because it is not loaded yet or a resource pool query can't be
+         * evaluated by the index. The additional clauses are {@code null} if not provided.
+         */
+        DeferredResult<QueryResult> query(Collection<String> resourcePoolLinks,
+                Collection<String> computeLinks, Query additionalQueryClauses,
+                Query additionalResourcePoolQueryClauses, boolean expandComputes);
+    }
+
     /**
      * Creates a new instance.
      */
@@ -156,6 +177,20 @@ public class ResourcePoolQueryHelper {
         return helper;
     }
 
+    /**
+     * Registers the membership index to use for the queries on the given host.
+     */
+    public static void registerMembershipIndex(ServiceHost host, MembershipIndex index) {
+        MEMBERSHIP_INDEXES.put(host, index);
+    }
+
+    /**
+     * Unregisters the membership index of the given host, if it is the given one.
+     */
+    public static void unregisterMembershipIndex(ServiceHost host, MembershipIndex index) {
+        MEMBERSHIP_INDEXES.remove(host, index);
+    }
+
     /**
      * Allows clients to dynamically add query clauses for narrowing down the list of returned
      * computes.
@@ -184,7 +219,32 @@ public class ResourcePoolQueryHelper {
      * Perform the actual retrieval and returns to the client DeferredResult with actual QueryResult.
      */
     public DeferredResult<QueryResult> query() {
+        MembershipIndex index = MEMBERSHIP_INDEXES.get(this.host);
+        if (index == null) {
+            return queryDocuments();
+        }
 
+        return index.query(this.resourcePoolLinks, this.computeLinks,
+                buildAdditionalClauses(this.additionalQueryClausesProvider),
+                buildAdditionalClauses(this.additionalResourcePoolQueryClausesProvider),
+                this.expandComputes)
+                .thenCompose(indexResult -> indexResult != null
+                        ? DeferredResult.completed(indexResult)
+                        : queryDocuments())
+                .exceptionally(QueryResult::forError);
+    }
+
+    /**
+     * Perform the actual retrieval and notifies the client through the given completionHandler.
+     */
+    public void query(Consumer<QueryResult> completionHandler) {
+        query().thenAccept(completionHandler);
+    }
+
+    /**
+     * Retrieves the result by executing the resource pool queries.
+     */
+    private DeferredResult<QueryResult> queryDocuments() {
         this.result = new QueryResult();
 
         // start by retrieving the requested resource pools
@@ -195,11 +255,13 @@ public class ResourcePoolQueryHelper {
                 .handle((ignore, exc) -> exc != null ? QueryResult.forError(exc) : this.result);
     }
 
-    /**
-     * Perform the actual retrieval and notifies the client through the given completionHandler.
-     */
-    public void query(Consumer<QueryResult> completionHandler) {
-        query().thenAccept(completionHandler);
+    private static Query buildAdditionalClauses(Consumer<Query.Builder> provider) {
+        if (provider == null) {
+            return null;
+        }
+        Query.Builder queryBuilder = Query.Builder.create();
+        provider.accept(queryBuilder);
+        return queryBuilder.build();
     }
 
     /**
@@ -15,7 +15,6 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,6 +31,7 @@ import com.vmware.photon.controller.model.monitoring.InMemoryResourceMetricServi
 import com.vmware.photon.controller.model.monitoring.InMemoryResourceMetricService.InMemoryResourceMetric;
 import com.vmware.photon.controller.model.monitoring.ResourceMetricsService;
 import com.vmware.photon.controller.model.monitoring.ResourceMetricsService.ResourceMetrics;
+import com.vmware.photon.controller.model.monitoring.TimeBinSeries;
 import com.vmware.photon.controller.model.query.QueryUtils;
 import com.vmware.photon.controller.model.resources.util.PhotonModelUtils;
 import com.vmware.photon.controller.model.tasks.TaskUtils;
@@ -47,7 +47,6 @@ import com.vmware.xenon.common.ServiceDocumentDescription;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.ServiceDocumentDescription.TypeName;
 import com.vmware.xenon.common.ServiceStats;
-import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
 import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.AggregationType;
 import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
 import com.vmware.xenon.common.TaskState;
@@ -115,9 +114,15 @@ public class SingleResourceStatsAggregationTaskService extends
     public static final String RAW_METRICS_RESULT_LIMIT = UriPaths.PROPERTY_PREFIX
             + "SingleResourceStatsAggregationTaskService.query.rawMetrics.resultLimit";
     private static final int DEFAULT_RAW_METRICS_RESULT_LIMIT = 10000;
-    private static final int RAW_METRICS_LIMIT = Integer
+    static final int RAW_METRICS_LIMIT = Integer
             .getInteger(RAW_METRICS_RESULT_LIMIT, DEFAULT_RAW_METRICS_RESULT_LIMIT);
 
+    public static final String RAW_METRICS_QUERY_PAGE_SIZE = UriPaths.PROPERTY_PREFIX
+            + "SingleResourceStatsAggregationTaskService.query.rawMetrics.pageSize";
+    private static final int DEFAULT_RAW_METRICS_PAGE_SIZE = 1000;
+    static final int RAW_METRICS_PAGE_SIZE = Integer
+            .getInteger(RAW_METRICS_QUERY_PAGE_SIZE, DEFAULT_RAW_METRICS_PAGE_SIZE);
+
     public static class SingleResourceStatsAggregationTaskState
             extends TaskService.TaskServiceState {
 
@@ -577,19 +582,20 @@ public class SingleResourceStatsAggregationTaskService extends
                 .entrySet()) {
             String rawMetricKey = stripRollupKey(metricEntry.getKey());
 
-            TimeSeriesStats timeSeriesStats = metric.timeSeriesStats.get(rawMetricKey);
+            TimeBinSeries timeBins = metric.timeBins == null ? null
+                    : metric.timeBins.get(rawMetricKey);
 
             // if there is no in-memory metric for this key then we don't have any
             // raw metrics; move on to the next metric
-            if (timeSeriesStats == null) {
+            if (timeBins == null || timeBins.isEmpty()) {
                 continue;
             }
 
             // TODO VSYM-3190 - Change normalized interval boundary to beginning of the rollup period
             // Currently, xenon's time interval boundary 1 hour before than photon
             // model's aggregate metrics.
-            Long earliestBinId = TimeUnit.MILLISECONDS.toMicros(timeSeriesStats.bins.firstKey());
-            earliestBinId += TimeUnit.MILLISECONDS.toMicros(timeSeriesStats.binDurationMillis);
+            Long earliestBinId = TimeUnit.MILLISECONDS.toMicros(timeBins.binStarts[0]);
+            earliestBinId += TimeUnit.MILLISECONDS.toMicros(timeBins.binDurationMillis);
 
             Long lastRollupTime = metricEntry.getValue();
 
@@ -604,7 +610,7 @@ public class SingleResourceStatsAggregationTaskService extends
                 metricList.add(rawMetricKey);
                 continue;
             }
-            processInMemoryTimeBins(currentState, inMemoryStats, metricEntry, timeSeriesStats);
+            processInMemoryTimeBins(currentState, inMemoryStats, metricEntry, timeBins);
         }
     }
 
@@ -615,17 +621,17 @@ public class SingleResourceStatsAggregationTaskService extends
     private void processInMemoryTimeBins(SingleResourceStatsAggregationTaskState currentState,
             Map<String, SortedMap<Long, List<TimeBin>>> inMemoryStats,
             Entry<String, Long> metricEntry,
-            TimeSeriesStats timeSeriesStats) {
+            TimeBinSeries timeBins) {
         String metricKeyWithRollUp = metricEntry.getKey();
         String rawMetricKey = stripRollupKey(metricEntry.getKey());
         Long lastRollupTime = metricEntry.getValue();
 
-        for (Entry<Long, TimeBin> binEntry : timeSeriesStats.bins.entrySet()) {
+        for (int i = 0; i < timeBins.size(); i++) {
             // TODO VSYM-3190 - Change normalized interval boundary to beginning of the rollup period
             // Currently, xenon's time interval boundary 1 hour before than
             // photon model's aggregate metrics.
-            Long binId = TimeUnit.MILLISECONDS.toMicros(binEntry.getKey());
-            binId += TimeUnit.MILLISECONDS.toMicros(timeSeriesStats.binDurationMillis);
+            Long binId = TimeUnit.MILLISECONDS.toMicros(timeBins.binStarts[i]);
+            binId += TimeUnit.MILLISECONDS.toMicros(timeBins.binDurationMillis);
 
             if (binId < lastRollupTime) {
                 continue;
@@ -644,7 +650,7 @@ public class SingleResourceStatsAggregationTaskService extends
                 inMemoryStats.put(metricKeyWithRollUp, bins);
             }
 
-            TimeBin bin = binEntry.getValue();
+            TimeBin bin = timeBins.toTimeBin(i);
             if (currentState.latestValueOnly.contains(rawMetricKey)) {
                 // For latest value, we create a new time bin since we are only interested
                 // in the latest data point.
@@ -674,13 +680,90 @@ public class SingleResourceStatsAggregationTaskService extends
     }
 
     /**
-     *  Class that holds the rollup metric keys of interest and their last rollup time.
+     * Class that holds a rollup metric key of interest, the time to roll it up from and the
+     * bins its raw values are aggregated into while the raw metrics are streamed.
      */
-    private static class RollupMetricHolder {
+    static class RollupMetricHolder {
+        private static final int COUNT = 0;
+        private static final int SUM = 1;
+        private static final int MIN = 2;
+        private static final int MAX = 3;
+        private static final int LATEST = 4;
+        private static final int LATEST_TIME = 5;
+
         String rollupKey;
         Long beginTimestampMicros;
+        int binSizeMillis;
+        boolean latestValueOnly;
+
+        // bin id -> count, sum, min, max, latest value and its timestamp
+        final Map<Long, double[]> bins = new HashMap<>();
+
+        void add(long timestampMicros, double value) {
+            if (beginTimestampMicros != null && timestampMicros < beginTimestampMicros) {
+                return;
+            }
+            // TODO VSYM-3190 - Change normalized interval boundary to beginning of the rollup period
+            long binId = StatsUtil.computeIntervalEndMicros(timestampMicros, binSizeMillis);
+            double[] bin = bins.get(binId);
+            if (bin == null) {
+                bins.put(binId, new double[] { 1, value, value, value, value, timestampMicros });
+                return;
+            }
+            bin[COUNT]++;
+            bin[SUM] += value;
+            bin[MIN] = Math.min(bin[MIN], value);
+            bin[MAX] = Math.max(bin[MAX], value);
+            if (timestampMicros > bin[LATEST_TIME]) {
+                bin[LATEST] = value;
+                bin[LATEST_TIME] = timestampMicros;
+            }
+        }
+
+        TimeBin toTimeBin(double[] bin) {
+            TimeBin timeBin = new TimeBin();
+            if (latestValueOnly) {
+                timeBin.avg = timeBin.min = timeBin.max = timeBin.sum = bin[LATEST];
+                timeBin.count = 1;
+                return timeBin;
+            }
+            timeBin.count = bin[COUNT];
+            timeBin.sum = bin[SUM];
+            timeBin.avg = bin[SUM] / bin[COUNT];
+            timeBin.min = bin[MIN];
+            timeBin.max = bin[MAX];
+            return timeBin;
+        }
     }
 
+    /**
+     * Builds the rollup metrics of interest keyed by raw metric key, so a raw metric entry is
+     * matched to its rollups with a single lookup.
+     */
+    private Map<String, List<RollupMetricHolder>> buildRollupMetricHolders(
+            SingleResourceStatsAggregationTaskState currentState) {
+        Map<String, List<RollupMetricHolder>> rollupMetrics = new HashMap<>();
+        for (Entry<String, Long> metricEntry : currentState.lastRollupTimeForMetric
+                .entrySet()) {
+            RollupMetricHolder metric = new RollupMetricHolder();
+            metric.rollupKey = metricEntry.getKey();
+            metric.binSizeMillis = lookupBinSize(metric.rollupKey);
+            if (metricEntry.getValue() != null && metricEntry.getValue() != 0) {
+                metric.beginTimestampMicros = StatsUtil.computeIntervalBeginMicros(
+                        metricEntry.getValue() - 1, metric.binSizeMillis);
+            }
+            String rawMetricKey = stripRollupKey(metric.rollupKey);
+            metric.latestValueOnly = currentState.latestValueOnly.contains(rawMetricKey);
+            rollupMetrics.computeIfAbsent(rawMetricKey, k -> new ArrayList<>()).add(metric);
+        }
+        return rollupMetrics;
+    }
+
+    /**
+     * Queries the raw metrics that are not available in memory. The raw metrics are paged
+     * newest first and every page is folded into the bins of the matching rollup metrics, so only
+     * the bins are held in memory.
+     */
     private void getRawMetrics(SingleResourceStatsAggregationTaskState currentState,
             QueryTask resourceQueryTask, Map<String, Set<String>> metricsToBeQueried,
             Map<String, SortedMap<Long, List<TimeBin>>> inMemoryStats) {
@@ -689,60 +772,42 @@ public class SingleResourceStatsAggregationTaskService extends
             return;
         }
 
+        Map<String, List<RollupMetricHolder>> rollupMetrics =
+                buildRollupMetricHolders(currentState);
+
         Query.Builder overallQueryBuilder = Query.Builder.create();
         for (Entry<String, Set<String>> entry : metricsToBeQueried.entrySet()) {
             String resourceId = entry.getKey();
+            Query.Builder metricsBuilder = Query.Builder.create();
             for (String metricKey : entry.getValue()) {
                 logFine(() -> String.format("Querying raw metrics from disk for %s", metricKey));
-                Long range = null;
-                int binSize = 0;
-                for (Entry<String, Long> metricEntry : currentState.lastRollupTimeForMetric
-                        .entrySet()) {
-                    if (metricEntry.getKey().startsWith(metricKey)) {
-                        if (range == null || range > metricEntry.getValue()) {
-                            binSize = lookupBinSize(metricEntry.getKey());
-                            range = metricEntry.getValue();
-                        }
-                    }
-                }
                 Query.Builder builder = Query.Builder.create(Occurance.SHOULD_OCCUR);
-                builder.addKindFieldClause(ResourceMetrics.class);
-                builder.addFieldClause(ServiceDocument.FIELD_NAME_SELF_LINK,
-                        UriUtils.buildUriPath(ResourceMetricsService.FACTORY_LINK, resourceId),
-                        MatchType.PREFIX);
                 builder.addRangeClause(QuerySpecification
                         .buildCompositeFieldName(ResourceMetrics.FIELD_NAME_ENTRIES, metricKey),
                         NumericRange.createDoubleRange(0.0, Double.MAX_VALUE, true, true));
-                if (range != null && range != 0) {
+                Long beginTimestampMicros = getBeginTimestampMicros(
+                        rollupMetrics.get(metricKey));
+                if (beginTimestampMicros != null) {
                     builder.addRangeClause(ResourceMetrics.FIELD_NAME_TIMESTAMP,
-                            NumericRange.createGreaterThanOrEqualRange(
-                                    StatsUtil.computeIntervalBeginMicros(range - 1, binSize)));
+                            NumericRange.createGreaterThanOrEqualRange(beginTimestampMicros));
                 }
-                overallQueryBuilder.addClause(builder.build());
+                metricsBuilder.addClause(builder.build());
             }
-        }
-
-        // create a set of rollup metric keys we are interested in and the timestamp
-        // to rollup from for each
-        Set<RollupMetricHolder> rollupMetricHolder = new HashSet<>();
-        for (Entry<String, Long> metricEntry : currentState.lastRollupTimeForMetric
-                .entrySet()) {
-            RollupMetricHolder metric = new RollupMetricHolder();
-            metric.rollupKey = metricEntry.getKey();
-            if (metricEntry.getValue() != null && metricEntry.getValue() != 0) {
-                metric.beginTimestampMicros = StatsUtil.computeIntervalBeginMicros(
-                        metricEntry.getValue() - 1,
-                        lookupBinSize(metricEntry.getKey()));
-            }
-            rollupMetricHolder.add(metric);
+            // the resource clauses are shared by all of its metrics
+            Query.Builder builder = Query.Builder.create(Occurance.SHOULD_OCCUR);
+            builder.addKindFieldClause(ResourceMetrics.class);
+            builder.addFieldClause(ServiceDocument.FIELD_NAME_SELF_LINK,
+                    UriUtils.buildUriPath(ResourceMetricsService.FACTORY_LINK, resourceId),
+                    MatchType.PREFIX);
+            builder.addClause(metricsBuilder.build());
+            overallQueryBuilder.addClause(builder.build());
         }
 
         QueryTask task = QueryTask.Builder.createDirectTask()
                 .addOption(QueryOption.EXPAND_CONTENT)
-                .addOption(QueryOption.TOP_RESULTS)
                 .addOption(QueryOption.SORT)
                 .orderDescending(ResourceMetrics.FIELD_NAME_TIMESTAMP, TypeName.LONG)
-                .setResultLimit(RAW_METRICS_LIMIT)
+                .setResultLimit(Math.min(RAW_METRICS_PAGE_SIZE, RAW_METRICS_LIMIT))
                 .setQuery(overallQueryBuilder.build()).build();
 
         task.documentExpirationTimeMicros = Utils.getNowMicrosUtc() + QueryUtils.MINUTE_IN_MICROS;
@@ -753,43 +818,104 @@ public class SingleResourceStatsAggregationTaskService extends
                         sendSelfFailurePatch(currentState, queryEx.getMessage());
                         return;
                     }
-                    Map<String, List<ResourceMetrics>> rawMetricsForKey = new HashMap<>();
-                    for (Object obj : response.results.documents.values()) {
-                        ResourceMetrics rawMetric = Utils.fromJson(obj, ResourceMetrics.class);
-                        for (RollupMetricHolder metric : rollupMetricHolder) {
-                            for (String rawMetricKey : rawMetric.entries.keySet()) {
-                                if (!rawMetricKey.contains(stripRollupKey(metric.rollupKey))) {
-                                    continue;
-                                }
-                                // we want to consider raw metrics with the specified key and the appropriate timestamp
-                                if ((metric.beginTimestampMicros == null ||
-                                        rawMetric.timestampMicrosUtc >= metric.beginTimestampMicros)) {
-                                    List<ResourceMetrics> rawMetricResultSet = rawMetricsForKey
-                                            .get(metric.rollupKey);
-                                    if (rawMetricResultSet == null) {
-                                        rawMetricResultSet = new ArrayList<>();
-                                        rawMetricsForKey.put(metric.rollupKey, rawMetricResultSet);
-                                    }
-                                    rawMetricResultSet.add(rawMetric);
-                                }
-                            }
-                        }
-                    }
-                    aggregateMetrics(currentState, resourceQueryTask, rawMetricsForKey,
-                            inMemoryStats);
+                    processRawMetrics(currentState, resourceQueryTask, inMemoryStats,
+                            rollupMetrics, response, 0);
                 });
     }
 
+    /**
+     * Folds a page of raw metrics into the rollup bins and fetches the next one, until all pages
+     * or {@link #RAW_METRICS_LIMIT} raw metrics are processed.
+     */
+    private void processRawMetrics(SingleResourceStatsAggregationTaskState currentState,
+            QueryTask resourceQueryTask, Map<String, SortedMap<Long, List<TimeBin>>> inMemoryStats,
+            Map<String, List<RollupMetricHolder>> rollupMetrics, QueryTask page,
+            int processedCount) {
+        int count = processedCount;
+        if (page.results.documents != null) {
+            count = foldRawMetrics(page.results.documents.values(), rollupMetrics, count,
+                    RAW_METRICS_LIMIT);
+        }
+
+        String nextPageLink = page.results.nextPageLink;
+        if (nextPageLink == null || count >= RAW_METRICS_LIMIT) {
+            aggregateMetrics(currentState, resourceQueryTask, rollupMetrics, inMemoryStats);
+            return;
+        }
+
+        int finalCount = count;
+        sendRequest(Operation
+                .createGet(UriUtils.extendUri(ClusterUtil.getClusterUri(getHost(),
+                        ServiceTypeCluster.METRIC_SERVICE), nextPageLink))
+                .setCompletion((getOp, getEx) -> {
+                    if (getEx != null) {
+                        sendSelfFailurePatch(currentState, getEx.getMessage());
+                        return;
+                    }
+                    processRawMetrics(currentState, resourceQueryTask, inMemoryStats,
+                            rollupMetrics, getOp.getBody(QueryTask.class), finalCount);
+                }));
+    }
+
+    /**
+     * Folds raw metric documents into the bins of the matching rollup metrics, until the given
+     * limit of raw metrics is processed.
+     *
+     * @return the number of raw metrics processed, including the given processed count
+     */
+    static int foldRawMetrics(Collection<Object> documents,
+            Map<String, List<RollupMetricHolder>> rollupMetrics, int processedCount, int limit) {
+        int count = processedCount;
+        for (Object obj : documents) {
+            if (count >= limit) {
+                break;
+            }
+            count++;
+            ResourceMetrics rawMetric = Utils.fromJson(obj, ResourceMetrics.class);
+            for (Entry<String, Double> rawEntry : rawMetric.entries.entrySet()) {
+                List<RollupMetricHolder> metrics = rollupMetrics.get(rawEntry.getKey());
+                if (metrics == null || rawEntry.getValue() == null) {
+                    continue;
+                }
+                for (RollupMetricHolder metric : metrics) {
+                    metric.add(rawMetric.timestampMicrosUtc, rawEntry.getValue());
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the earliest time any of the given rollup metrics needs raw metrics from, or
+     * {@code null} if one of them needs all of them.
+     */
+    private static Long getBeginTimestampMicros(List<RollupMetricHolder> metrics) {
+        if (metrics == null) {
+            return null;
+        }
+        Long beginTimestampMicros = null;
+        for (RollupMetricHolder metric : metrics) {
+            if (metric.beginTimestampMicros == null) {
+                return null;
+            }
+            if (beginTimestampMicros == null
+                    || metric.beginTimestampMicros < beginTimestampMicros) {
+                beginTimestampMicros = metric.beginTimestampMicros;
+            }
+        }
+        return beginTimestampMicros;
+    }
+
     private void aggregateMetrics(SingleResourceStatsAggregationTaskState currentState,
-            QueryTask resourceQueryTask, Map<String, List<ResourceMetrics>> rawMetricsForKey,
+            QueryTask resourceQueryTask, Map<String, List<RollupMetricHolder>> rollupMetrics,
             Map<String, SortedMap<Long, List<TimeBin>>> inMemoryStats) {
 
         if (inMemoryStats != null) {
             aggregateInMemoryMetrics(currentState, inMemoryStats);
         }
 
-        if (rawMetricsForKey != null) {
-            aggregateRawMetrics(currentState, rawMetricsForKey);
+        if (rollupMetrics != null) {
+            aggregateRawMetrics(currentState, rollupMetrics);
         }
 
         SingleResourceStatsAggregationTaskState patchBody = new SingleResourceStatsAggregationTaskState();
@@ -807,69 +933,39 @@ public class SingleResourceStatsAggregationTaskService extends
 
     private void aggregateRawMetrics(
             SingleResourceStatsAggregationTaskState currentState,
-            Map<String, List<ResourceMetrics>> rawMetricsForKey) {
+            Map<String, List<RollupMetricHolder>> rollupMetrics) {
         Map<String, Map<Long, TimeBin>> aggregatedTimeBinMap = currentState.aggregatedTimeBinMap;
-        // comparator used to sort resource metric PODOs based on document timestamp
-        Comparator<ResourceMetrics> comparator = (o1, o2) -> {
-            if (o1.timestampMicrosUtc < o2.timestampMicrosUtc) {
-                return -1;
-            } else if (o1.timestampMicrosUtc > o2.timestampMicrosUtc) {
-                return 1;
-            }
-            return 0;
-        };
-        for (Entry<String, List<ResourceMetrics>> rawMetricListEntry : rawMetricsForKey
-                .entrySet()) {
-            List<ResourceMetrics> rawMetricList = rawMetricListEntry.getValue();
-
-            if (rawMetricList.isEmpty()) {
-                continue;
-            }
-            String metricKeyWithRpllupSuffix = rawMetricListEntry.getKey();
-            rawMetricList.sort(comparator);
-
-            if (aggregatedTimeBinMap == null) {
-                aggregatedTimeBinMap = new HashMap<>();
-                currentState.aggregatedTimeBinMap = aggregatedTimeBinMap;
-            }
-            Map<Long, TimeBin> timeBinMap = aggregatedTimeBinMap.get(metricKeyWithRpllupSuffix);
-            if (timeBinMap == null) {
-                timeBinMap = new HashMap<>();
-                aggregatedTimeBinMap.put(metricKeyWithRpllupSuffix, timeBinMap);
-            }
-
-            String rawMetricKey = stripRollupKey(metricKeyWithRpllupSuffix);
-
-            Collection<ResourceMetrics> metrics = rawMetricList;
-            if (currentState.latestValueOnly.contains(rawMetricKey)) {
-                metrics = getLatestMetrics(rawMetricList, metricKeyWithRpllupSuffix);
-            }
-
-            Set<AggregationType> aggregationTypes;
-
-            // iterate over the raw metric values and place it in the right time bin
-            for (ResourceMetrics metric : metrics) {
-                Double value = metric.entries.get(rawMetricKey);
-                if (value == null) {
+        for (List<RollupMetricHolder> metrics : rollupMetrics.values()) {
+            for (RollupMetricHolder metric : metrics) {
+                if (metric.bins.isEmpty()) {
                     continue;
                 }
-                // TODO VSYM-3190 - Change normalized interval boundary to beginning of the rollup period
-                long binId = StatsUtil.computeIntervalEndMicros(
-                        metric.timestampMicrosUtc,
-                        lookupBinSize(metricKeyWithRpllupSuffix));
-                TimeBin bin = timeBinMap.get(binId);
-                if (bin == null) {
-                    bin = new TimeBin();
+
+                if (aggregatedTimeBinMap == null) {
+                    aggregatedTimeBinMap = new HashMap<>();
+                    currentState.aggregatedTimeBinMap = aggregatedTimeBinMap;
+                }
+                Map<Long, TimeBin> timeBinMap = aggregatedTimeBinMap.get(metric.rollupKey);
+                if (timeBinMap == null) {
+                    timeBinMap = new HashMap<>();
+                    aggregatedTimeBinMap.put(metric.rollupKey, timeBinMap);
                 }
 
                 // Figure out the aggregation for the given metric
-                aggregationTypes = currentState.aggregations.get(rawMetricKey);
+                Set<AggregationType> aggregationTypes = currentState.aggregations
+                        .get(stripRollupKey(metric.rollupKey));
                 if (aggregationTypes == null) {
                     aggregationTypes = EnumSet.allOf(AggregationType.class);
                 }
 
-                updateBin(bin, value, aggregationTypes);
-                timeBinMap.put(binId, bin);
+                for (Entry<Long, double[]> binEntry : metric.bins.entrySet()) {
+                    TimeBin bin = timeBinMap.get(binEntry.getKey());
+                    if (bin == null) {
+                        bin = new TimeBin();
+                    }
+                    updateBin(bin, metric.toTimeBin(binEntry.getValue()), aggregationTypes);
+                    timeBinMap.put(binEntry.getKey(), bin);
+                }
             }
         }
     }
@@ -917,62 +1013,6 @@ public class SingleResourceStatsAggregationTaskService extends
         }
     }
 
-    /**
-     * Returns the latest metrics from the raw metrics list. Since the list contains all raw metrics
-     * across multiple resource we iterate on the list and pick the latest metric for each resource
-     * per bin depending on the metric key.
-     *
-     * TODO VSYM-2481: Add custom mock stats adapter based test for this.
-     */
-    private Collection<ResourceMetrics> getLatestMetrics(List<ResourceMetrics> metrics,
-            String metricKeyWithInterval) {
-        if (metrics.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        // Metric link to map of latest value per bin. For example:
-        // /monitoring/metrics/<resource-id>_<key1> -> 1474070400000000, <latest-value-of-key1-in-this-time-bucket>
-        // /monitoring/metrics/<resource-id>_<key2> -> 1474070400000000, <latest-value-of-key2-in-this-time-bucket>
-        Map<String, Map<Long, ResourceMetrics>> metricsByLatestValuePerInterval = new HashMap<>();
-        for (ResourceMetrics metric : metrics) {
-            String metricKey = stripRollupKey(metricKeyWithInterval);
-            Map<Long, ResourceMetrics> metricsByIntervalEndTime = metricsByLatestValuePerInterval
-                    .get(metricKey);
-            Double value = metric.entries.get(metricKey);
-            if (value == null) {
-                continue;
-            }
-            // TODO VSYM-3190 - Change normalized interval boundary to beginning of the rollup period
-            long binId = StatsUtil.computeIntervalEndMicros(
-                    metric.timestampMicrosUtc, lookupBinSize(metricKeyWithInterval));
-            if (metricsByIntervalEndTime == null) {
-                metricsByIntervalEndTime = new HashMap<>();
-                metricsByIntervalEndTime.put(binId, metric);
-                metricsByLatestValuePerInterval.put(metricKey, metricsByIntervalEndTime);
-                continue;
-            }
-
-            ResourceMetrics existingMetric = metricsByIntervalEndTime.get(binId);
-            Double existingValue = null;
-            if (existingMetric != null) {
-                existingValue = existingMetric.entries.get(metricKey);
-            }
-            if (existingValue == null
-                    || existingMetric.timestampMicrosUtc < metric.timestampMicrosUtc) {
-                metricsByIntervalEndTime.put(binId, metric);
-            }
-        }
-
-        // Gather all latest values
-        List<ResourceMetrics> result = new ArrayList<>();
-        for (Map<Long, ResourceMetrics> metricsByIntervalEndTime : metricsByLatestValuePerInterval
-                .values()) {
-            result.addAll(metricsByIntervalEndTime.values());
-        }
-
-        return result;
-    }
-
     private void addLastRollupTimeForMissingKeys(
             SingleResourceStatsAggregationTaskState currentState,
             Set<String> publishedKeys, List<Operation> operations) {
@@ -1174,42 +1214,6 @@ public class SingleResourceStatsAggregationTaskService extends
         return StatsConstants.BUCKET_SIZE_DAYS_IN_MILLIS;
     }
 
-    /**
-     * Update time bin with raw value.
-     */
-    private TimeBin updateBin(TimeBin inputBin, double value,
-            Set<AggregationType> aggregationTypes) {
-        if (aggregationTypes.contains(AggregationType.MAX)) {
-            if (inputBin.max == null || inputBin.max < value) {
-                inputBin.max = value;
-            }
-        }
-
-        if (aggregationTypes.contains(AggregationType.MIN)) {
-            if (inputBin.min == null || inputBin.min > value) {
-                inputBin.min = value;
-            }
-        }
-
-        if (aggregationTypes.contains(AggregationType.AVG)) {
-            if (inputBin.avg == null) {
-                inputBin.avg = value;
-            } else {
-                inputBin.avg = ((inputBin.avg * inputBin.count) + value) / (inputBin.count + 1);
-            }
-        }
-
-        if (aggregationTypes.contains(AggregationType.SUM)) {
-            if (inputBin.sum == null) {
-                inputBin.sum = value;
-            } else {
-                inputBin.sum += value;
-            }
-        }
-        inputBin.count++;
-        return inputBin;
-    }
-
     /**
      * Update time bin based on given time bin value.
      */
@@ -14,7 +14,6 @@ package com.vmware.photon.controller.model.tasks.monitoring;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
@@ -28,6 +27,7 @@ import com.vmware.photon.controller.model.monitoring.InMemoryResourceMetricServi
 import com.vmware.photon.controller.model.monitoring.InMemoryResourceMetricService.InMemoryResourceMetric;
 import com.vmware.photon.controller.model.monitoring.ResourceMetricsService;
 import com.vmware.photon.controller.model.monitoring.ResourceMetricsService.ResourceMetrics;
+import com.vmware.photon.controller.model.monitoring.TimeBinSeries;
 import com.vmware.photon.controller.model.query.QueryUtils;
 import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeStateWithDescription;
@@ -45,8 +45,6 @@ import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.ServiceDocumentDescription.TypeName;
 import com.vmware.xenon.common.ServiceStats;
 import com.vmware.xenon.common.ServiceStats.ServiceStat;
-import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
-import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.AggregationType;
 import com.vmware.xenon.common.TaskState;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
@@ -377,7 +375,7 @@ public class SingleResourceStatsCollectionTaskService
             String computeId = UriUtils.getLastPathSegment(stats.computeLink);
 
             InMemoryResourceMetric hourlyMemoryState = new InMemoryResourceMetric();
-            hourlyMemoryState.timeSeriesStats = new HashMap<>();
+            hourlyMemoryState.timeBins = new HashMap<>();
             hourlyMemoryState.documentSelfLink = computeId + StatsConstants.HOUR_SUFFIX;
 
             inMemoryMetricsList.add(hourlyMemoryState);
@@ -462,17 +460,12 @@ public class SingleResourceStatsCollectionTaskService
     private void updateInMemoryStats(InMemoryResourceMetric inMemoryMetric, String metricKey,
             ServiceStat serviceStat, int bucketSize) {
         // update in-memory stats
-        if (inMemoryMetric.timeSeriesStats.containsKey(metricKey)) {
-            inMemoryMetric.timeSeriesStats.get(metricKey)
-                    .add(serviceStat.sourceTimeMicrosUtc, serviceStat.latestValue,
-                            serviceStat.latestValue);
-        } else {
-            TimeSeriesStats tStats = new TimeSeriesStats(2, bucketSize,
-                    EnumSet.allOf(AggregationType.class));
-            tStats.add(serviceStat.sourceTimeMicrosUtc, serviceStat.latestValue,
-                    serviceStat.latestValue);
-            inMemoryMetric.timeSeriesStats.put(metricKey, tStats);
+        TimeBinSeries bins = inMemoryMetric.timeBins.get(metricKey);
+        if (bins == null) {
+            bins = new TimeBinSeries(2, bucketSize);
+            inMemoryMetric.timeBins.put(metricKey, bins);
         }
+        bins.add(serviceStat.sourceTimeMicrosUtc, serviceStat.latestValue);
     }
 
     private void populateResourceMetrics(List<ResourceMetrics> metricsList,
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.monitoring;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.AggregationType;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
+
+public class TimeBinSeriesTest {
+
+    private static final double DELTA = 0.0001;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void testSamplesAreAlignedToBins() {
+        TimeBinSeries series = new TimeBinSeries(10, MINUTE_MILLIS);
+        series.add(micros(61_000), 1);
+        series.add(micros(119_999), 3);
+        series.add(micros(120_000), 2);
+        // older than the latest sample of its bin
+        series.add(micros(90_000), 5);
+
+        assertArrayEquals(new long[] { 60_000, 120_000 }, series.binStarts);
+        assertBin(series, 0, 3, 9, 1, 5, 3);
+        assertBin(series, 1, 1, 2, 2, 2, 2);
+    }
+
+    @Test
+    public void testMergeCombinesOverlappingBins() {
+        TimeBinSeries series = new TimeBinSeries(10, MINUTE_MILLIS);
+        series.add(micros(10_000), 1);
+        series.add(micros(70_000), 4);
+        series.add(micros(110_000), 6);
+
+        TimeBinSeries other = new TimeBinSeries(10, MINUTE_MILLIS);
+        other.add(micros(80_000), 2);
+        other.add(micros(90_000), 8);
+        other.add(micros(130_000), 5);
+
+        series.merge(other);
+
+        assertArrayEquals(new long[] { 0, 60_000, 120_000 }, series.binStarts);
+        assertBin(series, 0, 1, 1, 1, 1, 1);
+        // the latest value is the one of the newest sample of either series
+        assertBin(series, 1, 4, 20, 2, 8, 6);
+        assertBin(series, 2, 1, 5, 5, 5, 5);
+        assertEquals(3, other.size());
+    }
+
+    @Test
+    public void testMergeRebinsToCoarserWidth() {
+        TimeBinSeries series = new TimeBinSeries(10, MINUTE_MILLIS);
+        series.add(micros(30_000), 10);
+
+        TimeBinSeries other = new TimeBinSeries(10, TimeUnit.SECONDS.toMillis(10));
+        other.add(micros(5_000), 1);
+        other.add(micros(15_000), 2);
+        other.add(micros(65_000), 4);
+        other.add(micros(75_000), 3);
+
+        series.merge(other);
+
+        assertEquals(MINUTE_MILLIS, series.binDurationMillis);
+        assertArrayEquals(new long[] { 0, 60_000 }, series.binStarts);
+        assertBin(series, 0, 3, 13, 1, 10, 10);
+        assertBin(series, 1, 2, 7, 3, 4, 3);
+
+        // the merged series keeps its own width
+        assertEquals(TimeUnit.SECONDS.toMillis(10), other.binDurationMillis);
+        assertEquals(4, other.size());
+    }
+
+    @Test
+    public void testOnlyNewestBinsAreRetained() {
+        TimeBinSeries series = new TimeBinSeries(3, 1000);
+        for (int i = 0; i < 5; i++) {
+            series.add(micros(i * 1000), i);
+        }
+        assertArrayEquals(new long[] { 2000, 3000, 4000 }, series.binStarts);
+
+        // older than every retained bin
+        series.add(micros(1000), 1);
+        assertArrayEquals(new long[] { 2000, 3000, 4000 }, series.binStarts);
+
+        TimeBinSeries other = new TimeBinSeries(10, 1000);
+        other.add(micros(0), 0);
+        other.add(micros(5000), 5);
+        series.merge(other);
+
+        assertArrayEquals(new long[] { 3000, 4000, 5000 }, series.binStarts);
+        assertBin(series, 2, 1, 5, 5, 5, 5);
+    }
+
+    @Test
+    public void testFromTimeSeriesStats() {
+        TimeSeriesStats stats = new TimeSeriesStats(2, MINUTE_MILLIS,
+                EnumSet.of(AggregationType.AVG));
+        stats.bins.put(0L, timeBin(2, 5));
+        stats.bins.put(60_000L, timeBin(4, 3));
+        TimeBin fullBin = timeBin(2, 4);
+        fullBin.sum = 8.0;
+        fullBin.min = 1.0;
+        fullBin.max = 7.0;
+        fullBin.latest = 7.0;
+        stats.bins.put(120_000L, fullBin);
+
+        TimeBinSeries series = TimeBinSeries.fromTimeSeriesStats(stats);
+
+        assertEquals(2, series.maxBins);
+        assertEquals(MINUTE_MILLIS, series.binDurationMillis);
+        assertArrayEquals(new long[] { 60_000, 120_000 }, series.binStarts);
+        // only the average is known
+        assertBin(series, 0, 4, 12, 3, 3, 3);
+        assertBin(series, 1, 2, 8, 1, 7, 7);
+
+        TimeBin bin = series.toTimeBin(1);
+        assertEquals(4, bin.avg, DELTA);
+        assertEquals(2, bin.count, DELTA);
+    }
+
+    private static long micros(long millis) {
+        return TimeUnit.MILLISECONDS.toMicros(millis);
+    }
+
+    private static TimeBin timeBin(double count, double avg) {
+        TimeBin bin = new TimeBin();
+        bin.count = count;
+        bin.avg = avg;
+        return bin;
+    }
+
+    private static void assertBin(TimeBinSeries series, int index, double count, double sum,
+            double min, double max, double latest) {
+        assertEquals(count, series.counts[index], DELTA);
+        assertEquals(sum, series.sums[index], DELTA);
+        assertEquals(min, series.mins[index], DELTA);
+        assertEquals(max, series.maxs[index], DELTA);
+        assertEquals(latest, series.latests[index], DELTA);
+    }
+}
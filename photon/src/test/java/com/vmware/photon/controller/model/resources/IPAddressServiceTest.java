@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.resources;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState;
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState.IPAddressStatus;
+import com.vmware.xenon.common.BasicReusableHostTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.common.test.TestRequestSender.FailureResponse;
+
+public class IPAddressServiceTest extends BasicReusableHostTestCase {
+
+    private TestRequestSender sender;
+
+    @Before
+    public void setUp() throws Throwable {
+        if (this.host.getServiceStage(IPAddressService.FACTORY_LINK) == null) {
+            this.host.startFactory(new IPAddressService());
+            this.host.waitForServiceAvailable(IPAddressService.FACTORY_LINK);
+        }
+        this.sender = this.host.getTestRequestSender();
+    }
+
+    @Test
+    public void testRePostOfExistingAddressFails() {
+        IPAddressState addressState = createAddressState("/resources/compute/first");
+        this.sender.sendAndWait(Operation.createPost(this.host, IPAddressService.FACTORY_LINK)
+                .setBody(addressState));
+
+        // the allocators rely on the conflict to never create an address twice
+        IPAddressState otherState = createAddressState("/resources/compute/second");
+        otherState.documentSelfLink = addressState.documentSelfLink;
+        FailureResponse failure = this.sender.sendAndWaitFailure(Operation
+                .createPost(this.host, IPAddressService.FACTORY_LINK)
+                .setBody(otherState));
+        assertEquals(Operation.STATUS_CODE_CONFLICT, failure.op.getStatusCode());
+
+        IPAddressState currentState = getAddressState(addressState.documentSelfLink);
+        assertEquals(IPAddressStatus.ALLOCATED, currentState.ipAddressStatus);
+        assertEquals("/resources/compute/first", currentState.connectedResourceLink);
+    }
+
+    @Test
+    public void testAllocatedAddressIsNotTakenOver() {
+        IPAddressState addressState = createAddressState("/resources/compute/first");
+        this.sender.sendAndWait(Operation.createPost(this.host, IPAddressService.FACTORY_LINK)
+                .setBody(addressState));
+
+        IPAddressState patchState = new IPAddressState();
+        patchState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        patchState.connectedResourceLink = "/resources/compute/second";
+        FailureResponse failure = this.sender.sendAndWaitFailure(Operation
+                .createPatch(this.host, addressState.documentSelfLink)
+                .setBody(patchState));
+        assertEquals(Operation.STATUS_CODE_CONFLICT, failure.op.getStatusCode());
+
+        // the resource holding the address may patch it
+        patchState.connectedResourceLink = "/resources/compute/first";
+        this.sender.sendAndWait(Operation.createPatch(this.host, addressState.documentSelfLink)
+                .setBody(patchState));
+        assertEquals("/resources/compute/first",
+                getAddressState(addressState.documentSelfLink).connectedResourceLink);
+    }
+
+    @Test
+    public void testReleasedAddressIsAllocatedAgainOnceAvailable() {
+        IPAddressState addressState = createAddressState("/resources/compute/first");
+        this.sender.sendAndWait(Operation.createPost(this.host, IPAddressService.FACTORY_LINK)
+                .setBody(addressState));
+
+        IPAddressState patchState = new IPAddressState();
+        patchState.ipAddressStatus = IPAddressStatus.RELEASED;
+        patchState.connectedResourceLink = ResourceUtils.NULL_LINK_VALUE;
+        this.sender.sendAndWait(Operation.createPatch(this.host, addressState.documentSelfLink)
+                .setBody(patchState));
+
+        // a released address must become available before it is allocated again
+        patchState = new IPAddressState();
+        patchState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        patchState.connectedResourceLink = "/resources/compute/second";
+        this.sender.sendAndWaitFailure(Operation
+                .createPatch(this.host, addressState.documentSelfLink)
+                .setBody(patchState));
+
+        IPAddressState availableState = new IPAddressState();
+        availableState.ipAddressStatus = IPAddressStatus.AVAILABLE;
+        this.sender.sendAndWait(Operation.createPatch(this.host, addressState.documentSelfLink)
+                .setBody(availableState));
+
+        this.sender.sendAndWait(Operation.createPatch(this.host, addressState.documentSelfLink)
+                .setBody(patchState));
+        IPAddressState currentState = getAddressState(addressState.documentSelfLink);
+        assertEquals(IPAddressStatus.ALLOCATED, currentState.ipAddressStatus);
+        assertEquals("/resources/compute/second", currentState.connectedResourceLink);
+    }
+
+    private IPAddressState getAddressState(String addressLink) {
+        return this.sender.sendAndWait(Operation.createGet(this.host, addressLink),
+                IPAddressState.class);
+    }
+
+    private static IPAddressState createAddressState(String connectedResourceLink) {
+        IPAddressState addressState = new IPAddressState();
+        addressState.id = UUID.randomUUID().toString();
+        addressState.ipAddress = "192.168.1.10";
+        addressState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        addressState.subnetRangeLink = "/resources/subnet-ranges/test";
+        addressState.connectedResourceLink = connectedResourceLink;
+        addressState.documentSelfLink = UriUtils.buildUriPath(IPAddressService.FACTORY_LINK,
+                UUID.randomUUID().toString());
+        return addressState;
+    }
+}
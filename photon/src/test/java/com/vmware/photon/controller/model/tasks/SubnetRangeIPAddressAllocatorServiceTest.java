@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.resources.IPAddressService;
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState;
+import com.vmware.photon.controller.model.resources.IPAddressService.IPAddressState.IPAddressStatus;
+import com.vmware.photon.controller.model.resources.ResourceUtils;
+import com.vmware.photon.controller.model.resources.SubnetRangeService;
+import com.vmware.photon.controller.model.resources.SubnetRangeService.SubnetRangeState;
+import com.vmware.photon.controller.model.resources.SubnetService;
+import com.vmware.photon.controller.model.resources.SubnetService.SubnetState;
+import com.vmware.photon.controller.model.support.IPVersion;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationRequest;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationRequest.RequestType;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.IPAddressAllocationResponse;
+import com.vmware.photon.controller.model.tasks.SubnetRangeIPAddressAllocatorService.SubnetRangeIPAddressAllocatorState;
+import com.vmware.xenon.common.BasicReusableHostTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestRequestSender;
+
+public class SubnetRangeIPAddressAllocatorServiceTest extends BasicReusableHostTestCase {
+
+    private static final String GATEWAY_ADDRESS = "192.168.1.1";
+
+    private TestRequestSender sender;
+
+    @Before
+    public void setUp() throws Throwable {
+        if (this.host.getServiceStage(SubnetRangeIPAddressAllocatorService.FACTORY_LINK) == null) {
+            this.host.startFactory(new SubnetService());
+            this.host.startFactory(new SubnetRangeService());
+            this.host.startFactory(new IPAddressService());
+            this.host.startFactory(SubnetRangeIPAddressAllocatorService.class,
+                    () -> SubnetRangeIPAddressAllocatorService.createFactory());
+            this.host.waitForServiceAvailable(SubnetService.FACTORY_LINK,
+                    SubnetRangeService.FACTORY_LINK, IPAddressService.FACTORY_LINK,
+                    SubnetRangeIPAddressAllocatorService.FACTORY_LINK);
+        }
+        this.sender = this.host.getTestRequestSender();
+    }
+
+    @Test
+    public void testConcurrentAllocationsGetDistinctAddresses() {
+        String allocatorLink = createAllocator("192.168.1.10", "192.168.1.29");
+
+        List<Operation> allocations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            allocations.add(Operation.createPatch(this.host, allocatorLink)
+                    .setBody(allocationRequest(2, "/resources/compute/" + i)));
+        }
+        List<IPAddressAllocationResponse> responses = this.sender.sendAndWait(allocations,
+                IPAddressAllocationResponse.class);
+
+        Set<String> ipAddresses = new HashSet<>();
+        for (IPAddressAllocationResponse response : responses) {
+            assertEquals(2, response.ipAddresses.size());
+            ipAddresses.addAll(response.ipAddresses);
+        }
+        assertEquals(20, ipAddresses.size());
+    }
+
+    @Test
+    public void testAllocationStopsWhenRangeIsExhausted() {
+        // the gateway is in the range and is never allocated
+        String allocatorLink = createAllocator(GATEWAY_ADDRESS, "192.168.1.5");
+
+        IPAddressAllocationResponse response = allocate(allocatorLink, 10,
+                "/resources/compute/first");
+        assertEquals(4, response.ipAddresses.size());
+        assertEquals(4, response.ipAddressLinks.size());
+        assertFalse(response.ipAddresses.contains(GATEWAY_ADDRESS));
+
+        response = allocate(allocatorLink, 1, "/resources/compute/second");
+        assertTrue(response.ipAddresses.isEmpty());
+    }
+
+    @Test
+    public void testReleasedAddressIsReusedOnceAvailable() {
+        String allocatorLink = createAllocator("192.168.1.10", "192.168.1.11");
+
+        IPAddressAllocationResponse response = allocate(allocatorLink, 2,
+                "/resources/compute/first");
+        assertEquals(2, response.ipAddresses.size());
+        String ipAddress = response.ipAddresses.get(0);
+        String ipAddressLink = response.ipAddressLinks.get(0);
+
+        // a released address is not allocated before it is available
+        IPAddressState releasedState = new IPAddressState();
+        releasedState.ipAddressStatus = IPAddressStatus.RELEASED;
+        releasedState.connectedResourceLink = ResourceUtils.NULL_LINK_VALUE;
+        this.sender.sendAndWait(Operation.createPatch(this.host, ipAddressLink)
+                .setBody(releasedState));
+        assertTrue(allocate(allocatorLink, 1, "/resources/compute/second").ipAddresses
+                .isEmpty());
+
+        IPAddressState availableState = new IPAddressState();
+        availableState.ipAddressStatus = IPAddressStatus.AVAILABLE;
+        this.sender.sendAndWait(Operation.createPatch(this.host, ipAddressLink)
+                .setBody(availableState));
+        IPAddressAllocationRequest release = new IPAddressAllocationRequest();
+        release.requestType = RequestType.RELEASE;
+        release.ipAddresses = Arrays.asList(ipAddress);
+        this.sender.sendAndWait(Operation.createPatch(this.host, allocatorLink)
+                .setBody(release));
+
+        // the existing document of the address is allocated again
+        response = allocate(allocatorLink, 1, "/resources/compute/second");
+        assertEquals(Arrays.asList(ipAddress), response.ipAddresses);
+        assertEquals(Arrays.asList(ipAddressLink), response.ipAddressLinks);
+
+        IPAddressState addressState = this.sender.sendAndWait(
+                Operation.createGet(this.host, ipAddressLink), IPAddressState.class);
+        assertEquals(IPAddressStatus.ALLOCATED, addressState.ipAddressStatus);
+        assertEquals("/resources/compute/second", addressState.connectedResourceLink);
+    }
+
+    @Test
+    public void testAddressAllocatedOutsideOfAllocatorIsSkipped() {
+        String allocatorLink = createAllocator("192.168.1.10", "192.168.1.12");
+        String subnetRangeLink = getSubnetRangeLink(allocatorLink);
+
+        // builds the bitmap of the allocator
+        IPAddressAllocationResponse response = allocate(allocatorLink, 1,
+                "/resources/compute/first");
+        assertEquals(Arrays.asList("192.168.1.10"), response.ipAddresses);
+
+        // the bitmap doesn't know about the address, the re-POST of its document fails
+        IPAddressState addressState = new IPAddressState();
+        addressState.id = UUID.randomUUID().toString();
+        addressState.ipAddress = "192.168.1.11";
+        addressState.ipAddressStatus = IPAddressStatus.ALLOCATED;
+        addressState.subnetRangeLink = subnetRangeLink;
+        addressState.connectedResourceLink = "/resources/compute/other";
+        addressState.documentSelfLink = UriUtils.buildUriPath(IPAddressService.FACTORY_LINK,
+                UriUtils.getLastPathSegment(subnetRangeLink)
+                        + IPAddressAllocationTaskService.ID_SEPARATOR + addressState.ipAddress);
+        this.sender.sendAndWait(Operation.createPost(this.host, IPAddressService.FACTORY_LINK)
+                .setBody(addressState));
+
+        response = allocate(allocatorLink, 1, "/resources/compute/second");
+        assertEquals(Arrays.asList("192.168.1.12"), response.ipAddresses);
+
+        IPAddressState otherState = this.sender.sendAndWait(
+                Operation.createGet(this.host, addressState.documentSelfLink),
+                IPAddressState.class);
+        assertEquals("/resources/compute/other", otherState.connectedResourceLink);
+    }
+
+    private IPAddressAllocationResponse allocate(String allocatorLink, int count,
+            String connectedResourceLink) {
+        return this.sender.sendAndWait(Operation.createPatch(this.host, allocatorLink)
+                .setBody(allocationRequest(count, connectedResourceLink)),
+                IPAddressAllocationResponse.class);
+    }
+
+    private static IPAddressAllocationRequest allocationRequest(int count,
+            String connectedResourceLink) {
+        IPAddressAllocationRequest request = new IPAddressAllocationRequest();
+        request.requestType = RequestType.ALLOCATE;
+        request.count = count;
+        request.connectedResourceLink = connectedResourceLink;
+        return request;
+    }
+
+    private String getSubnetRangeLink(String allocatorLink) {
+        return this.sender.sendAndWait(Operation.createGet(this.host, allocatorLink),
+                SubnetRangeIPAddressAllocatorState.class).subnetRangeLink;
+    }
+
+    /**
+     * Creates a subnet range in a new subnet and the allocator of the range.
+     */
+    private String createAllocator(String startIPAddress, String endIPAddress) {
+        SubnetState subnetState = new SubnetState();
+        subnetState.id = UUID.randomUUID().toString();
+        subnetState.name = "test-subnet";
+        subnetState.networkLink = "/resources/networks/test";
+        subnetState.subnetCIDR = "192.168.1.0/24";
+        subnetState.gatewayAddress = GATEWAY_ADDRESS;
+        subnetState = this.sender.sendAndWait(Operation
+                .createPost(this.host, SubnetService.FACTORY_LINK)
+                .setBody(subnetState), SubnetState.class);
+
+        SubnetRangeState rangeState = new SubnetRangeState();
+        rangeState.id = UUID.randomUUID().toString();
+        rangeState.name = "test-range";
+        rangeState.subnetLink = subnetState.documentSelfLink;
+        rangeState.startIPAddress = startIPAddress;
+        rangeState.endIPAddress = endIPAddress;
+        rangeState.ipVersion = IPVersion.IPv4;
+        rangeState = this.sender.sendAndWait(Operation
+                .createPost(this.host, SubnetRangeService.FACTORY_LINK)
+                .setBody(rangeState), SubnetRangeState.class);
+
+        SubnetRangeIPAddressAllocatorState allocatorState =
+                new SubnetRangeIPAddressAllocatorState();
+        allocatorState.documentSelfLink = SubnetRangeIPAddressAllocatorService
+                .getAllocatorLink(rangeState.documentSelfLink);
+        allocatorState.subnetRangeLink = rangeState.documentSelfLink;
+        return this.sender.sendAndWait(Operation
+                .createPost(this.host, SubnetRangeIPAddressAllocatorService.FACTORY_LINK)
+                .setBody(allocatorState), SubnetRangeIPAddressAllocatorState.class)
+                .documentSelfLink;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.tasks.monitoring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.monitoring.ResourceMetricsService.ResourceMetrics;
+import com.vmware.photon.controller.model.tasks.monitoring.SingleResourceStatsAggregationTaskService.RollupMetricHolder;
+import com.vmware.xenon.common.ServiceStats.TimeSeriesStats.TimeBin;
+import com.vmware.xenon.common.Utils;
+
+public class SingleResourceStatsAggregationTaskServiceTest {
+
+    private static final String METRIC_KEY = "CPUUtilizationPercent";
+    private static final long NEWEST_TIMESTAMP_MICROS = TimeUnit.DAYS.toMicros(17000);
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testRawMetricsAreFoldedAcrossPages() {
+        List<ResourceMetrics> rawMetrics = createRawMetrics(
+                SingleResourceStatsAggregationTaskService.RAW_METRICS_PAGE_SIZE * 2 + 123);
+        RollupMetricHolder metric = createRollupMetric(false);
+        RollupMetricHolder latestMetric = createRollupMetric(true);
+
+        int count = foldPages(rawMetrics, metric, latestMetric);
+
+        assertEquals(rawMetrics.size(), count);
+        verifyBins(rawMetrics, metric, latestMetric);
+    }
+
+    @Test
+    public void testRawMetricsAreCappedAtLimit() {
+        int limit = SingleResourceStatsAggregationTaskService.RAW_METRICS_LIMIT;
+        List<ResourceMetrics> rawMetrics = createRawMetrics(
+                limit + SingleResourceStatsAggregationTaskService.RAW_METRICS_PAGE_SIZE + 1);
+        RollupMetricHolder metric = createRollupMetric(false);
+        RollupMetricHolder latestMetric = createRollupMetric(true);
+
+        int count = foldPages(rawMetrics, metric, latestMetric);
+
+        // the raw metrics are paged newest first, the oldest ones beyond the limit are skipped
+        assertEquals(limit, count);
+        verifyBins(rawMetrics.subList(0, limit), metric, latestMetric);
+    }
+
+    /**
+     * Folds the raw metrics page by page, the way the task does while following the next page
+     * links of the raw metrics query.
+     */
+    private static int foldPages(List<ResourceMetrics> rawMetrics,
+            RollupMetricHolder... metrics) {
+        Map<String, List<RollupMetricHolder>> rollupMetrics = new HashMap<>();
+        rollupMetrics.put(METRIC_KEY, Arrays.asList(metrics));
+
+        int pageSize = SingleResourceStatsAggregationTaskService.RAW_METRICS_PAGE_SIZE;
+        int count = 0;
+        for (int pageStart = 0; pageStart < rawMetrics.size()
+                && count < SingleResourceStatsAggregationTaskService.RAW_METRICS_LIMIT;
+                pageStart += pageSize) {
+            List<Object> page = new ArrayList<>();
+            for (ResourceMetrics rawMetric : rawMetrics.subList(pageStart,
+                    Math.min(pageStart + pageSize, rawMetrics.size()))) {
+                page.add(Utils.toJson(rawMetric));
+            }
+            count = SingleResourceStatsAggregationTaskService.foldRawMetrics(page,
+                    rollupMetrics, count,
+                    SingleResourceStatsAggregationTaskService.RAW_METRICS_LIMIT);
+        }
+        return count;
+    }
+
+    /**
+     * Compares the folded bins with the aggregates of all the raw metrics of every bin, as they
+     * were computed before the raw metrics were streamed.
+     */
+    private static void verifyBins(List<ResourceMetrics> rawMetrics, RollupMetricHolder metric,
+            RollupMetricHolder latestMetric) {
+        Map<Long, List<ResourceMetrics>> rawMetricsByBin = new HashMap<>();
+        for (ResourceMetrics rawMetric : rawMetrics) {
+            long binId = StatsUtil.computeIntervalEndMicros(rawMetric.timestampMicrosUtc,
+                    StatsConstants.BUCKET_SIZE_HOURS_IN_MILLIS);
+            rawMetricsByBin.computeIfAbsent(binId, k -> new ArrayList<>()).add(rawMetric);
+        }
+
+        assertEquals(rawMetricsByBin.keySet(), metric.bins.keySet());
+        assertEquals(rawMetricsByBin.keySet(), latestMetric.bins.keySet());
+
+        for (Entry<Long, List<ResourceMetrics>> binEntry : rawMetricsByBin.entrySet()) {
+            List<Double> values = new ArrayList<>();
+            ResourceMetrics latest = null;
+            for (ResourceMetrics rawMetric : binEntry.getValue()) {
+                values.add(rawMetric.entries.get(METRIC_KEY));
+                if (latest == null || rawMetric.timestampMicrosUtc > latest.timestampMicrosUtc) {
+                    latest = rawMetric;
+                }
+            }
+            double sum = values.stream().mapToDouble(Double::doubleValue).sum();
+
+            TimeBin bin = metric.toTimeBin(metric.bins.get(binEntry.getKey()));
+            assertEquals(values.size(), bin.count, DELTA);
+            assertEquals(sum, bin.sum, DELTA);
+            assertEquals(sum / values.size(), bin.avg, DELTA);
+            assertEquals(Collections.min(values), bin.min, DELTA);
+            assertEquals(Collections.max(values), bin.max, DELTA);
+
+            TimeBin latestBin = latestMetric.toTimeBin(latestMetric.bins.get(binEntry.getKey()));
+            assertEquals(latest.entries.get(METRIC_KEY), latestBin.avg, DELTA);
+            assertEquals(1, latestBin.count, DELTA);
+        }
+    }
+
+    private static RollupMetricHolder createRollupMetric(boolean latestValueOnly) {
+        RollupMetricHolder metric = new RollupMetricHolder();
+        metric.rollupKey = METRIC_KEY + StatsConstants.HOUR_SUFFIX;
+        metric.binSizeMillis = StatsConstants.BUCKET_SIZE_HOURS_IN_MILLIS;
+        metric.latestValueOnly = latestValueOnly;
+        return metric;
+    }
+
+    /**
+     * Creates raw metrics ten seconds apart, newest first, with another metric which is not
+     * rolled up.
+     */
+    private static List<ResourceMetrics> createRawMetrics(int count) {
+        Random random = new Random(count);
+        List<ResourceMetrics> rawMetrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ResourceMetrics rawMetric = new ResourceMetrics();
+            rawMetric.timestampMicrosUtc = NEWEST_TIMESTAMP_MICROS
+                    - TimeUnit.SECONDS.toMicros(10 * i);
+            rawMetric.entries = new HashMap<>();
+            rawMetric.entries.put(METRIC_KEY, (double) random.nextInt(100));
+            rawMetric.entries.put("MemoryUsedBytes", (double) random.nextInt(1000));
+            rawMetrics.add(rawMetric);
+        }
+        return rawMetrics;
+    }
+}
@@ -42,6 +42,7 @@ import com.vmware.admiral.request.ReservationRemovalTaskFactoryService;
 import com.vmware.admiral.request.ReservationTaskFactoryService;
 import com.vmware.admiral.request.ResourceNamePrefixTaskService;
 import com.vmware.admiral.request.ServiceDocumentDeleteTaskService;
+import com.vmware.admiral.request.allocation.filter.PlacementHostIndexService;
 import com.vmware.admiral.request.composition.CompositeComponentRemovalTaskService;
 import com.vmware.admiral.request.composition.CompositionSubTaskFactoryService;
 import com.vmware.admiral.request.composition.CompositionTaskFactoryService;
@@ -73,7 +74,8 @@ public class HostInitRequestServicesConfig extends HostInitServiceHelper {
                 NotificationsService.class,
                 RequestInitialBootService.class,
                 TagAssignmentService.class,
-                RequestBrokerGraphService.class);
+                RequestBrokerGraphService.class,
+                PlacementHostIndexService.class);
 
         startServiceFactories(host,
                 ClosureAllocationTaskService.class,
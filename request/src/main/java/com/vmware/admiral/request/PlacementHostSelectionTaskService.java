@@ -306,7 +306,7 @@ public class PlacementHostSelectionTaskService
         try {
             final AffinityFilters filters = AffinityFilters.build(getHost(),
                     description.getServiceDocument());
-            filter(state, filteredByMemory, filters.getQueue());
+            filter(state, description, filteredByMemory, filters.getQueue());
         } catch (Exception e) {
             failTask(null, e);
         }
@@ -374,8 +374,13 @@ public class PlacementHostSelectionTaskService
 
     }
 
+    /**
+     * Runs the filters one after another in queue order. Each filter gets the hosts left by the
+     * previous one, since most filters fall back to or rank whatever hosts they get.
+     */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private void filter(final PlacementHostSelectionTaskState state,
+            final ReservationComponentDescription description,
             final Map<String, HostSelection> hostSelectionMap,
             final Queue<HostSelectionFilter> filters) {
         if (isNoSelection(hostSelectionMap)) {
@@ -385,52 +390,95 @@ public class PlacementHostSelectionTaskService
         } else {
             final HostSelectionFilter filter = filters.poll();
             if (filter == null) {
-                complete(state, hostSelectionMap);
+                complete(state, description, hostSelectionMap);
             } else {
                 filter.filter(state, hostSelectionMap, (filteredHostSelectionMap, e) -> {
                     if (e != null) {
-                        if (e instanceof HostSelectionFilterException) {
-                            failTask("Allocation Filter Error: " + e.getMessage(), null);
-                        } else {
-                            failTask("Allocation Filter Exception", e);
-                        }
+                        failFilter(e);
                         return;
                     }
-                    filter(state, filteredHostSelectionMap, filters);
+                    filter(state, description, filteredHostSelectionMap, filters);
                 });
             }
         }
     }
 
+    private void failFilter(Throwable e) {
+        if (e instanceof HostSelectionFilterException) {
+            failTask("Allocation Filter Error: " + e.getMessage(), null);
+        } else {
+            failTask("Allocation Filter Exception", e);
+        }
+    }
+
     private void complete(final PlacementHostSelectionTaskState state,
+            final ReservationComponentDescription description,
             final Map<String, HostSelection> hostSelectionMap) {
         if (hostSelectionMap.isEmpty()) {
             failTask("No compute hostLinks selected", null);
             return;
         }
-        ArrayList<HostSelection> hostSelections = new ArrayList<>(hostSelectionMap.values());
-        Collections.shuffle(hostSelections);
-
-        int initialSize = hostSelections.size();
-        int diff = (int) (state.resourceCount - initialSize);
-        if (diff > 0) {
-            /*
-             * Cycle the list of host selections until we reach resourceCount number of entries i.e.
-             * if we have 3 hosts: [A, B, C] and resourceCount is 7 we will have [A, B, C, A, B, C,
-             * A]
-             */
-            for (int i = 0; i < diff / initialSize; ++i) {
-                hostSelections.addAll(hostSelections.subList(0, initialSize));
-            }
 
-            hostSelections.addAll(hostSelections.subList(0, diff % initialSize));
-        }
+        Long memoryLimit = description.getCommonDescription().memoryLimit;
+        List<HostSelection> hostSelections = selectHosts(hostSelectionMap.values(),
+                state.resourceCount, memoryLimit);
 
         proceedTo(SubStage.COMPLETED, s -> {
             s.hostSelections = hostSelections;
         });
     }
 
+    /**
+     * Assigns the whole batch of resources to the given hosts. Each resource goes to the host with
+     * the fewest resources assigned so far (the one with more memory left on a tie) that still has
+     * memory for it, and the memory it takes is subtracted from the host. The available memory
+     * reported by the hosts is not reserved by the container memory limits, so when no host has
+     * memory left the hosts are overcommitted evenly instead of failing the placement.
+     */
+    static List<HostSelection> selectHosts(Collection<HostSelection> candidates,
+            long resourceCount, Long memoryLimit) {
+        List<HostSelection> hosts = new ArrayList<>(candidates);
+        // random order among equally suitable hosts
+        Collections.shuffle(hosts);
+
+        long requiredMemory = memoryLimit != null ? memoryLimit : 0;
+        long[] availableMemory = new long[hosts.size()];
+        int[] assigned = new int[hosts.size()];
+        for (int i = 0; i < hosts.size(); i++) {
+            Long memory = hosts.get(i).availableMemory;
+            availableMemory[i] = memory != null ? memory : Long.MAX_VALUE;
+        }
+
+        List<HostSelection> hostSelections = new ArrayList<>((int) resourceCount);
+        for (long r = 0; r < resourceCount; r++) {
+            int selected = -1;
+            int overcommitted = -1;
+            for (int i = 0; i < hosts.size(); i++) {
+                if (isPreferred(i, overcommitted, assigned, availableMemory)) {
+                    overcommitted = i;
+                }
+                if (availableMemory[i] >= requiredMemory
+                        && isPreferred(i, selected, assigned, availableMemory)) {
+                    selected = i;
+                }
+            }
+            if (selected == -1) {
+                selected = overcommitted;
+            }
+            assigned[selected]++;
+            availableMemory[selected] -= requiredMemory;
+            hostSelections.add(hosts.get(selected));
+        }
+        return hostSelections;
+    }
+
+    private static boolean isPreferred(int host, int current, int[] assigned,
+            long[] availableMemory) {
+        return current == -1 || assigned[host] < assigned[current]
+                || (assigned[host] == assigned[current]
+                        && availableMemory[host] > availableMemory[current]);
+    }
+
     private void getDescription(PlacementHostSelectionTaskState state,
             Consumer<ReservationComponentDescription> callbackFunction) {
         if (description != null) {
@@ -13,6 +13,7 @@ package com.vmware.admiral.request.allocation.filter;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -22,6 +23,7 @@ import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.allocation.filter.PlacementHostIndexService.IndexedContainer;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.services.common.QueryTask;
@@ -119,6 +121,37 @@ public abstract class BaseAffinityHostFilter
             final Map<String, HostSelection> initHostSelectionMap,
             final Map<String, DescName> containerDescLinksWithNames,
             final HostSelectionFilterCompletion callback) {
+        PlacementHostIndexService index = PlacementHostIndexService.getIndex(host);
+        if (index != null) {
+            index.sync((e) -> {
+                if (e != null) {
+                    findContainersByQuery(state, initHostSelectionMap,
+                            containerDescLinksWithNames, callback);
+                    return;
+                }
+                final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
+                for (IndexedContainer container : index.getContainers(
+                        UriUtils.buildUriPath(CompositeComponentFactoryService.SELF_LINK,
+                                state.contextId),
+                        containerDescLinksWithNames.keySet(), initHostSelectionMap.keySet())) {
+                    addContainer(initHostSelectionMap, filteredHostSelectionMap,
+                            containerDescLinksWithNames, container.parentLink,
+                            container.descriptionLink, container.names);
+                }
+                completeFindContainers(state, initHostSelectionMap, filteredHostSelectionMap,
+                        callback);
+            });
+            return;
+        }
+
+        findContainersByQuery(state, initHostSelectionMap, containerDescLinksWithNames,
+                callback);
+    }
+
+    private void findContainersByQuery(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames,
+            final HostSelectionFilterCompletion callback) {
         QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
                 ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK, UriUtils.buildUriPath(
                         CompositeComponentFactoryService.SELF_LINK, state.contextId));
@@ -144,31 +177,43 @@ public abstract class BaseAffinityHostFilter
                                         state.contextId, r.getException().getMessage());
                                 callback.complete(null, r.getException());
                             } else if (r.hasResult()) {
-                                final HostSelection hostSelection = initHostSelectionMap
-                                        .get(r.getResult().parentLink);
-                                filteredHostSelectionMap.put(r.getResult().parentLink,
-                                        hostSelection);
-                                final DescName descName = containerDescLinksWithNames
-                                        .get(r.getResult().descriptionLink);
-                                DescName newDescName = new DescName(descName);
-                                newDescName.addResourceNames(r.getResult().names);
-                                hostSelection.addDesc(newDescName);
+                                addContainer(initHostSelectionMap, filteredHostSelectionMap,
+                                        containerDescLinksWithNames, r.getResult().parentLink,
+                                        r.getResult().descriptionLink, r.getResult().names);
                             } else {
-                                try {
-                                    final Map<String, HostSelection> hostSelectionMap =
-                                            applyAffinityConstraints(state,
-                                                    initHostSelectionMap, filteredHostSelectionMap);
-                                    host.log(Level.INFO, "Selected host links for %s: %s - %s",
-                                            affinityPropertyName, getAffinity(),
-                                            hostSelectionMap.keySet());
-                                    callback.complete(hostSelectionMap, null);
-                                } catch (Throwable e) {
-                                    callback.complete(null, e);
-                                }
+                                completeFindContainers(state, initHostSelectionMap,
+                                        filteredHostSelectionMap, callback);
                             }
                         });
     }
 
+    private void addContainer(final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, HostSelection> filteredHostSelectionMap,
+            final Map<String, DescName> containerDescLinksWithNames, String parentLink,
+            String descriptionLink, List<String> names) {
+        final HostSelection hostSelection = initHostSelectionMap.get(parentLink);
+        filteredHostSelectionMap.put(parentLink, hostSelection);
+        final DescName descName = containerDescLinksWithNames.get(descriptionLink);
+        DescName newDescName = new DescName(descName);
+        newDescName.addResourceNames(names);
+        hostSelection.addDesc(newDescName);
+    }
+
+    private void completeFindContainers(final PlacementHostSelectionTaskState state,
+            final Map<String, HostSelection> initHostSelectionMap,
+            final Map<String, HostSelection> filteredHostSelectionMap,
+            final HostSelectionFilterCompletion callback) {
+        try {
+            final Map<String, HostSelection> hostSelectionMap = applyAffinityConstraints(state,
+                    initHostSelectionMap, filteredHostSelectionMap);
+            host.log(Level.INFO, "Selected host links for %s: %s - %s",
+                    affinityPropertyName, getAffinity(), hostSelectionMap.keySet());
+            callback.complete(hostSelectionMap, null);
+        } catch (Throwable e) {
+            callback.complete(null, e);
+        }
+    }
+
     protected Map<String, HostSelection> applyAffinityConstraints(
             final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> initHostSelectionMap,
@@ -60,6 +60,25 @@ public class ExposedPortsHostFilter
             return;
         }
 
+        PlacementHostIndexService index = PlacementHostIndexService.getIndex(host);
+        if (index != null) {
+            index.sync((e) -> {
+                if (e != null) {
+                    filterByQuery(hostSelectionMap, callback);
+                    return;
+                }
+                hostSelectionMap.keySet().removeIf(hostLink -> !Collections.disjoint(
+                        descExposedPorts, index.getHostSummary(hostLink).hostPortsInUse));
+                complete(hostSelectionMap, callback);
+            });
+            return;
+        }
+
+        filterByQuery(hostSelectionMap, callback);
+    }
+
+    private void filterByQuery(Map<String, HostSelection> hostSelectionMap,
+            HostSelectionFilterCompletion callback) {
         QueryTask q = QueryUtil.buildQuery(ContainerState.class, false);
         QueryUtil.addListValueClause(q, ContainerState.FIELD_NAME_PARENT_LINK,
                 hostSelectionMap.keySet());
@@ -87,20 +106,24 @@ public class ExposedPortsHostFilter
                 for (ContainerState cs : containerStates) {
                     hostSelectionMap.remove(cs.parentLink);
                 }
-
-                if (hostSelectionMap.isEmpty()) {
-                    String errMsg = String.format(
-                            "No compute hosts found with unexposed ports %s.",
-                            descExposedPorts.toString());
-                    callback.complete(null, new HostSelectionFilterException(errMsg,
-                            "request.exposed-ports.filter.compute-hosts.unavailable", descExposedPorts.toString()));
-                } else {
-                    callback.complete(hostSelectionMap, null);
-                }
+                complete(hostSelectionMap, callback);
             }
         });
     }
 
+    private void complete(Map<String, HostSelection> hostSelectionMap,
+            HostSelectionFilterCompletion callback) {
+        if (hostSelectionMap.isEmpty()) {
+            String errMsg = String.format(
+                    "No compute hosts found with unexposed ports %s.",
+                    descExposedPorts.toString());
+            callback.complete(null, new HostSelectionFilterException(errMsg,
+                    "request.exposed-ports.filter.compute-hosts.unavailable", descExposedPorts.toString()));
+        } else {
+            callback.complete(hostSelectionMap, null);
+        }
+    }
+
     @Override
     public boolean isActive() {
         return !descExposedPorts.isEmpty();
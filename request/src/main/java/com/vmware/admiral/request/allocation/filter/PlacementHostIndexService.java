@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request.allocation.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.CommonContinuousQueries;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.PortBinding;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+
+/**
+ * In-memory index of the containers placed on each container host, used by the placement
+ * {@link HostSelectionFilter}s instead of querying the container states on every placement.
+ *
+ * The index is loaded once on start and then kept current by a continuous query on the
+ * {@link ContainerState}s. Since the continuous query notifications are asynchronous, the filters
+ * call {@link #sync(Consumer)} before reading the index. It applies the changes made since the
+ * previous sync with a single (and usually empty) query, so the filters never see an index older
+ * than the placement request.
+ */
+public class PlacementHostIndexService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.REQUEST + "/placement-host-index";
+
+    /**
+     * Time subtracted from the start of the previous sync when querying for changes, to tolerate
+     * clock differences between the nodes updating the container states.
+     */
+    private static final long SYNC_MARGIN_MICROS = Long.getLong(
+            "com.vmware.admiral.request.placement.index.sync.margin.micros",
+            TimeUnit.SECONDS.toMicros(2));
+
+    private static final long TOMBSTONE_EXPIRATION_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private static final Map<ServiceHost, PlacementHostIndexService> INDEXES =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, IndexedContainer> containersByLink = new HashMap<>();
+    private final Map<String, Set<String>> containerLinksByHost = new HashMap<>();
+    private final Map<String, Set<String>> containerLinksByComponent = new HashMap<>();
+    // versions of the recently deleted containers, ignore late notifications for them
+    private final Map<String, IndexedContainer> deletedContainers = new HashMap<>();
+
+    private volatile boolean ready;
+    private boolean syncInProgress;
+    private long lastSyncStartMicros;
+    private List<Consumer<Throwable>> currentSyncCallbacks = new ArrayList<>();
+    private List<Consumer<Throwable>> nextSyncCallbacks = new ArrayList<>();
+
+    /**
+     * Snapshot of the placement related properties of a container.
+     */
+    public static class IndexedContainer {
+        public String documentSelfLink;
+        public long documentVersion;
+        public long documentUpdateTimeMicros;
+        public String parentLink;
+        public String descriptionLink;
+        public String compositeComponentLink;
+        public List<String> names;
+        public PowerState powerState;
+        public Set<String> hostPorts;
+        public Set<String> networks;
+        public Set<String> volumes;
+    }
+
+    /**
+     * Placement view of a single container host.
+     */
+    public static class HostSummary {
+        public int containerCount;
+        public Map<String, Integer> containerCountByDescription = new HashMap<>();
+        /** Host ports of the running and being provisioned containers. */
+        public Set<String> hostPortsInUse = new HashSet<>();
+        public Set<String> networks = new HashSet<>();
+        public Set<String> volumes = new HashSet<>();
+    }
+
+    public PlacementHostIndexService() {
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+    }
+
+    /**
+     * Returns the index of the given host or <code>null</code> if it is not started or not loaded
+     * yet, in which case the filters query the container states directly.
+     */
+    public static PlacementHostIndexService getIndex(ServiceHost host) {
+        PlacementHostIndexService index = INDEXES.get(host);
+        return index != null && index.ready ? index : null;
+    }
+
+    @Override
+    public void handleStart(Operation start) {
+        start.complete();
+
+        INDEXES.put(getHost(), this);
+        CommonContinuousQueries.subscribeTo(getHost(), buildContinuousQuery(),
+                this::onContainerChange);
+        load();
+    }
+
+    @Override
+    public void handleStop(Operation delete) {
+        INDEXES.remove(getHost(), this);
+        ready = false;
+
+        super.handleStop(delete);
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+
+        long expiration = Utils.getNowMicrosUtc() - TOMBSTONE_EXPIRATION_MICROS;
+        synchronized (this) {
+            deletedContainers.values()
+                    .removeIf(c -> c.documentUpdateTimeMicros < expiration);
+        }
+    }
+
+    /**
+     * Applies the container changes since the previous sync and calls the callback, with a
+     * failure if the changes can not be retrieved. Concurrent calls are coalesced into a single
+     * query.
+     */
+    public void sync(Consumer<Throwable> callback) {
+        synchronized (this) {
+            if (syncInProgress) {
+                // the running query may have started before the caller's last change
+                nextSyncCallbacks.add(callback);
+                return;
+            }
+            syncInProgress = true;
+            currentSyncCallbacks.add(callback);
+        }
+        doSync();
+    }
+
+    private void doSync() {
+        long syncStartMicros = Utils.getNowMicrosUtc();
+        long sinceMicros;
+        synchronized (this) {
+            sinceMicros = lastSyncStartMicros - SYNC_MARGIN_MICROS;
+        }
+
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class)
+                .queryUpdatedSince(sinceMicros, (r) -> {
+                    if (r.hasException()) {
+                        logWarning("Failed to sync placement host index: %s",
+                                Utils.toString(r.getException()));
+                        completeSync(r.getException(), syncStartMicros);
+                    } else if (r.hasResult()) {
+                        update(r.getResult());
+                    } else {
+                        completeSync(null, syncStartMicros);
+                    }
+                });
+    }
+
+    private void completeSync(Throwable failure, long syncStartMicros) {
+        List<Consumer<Throwable>> callbacks;
+        boolean syncAgain;
+        synchronized (this) {
+            if (failure == null) {
+                lastSyncStartMicros = syncStartMicros;
+            }
+            callbacks = currentSyncCallbacks;
+            currentSyncCallbacks = nextSyncCallbacks;
+            nextSyncCallbacks = new ArrayList<>();
+            syncAgain = !currentSyncCallbacks.isEmpty();
+            syncInProgress = syncAgain;
+        }
+
+        for (Consumer<Throwable> callback : callbacks) {
+            callback.accept(failure);
+        }
+        if (syncAgain) {
+            doSync();
+        }
+    }
+
+    public synchronized HostSummary getHostSummary(String hostLink) {
+        HostSummary summary = new HostSummary();
+        for (String containerLink : containerLinksByHost.getOrDefault(hostLink,
+                Collections.emptySet())) {
+            IndexedContainer container = containersByLink.get(containerLink);
+            summary.containerCount++;
+            if (container.descriptionLink != null) {
+                summary.containerCountByDescription.merge(container.descriptionLink, 1,
+                        Integer::sum);
+            }
+            if (container.powerState == PowerState.RUNNING
+                    || container.powerState == PowerState.PROVISIONING) {
+                summary.hostPortsInUse.addAll(container.hostPorts);
+            }
+            summary.networks.addAll(container.networks);
+            summary.volumes.addAll(container.volumes);
+        }
+        return summary;
+    }
+
+    public synchronized int getContainerCount(String hostLink) {
+        return containerLinksByHost.getOrDefault(hostLink, Collections.emptySet()).size();
+    }
+
+    /**
+     * Returns the containers of the given composite component which are placed on the given
+     * hosts and created from the given descriptions.
+     */
+    public synchronized List<IndexedContainer> getContainers(String compositeComponentLink,
+            Collection<String> descriptionLinks, Collection<String> hostLinks) {
+        List<IndexedContainer> containers = new ArrayList<>();
+        for (String containerLink : containerLinksByComponent.getOrDefault(
+                compositeComponentLink, Collections.emptySet())) {
+            IndexedContainer container = containersByLink.get(containerLink);
+            if (descriptionLinks.contains(container.descriptionLink)
+                    && hostLinks.contains(container.parentLink)) {
+                containers.add(container);
+            }
+        }
+        return containers;
+    }
+
+    private void load() {
+        long loadStartMicros = Utils.getNowMicrosUtc();
+        QueryTask q = QueryUtil.buildQuery(ContainerState.class, true);
+        QueryUtil.addExpandOption(q);
+
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).stream(q, null,
+                (page, next) -> {
+                    if (page.hasException()) {
+                        logWarning("Failed to load placement host index, retrying: %s",
+                                Utils.toString(page.getException()));
+                        getHost().schedule(this::load, QueryUtil.QUERY_RETRY_INTERVAL_MILLIS,
+                                TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    for (ContainerState container : page.getDocuments()) {
+                        update(container);
+                    }
+                    if (!page.isLast()) {
+                        next.run();
+                        return;
+                    }
+                    synchronized (this) {
+                        lastSyncStartMicros = loadStartMicros;
+                        logInfo("Placement host index loaded with %d containers",
+                                containersByLink.size());
+                    }
+                    ready = true;
+                });
+    }
+
+    private QueryTask buildContinuousQuery() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                .setQuery(query).build();
+        task.documentSelfLink = CommonContinuousQueries.createTaskSelfLink("placement-host-index");
+        return task;
+    }
+
+    private void onContainerChange(Operation op) {
+        op.complete();
+        QueryTask queryTask = op.getBody(QueryTask.class);
+        if (queryTask.results == null || queryTask.results.documents == null) {
+            return;
+        }
+        for (Object document : queryTask.results.documents.values()) {
+            update(document instanceof ContainerState ? (ContainerState) document
+                    : Utils.fromJson(document, ContainerState.class));
+        }
+    }
+
+    private synchronized void update(ContainerState state) {
+        IndexedContainer previous = containersByLink.get(state.documentSelfLink);
+        if (previous == null) {
+            previous = deletedContainers.get(state.documentSelfLink);
+        }
+        if (previous != null && previous.documentVersion > state.documentVersion) {
+            // out of order notification
+            return;
+        }
+
+        remove(state.documentSelfLink);
+
+        IndexedContainer container = toIndexedContainer(state);
+        if (isDeleted(state)) {
+            deletedContainers.put(container.documentSelfLink, container);
+            return;
+        }
+
+        deletedContainers.remove(container.documentSelfLink);
+        containersByLink.put(container.documentSelfLink, container);
+        if (container.parentLink != null) {
+            containerLinksByHost.computeIfAbsent(container.parentLink, k -> new HashSet<>())
+                    .add(container.documentSelfLink);
+        }
+        if (container.compositeComponentLink != null) {
+            containerLinksByComponent
+                    .computeIfAbsent(container.compositeComponentLink, k -> new HashSet<>())
+                    .add(container.documentSelfLink);
+        }
+    }
+
+    private void remove(String containerLink) {
+        IndexedContainer container = containersByLink.remove(containerLink);
+        if (container == null) {
+            return;
+        }
+        removeFrom(containerLinksByHost, container.parentLink, containerLink);
+        removeFrom(containerLinksByComponent, container.compositeComponentLink, containerLink);
+    }
+
+    private static void removeFrom(Map<String, Set<String>> linksByKey, String key,
+            String containerLink) {
+        if (key == null) {
+            return;
+        }
+        Set<String> links = linksByKey.get(key);
+        if (links != null) {
+            links.remove(containerLink);
+            if (links.isEmpty()) {
+                linksByKey.remove(key);
+            }
+        }
+    }
+
+    private static boolean isDeleted(ContainerState state) {
+        return Action.DELETE.name().equals(state.documentUpdateAction)
+                || ServiceDocument.isDeleted(state);
+    }
+
+    private static IndexedContainer toIndexedContainer(ContainerState state) {
+        IndexedContainer container = new IndexedContainer();
+        container.documentSelfLink = state.documentSelfLink;
+        container.documentVersion = state.documentVersion;
+        container.documentUpdateTimeMicros = state.documentUpdateTimeMicros;
+        container.parentLink = state.parentLink;
+        container.descriptionLink = state.descriptionLink;
+        container.compositeComponentLink = state.compositeComponentLink;
+        container.names = state.names;
+        container.powerState = state.powerState;
+        container.hostPorts = new HashSet<>();
+        if (state.ports != null) {
+            for (PortBinding port : state.ports) {
+                if (port != null && port.hostPort != null && !port.hostPort.isEmpty()) {
+                    container.hostPorts.add(port.hostPort);
+                }
+            }
+        }
+        container.networks = state.networks != null ? new HashSet<>(state.networks.keySet())
+                : Collections.emptySet();
+        container.volumes = new HashSet<>();
+        if (state.volumes != null) {
+            Collections.addAll(container.volumes, state.volumes);
+        }
+        return container;
+    }
+}
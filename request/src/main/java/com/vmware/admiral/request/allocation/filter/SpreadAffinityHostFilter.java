@@ -125,6 +125,28 @@ public class SpreadAffinityHostFilter implements
             Map<String, HostSelection> hostSelectionMap,
             HostSelectionFilterCompletion callback) {
 
+        PlacementHostIndexService index = PlacementHostIndexService.getIndex(host);
+        if (index != null) {
+            index.sync((e) -> {
+                if (e != null) {
+                    retrieveContainersByQuery(hostSelectionMap, callback);
+                    return;
+                }
+                for (HostSelection hostSelection : hostSelectionMap.values()) {
+                    hostSelection.resourceCount += index.getContainerCount(hostSelection.hostLink);
+                }
+                completeFilter(hostSelectionMap, callback);
+            });
+            return;
+        }
+
+        retrieveContainersByQuery(hostSelectionMap, callback);
+    }
+
+    private void retrieveContainersByQuery(
+            Map<String, HostSelection> hostSelectionMap,
+            HostSelectionFilterCompletion callback) {
+
         QueryTask.Query.Builder queryBuilder = QueryTask.Query.Builder.create()
                 .addKindFieldClause(ContainerState.class)
                 .addInClause(ContainerState.FIELD_NAME_PARENT_LINK, hostSelectionMap.keySet());
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertThat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -37,6 +38,7 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService.Containe
 import com.vmware.admiral.compute.container.ContainerFactoryService;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.photon.controller.model.resources.ComputeService;
@@ -308,6 +310,41 @@ public class PlacementHostSelectionTaskServiceTest extends RequestBaseTest {
         }
     }
 
+    @Test
+    public void testBatchSelectionAccountsForMemory() {
+        List<HostSelection> hosts = new ArrayList<>();
+        for (long memory : new long[] { 10, 20, 30 }) {
+            HostSelection hostSelection = new HostSelection();
+            hostSelection.hostLink = "host-" + memory;
+            hostSelection.availableMemory = memory;
+            hosts.add(hostSelection);
+        }
+
+        // each host gets as many resources as its memory fits
+        Map<String, Long> counts = countByHost(
+                PlacementHostSelectionTaskService.selectHosts(hosts, 6, 10L));
+        assertEquals(1, counts.get("host-10").longValue());
+        assertEquals(2, counts.get("host-20").longValue());
+        assertEquals(3, counts.get("host-30").longValue());
+
+        // without memory limit the resources are spread evenly
+        counts = countByHost(PlacementHostSelectionTaskService.selectHosts(hosts, 6, null));
+        assertEquals(2, counts.get("host-10").longValue());
+        assertEquals(2, counts.get("host-20").longValue());
+        assertEquals(2, counts.get("host-30").longValue());
+
+        // the hosts are overcommitted evenly when out of memory
+        counts = countByHost(PlacementHostSelectionTaskService.selectHosts(hosts, 9, 10L));
+        assertEquals(3, counts.get("host-10").longValue());
+        assertEquals(3, counts.get("host-20").longValue());
+        assertEquals(3, counts.get("host-30").longValue());
+    }
+
+    private Map<String, Long> countByHost(List<HostSelection> hostSelections) {
+        return hostSelections.stream()
+                .collect(Collectors.groupingBy(h -> h.hostLink, Collectors.counting()));
+    }
+
     private PlacementHostSelectionTaskState createHostPlacementTask(String containerDescLink,
             int resourceCount, boolean expectError) throws Throwable {
         PlacementHostSelectionTaskState placementTask = new PlacementHostSelectionTaskState();
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request.allocation.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ContainerDescriptionService;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.request.allocation.filter.PlacementHostIndexService.HostSummary;
+import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.UriUtils;
+
+public class PlacementHostIndexServiceTest extends BaseAffinityHostFilterTest {
+
+    private PlacementHostIndexService index;
+
+    @Override
+    @Before
+    public void setUp() throws Throwable {
+        super.setUp();
+        waitFor(() -> PlacementHostIndexService.getIndex(host) != null);
+        index = PlacementHostIndexService.getIndex(host);
+    }
+
+    @Test
+    public void testIndexTracksContainers() throws Throwable {
+        ContainerDescription desc = createDescription();
+        String hostLink = initialHostLinks.get(0);
+
+        ContainerState c1 = createContainer(desc, hostLink);
+        ContainerState c2 = createContainer(desc, hostLink);
+        sync();
+
+        HostSummary summary = index.getHostSummary(hostLink);
+        assertEquals(2, summary.containerCount);
+        assertEquals(2, summary.containerCountByDescription.get(desc.documentSelfLink)
+                .intValue());
+        assertTrue(summary.hostPortsInUse.contains(desc.portBindings[0].hostPort));
+        assertEquals(0, index.getContainerCount(initialHostLinks.get(1)));
+
+        // stopped containers don't hold their host ports
+        c1.powerState = PowerState.STOPPED;
+        doOperation(c1, UriUtils.buildUri(host, c1.documentSelfLink), false,
+                Action.PUT);
+        delete(c2.documentSelfLink);
+        sync();
+
+        summary = index.getHostSummary(hostLink);
+        assertEquals(1, summary.containerCount);
+        assertTrue(summary.hostPortsInUse.isEmpty());
+
+        // the index is kept current without sync too, by the continuous query
+        createContainer(desc, hostLink);
+        waitFor(() -> index.getContainerCount(hostLink) == 2);
+    }
+
+    @Test
+    public void testFilterSeesContainerCreatedRightBefore() throws Throwable {
+        ContainerDescription desc = createDescription();
+        for (String hostLink : initialHostLinks.subList(1, initialHostLinks.size())) {
+            createContainer(desc, hostLink);
+        }
+
+        // the filter syncs the index, without waiting for the continuous query notifications
+        filter = new ExposedPortsHostFilter(host, desc);
+        assertNull(filter(initialHostLinks.subList(0, 1)));
+    }
+
+    @Test
+    public void testIndexIsNotAvailableAfterStop() throws Throwable {
+        stopIndex();
+
+        assertNull(PlacementHostIndexService.getIndex(host));
+
+        // the filters fall back to queries
+        ContainerDescription desc = createDescription();
+        createContainer(desc, initialHostLinks.get(0));
+        filter = new ExposedPortsHostFilter(host, desc);
+        assertNull(filter(initialHostLinks.subList(1, initialHostLinks.size())));
+    }
+
+    /**
+     * Places containers with exposed ports across many hosts with and without the index. The
+     * numbers are only logged since they depend on the environment.
+     */
+    @Test
+    public void testPlacementWithIndexComparedToQueries() throws Throwable {
+        int hostsCount = Integer.getInteger("test.placement.index.hosts", 20);
+        int containersCount = Integer.getInteger("test.placement.index.containers", 200);
+        int placements = 20;
+
+        for (int i = initialHostLinks.size(); i < hostsCount; i++) {
+            initialHostLinks.add(createDockerHost(createDockerHostDescription(),
+                    createResourcePool(), true).documentSelfLink);
+        }
+        ContainerDescription desc = createDescription();
+        // keep the last host free of containers exposing the port
+        for (int i = 0; i < containersCount; i++) {
+            createContainer(desc, initialHostLinks.get(i % (hostsCount - 1)));
+        }
+        sync();
+        assertNotNull(PlacementHostIndexService.getIndex(host));
+
+        String freeHost = initialHostLinks.get(hostsCount - 1);
+        filter = new ExposedPortsHostFilter(host, desc);
+        long start = System.nanoTime();
+        for (int i = 0; i < placements; i++) {
+            assertTrue(filter().containsKey(freeHost));
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        stopIndex();
+
+        start = System.nanoTime();
+        for (int i = 0; i < placements; i++) {
+            assertTrue(filter().containsKey(freeHost));
+        }
+        long queryNanos = System.nanoTime() - start;
+
+        host.log("Placement of %d containers across %d hosts with %d containers:"
+                + " index %d ms, queries %d ms", placements, hostsCount, containersCount,
+                TimeUnit.NANOSECONDS.toMillis(indexNanos),
+                TimeUnit.NANOSECONDS.toMillis(queryNanos));
+    }
+
+    private ContainerDescription createDescription() throws Throwable {
+        ContainerDescription desc = TestRequestStateFactory
+                .createContainerDescriptionWithPortBindingsHostPortSet();
+        desc.documentSelfLink = null;
+        desc = doPost(desc, ContainerDescriptionService.FACTORY_LINK);
+        addForDeletion(desc);
+        return desc;
+    }
+
+    private void stopIndex() throws Throwable {
+        host.testStart(1);
+        host.send(Operation
+                .createDelete(UriUtils.buildUri(host, PlacementHostIndexService.SELF_LINK))
+                .setCompletion(host.getCompletion()));
+        host.testWait();
+    }
+
+    private void sync() throws Throwable {
+        host.testStart(1);
+        index.sync((e) -> {
+            if (e != null) {
+                host.failIteration(e);
+            } else {
+                host.completeIteration();
+            }
+        });
+        host.testWait();
+    }
+}